@@ -0,0 +1,79 @@
+package com.scangarella.pipe.jmh;
+
+import akka.actor.ActorSystem;
+import com.scangarella.pipe.construction.PipeBuilder;
+import com.scangarella.pipe.construction.PipeOpening;
+import com.scangarella.pipe.construction.Schematic;
+import com.scangarella.pipe.jmh.pipe.PassThroughPipe;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Requests made with 'ask' on a chain of three pipes. 'throughput' makes a burst of requests and waits
+ * for all of them, so it reports requests per second. 'latency' makes one request at a time, so it
+ * reports the distribution of round trip times.
+ *
+ *   opening -> pass -> pass -> pass
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class AskBenchmark {
+
+    private static final int BURST = 1000;
+
+    private ActorSystem system;
+    private PipeOpening<Long> opening;
+
+    @Setup(Level.Trial)
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        system = ActorSystem.create("benchmark");
+        Schematic schematic = new Schematic(PassThroughPipe.class);
+        schematic.getRoot()
+                .addChild(PassThroughPipe.class)
+                .addChild(PassThroughPipe.class);
+        opening = new PipeBuilder(system).build(schematic);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        opening.close().toCompletableFuture().join();
+        system.shutdown();
+        system.awaitTermination();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    @OperationsPerInvocation(BURST)
+    public void throughput() {
+        CompletableFuture<?>[] requests = new CompletableFuture<?>[BURST];
+        for (int i = 0; i < BURST; i++) {
+            requests[i] = opening.ask(1L);
+        }
+        CompletableFuture.allOf(requests).join();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SampleTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public Object latency() {
+        return opening.ask(1L).join();
+    }
+}
@@ -0,0 +1,35 @@
+package com.scangarella.pipe.jmh;
+
+import com.scangarella.pipe.construction.Schematic;
+import com.scangarella.pipe.jmh.pipe.PassThroughPipe;
+import org.openjdk.jmh.annotations.Param;
+
+/**
+ * A chain of four pipes whose edges send one tell per message ('none'), batches of up to 64 that are
+ * flushed once the sender's mailbox is empty ('idle'), or batches of up to 256 that wait up to 500
+ * microseconds to fill ('timed').
+ *
+ *   opening -> pass -> pass -> pass -> pass -> sink
+ */
+public class BatchingBenchmark extends PipelineBenchmark {
+
+    private static final int STAGES = 4;
+
+    @Param({"none", "idle", "timed"})
+    public String batching;
+
+    @Override
+    protected Schematic schematic() {
+        Schematic schematic = new Schematic(PassThroughPipe.class);
+        Schematic.Pipe pipe = schematic.getRoot();
+        for (int i = 1; i < STAGES; i++) {
+            if (batching.equals("idle")) {
+                pipe.setBatching(64, 0);
+            } else if (batching.equals("timed")) {
+                pipe.setBatching(256, 500);
+            }
+            pipe = pipe.addChild(PassThroughPipe.class);
+        }
+        return schematic;
+    }
+}
@@ -0,0 +1,38 @@
+package com.scangarella.pipe.jmh;
+
+import akka.routing.RoundRobinRoutingLogic;
+import com.scangarella.pipe.concurrency.LoadBalancingPipeWrapper;
+import com.scangarella.pipe.construction.ExecutionProfile;
+import com.scangarella.pipe.construction.Schematic;
+import com.scangarella.pipe.jmh.pipe.BlockingSleepPipe;
+import com.scangarella.pipe.jmh.pipe.SleepPipe;
+import org.openjdk.jmh.annotations.Param;
+
+/**
+ * A stage that blocks for a millisecond per message, with the same number of calls in flight either way:
+ * a single blocking pipe, or a load balancer with a routee per call, each on its own platform thread.
+ *
+ *   opening -> blocking pipe -> sink
+ *   opening -> load balancer -> sleep (x concurrency) -> sink
+ */
+public class BlockingBenchmark extends PipelineBenchmark {
+
+    @Param({"blockingPipe", "loadBalanced"})
+    public String stage;
+
+    @Param({"64", "1024"})
+    public int concurrency;
+
+    @Override
+    protected Schematic schematic() {
+        if (stage.equals("blockingPipe")) {
+            return new Schematic(concurrency == 64 ? BlockingSleepPipe.Concurrency64.class : BlockingSleepPipe.Concurrency1024.class);
+        }
+        Schematic schematic = new Schematic(SleepPipe.class);
+        schematic.getRoot().setExecutionProfile(ExecutionProfile.blocking(concurrency));
+        Schematic.Wrapper wrapper = schematic.getRoot().wrap(LoadBalancingPipeWrapper.class);
+        wrapper.setRoutees(concurrency);
+        wrapper.setRoutingLogic(RoundRobinRoutingLogic.class);
+        return schematic;
+    }
+}
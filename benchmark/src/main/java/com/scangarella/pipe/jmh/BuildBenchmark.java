@@ -0,0 +1,76 @@
+package com.scangarella.pipe.jmh;
+
+import akka.actor.ActorSystem;
+import com.scangarella.pipe.construction.PipeBuilder;
+import com.scangarella.pipe.construction.PipeOpening;
+import com.scangarella.pipe.construction.Schematic;
+import com.scangarella.pipe.jmh.pipe.PassThroughPipe;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how long PipeBuilder.build takes for a large schematic.
+ * The schematic is a binary tree of pipes, built breadth first.
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class BuildBenchmark {
+
+    @Param({"10", "100", "1000"})
+    public int pipes;
+
+    private ActorSystem system;
+    private Schematic schematic;
+    private PipeOpening opening;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        system = ActorSystem.create("benchmark");
+        schematic = new Schematic(PassThroughPipe.class);
+        Queue<Schematic.Pipe> parents = new ArrayDeque<>();
+        parents.add(schematic.getRoot());
+        for (int i = 1; i < pipes; i++) {
+            Schematic.Pipe parent = parents.peek();
+            parents.add(parent.addChild(PassThroughPipe.class));
+            if (parent.getChildren().size() == 2) {
+                parents.remove();
+            }
+        }
+    }
+
+    @TearDown(Level.Invocation)
+    public void close() {
+        opening.close().toCompletableFuture().join();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        system.shutdown();
+        system.awaitTermination();
+    }
+
+    @Benchmark
+    public PipeOpening build() {
+        opening = new PipeBuilder(system).build(schematic);
+        return opening;
+    }
+}
@@ -0,0 +1,97 @@
+package com.scangarella.pipe.jmh;
+
+import akka.actor.ActorRef;
+import akka.actor.ActorSystem;
+import akka.actor.Props;
+import com.scangarella.pipe.concurrency.LoadBalancingPipeWrapper;
+import com.scangarella.pipe.construction.PipeBuilder;
+import com.scangarella.pipe.construction.PipeOpening;
+import com.scangarella.pipe.construction.Schematic;
+import com.scangarella.pipe.jmh.pipe.PassThroughPipe;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+/**
+ * Putting a list of objects into a pipeline one at a time with 'put' ('put'), with 'putAll' on the list
+ * ('putAll'), or with 'putAll' on a parallel stream of it ('parallelStream'), into a single pipe or a
+ * load balanced one. Reports objects per second, from the first put until the last object comes out.
+ *
+ *   opening -> pass -> sink
+ *   opening -> balancer[pass] -> sink
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class BulkIngestBenchmark {
+
+    private static final int OBJECTS = 10_000;
+
+    @Param({"put", "putAll", "parallelStream"})
+    public String ingest;
+
+    @Param({"false", "true"})
+    public boolean loadBalanced;
+
+    private ActorSystem system;
+    private PipeOpening<Long> opening;
+    private List<Long> objects;
+    private AtomicLong received = new AtomicLong();
+    private long expected = 0;
+
+    @Setup(Level.Trial)
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        objects = LongStream.range(0, OBJECTS).boxed().collect(Collectors.toList());
+        system = ActorSystem.create("benchmark");
+        ActorRef sink = system.actorOf(Props.create(CountingSink.class, received));
+        Schematic schematic = new Schematic(PassThroughPipe.class);
+        if (loadBalanced) {
+            schematic.getRoot().wrap(LoadBalancingPipeWrapper.class);
+        }
+        opening = new PipeBuilder(system).buildEndedPipe(schematic, sink);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        opening.close().toCompletableFuture().join();
+        system.shutdown();
+        system.awaitTermination();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    @OperationsPerInvocation(OBJECTS)
+    public void feed() {
+        if (ingest.equals("put")) {
+            objects.forEach(opening::put);
+        } else if (ingest.equals("putAll")) {
+            opening.putAll(objects);
+        } else {
+            opening.putAll(objects.parallelStream());
+        }
+        expected += OBJECTS;
+        while (received.get() < expected) {
+            Thread.yield();
+        }
+    }
+}
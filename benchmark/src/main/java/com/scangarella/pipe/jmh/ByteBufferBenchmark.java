@@ -0,0 +1,94 @@
+package com.scangarella.pipe.jmh;
+
+import akka.actor.ActorRef;
+import akka.actor.ActorSystem;
+import akka.actor.Props;
+import com.scangarella.pipe.construction.PipeBuilder;
+import com.scangarella.pipe.construction.PipeOpening;
+import com.scangarella.pipe.construction.Schematic;
+import com.scangarella.pipe.jmh.pipe.StripHeaderBufferPipe;
+import com.scangarella.pipe.jmh.pipe.StripHeaderPipe;
+import com.scangarella.pipe.transmission.BufferPool;
+import com.scangarella.pipe.transmission.PooledBuffer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Binary records as byte arrays that every pipe copies, against pooled buffers that every pipe slices.
+ * Each pipe strips a four byte header. Fusing is off, so every pipe is an actor. Reports records per
+ * second; run with '-prof gc' to compare allocation per record.
+ *
+ *   opening -> strip -> strip -> strip -> sink
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class ByteBufferBenchmark {
+
+    private static final int RECORDS = 1024;
+
+    @Param({"copy", "pooled"})
+    public String path;
+
+    @Param({"4096", "65536"})
+    public int recordSize;
+
+    private ActorSystem system;
+    private PipeOpening<Object> opening;
+    private BufferPool pool = new BufferPool();
+    private AtomicLong received = new AtomicLong();
+    private long expected = 0;
+
+    @Setup(Level.Trial)
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        system = ActorSystem.create("benchmark");
+        ActorRef sink = system.actorOf(Props.create(CountingSink.class, received));
+        Class strip = path.equals("copy") ? StripHeaderPipe.class : StripHeaderBufferPipe.class;
+        Schematic schematic = new Schematic(strip);
+        schematic.getRoot().addChild(strip).addChild(strip);
+        schematic.setFusing(false);
+        opening = new PipeBuilder(system).buildEndedPipe(schematic, sink);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        opening.close().toCompletableFuture().join();
+        system.shutdown();
+        system.awaitTermination();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    @OperationsPerInvocation(RECORDS)
+    public void throughput() {
+        for (int i = 0; i < RECORDS; i++) {
+            if (path.equals("copy")) {
+                opening.put(new byte[recordSize]);
+            } else {
+                opening.put(pool.acquire(recordSize));
+            }
+        }
+        expected += RECORDS;
+        while (received.get() < expected) {
+            Thread.yield();
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package com.scangarella.pipe.jmh;
+
+import com.scangarella.pipe.stereotype.ExceptionHandler;
+import com.scangarella.pipe.transmission.ExceptionBatch;
+import com.scangarella.pipe.transmission.ExceptionMessage;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counts the failures reported to it, one at a time or in batches. Exception handlers are created without arguments, so the count is static.
+ */
+public class CountingExceptionHandler extends ExceptionHandler {
+
+    public static final AtomicLong HANDLED = new AtomicLong();
+
+    @Override
+    public void onException(ExceptionMessage message) {
+        HANDLED.incrementAndGet();
+    }
+
+    @Override
+    public void onExceptions(ExceptionBatch batch) {
+        HANDLED.addAndGet(batch.getCount());
+    }
+}
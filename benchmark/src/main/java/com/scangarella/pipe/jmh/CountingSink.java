@@ -0,0 +1,33 @@
+package com.scangarella.pipe.jmh;
+
+import akka.actor.UntypedActor;
+import com.scangarella.pipe.transmission.PooledBuffer;
+import com.scangarella.pipe.transmission.StopMessage;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The end of a benchmark pipeline. Counts everything that comes out of it, and releases pooled buffers.
+ */
+public class CountingSink extends UntypedActor {
+
+    private AtomicLong received;
+
+    /**
+     * Creates a new CountingSink.
+     * @param received The counter to add every message to.
+     */
+    public CountingSink(AtomicLong received) {
+        this.received = received;
+    }
+
+    @Override
+    public void onReceive(Object message) {
+        if (!(message instanceof StopMessage)) {
+            if (message instanceof PooledBuffer) {
+                ((PooledBuffer) message).release();
+            }
+            received.incrementAndGet();
+        }
+    }
+}
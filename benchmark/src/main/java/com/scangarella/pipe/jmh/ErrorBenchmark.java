@@ -0,0 +1,100 @@
+package com.scangarella.pipe.jmh;
+
+import akka.actor.ActorRef;
+import akka.actor.ActorSystem;
+import akka.actor.Props;
+import com.scangarella.pipe.construction.PipeBuilder;
+import com.scangarella.pipe.construction.PipeOpening;
+import com.scangarella.pipe.construction.Schematic;
+import com.scangarella.pipe.jmh.pipe.FailingPipe;
+import com.scangarella.pipe.jmh.pipe.StacklessFailingPipe;
+import com.scangarella.pipe.transmission.ErrorPolicy;
+import com.scangarella.pipe.transmission.RetryPolicy;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A pipe that fails on one or on fifty messages in a hundred. With 'none' no message fails; with 'reported'
+ * each failure goes straight to a counting exception handler; with 'gathered' the handler has an error policy,
+ * so the pipe sends it a batch of failures once it has worked through its mailbox, keeping ten of each batch
+ * in full; 'stackless' is the same, but the pipe throws a StacklessException; with 'retried' every failed message is retried once, right away, and then succeeds. The pipe keeps
+ * running through every failure. Reports messages per second.
+ *
+ *   opening -> failing -> sink
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class ErrorBenchmark {
+
+    private static final int MESSAGES = 1024;
+
+    @Param({"none", "reported", "gathered", "stackless", "retried"})
+    public String failures;
+
+    /**
+     * The percentage of messages that fail.
+     */
+    @Param({"1", "50"})
+    public int percent;
+
+    private ActorSystem system;
+    private PipeOpening<Long> opening;
+    private AtomicLong received = new AtomicLong();
+    private long expected = 0;
+    private long next = 1;
+
+    @Setup(Level.Trial)
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        system = ActorSystem.create("benchmark");
+        ActorRef sink = system.actorOf(Props.create(CountingSink.class, received));
+        Schematic schematic = new Schematic(failures.equals("stackless") ? StacklessFailingPipe.class : FailingPipe.class);
+        Schematic.ExceptionHandler handler = schematic.getRoot().setExceptionHandler(CountingExceptionHandler.class);
+        if (failures.equals("gathered") || failures.equals("stackless")) {
+            handler.setErrorPolicy(new ErrorPolicy(0, 10, IllegalArgumentException.class));
+        }
+        if (failures.equals("retried")) {
+            schematic.getRoot().setRetryPolicy(new RetryPolicy(1, 0));
+        }
+        opening = new PipeBuilder(system).buildEndedPipe(schematic, sink);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        opening.close().toCompletableFuture().join();
+        system.shutdown();
+        system.awaitTermination();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    @OperationsPerInvocation(MESSAGES)
+    public void throughput() {
+        for (int i = 0; i < MESSAGES; i++) {
+            long value = next++;
+            opening.put(!failures.equals("none") && value % 100 < percent ? -value : value);
+        }
+        expected += MESSAGES;
+        while (received.get() + CountingExceptionHandler.HANDLED.get() < expected) {
+            Thread.yield();
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package com.scangarella.pipe.jmh;
+
+import com.scangarella.pipe.construction.Schematic;
+import com.scangarella.pipe.jmh.pipe.PassThroughPipe;
+import org.openjdk.jmh.annotations.Param;
+
+/**
+ * A pipe that fans out to several pipes, which all fan back in to a pipe with several parents.
+ * Every message put in comes out once per branch.
+ *
+ *              -> pass ->
+ *   opening -> pass -> pass -> pass -> sink
+ *              -> pass ->
+ */
+public class FanOutFanInBenchmark extends PipelineBenchmark {
+
+    @Param({"2", "4", "8"})
+    public int width;
+
+    @Override
+    protected Schematic schematic() {
+        Schematic schematic = new Schematic(PassThroughPipe.class);
+        Schematic.Pipe join = schematic.new Pipe(PassThroughPipe.class);
+        for (int i = 0; i < width; i++) {
+            schematic.getRoot().addChild(PassThroughPipe.class).addChild(join);
+        }
+        return schematic;
+    }
+
+    @Override
+    protected int fanOut() {
+        return width;
+    }
+}
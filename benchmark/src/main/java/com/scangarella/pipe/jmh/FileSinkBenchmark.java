@@ -0,0 +1,125 @@
+package com.scangarella.pipe.jmh;
+
+import akka.actor.ActorSystem;
+import com.scangarella.pipe.construction.PipeBuilder;
+import com.scangarella.pipe.construction.PipeOpening;
+import com.scangarella.pipe.construction.Schematic;
+import com.scangarella.pipe.jmh.pipe.BatchedFileSinkPipe;
+import com.scangarella.pipe.jmh.pipe.NaiveFileSinkPipe;
+import com.scangarella.pipe.jmh.pipe.SyncingFileSinkPipe;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Writing lines of about 60 bytes to a file: a write per line, a write and a sync per line, and a file sink
+ * that gathers its writes and syncs every 100 milliseconds. Reports lines per second, and in the 'syncs'
+ * counter, syncs per second.
+ *
+ *   opening -> sink
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class FileSinkBenchmark {
+
+    private static final int LINES = 1024;
+
+    /**
+     * The directory the sinks write to, and what they've done so far.
+     */
+    public static volatile Path directory;
+    public static final AtomicLong written = new AtomicLong();
+    public static final AtomicLong syncs = new AtomicLong();
+
+    @Param({"naive", "syncing", "batched"})
+    public String sink;
+
+    private ActorSystem system;
+    private PipeOpening<Object> opening;
+    private long expected = 0;
+    private long next = 0;
+
+    /**
+     * Counts the syncs made during an iteration.
+     */
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    @State(Scope.Thread)
+    public static class Syncs {
+        public long syncs;
+    }
+
+    @Setup(Level.Trial)
+    @SuppressWarnings("unchecked")
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("sink");
+        written.set(0);
+        syncs.set(0);
+        Class clazz = sink.equals("naive") ? NaiveFileSinkPipe.class
+                : sink.equals("syncing") ? SyncingFileSinkPipe.class : BatchedFileSinkPipe.class;
+        system = ActorSystem.create("benchmark");
+        opening = new PipeBuilder(system).build(new Schematic(clazz));
+    }
+
+    /**
+     * Deletes what was written so far, to keep the disk from filling up. Open files are unlinked and
+     * written to until they're closed.
+     */
+    @TearDown(Level.Iteration)
+    public void deleteFiles() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        opening.close().toCompletableFuture().join();
+        system.shutdown();
+        system.awaitTermination();
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    @OperationsPerInvocation(LINES)
+    public void write(Syncs counter) {
+        long before = syncs.get();
+        for (int i = 0; i < LINES; i++) {
+            opening.put("2015-06-01T12:00:00Z user" + (next % 1000) + " clicked on item " + next++);
+        }
+        expected += LINES;
+        while (written.get() < expected) {
+            Thread.yield();
+        }
+        counter.syncs += syncs.get() - before;
+    }
+}
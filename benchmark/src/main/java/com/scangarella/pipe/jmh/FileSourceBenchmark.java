@@ -0,0 +1,105 @@
+package com.scangarella.pipe.jmh;
+
+import akka.actor.ActorRef;
+import akka.actor.ActorSystem;
+import akka.actor.Props;
+import com.scangarella.pipe.construction.MappedFileSource;
+import com.scangarella.pipe.construction.PipeBuilder;
+import com.scangarella.pipe.construction.PipeOpening;
+import com.scangarella.pipe.construction.RecordFraming;
+import com.scangarella.pipe.construction.Schematic;
+import com.scangarella.pipe.jmh.pipe.PassThroughPipe;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Feeding a pipeline the lines of a file: read with a BufferedReader and put in a line at a time, against
+ * mapped with a MappedFileSource and put in with 'putAll'. The file has a million lines of about 60 bytes.
+ * Reports the time to feed the whole file through a pass through pipe.
+ *
+ *   file -> opening -> pass -> sink
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class FileSourceBenchmark {
+
+    private static final int LINES = 1000000;
+
+    private ActorSystem system;
+    private PipeOpening<Object> opening;
+    private AtomicLong received = new AtomicLong();
+    private long expected = 0;
+    private Path file;
+
+    @Setup(Level.Trial)
+    @SuppressWarnings("unchecked")
+    public void setUp() throws IOException {
+        file = Files.createTempFile("lines", ".txt");
+        try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            for (int i = 0; i < LINES; i++) {
+                writer.write("2015-06-01T12:00:00Z user" + (i % 1000) + " clicked on item " + i);
+                writer.newLine();
+            }
+        }
+        system = ActorSystem.create("benchmark");
+        ActorRef sink = system.actorOf(Props.create(CountingSink.class, received));
+        opening = new PipeBuilder(system).buildEndedPipe(new Schematic(PassThroughPipe.class), sink);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        opening.close().toCompletableFuture().join();
+        system.shutdown();
+        system.awaitTermination();
+        Files.delete(file);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public void bufferedReader() throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                opening.put(line);
+            }
+        }
+        await();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public void mapped() throws IOException {
+        opening.putAll(new MappedFileSource(file, RecordFraming.newline()).spliterator());
+        await();
+    }
+
+    private void await() {
+        expected += LINES;
+        while (received.get() < expected) {
+            Thread.yield();
+        }
+    }
+}
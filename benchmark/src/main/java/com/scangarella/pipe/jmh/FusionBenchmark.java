@@ -0,0 +1,29 @@
+package com.scangarella.pipe.jmh;
+
+import com.scangarella.pipe.construction.Schematic;
+import com.scangarella.pipe.jmh.pipe.PassThroughPipe;
+import org.openjdk.jmh.annotations.Param;
+
+/**
+ * A chain of ten pipes, built as ten actors or fused into one.
+ *
+ *   opening -> pass -> pass -> ... -> pass -> sink
+ */
+public class FusionBenchmark extends PipelineBenchmark {
+
+    private static final int STAGES = 10;
+
+    @Param({"false", "true"})
+    public boolean fusing;
+
+    @Override
+    protected Schematic schematic() {
+        Schematic schematic = new Schematic(PassThroughPipe.class);
+        schematic.setFusing(fusing);
+        Schematic.Pipe pipe = schematic.getRoot();
+        for (int i = 1; i < STAGES; i++) {
+            pipe = pipe.addChild(PassThroughPipe.class);
+        }
+        return schematic;
+    }
+}
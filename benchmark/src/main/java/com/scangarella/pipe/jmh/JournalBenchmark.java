@@ -0,0 +1,114 @@
+package com.scangarella.pipe.jmh;
+
+import akka.actor.ActorRef;
+import akka.actor.ActorSystem;
+import akka.actor.Props;
+import com.scangarella.pipe.construction.Journal;
+import com.scangarella.pipe.construction.JournalCodec;
+import com.scangarella.pipe.construction.PipeBuilder;
+import com.scangarella.pipe.construction.PipeOpening;
+import com.scangarella.pipe.construction.Schematic;
+import com.scangarella.pipe.jmh.pipe.PassThroughPipe;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Journaling lines of about 60 bytes. 'append' appends to the journal and acknowledges right away, so
+ * segments fill up and are deleted as they would be in a pipeline that keeps up. 'put' puts the lines
+ * through a pipeline, with and without a journal at the opening. Reports lines per second.
+ *
+ *   opening -> pass through -> sink
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class JournalBenchmark {
+
+    private static final int LINES = 1024;
+
+    @Param({"false", "true"})
+    public boolean journaled;
+
+    private Path directory;
+    private Journal<String> journal;
+    private ActorSystem system;
+    private PipeOpening<String> opening;
+    private AtomicLong received = new AtomicLong();
+    private long expected = 0;
+    private long next = 0;
+
+    @Setup(Level.Trial)
+    @SuppressWarnings("unchecked")
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("journal");
+        journal = Journal.open(directory, JournalCodec.strings());
+        system = ActorSystem.create("benchmark");
+        ActorRef sink = system.actorOf(Props.create(CountingSink.class, received));
+        opening = new PipeBuilder(system).buildEndedPipe(new Schematic(PassThroughPipe.class), sink);
+        if (journaled) {
+            opening.setJournal(journal);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        opening.close().toCompletableFuture().join();
+        system.shutdown();
+        system.awaitTermination();
+        journal.close();
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    @OperationsPerInvocation(LINES)
+    public void append() {
+        for (int i = 0; i < LINES; i++) {
+            journal.ack(journal.append(line()));
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    @OperationsPerInvocation(LINES)
+    public void put() {
+        for (int i = 0; i < LINES; i++) {
+            opening.put(line());
+        }
+        expected += LINES;
+        while (received.get() < expected) {
+            Thread.yield();
+        }
+    }
+
+    private String line() {
+        return "2015-06-01T12:00:00Z user" + (next % 1000) + " clicked on item " + next++;
+    }
+}
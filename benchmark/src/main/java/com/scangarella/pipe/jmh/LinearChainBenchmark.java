@@ -0,0 +1,26 @@
+package com.scangarella.pipe.jmh;
+
+import com.scangarella.pipe.construction.Schematic;
+import com.scangarella.pipe.jmh.pipe.PassThroughPipe;
+import org.openjdk.jmh.annotations.Param;
+
+/**
+ * A straight chain of pipes.
+ *
+ *   opening -> pass -> pass -> ... -> pass -> sink
+ */
+public class LinearChainBenchmark extends PipelineBenchmark {
+
+    @Param({"1", "4", "16"})
+    public int depth;
+
+    @Override
+    protected Schematic schematic() {
+        Schematic schematic = new Schematic(PassThroughPipe.class);
+        Schematic.Pipe pipe = schematic.getRoot();
+        for (int i = 1; i < depth; i++) {
+            pipe = pipe.addChild(PassThroughPipe.class);
+        }
+        return schematic;
+    }
+}
@@ -0,0 +1,52 @@
+package com.scangarella.pipe.jmh;
+
+import akka.routing.BroadcastRoutingLogic;
+import com.scangarella.pipe.concurrency.LoadBalancingPipeWrapper;
+import com.scangarella.pipe.concurrency.ServiceTimeRoutingLogic;
+import com.scangarella.pipe.construction.Schematic;
+import com.scangarella.pipe.jmh.pipe.PassThroughPipe;
+import org.openjdk.jmh.annotations.Param;
+
+/**
+ * A load balanced pipe, for every akka routing logic that doesn't need configuring and for routing by service time.
+ * A broadcast sends every message to every routee, so every message comes out once per routee.
+ *
+ *   opening -> load balancer -> pass (x routees) -> sink
+ */
+public class LoadBalancingBenchmark extends PipelineBenchmark {
+
+    @Param({"RoundRobinRoutingLogic", "RandomRoutingLogic", "SmallestMailboxRoutingLogic", "BroadcastRoutingLogic",
+            "ServiceTimeRoutingLogic"})
+    public String routingLogic;
+
+    @Param({"1", "4", "16"})
+    public int routees;
+
+    @Override
+    protected Schematic schematic() {
+        Schematic schematic = new Schematic(PassThroughPipe.class);
+        Schematic.Wrapper wrapper = schematic.getRoot().wrap(LoadBalancingPipeWrapper.class);
+        wrapper.setRoutees(routees);
+        wrapper.setRoutingLogic(routingLogic(routingLogic));
+        return schematic;
+    }
+
+    @Override
+    protected int fanOut() {
+        return routingLogic.equals(BroadcastRoutingLogic.class.getSimpleName()) ? routees : 1;
+    }
+
+    /**
+     * Finds a routing logic class by its simple name.
+     */
+    static Class routingLogic(String name) {
+        if (name.equals(ServiceTimeRoutingLogic.class.getSimpleName())) {
+            return ServiceTimeRoutingLogic.class;
+        }
+        try {
+            return Class.forName("akka.routing." + name);
+        } catch (ClassNotFoundException e) {
+            throw new IllegalArgumentException(e);
+        }
+    }
+}
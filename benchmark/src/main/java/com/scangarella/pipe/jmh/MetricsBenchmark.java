@@ -0,0 +1,29 @@
+package com.scangarella.pipe.jmh;
+
+import com.scangarella.pipe.construction.Schematic;
+import com.scangarella.pipe.jmh.pipe.PassThroughPipe;
+import org.openjdk.jmh.annotations.Param;
+
+/**
+ * A chain of four pipes, with and without metrics, to show what recording them costs.
+ *
+ *   opening -> pass -> pass -> pass -> pass -> sink
+ */
+public class MetricsBenchmark extends PipelineBenchmark {
+
+    private static final int STAGES = 4;
+
+    @Param({"false", "true"})
+    public boolean metrics;
+
+    @Override
+    protected Schematic schematic() {
+        Schematic schematic = new Schematic(PassThroughPipe.class);
+        schematic.setMetricsEnabled(metrics);
+        Schematic.Pipe pipe = schematic.getRoot();
+        for (int i = 1; i < STAGES; i++) {
+            pipe = pipe.addChild(PassThroughPipe.class);
+        }
+        return schematic;
+    }
+}
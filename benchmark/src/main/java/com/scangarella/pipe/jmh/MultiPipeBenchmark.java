@@ -0,0 +1,43 @@
+package com.scangarella.pipe.jmh;
+
+import com.scangarella.pipe.construction.Schematic;
+import com.scangarella.pipe.jmh.pipe.PassThroughPipe;
+import com.scangarella.pipe.jmh.pipe.SplitSentencePipe;
+import com.scangarella.pipe.jmh.pipe.StreamSentencePipe;
+import org.openjdk.jmh.annotations.Param;
+
+import java.util.Collections;
+
+/**
+ * A multi pipe that splits every sentence into its words, either all at once or streamed.
+ *
+ *   opening -> split or stream -> pass -> sink
+ */
+public class MultiPipeBenchmark extends PipelineBenchmark {
+
+    @Param({"1", "8", "64"})
+    public int words;
+
+    @Param({"false", "true"})
+    public boolean streaming;
+
+    private String sentence;
+
+    @Override
+    protected Schematic schematic() {
+        sentence = String.join(" ", Collections.nCopies(words, "word"));
+        Schematic schematic = new Schematic(streaming ? StreamSentencePipe.class : SplitSentencePipe.class);
+        schematic.getRoot().addChild(PassThroughPipe.class);
+        return schematic;
+    }
+
+    @Override
+    protected Object message() {
+        return sentence;
+    }
+
+    @Override
+    protected int fanOut() {
+        return words;
+    }
+}
@@ -0,0 +1,30 @@
+package com.scangarella.pipe.jmh;
+
+import com.scangarella.pipe.concurrency.LoadBalancingPipeWrapper;
+import com.scangarella.pipe.concurrency.OrderedPipeWrapper;
+import com.scangarella.pipe.construction.Schematic;
+import com.scangarella.pipe.jmh.pipe.PassThroughPipe;
+import org.openjdk.jmh.annotations.Param;
+
+/**
+ * The cost of keeping outputs in order: an ordered wrapper against a load balancer with the same number of routees.
+ *
+ *   opening -> ordered wrapper or load balancer -> pass (x routees) -> sink
+ */
+public class OrderedBenchmark extends PipelineBenchmark {
+
+    @Param({"true", "false"})
+    public boolean ordered;
+
+    @Param({"1", "4", "16"})
+    public int routees;
+
+    @Override
+    protected Schematic schematic() {
+        Schematic schematic = new Schematic(PassThroughPipe.class);
+        Schematic.Wrapper wrapper = schematic.getRoot().wrap(
+                ordered ? OrderedPipeWrapper.class : LoadBalancingPipeWrapper.class);
+        wrapper.setRoutees(routees);
+        return schematic;
+    }
+}
@@ -0,0 +1,24 @@
+package com.scangarella.pipe.jmh;
+
+import com.scangarella.pipe.concurrency.PartitioningPipeWrapper;
+import com.scangarella.pipe.construction.Schematic;
+import com.scangarella.pipe.jmh.pipe.PassThroughPipe;
+import org.openjdk.jmh.annotations.Param;
+
+/**
+ * A partitioned pipe, where every message is its own key.
+ *
+ *   opening -> partitioning wrapper -> pass (x partitions) -> sink
+ */
+public class PartitioningBenchmark extends PipelineBenchmark {
+
+    @Param({"1", "4", "16"})
+    public int partitions;
+
+    @Override
+    protected Schematic schematic() {
+        Schematic schematic = new Schematic(PassThroughPipe.class);
+        schematic.getRoot().wrap(PartitioningPipeWrapper.class).setPartitions(partitions);
+        return schematic;
+    }
+}
@@ -0,0 +1,109 @@
+package com.scangarella.pipe.jmh;
+
+import akka.actor.ActorRef;
+import akka.actor.ActorSystem;
+import akka.actor.Props;
+import com.scangarella.pipe.construction.PipeBuilder;
+import com.scangarella.pipe.construction.PipeOpening;
+import com.scangarella.pipe.construction.Schematic;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The base of the benchmarks that push messages through a pipeline.
+ * A subclass describes the pipeline and how many messages come out of it for every message put in.
+ *
+ * 'throughput' puts a burst of messages into the opening and waits for all of them to come out,
+ * so it reports messages per second. 'latency' puts one message in at a time, so it reports the
+ * distribution of round trip times. Run with '-prof gc' for allocation rates.
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public abstract class PipelineBenchmark {
+
+    protected static final int BURST = 1000;
+
+    private ActorSystem system;
+    private PipeOpening<Object> opening;
+    private AtomicLong received = new AtomicLong();
+    private long expected = 0;
+
+    /**
+     * Describes the pipeline to benchmark.
+     * @return The pipeline's schematic.
+     */
+    protected abstract Schematic schematic();
+
+    /**
+     * Gets the next message to put into the pipeline.
+     * @return The message.
+     */
+    protected Object message() {
+        return 1L;
+    }
+
+    /**
+     * Says how many messages reach the end of the pipeline for every message put into it.
+     * @return The number of messages that come out.
+     */
+    protected int fanOut() {
+        return 1;
+    }
+
+    @Setup(Level.Trial)
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        system = ActorSystem.create("benchmark");
+        ActorRef sink = system.actorOf(Props.create(CountingSink.class, received));
+        opening = new PipeBuilder(system).buildEndedPipe(schematic(), sink);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        opening.close().toCompletableFuture().join();
+        system.shutdown();
+        system.awaitTermination();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    @OperationsPerInvocation(BURST)
+    public void throughput() {
+        for (int i = 0; i < BURST; i++) {
+            opening.put(message());
+        }
+        await(BURST);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SampleTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public void latency() {
+        opening.put(message());
+        await(1);
+    }
+
+    private void await(int messages) {
+        expected += (long) messages * fanOut();
+        while (received.get() < expected) {
+            Thread.yield();
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package com.scangarella.pipe.jmh;
+
+import akka.actor.ActorRef;
+import akka.actor.ActorSystem;
+import akka.actor.Props;
+import com.scangarella.pipe.construction.PipeBuilder;
+import com.scangarella.pipe.construction.PipeOpening;
+import com.scangarella.pipe.construction.Schematic;
+import com.scangarella.pipe.jmh.pipe.IncrementLongPipe;
+import com.scangarella.pipe.jmh.pipe.IncrementPipe;
+import com.scangarella.pipe.jmh.pipe.NonNegativeLongPipe;
+import com.scangarella.pipe.jmh.pipe.NonNegativePipe;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Boxed longs against chunks of primitive longs, through the same pipes. Fusing is off, so every pipe is
+ * an actor and every message crosses a mailbox. Reports values per second; run with '-prof gc' to compare
+ * allocation per value.
+ *
+ *   opening -> increment -> increment -> non negative -> sink
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class PrimitiveBenchmark {
+
+    private static final int VALUES = 4096;
+
+    /**
+     * The number of values per message. One sends boxed longs through generic pipes.
+     */
+    @Param({"1", "64", "1024"})
+    public int chunk;
+
+    private ActorSystem system;
+    private PipeOpening<Object> opening;
+    private AtomicLong received = new AtomicLong();
+    private long expected = 0;
+    private long next = 0;
+
+    @Setup(Level.Trial)
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        system = ActorSystem.create("benchmark");
+        ActorRef sink = system.actorOf(Props.create(CountingSink.class, received));
+        Schematic schematic;
+        if (chunk == 1) {
+            schematic = new Schematic(IncrementPipe.class);
+            schematic.getRoot().addChild(IncrementPipe.class).addChild(NonNegativePipe.class);
+        } else {
+            schematic = new Schematic(IncrementLongPipe.class);
+            schematic.getRoot().addChild(IncrementLongPipe.class).addChild(NonNegativeLongPipe.class);
+        }
+        schematic.setFusing(false);
+        opening = new PipeBuilder(system).buildEndedPipe(schematic, sink);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        opening.close().toCompletableFuture().join();
+        system.shutdown();
+        system.awaitTermination();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    @OperationsPerInvocation(VALUES)
+    public void throughput() {
+        if (chunk == 1) {
+            for (int i = 0; i < VALUES; i++) {
+                opening.put(next++);
+            }
+            expected += VALUES;
+        } else {
+            for (int i = 0; i < VALUES / chunk; i++) {
+                long[] values = new long[chunk];
+                for (int j = 0; j < chunk; j++) {
+                    values[j] = next++;
+                }
+                opening.put(values);
+            }
+            expected += VALUES / chunk;
+        }
+        while (received.get() < expected) {
+            Thread.yield();
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package com.scangarella.pipe.jmh;
+
+import akka.actor.ActorRef;
+import akka.actor.ActorSystem;
+import akka.actor.Props;
+import akka.routing.RoundRobinRoutingLogic;
+import com.scangarella.pipe.concurrency.LoadBalancingPipeWrapper;
+import com.scangarella.pipe.construction.PipeBuilder;
+import com.scangarella.pipe.construction.PipeNode;
+import com.scangarella.pipe.construction.PipeOpening;
+import com.scangarella.pipe.construction.PipeSystem;
+import com.scangarella.pipe.construction.Schematic;
+import com.scangarella.pipe.jmh.pipe.BusyPipe;
+import com.scangarella.pipe.jmh.pipe.PassThroughPipe;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A load balanced pipe that keeps its thread busy for 20 microseconds a message, with four routees on the
+ * benchmark's node, or spread over two or four other nodes. The nodes are JVMs of their own on the same
+ * host, reached over loopback, so this measures what remoting costs; on a host with more cores than one
+ * node uses, it also shows how far the pipe scales out. Messages cross nodes in chunks of 64: 'putAll'
+ * sends chunks that the load balancer routes whole, and the edge back is batched. The benchmark parks
+ * rather than spins while it waits, so that it doesn't take the nodes' cores. Reports messages per second.
+ *
+ *   opening -> load balancer -> 4 x busy -> pass through -> sink
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class RemoteBenchmark {
+
+    private static final int MESSAGES = 1024;
+    private static final long WORK_NANOS = 20000;
+    private static final int CHUNK = 64;
+
+    /**
+     * The number of other nodes the routees are spread over. Zero keeps them all on the benchmark's node.
+     */
+    @Param({"0", "2", "4"})
+    public int nodes;
+
+    private ActorSystem system;
+    private List<Process> processes = new ArrayList<>();
+    private PipeOpening<Object> opening;
+    private AtomicLong received = new AtomicLong();
+    private long expected = 0;
+    private List<Long> work = Collections.nCopies(MESSAGES, WORK_NANOS);
+
+    @Setup(Level.Trial)
+    @SuppressWarnings("unchecked")
+    public void setUp() throws IOException {
+        system = PipeSystem.CreateNode("pipeline", "127.0.0.1", 0);
+        List<String> addresses = new ArrayList<>();
+        for (int i = 0; i < nodes; i++) {
+            addresses.add(startNode());
+        }
+        ActorRef sink = system.actorOf(Props.create(CountingSink.class, received));
+        Schematic schematic = new Schematic(BusyPipe.class);
+        Schematic.Wrapper wrapper = schematic.getRoot().wrap(LoadBalancingPipeWrapper.class);
+        wrapper.setRoutees(4);
+        wrapper.setRoutingLogic(RoundRobinRoutingLogic.class);
+        if (!addresses.isEmpty()) {
+            wrapper.setNodes(addresses.toArray(new String[addresses.size()]));
+        }
+        schematic.getRoot().addChild(PassThroughPipe.class);
+        schematic.getRoot().setBatching(CHUNK, 0);
+        opening = new PipeBuilder(system).buildEndedPipe(schematic, sink);
+        opening.setChunkSize(CHUNK);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        opening.close().toCompletableFuture().join();
+        system.shutdown();
+        system.awaitTermination();
+        for (Process process : processes) {
+            process.getOutputStream().close();
+            if (!process.waitFor(10, TimeUnit.SECONDS)) {
+                process.destroyForcibly();
+            }
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    @OperationsPerInvocation(MESSAGES)
+    public void throughput() {
+        opening.putAll(work);
+        expected += MESSAGES;
+        while (received.get() < expected) {
+            LockSupport.parkNanos(100000);
+        }
+    }
+
+    /**
+     * Starts a node in a JVM of its own, with the benchmark's classpath, and waits for its address.
+     */
+    private String startNode() throws IOException {
+        String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+        Process process = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"), PipeNode.class.getName())
+                .redirectErrorStream(true)
+                .start();
+        processes.add(process);
+        BufferedReader output = new BufferedReader(new InputStreamReader(process.getInputStream()));
+        String line;
+        while ((line = output.readLine()) != null && !line.startsWith("akka.tcp://")) {
+            continue;
+        }
+        Thread drain = new Thread(() -> output.lines().forEach(l -> { }));
+        drain.setDaemon(true);
+        drain.start();
+        return line;
+    }
+}
@@ -0,0 +1,38 @@
+package com.scangarella.pipe.jmh;
+
+import com.scangarella.pipe.concurrency.LoadBalancingPipeWrapper;
+import com.scangarella.pipe.construction.Schematic;
+import com.scangarella.pipe.jmh.pipe.BusyPipe;
+import org.openjdk.jmh.annotations.Param;
+
+/**
+ * A load balanced pipe whose messages vary widely in cost: one in twenty takes a hundred times as long.
+ * Routing by mailbox size keeps sending to a routee that's stuck on an expensive message, because its
+ * mailbox is empty. Routing by service time counts the message it's working on.
+ *
+ *   opening -> load balancer -> busy (x 4) -> sink
+ */
+public class SkewedLoadBalancingBenchmark extends PipelineBenchmark {
+
+    private static final long CHEAP_NANOS = 2_000;
+    private static final long EXPENSIVE_NANOS = 200_000;
+
+    @Param({"RoundRobinRoutingLogic", "SmallestMailboxRoutingLogic", "ServiceTimeRoutingLogic"})
+    public String routingLogic;
+
+    private long sent = 0;
+
+    @Override
+    protected Schematic schematic() {
+        Schematic schematic = new Schematic(BusyPipe.class);
+        Schematic.Wrapper wrapper = schematic.getRoot().wrap(LoadBalancingPipeWrapper.class);
+        wrapper.setRoutees(4);
+        wrapper.setRoutingLogic(LoadBalancingBenchmark.routingLogic(routingLogic));
+        return schematic;
+    }
+
+    @Override
+    protected Object message() {
+        return sent++ % 20 == 0 ? EXPENSIVE_NANOS : CHEAP_NANOS;
+    }
+}
@@ -0,0 +1,37 @@
+package com.scangarella.pipe.jmh;
+
+import com.scangarella.pipe.concurrency.ElasticPipeWrapper;
+import com.scangarella.pipe.concurrency.SpinUpPipeWrapper;
+import com.scangarella.pipe.construction.Schematic;
+import com.scangarella.pipe.jmh.pipe.PassThroughPipe;
+import com.scangarella.pipe.jmh.pipe.ResettablePassThroughPipe;
+import org.openjdk.jmh.annotations.Param;
+
+/**
+ * A pipe that gets fresh state for every message, compared with a plain pipe that doesn't.
+ * A spin up wrapper creates and stops an actor for every message. An elastic pool either creates
+ * its pipes ahead of time, or resets them when the pipe is Resettable.
+ *
+ *   opening -> wrapper -> pass -> sink
+ */
+public class SpinUpBenchmark extends PipelineBenchmark {
+
+    @Param({"none", "spinUp", "elastic", "elasticReset"})
+    public String wrapper;
+
+    @Override
+    protected Schematic schematic() {
+        if (wrapper.equals("elasticReset")) {
+            Schematic schematic = new Schematic(ResettablePassThroughPipe.class);
+            schematic.getRoot().wrap(ElasticPipeWrapper.class);
+            return schematic;
+        }
+        Schematic schematic = new Schematic(PassThroughPipe.class);
+        if (wrapper.equals("spinUp")) {
+            schematic.getRoot().wrap(SpinUpPipeWrapper.class);
+        } else if (wrapper.equals("elastic")) {
+            schematic.getRoot().wrap(ElasticPipeWrapper.class);
+        }
+        return schematic;
+    }
+}
@@ -0,0 +1,78 @@
+package com.scangarella.pipe.jmh;
+
+import akka.actor.ActorSystem;
+import akka.actor.Props;
+import akka.testkit.TestActorRef;
+import com.scangarella.pipe.jmh.pipe.SumWindowPipe;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Incremental aggregation over a million keys, each with windows of its own.
+ * The window pipe is called directly, without any messaging, so this measures the cost of keeping the windows.
+ * Setup fills every key's window once and prints how much memory a key takes, which stays the same however
+ * many elements the windows hold.
+ */
+@State(Scope.Benchmark)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class WindowBenchmark {
+
+    @Param({"1000000"})
+    public int keys;
+
+    @Param({"tumbling", "sliding"})
+    public String window;
+
+    private ActorSystem system;
+    private SumWindowPipe pipe;
+    private long next = 0;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        system = ActorSystem.create("benchmark");
+        Class clazz = window.equals("tumbling") ? SumWindowPipe.Tumbling.class : SumWindowPipe.Sliding.class;
+        TestActorRef<SumWindowPipe> ref = TestActorRef.create(system, Props.create(clazz));
+        pipe = ref.underlyingActor();
+        long before = usedMemory();
+        for (long key = 0; key < keys; key++) {
+            pipe.ingest(key);
+        }
+        System.out.printf("%n%s windows take %.0f bytes per key%n", window, (double) (usedMemory() - before) / keys);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        system.shutdown();
+        system.awaitTermination();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    public Long ingest() {
+        return pipe.ingest(next++ % keys);
+    }
+
+    private static long usedMemory() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,33 @@
+package com.scangarella.pipe.jmh.pipe;
+
+import com.scangarella.pipe.jmh.FileSinkBenchmark;
+import com.scangarella.pipe.stereotype.FileSinkPipe;
+import com.scangarella.pipe.stereotype.SinkPolicy;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes lines through a file sink that commits every 100 milliseconds and rolls every 64 megabytes.
+ */
+public class BatchedFileSinkPipe extends FileSinkPipe<String> {
+
+    public BatchedFileSinkPipe() {
+        super(SinkPolicy.in(FileSinkBenchmark.directory, "batched")
+                .withRollSize(64 << 20)
+                .withCommitInterval(100, TimeUnit.MILLISECONDS));
+    }
+
+    @Override
+    public ByteBuffer encode(String line) {
+        FileSinkBenchmark.written.incrementAndGet();
+        return ByteBuffer.wrap((line + "\n").getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Override
+    protected void committed(Path path, long bytes) {
+        FileSinkBenchmark.syncs.incrementAndGet();
+    }
+}
@@ -0,0 +1,33 @@
+package com.scangarella.pipe.jmh.pipe;
+
+import com.scangarella.pipe.stereotype.BlockingPipe;
+
+/**
+ * Blocking pipes that sleep for a millisecond, with 64 and 1024 sleeps in flight at once.
+ */
+public final class BlockingSleepPipe {
+
+    private BlockingSleepPipe() { }
+
+    public static class Concurrency64 extends BlockingPipe<Object, Object> {
+        public Concurrency64() {
+            super(64, false);
+        }
+
+        @Override
+        public Object ingest(Object o) {
+            return SleepPipe.sleep(o);
+        }
+    }
+
+    public static class Concurrency1024 extends BlockingPipe<Object, Object> {
+        public Concurrency1024() {
+            super(1024, false);
+        }
+
+        @Override
+        public Object ingest(Object o) {
+            return SleepPipe.sleep(o);
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package com.scangarella.pipe.jmh.pipe;
+
+import com.scangarella.pipe.stereotype.SideEffectPipe;
+
+/**
+ * A pipe that keeps its thread busy for as many nanoseconds as the message says.
+ */
+public class BusyPipe extends SideEffectPipe<Long> {
+    @Override
+    public Long ingest(Long nanos) {
+        long end = System.nanoTime() + nanos;
+        while (System.nanoTime() < end) {
+            Thread.yield();
+        }
+        return nanos;
+    }
+}
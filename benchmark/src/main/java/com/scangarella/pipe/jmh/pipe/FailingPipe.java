@@ -0,0 +1,19 @@
+package com.scangarella.pipe.jmh.pipe;
+
+import com.scangarella.pipe.stereotype.Pipe;
+
+/**
+ * Passes longs through, but fails the first time it ingests a negative one.
+ */
+public class FailingPipe extends Pipe<Long, Long> {
+    private Long lastFailed = 0L;
+
+    @Override
+    public Long ingest(Long value) {
+        if (value < 0 && !value.equals(lastFailed)) {
+            lastFailed = value;
+            throw new IllegalArgumentException("Negative value " + value);
+        }
+        return value;
+    }
+}
@@ -0,0 +1,13 @@
+package com.scangarella.pipe.jmh.pipe;
+
+import com.scangarella.pipe.stereotype.LongPipe;
+
+/**
+ * Adds one to every long of a chunk.
+ */
+public class IncrementLongPipe extends LongPipe {
+    @Override
+    public long ingest(long value) {
+        return value + 1;
+    }
+}
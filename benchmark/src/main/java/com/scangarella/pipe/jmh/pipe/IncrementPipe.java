@@ -0,0 +1,13 @@
+package com.scangarella.pipe.jmh.pipe;
+
+import com.scangarella.pipe.stereotype.Pipe;
+
+/**
+ * Adds one to a boxed long.
+ */
+public class IncrementPipe extends Pipe<Long, Long> {
+    @Override
+    public Long ingest(Long l) {
+        return l + 1;
+    }
+}
@@ -0,0 +1,55 @@
+package com.scangarella.pipe.jmh.pipe;
+
+import com.scangarella.pipe.jmh.FileSinkBenchmark;
+import com.scangarella.pipe.stereotype.Pipe;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Writes every line with a write of its own, the way a pipe would without a sink.
+ */
+public class NaiveFileSinkPipe extends Pipe<String, Void> {
+
+    private FileChannel file;
+
+    public NaiveFileSinkPipe() throws IOException {
+        file = FileChannel.open(FileSinkBenchmark.directory.resolve("naive-" + System.nanoTime()),
+                StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+    }
+
+    @Override
+    public Void ingest(String line) {
+        try {
+            file.write(ByteBuffer.wrap((line + "\n").getBytes(StandardCharsets.UTF_8)));
+            written();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        FileSinkBenchmark.written.incrementAndGet();
+        return null;
+    }
+
+    /**
+     * Called after every write.
+     */
+    protected void written() throws IOException { }
+
+    protected FileChannel getFile() {
+        return file;
+    }
+
+    @Override
+    public void postStop() {
+        super.postStop();
+        try {
+            file.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
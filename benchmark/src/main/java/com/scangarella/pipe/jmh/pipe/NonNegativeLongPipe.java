@@ -0,0 +1,13 @@
+package com.scangarella.pipe.jmh.pipe;
+
+import com.scangarella.pipe.stereotype.LongFilterPipe;
+
+/**
+ * Keeps the longs of a chunk that aren't negative.
+ */
+public class NonNegativeLongPipe extends LongFilterPipe {
+    @Override
+    public boolean accept(long value) {
+        return value >= 0;
+    }
+}
@@ -0,0 +1,13 @@
+package com.scangarella.pipe.jmh.pipe;
+
+import com.scangarella.pipe.stereotype.FilterPipe;
+
+/**
+ * Keeps boxed longs that aren't negative.
+ */
+public class NonNegativePipe extends FilterPipe<Long> {
+    @Override
+    public Long ingest(Long l) {
+        return l >= 0 ? l : null;
+    }
+}
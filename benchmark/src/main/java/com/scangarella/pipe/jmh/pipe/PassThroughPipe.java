@@ -0,0 +1,13 @@
+package com.scangarella.pipe.jmh.pipe;
+
+import com.scangarella.pipe.stereotype.SideEffectPipe;
+
+/**
+ * A pipe that does nothing, so that a benchmark measures the engine rather than the pipe.
+ */
+public class PassThroughPipe extends SideEffectPipe<Object> {
+    @Override
+    public Object ingest(Object o) {
+        return o;
+    }
+}
@@ -0,0 +1,11 @@
+package com.scangarella.pipe.jmh.pipe;
+
+import com.scangarella.pipe.stereotype.Resettable;
+
+/**
+ * A pass-through pipe that an elastic pool can reuse instead of recreating.
+ */
+public class ResettablePassThroughPipe extends PassThroughPipe implements Resettable {
+    @Override
+    public void reset() { }
+}
@@ -0,0 +1,22 @@
+package com.scangarella.pipe.jmh.pipe;
+
+import com.scangarella.pipe.stereotype.SideEffectPipe;
+
+/**
+ * A pipe that blocks its thread for a millisecond, like a call to a slow service would.
+ */
+public class SleepPipe extends SideEffectPipe<Object> {
+    @Override
+    public Object ingest(Object o) {
+        return SleepPipe.sleep(o);
+    }
+
+    static Object sleep(Object o) {
+        try {
+            Thread.sleep(1);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return o;
+    }
+}
@@ -0,0 +1,15 @@
+package com.scangarella.pipe.jmh.pipe;
+
+import com.scangarella.pipe.stereotype.MultiPipe;
+
+import java.util.Arrays;
+
+/**
+ * Splits a sentence into its words.
+ */
+public class SplitSentencePipe extends MultiPipe<String, String> {
+    @Override
+    public Iterable<String> ingest(String s) {
+        return Arrays.asList(s.split(" "));
+    }
+}
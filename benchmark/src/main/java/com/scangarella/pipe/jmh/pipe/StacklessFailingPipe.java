@@ -0,0 +1,20 @@
+package com.scangarella.pipe.jmh.pipe;
+
+import com.scangarella.pipe.exception.StacklessException;
+import com.scangarella.pipe.stereotype.Pipe;
+
+/**
+ * Passes longs through, but fails the first time it ingests a negative one, without a stack trace.
+ */
+public class StacklessFailingPipe extends Pipe<Long, Long> {
+    private Long lastFailed = 0L;
+
+    @Override
+    public Long ingest(Long value) {
+        if (value < 0 && !value.equals(lastFailed)) {
+            lastFailed = value;
+            throw new StacklessException("Negative value");
+        }
+        return value;
+    }
+}
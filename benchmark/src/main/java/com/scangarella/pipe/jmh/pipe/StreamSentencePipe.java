@@ -0,0 +1,16 @@
+package com.scangarella.pipe.jmh.pipe;
+
+import com.scangarella.pipe.stereotype.StreamingMultiPipe;
+
+import java.util.Arrays;
+import java.util.Iterator;
+
+/**
+ * Splits a sentence into its words, and streams them.
+ */
+public class StreamSentencePipe extends StreamingMultiPipe<String, String> {
+    @Override
+    public Iterator<String> ingest(String s) {
+        return Arrays.asList(s.split(" ")).iterator();
+    }
+}
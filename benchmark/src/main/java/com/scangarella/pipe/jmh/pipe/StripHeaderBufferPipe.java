@@ -0,0 +1,14 @@
+package com.scangarella.pipe.jmh.pipe;
+
+import com.scangarella.pipe.stereotype.ByteBufferPipe;
+import com.scangarella.pipe.transmission.PooledBuffer;
+
+/**
+ * Slices a record's four byte header off.
+ */
+public class StripHeaderBufferPipe extends ByteBufferPipe {
+    @Override
+    public PooledBuffer transform(PooledBuffer record) {
+        return record.slice(4, record.length() - 4);
+    }
+}
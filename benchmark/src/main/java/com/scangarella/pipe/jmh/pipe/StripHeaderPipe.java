@@ -0,0 +1,15 @@
+package com.scangarella.pipe.jmh.pipe;
+
+import com.scangarella.pipe.stereotype.Pipe;
+
+import java.util.Arrays;
+
+/**
+ * Copies a record without its four byte header.
+ */
+public class StripHeaderPipe extends Pipe<byte[], byte[]> {
+    @Override
+    public byte[] ingest(byte[] record) {
+        return Arrays.copyOfRange(record, 4, record.length);
+    }
+}
@@ -0,0 +1,54 @@
+package com.scangarella.pipe.jmh.pipe;
+
+import com.scangarella.pipe.stereotype.Window;
+import com.scangarella.pipe.stereotype.WindowPipe;
+
+/**
+ * Sums longs over windows of sixteen, keyed by the long itself.
+ * The nested classes pick tumbling or sliding windows.
+ */
+public abstract class SumWindowPipe extends WindowPipe<Long, long[], Long> {
+
+    SumWindowPipe(Window window) {
+        super(window);
+    }
+
+    @Override
+    public Object getKey(Long l) {
+        return l;
+    }
+
+    @Override
+    public long[] create() {
+        return new long[1];
+    }
+
+    @Override
+    public long[] add(long[] sum, Long l) {
+        sum[0] += l;
+        return sum;
+    }
+
+    @Override
+    public long[] merge(long[] sum, long[] other) {
+        sum[0] += other[0];
+        return sum;
+    }
+
+    @Override
+    public Long emit(Object key, long[] sum) {
+        return sum[0];
+    }
+
+    public static class Tumbling extends SumWindowPipe {
+        public Tumbling() {
+            super(Window.tumbling(16));
+        }
+    }
+
+    public static class Sliding extends SumWindowPipe {
+        public Sliding() {
+            super(Window.sliding(16, 4));
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package com.scangarella.pipe.jmh.pipe;
+
+import com.scangarella.pipe.jmh.FileSinkBenchmark;
+
+import java.io.IOException;
+
+/**
+ * Writes and syncs every line on its own.
+ */
+public class SyncingFileSinkPipe extends NaiveFileSinkPipe {
+
+    public SyncingFileSinkPipe() throws IOException { }
+
+    @Override
+    protected void written() throws IOException {
+        getFile().force(false);
+        FileSinkBenchmark.syncs.incrementAndGet();
+    }
+}
@@ -0,0 +1,256 @@
+package com.scangarella.pipe.concurrency;
+
+import akka.actor.ActorCell;
+import akka.actor.ActorRef;
+import akka.actor.Cancellable;
+import com.scangarella.pipe.stereotype.Resettable;
+import com.scangarella.pipe.stereotype.WrapperPipe;
+import com.scangarella.pipe.transmission.BatchMessage;
+import com.scangarella.pipe.transmission.ReleaseMessage;
+import com.scangarella.pipe.transmission.ScaleMessage;
+import com.scangarella.pipe.transmission.StopMessage;
+import scala.concurrent.duration.Duration;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps a pool of inner pipes that each ingest one message at a time, like a SpinUpPipeWrapper that
+ * doesn't create an actor for every message.
+ *
+ * Every message still gets a pipe with fresh state. If the inner pipe is Resettable it is reset after
+ * every message and used again. Otherwise it is stopped after its message and replaced by a new pipe,
+ * which the pool creates ahead of time so messages don't wait for it.
+ *
+ * The pool grows up to its maximum size while every pipe is busy, and warms up as many pipes as the
+ * arrival rate and the time a message takes need. Pipes that sit idle for longer than the idle timeout
+ * are stopped until the pool is back at its minimum size. Messages that arrive while the pool is full
+ * wait in the wrapper.
+ */
+public class ElasticPipeWrapper extends WrapperPipe {
+
+    /**
+     * The name of the setting for the number of pipes kept warm while the pool is idle.
+     */
+    public static final String MINIMUM_PIPES = "minimumPipes";
+    /**
+     * The name of the setting for the largest number of pipes the pool grows to.
+     */
+    public static final String MAXIMUM_PIPES = "maximumPipes";
+    /**
+     * The name of the setting for how long a pipe may idle before it is stopped, in milliseconds.
+     */
+    public static final String IDLE_TIMEOUT = "idleTimeoutMillis";
+    private static final double SMOOTHING = 0.2;
+
+    private Integer minimumPipes = 1;
+    private Integer maximumPipes = 16;
+    private Long idleTimeoutMillis = 1000L;
+    private Boolean resettable;
+    private Deque<ActorRef> idle = new ArrayDeque<>();
+    private Map<ActorRef, Long> idleSince = new HashMap<>();
+    private Map<ActorRef, Long> busy = new HashMap<>();
+    private Deque<Object> backlog = new ArrayDeque<>();
+    private Deque<ActorRef> backlogSenders = new ArrayDeque<>();
+    private Long arrivals = 0L;
+    private Long lastScale;
+    private Double arrivalRate = 0.0;
+    private Double serviceNanos = 0.0;
+    private Boolean draining = false;
+    private Cancellable scaling;
+
+    /**
+     * Creates a pool of one to sixteen inner pipes that stops pipes after a second of idling.
+     */
+    public ElasticPipeWrapper() { }
+
+    /**
+     * Creates a pool with the given bounds.
+     * Subclasses with a no argument constructor can use this to size the pool differently.
+     * @param minimumPipes The number of pipes kept warm while the pool is idle.
+     * @param maximumPipes The largest number of pipes the pool grows to.
+     * @param idleTimeoutMillis How long a pipe may sit idle before it is stopped, in milliseconds.
+     */
+    protected ElasticPipeWrapper(Integer minimumPipes, Integer maximumPipes, Long idleTimeoutMillis) {
+        this.minimumPipes = minimumPipes;
+        this.maximumPipes = maximumPipes;
+        this.idleTimeoutMillis = idleTimeoutMillis;
+    }
+
+    /**
+     * Warms up the minimum number of inner pipes and starts resizing the pool periodically.
+     * The schematic's settings take precedence over the constructor's.
+     */
+    @Override
+    public void initSystem() {
+        this.minimumPipes = getSetting(MINIMUM_PIPES, this.minimumPipes);
+        this.maximumPipes = getSetting(MAXIMUM_PIPES, this.maximumPipes);
+        this.idleTimeoutMillis = getSetting(IDLE_TIMEOUT, this.idleTimeoutMillis);
+        this.resettable = Resettable.class.isAssignableFrom(getInnerPipeClass());
+        this.lastScale = System.nanoTime();
+        for (int i = 0; i < this.minimumPipes; i++) {
+            warmUp();
+        }
+        long interval = Math.max(10, this.idleTimeoutMillis / 4);
+        this.scaling = getContext().system().scheduler().schedule(
+                Duration.create(interval, TimeUnit.MILLISECONDS), Duration.create(interval, TimeUnit.MILLISECONDS),
+                this.getSelf(), new ScaleMessage(), getContext().dispatcher(), this.getSelf());
+    }
+
+    /**
+     * Hands the message to an idle inner pipe. Batches are unpacked so that every message still gets
+     * its own fresh pipe.
+     * @param message The message to be handled.
+     */
+    @Override
+    public void ingest(Object message) {
+        if (message instanceof ReleaseMessage) {
+            release(this.getSender());
+        } else if (message instanceof ScaleMessage) {
+            scale();
+        } else if (message instanceof BatchMessage) {
+            ((BatchMessage) message).getMessages().forEach(this::ingest);
+        } else {
+            this.arrivals++;
+            ActorRef pipe = this.idle.pollFirst();
+            if (pipe == null && size() < this.maximumPipes) {
+                pipe = buildInnerPipe();
+            }
+            if (pipe == null) {
+                this.backlog.add(message);
+                this.backlogSenders.add(this.getSender());
+            } else {
+                this.idleSince.remove(pipe);
+                dispatch(pipe, message, this.getSender());
+            }
+        }
+    }
+
+    /**
+     * Waits for the backlog to be handed over before stopping the inner pipes.
+     */
+    @Override
+    protected void stopInnerPipes() {
+        this.draining = true;
+        if (this.backlog.isEmpty()) {
+            super.stopInnerPipes();
+            this.idle.clear();
+        }
+    }
+
+    @Override
+    protected Boolean isDrained() {
+        return this.backlog.isEmpty();
+    }
+
+    /**
+     * Replaces pipes that were stopped after their message, if the pool still needs them.
+     * @param innerPipe The inner pipe that stopped.
+     */
+    @Override
+    protected void innerPipeTerminated(ActorRef innerPipe) {
+        Long started = this.busy.remove(innerPipe);
+        this.idle.remove(innerPipe);
+        this.idleSince.remove(innerPipe);
+        if (started != null && !this.resettable) {
+            recordService(started);
+            if (!this.backlog.isEmpty()) {
+                dispatch(buildInnerPipe(), this.backlog.poll(), this.backlogSenders.poll());
+                stopIfHandedOver();
+            } else if (!this.draining && size() < target()) {
+                warmUp();
+            }
+        }
+    }
+
+    @Override
+    public void postStop() {
+        super.postStop();
+        if (this.scaling != null) {
+            this.scaling.cancel();
+        }
+    }
+
+    private void dispatch(ActorRef pipe, Object message, ActorRef sender) {
+        this.busy.put(pipe, System.nanoTime());
+        pipe.tell(message, sender);
+        pipe.tell(this.resettable ? new ReleaseMessage(true) : new StopMessage(), this.getSelf());
+    }
+
+    private void release(ActorRef pipe) {
+        Long started = this.busy.remove(pipe);
+        if (started == null) {
+            return;
+        }
+        recordService(started);
+        if (!this.backlog.isEmpty()) {
+            dispatch(pipe, this.backlog.poll(), this.backlogSenders.poll());
+            stopIfHandedOver();
+        } else if (!this.draining) {
+            this.idle.addFirst(pipe);
+            this.idleSince.put(pipe, System.nanoTime());
+        }
+    }
+
+    private void stopIfHandedOver() {
+        if (this.draining && this.backlog.isEmpty()) {
+            super.stopInnerPipes();
+            this.idle.clear();
+        }
+    }
+
+    /**
+     * Warms up pipes until the pool can keep up with the current arrival rate, and stops pipes that
+     * have idled for too long while the pool is larger than it needs to be.
+     */
+    private void scale() {
+        long now = System.nanoTime();
+        double rate = this.arrivals / ((now - this.lastScale) / 1e9);
+        this.arrivalRate = this.arrivalRate == 0.0 ? rate : SMOOTHING * rate + (1 - SMOOTHING) * this.arrivalRate;
+        this.arrivals = 0L;
+        this.lastScale = now;
+        if (this.draining) {
+            return;
+        }
+        int target = target();
+        while (size() < target) {
+            warmUp();
+        }
+        long idleTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(this.idleTimeoutMillis);
+        while (size() > Math.max(target, this.minimumPipes) && !this.idle.isEmpty()
+                && now - this.idleSince.get(this.idle.peekLast()) > idleTimeoutNanos) {
+            ActorRef pipe = this.idle.pollLast();
+            this.idleSince.remove(pipe);
+            pipe.tell(new StopMessage(), this.getSelf());
+        }
+    }
+
+    /**
+     * The number of pipes the pool should have. By Little's law, the number of messages being worked on
+     * at once is the arrival rate times the time a message takes. The pool also counts the messages it
+     * already has, both waiting in its backlog and still in its mailbox.
+     */
+    private int target() {
+        int needed = (int) Math.ceil(this.arrivalRate * this.serviceNanos / 1e9);
+        int waiting = this.busy.size() + this.backlog.size() + ((ActorCell) getContext()).mailbox().numberOfMessages();
+        return Math.min(this.maximumPipes, Math.max(this.minimumPipes, Math.max(needed, waiting)));
+    }
+
+    private void recordService(Long started) {
+        double nanos = System.nanoTime() - started;
+        this.serviceNanos = this.serviceNanos == 0.0 ? nanos : SMOOTHING * nanos + (1 - SMOOTHING) * this.serviceNanos;
+    }
+
+    private void warmUp() {
+        ActorRef pipe = buildInnerPipe();
+        this.idle.addLast(pipe);
+        this.idleSince.put(pipe, System.nanoTime());
+    }
+
+    private int size() {
+        return this.idle.size() + this.busy.size();
+    }
+}
@@ -0,0 +1,16 @@
+package com.scangarella.pipe.concurrency;
+
+/**
+ * Picks the key a PartitioningPipeWrapper partitions a message by. Messages with equal keys always go to
+ * the same inner pipe. Key extractors need a no argument constructor.
+ * @param <T> The type of message.
+ */
+public interface KeyExtractor<T> {
+
+    /**
+     * Gets the key of a message.
+     * @param message The message.
+     * @return The message's key. Keys need consistent 'equals' and 'hashCode' methods.
+     */
+    Object getKey(T message);
+}
@@ -3,43 +3,93 @@ package com.scangarella.pipe.concurrency;
 import akka.actor.ActorRef;
 import akka.routing.*;
 import com.scangarella.pipe.stereotype.WrapperPipe;
+import com.scangarella.pipe.transmission.ReleaseMessage;
 
-import java.lang.reflect.InvocationTargetException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 /**
  * This wrapper acts as a load balancer. It routes incoming messages to a pool of
  * inner pipes of a type decided at construction.
+ * The number of routees and the routing logic can be given in the schematic.
+ * With a ServiceTimeRoutingLogic, every message is followed by a release that the routee sends back
+ * once it has ingested the message, so that the logic can measure how long routees take.
+ * Wrapped routees can't send releases, so they're routed by smallest mailbox instead.
+ * Routees can be spread over several nodes, so that a heavy pipe runs on more cores than one machine has.
  */
 public class LoadBalancingPipeWrapper extends WrapperPipe {
 
+    /**
+     * The name of the setting for the number of routees.
+     */
+    public static final String ROUTEES = "routees";
+    /**
+     * The name of the setting for the number of routees per available processor.
+     */
+    public static final String ROUTEES_PER_PROCESSOR = "routeesPerProcessor";
+    /**
+     * The name of the setting for the routing logic class.
+     */
+    public static final String ROUTING_LOGIC = "routingLogic";
+    /**
+     * The name of the setting for the addresses of the nodes the routees are spread over.
+     */
+    public static final String NODES = "nodes";
+
     private Class routingLogic = SmallestMailboxRoutingLogic.class;
     private Integer numberOfRoutees = 4;
     private Router router;
+    private ServiceTimeRoutingLogic serviceTime = null;
+
+    /**
+     * Creates a load balancer with four routees and smallest mailbox routing.
+     */
+    public LoadBalancingPipeWrapper() { }
+
+    /**
+     * Creates a load balancer with the given routing and number of routees.
+     * Subclasses with a no argument constructor can use this to route differently.
+     * @param routingLogic The akka routing logic class. It must have a no argument constructor.
+     * @param numberOfRoutees The number of inner pipes.
+     */
+    protected LoadBalancingPipeWrapper(Class routingLogic, Integer numberOfRoutees) {
+        this.routingLogic = routingLogic;
+        this.numberOfRoutees = numberOfRoutees;
+    }
 
     /**
      * Creates the router and it's routees.
+     * The schematic's settings take precedence over the constructor's.
      */
     @Override
     @SuppressWarnings("unchecked")
     public void initSystem() {
+        this.routingLogic = getSetting(ROUTING_LOGIC, this.routingLogic);
+        Integer routeesPerProcessor = getSetting(ROUTEES_PER_PROCESSOR, null);
+        if (routeesPerProcessor != null) {
+            this.numberOfRoutees = routeesPerProcessor * Runtime.getRuntime().availableProcessors();
+        } else {
+            this.numberOfRoutees = getSetting(ROUTEES, this.numberOfRoutees);
+        }
+        List<String> nodes = getSetting(NODES, Collections.emptyList());
         List<Routee> routees = new ArrayList<>();
         for (int i = 0; i < this.numberOfRoutees; i++) {
-            ActorRef r = buildInnerPipe();
-            getContext().watch(r);
+            ActorRef r = nodes.isEmpty() ? buildInnerPipe() : buildInnerPipe(nodes.get(i % nodes.size()));
             routees.add(new ActorRefRoutee(r));
         }
         try {
-            this.router = new Router((RoutingLogic) this.routingLogic.getConstructor().newInstance(), routees);
-        } catch (InstantiationException e) {
-            e.printStackTrace();
-        } catch (IllegalAccessException e) {
-            e.printStackTrace();
-        } catch (InvocationTargetException e) {
-            e.printStackTrace();
-        } catch (NoSuchMethodException e) {
-            e.printStackTrace();
+            RoutingLogic logic = (RoutingLogic) this.routingLogic.getConstructor().newInstance();
+            if (logic instanceof ServiceTimeRoutingLogic) {
+                if (WrapperPipe.class.isAssignableFrom(getInnerPipeClass())) {
+                    logic = new SmallestMailboxRoutingLogic();
+                } else {
+                    this.serviceTime = (ServiceTimeRoutingLogic) logic;
+                }
+            }
+            this.router = new Router(logic, routees);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Could not create routing logic " + this.routingLogic.getName(), e);
         }
     }
 
@@ -49,6 +99,17 @@ public class LoadBalancingPipeWrapper extends WrapperPipe {
      */
     @Override
     public void ingest(Object message) {
-        router.route(message, getSender());
+        if (message instanceof ReleaseMessage) {
+            if (this.serviceTime != null) {
+                this.serviceTime.completed(new ActorRefRoutee(getSender()));
+            }
+        } else if (this.serviceTime != null) {
+            Routee routee = this.serviceTime.select(message, router.routees());
+            this.serviceTime.dispatched(routee);
+            routee.send(message, getSender());
+            routee.send(new ReleaseMessage(false), getSelf());
+        } else {
+            router.route(message, getSender());
+        }
     }
 }
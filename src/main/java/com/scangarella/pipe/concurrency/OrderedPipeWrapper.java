@@ -0,0 +1,269 @@
+package com.scangarella.pipe.concurrency;
+
+import akka.actor.ActorRef;
+import com.scangarella.pipe.exception.IncompatibleTypeException;
+import com.scangarella.pipe.stereotype.WrapperPipe;
+import com.scangarella.pipe.transmission.BatchMessage;
+import com.scangarella.pipe.transmission.BatchPolicy;
+import com.scangarella.pipe.transmission.CorrelatedMessage;
+import com.scangarella.pipe.transmission.Correlation;
+import com.scangarella.pipe.transmission.DemandMessage;
+import com.scangarella.pipe.transmission.PooledBuffer;
+import com.scangarella.pipe.transmission.ReleaseMessage;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Spreads messages over several inner pipes like a LoadBalancingPipeWrapper, but sends their outputs on
+ * in the order the messages arrived.
+ *
+ * Every message goes to the inner pipe with the fewest messages outstanding, followed by a release that
+ * the inner pipe sends back once it has ingested the message. The inner pipes send their outputs to the
+ * wrapper, so everything an inner pipe sends before a release belongs to that release's message. That
+ * might be nothing, if the inner pipe filtered the message out, or several objects, if it's a MultiPipe.
+ * The wrapper holds on to outputs until the outputs of every message before them have been sent.
+ *
+ * The reorder window bounds how many messages may be outstanding at once, so one slow message can't make
+ * the wrapper hold on to an unbounded number of outputs. Messages that arrive while the window is full,
+ * or while a downstream pipe is out of credits, wait in the wrapper.
+ *
+ * Asynchronous inner pipes keep their outputs in order only if they're ordered.
+ * Wrapped inner pipes can't send releases, so the inner pipe can't be wrapped itself.
+ */
+public class OrderedPipeWrapper extends WrapperPipe {
+
+    /**
+     * The name of the setting for the number of inner pipes. It's the same as a load balancer's.
+     */
+    public static final String ROUTEES = LoadBalancingPipeWrapper.ROUTEES;
+    /**
+     * The name of the setting for the largest number of messages outstanding at once.
+     */
+    public static final String REORDER_WINDOW = "reorderWindow";
+
+    private Integer numberOfRoutees = 4;
+    private Integer reorderWindow = 1024;
+    private Map<ActorRef, Integer> outstanding = new HashMap<>();
+    private Deque<ActorRef> order = new ArrayDeque<>();
+    private Map<ActorRef, List<Object>> open = new HashMap<>();
+    private Map<ActorRef, Deque<List<Object>>> done = new HashMap<>();
+    private Deque<Object> held = new ArrayDeque<>();
+    private Deque<ActorRef> heldSenders = new ArrayDeque<>();
+    private Map<ActorRef, Integer> credits;
+    private Map<ActorRef, Deque<Object>> pending = new HashMap<>();
+    private Map<ActorRef, List<Object>> batches = new HashMap<>();
+    private Boolean draining = false;
+    private Boolean handedOver = false;
+
+    /**
+     * Creates a wrapper with four inner pipes and a reorder window of 1024 messages.
+     */
+    public OrderedPipeWrapper() { }
+
+    /**
+     * Creates a wrapper with the given number of inner pipes and reorder window.
+     * Subclasses with a no argument constructor can use this to size the wrapper differently.
+     * @param numberOfRoutees The number of inner pipes.
+     * @param reorderWindow The largest number of messages outstanding at once.
+     */
+    protected OrderedPipeWrapper(Integer numberOfRoutees, Integer reorderWindow) {
+        this.numberOfRoutees = numberOfRoutees;
+        this.reorderWindow = reorderWindow;
+    }
+
+    /**
+     * Creates the inner pipes, which send their outputs to the wrapper.
+     * The schematic's settings take precedence over the constructor's.
+     * @throws IncompatibleTypeException If the inner pipe is wrapped, since it couldn't send releases.
+     */
+    @Override
+    public void initSystem() {
+        if (WrapperPipe.class.isAssignableFrom(getInnerPipeClass())) {
+            throw new IncompatibleTypeException("An OrderedPipeWrapper can't wrap another wrapper.");
+        }
+        this.numberOfRoutees = getSetting(ROUTEES, this.numberOfRoutees);
+        this.reorderWindow = getSetting(REORDER_WINDOW, this.reorderWindow);
+        this.credits = new HashMap<>(getCredits());
+        for (int i = 0; i < this.numberOfRoutees; i++) {
+            ActorRef routee = buildInnerPipe(this.getSelf());
+            this.outstanding.put(routee, 0);
+            this.open.put(routee, new ArrayList<>());
+            this.done.put(routee, new ArrayDeque<>());
+        }
+    }
+
+    /**
+     * Hands incoming messages to the inner pipes, collects their outputs, and sends on the outputs
+     * that are next in order.
+     * @param message The message to be handled.
+     */
+    @Override
+    public void ingest(Object message) {
+        ActorRef sender = this.getSender();
+        if (message instanceof DemandMessage) {
+            receiveDemand((DemandMessage) message);
+        } else if (message instanceof ReleaseMessage && this.outstanding.containsKey(sender)) {
+            this.outstanding.merge(sender, -1, Integer::sum);
+            this.done.get(sender).add(this.open.put(sender, new ArrayList<>()));
+            sendInOrder();
+        } else if (this.outstanding.containsKey(sender)) {
+            this.open.get(sender).add(message);
+        } else if (message instanceof BatchMessage) {
+            ((BatchMessage) message).getMessages().forEach(m -> hold(m, sender));
+        } else {
+            hold(message, sender);
+        }
+        dispatchHeld();
+    }
+
+    /**
+     * Waits for the held messages to be handed over before stopping the inner pipes.
+     */
+    @Override
+    protected void stopInnerPipes() {
+        this.draining = true;
+        stopIfHandedOver();
+    }
+
+    @Override
+    protected Boolean isDrained() {
+        return this.held.isEmpty() && this.order.isEmpty() && this.pending.isEmpty();
+    }
+
+    private void hold(Object message, ActorRef sender) {
+        this.held.add(message);
+        this.heldSenders.add(sender);
+    }
+
+    private void dispatchHeld() {
+        while (!this.held.isEmpty() && this.order.size() < this.reorderWindow && this.pending.isEmpty()) {
+            dispatch(this.held.poll(), this.heldSenders.poll());
+        }
+        stopIfHandedOver();
+    }
+
+    private void stopIfHandedOver() {
+        if (this.draining && !this.handedOver && this.held.isEmpty()) {
+            this.handedOver = true;
+            super.stopInnerPipes();
+        }
+    }
+
+    private void dispatch(Object message, ActorRef sender) {
+        ActorRef routee = null;
+        for (Map.Entry<ActorRef, Integer> entry : this.outstanding.entrySet()) {
+            if (routee == null || entry.getValue() < this.outstanding.get(routee)) {
+                routee = entry.getKey();
+            }
+        }
+        this.outstanding.merge(routee, 1, Integer::sum);
+        this.order.add(routee);
+        routee.tell(message, sender);
+        routee.tell(new ReleaseMessage(false), this.getSelf());
+    }
+
+    /**
+     * Sends on the outputs of the oldest messages, for as long as their inner pipes have released them.
+     */
+    private void sendInOrder() {
+        while (!this.order.isEmpty() && !this.done.get(this.order.peek()).isEmpty()) {
+            this.done.get(this.order.poll()).poll().forEach(this::sendOutput);
+        }
+        flushBatches();
+    }
+
+    /**
+     * Sends an output on to every downstream pipe, the way the inner pipe would have if it weren't wrapped.
+     */
+    private void sendOutput(Object output) {
+        if (output instanceof CorrelatedMessage) {
+            Correlation correlation = ((CorrelatedMessage) output).getCorrelation();
+            if (isTerminal() && correlation.isTracking()) {
+                fanOut(((CorrelatedMessage) output).getPayload());
+                getDownstream().forEach(pipe -> tellDownstream(pipe, ((CorrelatedMessage) output).getPayload()));
+            } else if (isTerminal()) {
+                correlation.addResult(((CorrelatedMessage) output).getPayload());
+            } else {
+                correlation.retain(getDownstream().size());
+                fanOut(((CorrelatedMessage) output).getPayload());
+                getDownstream().forEach(pipe -> tellDownstream(pipe, output));
+            }
+            correlation.release();
+        } else {
+            fanOut(output);
+            getDownstream().forEach(pipe -> tellDownstream(pipe, output));
+        }
+    }
+
+    /**
+     * The inner pipe sent a pooled buffer's reference to the wrapper alone, so one is taken for every
+     * downstream pipe after the first.
+     */
+    private void fanOut(Object payload) {
+        if (payload instanceof PooledBuffer) {
+            if (getDownstream().isEmpty()) {
+                ((PooledBuffer) payload).release();
+            } else {
+                ((PooledBuffer) payload).retain(getDownstream().size() - 1);
+            }
+        }
+    }
+
+    private void tellDownstream(ActorRef pipe, Object output) {
+        Integer remaining = this.credits.get(pipe);
+        if (remaining == null) {
+            deliver(pipe, output);
+        } else if (remaining > 0 && !this.pending.containsKey(pipe)) {
+            this.credits.put(pipe, remaining - 1);
+            deliver(pipe, output);
+        } else {
+            this.pending.computeIfAbsent(pipe, p -> new ArrayDeque<>()).add(output);
+        }
+    }
+
+    /**
+     * Outputs on batched edges are sent in batches of up to the batch size. Batches are sent once the
+     * outputs that are ready have been added to them, rather than after the edge's delay.
+     */
+    private void deliver(ActorRef pipe, Object output) {
+        BatchPolicy policy = getBatching().get(pipe);
+        if (policy == null) {
+            pipe.tell(output, this.getSelf());
+        } else {
+            List<Object> batch = this.batches.computeIfAbsent(pipe, p -> new ArrayList<>(policy.getMaxSize()));
+            batch.add(output);
+            if (batch.size() >= policy.getMaxSize()) {
+                this.batches.remove(pipe);
+                pipe.tell(new BatchMessage(batch), this.getSelf());
+            }
+        }
+    }
+
+    private void flushBatches() {
+        this.batches.forEach((pipe, batch) -> pipe.tell(new BatchMessage(batch), this.getSelf()));
+        this.batches.clear();
+    }
+
+    private void receiveDemand(DemandMessage demand) {
+        ActorRef pipe = demand.getPipe();
+        Integer remaining = this.credits.get(pipe);
+        if (remaining != null) {
+            remaining += demand.getCredits();
+            Deque<Object> waiting = this.pending.getOrDefault(pipe, new ArrayDeque<>());
+            while (remaining > 0 && !waiting.isEmpty()) {
+                remaining--;
+                deliver(pipe, waiting.poll());
+            }
+            this.credits.put(pipe, remaining);
+            if (waiting.isEmpty()) {
+                this.pending.remove(pipe);
+            }
+            flushBatches();
+        }
+    }
+}
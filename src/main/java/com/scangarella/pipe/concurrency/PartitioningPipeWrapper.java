@@ -0,0 +1,246 @@
+package com.scangarella.pipe.concurrency;
+
+import akka.actor.ActorRef;
+import akka.actor.Cancellable;
+import com.scangarella.pipe.metrics.PipeMetrics;
+import com.scangarella.pipe.stereotype.WrapperPipe;
+import com.scangarella.pipe.transmission.BatchMessage;
+import com.scangarella.pipe.transmission.CorrelatedMessage;
+import com.scangarella.pipe.transmission.ScaleMessage;
+import com.scangarella.pipe.transmission.StopMessage;
+import scala.concurrent.duration.Duration;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sends every message with the same key to the same inner pipe, so that pipes which keep state per key,
+ * such as counters or sessions, can run in parallel without sharing that state.
+ *
+ * The key is picked by a KeyExtractor, or is the message itself if no key extractor is given. Keys are
+ * placed on a consistent hash ring of the partitions, so changing the number of partitions only moves
+ * the keys of the partitions that were added or removed. Messages of a moved key that were already sent to
+ * its old partition are still ingested there, so a key's messages may be out of order while partitions
+ * are being added or removed.
+ *
+ * The wrapper keeps count of the busiest keys. A key is hot if it took more than one partition's share
+ * of the messages since the last check; hot keys are shown in the pipe's metrics. After every check the
+ * wrapper calls 'rebalance' with the load of every partition, which subclasses can override to change
+ * the number of partitions.
+ */
+public class PartitioningPipeWrapper extends WrapperPipe {
+
+    /**
+     * The name of the setting for the number of partitions.
+     */
+    public static final String PARTITIONS = "partitions";
+    /**
+     * The name of the setting for the key extractor class.
+     */
+    public static final String KEY_EXTRACTOR = "keyExtractor";
+    /**
+     * The name of the setting for how often hot keys are checked for, in milliseconds.
+     */
+    public static final String HOT_KEY_INTERVAL = "hotKeyIntervalMillis";
+    private static final int VIRTUAL_NODES = 64;
+    private static final int TRACKED_KEYS = 16;
+    private static final int MINIMUM_SAMPLE = 100;
+
+    private Integer numberOfPartitions = Runtime.getRuntime().availableProcessors();
+    private Class keyExtractorClass = null;
+    private Long hotKeyIntervalMillis = 1000L;
+    private KeyExtractor<Object> keyExtractor = null;
+    private TreeMap<Integer, Integer> ring = new TreeMap<>();
+    private List<ActorRef> partitions = new ArrayList<>();
+    private List<Long> loads = new ArrayList<>();
+    private Map<Object, Long> keyCounts = new HashMap<>();
+    private Long messages = 0L;
+    private Cancellable checking;
+
+    /**
+     * Creates a wrapper with a partition per available processor that partitions messages by themselves.
+     */
+    public PartitioningPipeWrapper() { }
+
+    /**
+     * Creates a wrapper with the given number of partitions and key extractor.
+     * Subclasses with a no argument constructor can use this to partition differently.
+     * @param numberOfPartitions The number of inner pipes.
+     * @param keyExtractor A KeyExtractor class with a no argument constructor.
+     */
+    protected PartitioningPipeWrapper(Integer numberOfPartitions, Class keyExtractor) {
+        this.numberOfPartitions = numberOfPartitions;
+        this.keyExtractorClass = keyExtractor;
+    }
+
+    /**
+     * Creates the partitions and starts checking for hot keys.
+     * The schematic's settings take precedence over the constructor's.
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public void initSystem() {
+        this.numberOfPartitions = getSetting(PARTITIONS, this.numberOfPartitions);
+        this.keyExtractorClass = getSetting(KEY_EXTRACTOR, this.keyExtractorClass);
+        this.hotKeyIntervalMillis = getSetting(HOT_KEY_INTERVAL, this.hotKeyIntervalMillis);
+        if (this.keyExtractorClass != null) {
+            try {
+                this.keyExtractor = (KeyExtractor<Object>) this.keyExtractorClass.getConstructor().newInstance();
+            } catch (ReflectiveOperationException e) {
+                throw new IllegalStateException("Could not create key extractor " + this.keyExtractorClass.getName(), e);
+            }
+        }
+        setPartitions(this.numberOfPartitions);
+        this.checking = getContext().system().scheduler().schedule(
+                Duration.create(this.hotKeyIntervalMillis, TimeUnit.MILLISECONDS),
+                Duration.create(this.hotKeyIntervalMillis, TimeUnit.MILLISECONDS),
+                this.getSelf(), new ScaleMessage(), getContext().dispatcher(), this.getSelf());
+    }
+
+    /**
+     * Sends the message to the partition of its key. Batches are split up by partition.
+     * @param message The message to be handled.
+     */
+    @Override
+    public void ingest(Object message) {
+        if (message instanceof ScaleMessage) {
+            check();
+        } else if (message instanceof BatchMessage) {
+            Map<Integer, List<Object>> batches = new HashMap<>();
+            for (Object m : ((BatchMessage) message).getMessages()) {
+                batches.computeIfAbsent(partition(m), p -> new ArrayList<>()).add(m);
+            }
+            batches.forEach((p, batch) -> this.partitions.get(p).tell(
+                    batch.size() == 1 ? batch.get(0) : new BatchMessage(batch), this.getSender()));
+        } else {
+            this.partitions.get(partition(message)).tell(message, this.getSender());
+        }
+    }
+
+    @Override
+    public void postStop() {
+        super.postStop();
+        if (this.checking != null) {
+            this.checking.cancel();
+        }
+    }
+
+    /**
+     * Called after every check for hot keys. Subclasses can override this to change the number of partitions.
+     * @param loads The number of messages each partition was sent since the last check.
+     * @param hotKeys The number of messages each hot key took since the last check, by key.
+     */
+    protected void rebalance(List<Long> loads, Map<Object, Long> hotKeys) { }
+
+    /**
+     * Adds or removes partitions. New partitions start out empty; removed partitions ingest the messages
+     * they were already sent, then stop.
+     * @param numberOfPartitions The number of partitions to have.
+     */
+    protected final void setPartitions(Integer numberOfPartitions) {
+        if (numberOfPartitions < 1) {
+            throw new IllegalArgumentException("A partitioning wrapper needs at least one partition.");
+        }
+        while (this.partitions.size() < numberOfPartitions) {
+            int partition = this.partitions.size();
+            this.partitions.add(buildInnerPipe());
+            this.loads.add(0L);
+            for (int node = 0; node < VIRTUAL_NODES; node++) {
+                this.ring.put(hash(partition * VIRTUAL_NODES + node), partition);
+            }
+        }
+        while (this.partitions.size() > numberOfPartitions) {
+            int partition = this.partitions.size() - 1;
+            for (int node = 0; node < VIRTUAL_NODES; node++) {
+                this.ring.remove(hash(partition * VIRTUAL_NODES + node));
+            }
+            this.loads.remove(partition);
+            this.partitions.remove(partition).tell(new StopMessage(), this.getSelf());
+        }
+        this.numberOfPartitions = numberOfPartitions;
+    }
+
+    /**
+     * Gets the number of partitions.
+     * @return The number of inner pipes.
+     */
+    protected Integer getPartitions() {
+        return this.numberOfPartitions;
+    }
+
+    private int partition(Object message) {
+        Object payload = message instanceof CorrelatedMessage ? ((CorrelatedMessage) message).getPayload() : message;
+        Object key = this.keyExtractor == null ? payload : this.keyExtractor.getKey(payload);
+        count(key);
+        Map.Entry<Integer, Integer> node = this.ring.ceilingEntry(hash(key == null ? 0 : key.hashCode()));
+        int partition = node == null ? this.ring.firstEntry().getValue() : node.getValue();
+        this.loads.set(partition, this.loads.get(partition) + 1);
+        return partition;
+    }
+
+    /**
+     * Counts the busiest keys with the space saving algorithm: a key that isn't tracked takes the place of
+     * the least counted key, and starts from its count. Counts are overestimated by at most the number of
+     * messages divided by the number of tracked keys, so every key that took more than that is tracked.
+     */
+    private void count(Object key) {
+        this.messages++;
+        Long count = this.keyCounts.get(key);
+        if (count != null) {
+            this.keyCounts.put(key, count + 1);
+        } else if (this.keyCounts.size() < TRACKED_KEYS) {
+            this.keyCounts.put(key, 1L);
+        } else {
+            Map.Entry<Object, Long> least = null;
+            for (Map.Entry<Object, Long> entry : this.keyCounts.entrySet()) {
+                if (least == null || entry.getValue() < least.getValue()) {
+                    least = entry;
+                }
+            }
+            this.keyCounts.remove(least.getKey());
+            this.keyCounts.put(key, least.getValue() + 1);
+        }
+    }
+
+    private void check() {
+        Map<Object, Long> hotKeys = new LinkedHashMap<>();
+        if (this.messages >= MINIMUM_SAMPLE) {
+            double share = 1.0 / this.numberOfPartitions;
+            this.keyCounts.entrySet().stream()
+                    .filter(e -> e.getValue() > share * this.messages)
+                    .sorted(Collections.reverseOrder(Map.Entry.comparingByValue()))
+                    .forEach(e -> hotKeys.put(e.getKey(), e.getValue()));
+        }
+        PipeMetrics metrics = getMetrics();
+        if (metrics != null) {
+            Map<String, Double> shares = new LinkedHashMap<>();
+            long total = this.messages;
+            hotKeys.forEach((key, count) -> shares.put(String.valueOf(key), (double) count / total));
+            metrics.setHotKeys(shares);
+        }
+        List<Long> loads = new ArrayList<>(this.loads);
+        Collections.fill(this.loads, 0L);
+        this.keyCounts.clear();
+        this.messages = 0L;
+        rebalance(loads, hotKeys);
+    }
+
+    /**
+     * Spreads hash codes over the ring, so that keys with nearby hash codes, such as small integers,
+     * don't all land between the same two nodes.
+     */
+    private static int hash(int h) {
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return h;
+    }
+}
@@ -0,0 +1,94 @@
+package com.scangarella.pipe.concurrency;
+
+import akka.routing.NoRoutee$;
+import akka.routing.Routee;
+import akka.routing.RoutingLogic;
+import scala.collection.immutable.IndexedSeq;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Routes each message to the routee expected to finish it first: the one with the least outstanding
+ * work, where work is the number of messages sent to a routee but not yet ingested times the routee's
+ * average 'ingest' time. A routee that has been working on its current message for longer than average
+ * is expected to take at least that much longer.
+ *
+ * Unlike the smallest mailbox, this counts the message a routee is working on, so a routee that is
+ * stuck on an expensive message doesn't get sent more. It only works inside a LoadBalancingPipeWrapper,
+ * which tells it when routees finish their messages. It isn't thread safe, and isn't meant to be shared.
+ */
+public final class ServiceTimeRoutingLogic implements RoutingLogic {
+
+    private static final double SMOOTHING = 0.2;
+
+    private Map<Routee, Deque<Long>> outstanding = new HashMap<>();
+    private Map<Routee, Long> lastCompleted = new HashMap<>();
+    private Map<Routee, Double> serviceNanos = new HashMap<>();
+
+    /**
+     * Picks the routee with the least outstanding work. Idle routees have none, and routees that haven't
+     * finished a message yet have no known service time, so they're tried first. Ties go to the routee
+     * with the fewest outstanding messages.
+     * @param message The message being routed.
+     * @param routees The routees to pick from.
+     * @return The picked routee.
+     */
+    @Override
+    public Routee select(Object message, IndexedSeq<Routee> routees) {
+        Routee best = NoRoutee$.MODULE$;
+        double bestWork = Double.MAX_VALUE;
+        int bestOutstanding = Integer.MAX_VALUE;
+        long now = System.nanoTime();
+        for (int i = 0; i < routees.size(); i++) {
+            Routee routee = routees.apply(i);
+            Deque<Long> messages = this.outstanding.get(routee);
+            int count = messages == null ? 0 : messages.size();
+            double work = 0.0;
+            if (count > 0) {
+                double average = this.serviceNanos.getOrDefault(routee, 0.0);
+                double elapsed = now - started(routee, messages);
+                work = count * average + Math.max(0.0, elapsed - average);
+            }
+            if (work < bestWork || (work == bestWork && count < bestOutstanding)) {
+                best = routee;
+                bestWork = work;
+                bestOutstanding = count;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Records that a message was sent to a routee.
+     * @param routee The routee the message was sent to.
+     */
+    public void dispatched(Routee routee) {
+        this.outstanding.computeIfAbsent(routee, r -> new ArrayDeque<>()).add(System.nanoTime());
+    }
+
+    /**
+     * Records that a routee finished its oldest outstanding message. Routees ingest in order, so the
+     * message started when it was sent or when the previous one finished, whichever came last.
+     * @param routee The routee that finished a message.
+     */
+    public void completed(Routee routee) {
+        Deque<Long> messages = this.outstanding.get(routee);
+        if (messages == null || messages.isEmpty()) {
+            return;
+        }
+        long now = System.nanoTime();
+        long started = started(routee, messages);
+        messages.poll();
+        this.lastCompleted.put(routee, now);
+        double nanos = now - started;
+        Double average = this.serviceNanos.get(routee);
+        this.serviceNanos.put(routee, average == null ? nanos : SMOOTHING * nanos + (1 - SMOOTHING) * average);
+    }
+
+    private long started(Routee routee, Deque<Long> messages) {
+        return Math.max(messages.peek(), this.lastCompleted.getOrDefault(routee, 0L));
+    }
+}
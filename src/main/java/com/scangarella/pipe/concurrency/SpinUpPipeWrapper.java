@@ -1,8 +1,9 @@
 package com.scangarella.pipe.concurrency;
 
 import akka.actor.ActorRef;
-import akka.actor.PoisonPill;
 import com.scangarella.pipe.stereotype.WrapperPipe;
+import com.scangarella.pipe.transmission.BatchMessage;
+import com.scangarella.pipe.transmission.StopMessage;
 
 import java.util.List;
 
@@ -13,12 +14,17 @@ public class SpinUpPipeWrapper extends WrapperPipe {
     /**
      * Creates a new inner pipe and forwards along the message.
      * After the inner pipe finishes ingesting the message, it is discarded.
+     * Batches are unpacked so that every message still gets its own inner pipe.
      * @param message The message to be handled.
      */
     @Override
     public void ingest(Object message) {
-        ActorRef innerPipe = buildInnerPipe();
-        innerPipe.tell(message, getSender());
-        innerPipe.tell(PoisonPill.getInstance(), getSender());
+        if (message instanceof BatchMessage) {
+            ((BatchMessage) message).getMessages().forEach(this::ingest);
+        } else {
+            ActorRef innerPipe = buildInnerPipe();
+            innerPipe.tell(message, getSender());
+            innerPipe.tell(new StopMessage(), getSender());
+        }
     }
 }
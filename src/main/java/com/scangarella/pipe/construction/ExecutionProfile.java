@@ -0,0 +1,115 @@
+package com.scangarella.pipe.construction;
+
+import java.util.Objects;
+
+/**
+ * Describes the threads a pipe, wrapper or exception handler runs on.
+ * Pipes without a profile run on the actor system's default dispatcher.
+ * Every distinct profile gets its own dispatcher, which is shared by all pipes with that profile.
+ *
+ * CPU bound pipes run on a fork-join pool with a thread per processor.
+ * Blocking pipes run on a fixed thread pool, so that blocking I/O can't starve the CPU bound pipes.
+ * Pinned pipes each get a thread of their own.
+ * The throughput is the number of messages a pipe ingests before its thread moves on to another pipe.
+ */
+public final class ExecutionProfile {
+
+    /**
+     * The kinds of thread pools a profile can describe.
+     */
+    public enum Kind { CPU_BOUND, BLOCKING, PINNED }
+
+    private final Kind kind;
+    private final Integer threads;
+    private final Integer throughput;
+
+    private ExecutionProfile(Kind kind, Integer threads, Integer throughput) {
+        if (threads < 1 || throughput < 1) {
+            throw new IllegalArgumentException("A profile needs a positive number of threads and throughput.");
+        }
+        this.kind = kind;
+        this.threads = threads;
+        this.throughput = throughput;
+    }
+
+    /**
+     * Creates a profile for pipes that keep their thread busy computing.
+     * @return A fork-join profile with a thread per processor.
+     */
+    public static ExecutionProfile cpuBound() {
+        return new ExecutionProfile(Kind.CPU_BOUND, Runtime.getRuntime().availableProcessors(), 5);
+    }
+
+    /**
+     * Creates a profile for pipes that block their thread, for example on I/O.
+     * @param threads The number of threads in the pool.
+     * @return A fixed thread pool profile.
+     */
+    public static ExecutionProfile blocking(Integer threads) {
+        return new ExecutionProfile(Kind.BLOCKING, threads, 1);
+    }
+
+    /**
+     * Creates a profile that gives every pipe a dedicated thread.
+     * @return A pinned profile.
+     */
+    public static ExecutionProfile pinned() {
+        return new ExecutionProfile(Kind.PINNED, 1, 5);
+    }
+
+    /**
+     * Creates a copy of this profile with a different throughput.
+     * @param throughput The number of messages a pipe ingests before its thread moves on to another pipe.
+     * @return The new profile.
+     */
+    public ExecutionProfile withThroughput(Integer throughput) {
+        return new ExecutionProfile(this.kind, this.threads, throughput);
+    }
+
+    /**
+     * Gets the kind of thread pool.
+     * @return The kind.
+     */
+    public Kind getKind() {
+        return this.kind;
+    }
+
+    /**
+     * Gets the number of threads in the pool. Pinned pools have one thread per pipe.
+     * @return The number of threads.
+     */
+    public Integer getThreads() {
+        return this.threads;
+    }
+
+    /**
+     * Gets the number of messages a pipe ingests before its thread moves on to another pipe.
+     * @return The throughput.
+     */
+    public Integer getThroughput() {
+        return this.throughput;
+    }
+
+    /**
+     * Gets the id of the dispatcher for this profile.
+     * @return The dispatcher id.
+     */
+    public String getDispatcherId() {
+        return "pipe-dispatcher." + this.kind.name().toLowerCase().replace('_', '-')
+                + "-" + this.threads + "-" + this.throughput;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof ExecutionProfile)) {
+            return false;
+        }
+        ExecutionProfile other = (ExecutionProfile) o;
+        return this.kind == other.kind && this.threads.equals(other.threads) && this.throughput.equals(other.throughput);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(this.kind, this.threads, this.throughput);
+    }
+}
@@ -0,0 +1,49 @@
+package com.scangarella.pipe.construction;
+
+/**
+ * Reports how a bulk put into a pipe opening went.
+ */
+public final class IngestReport {
+
+    private long accepted;
+    private long elapsedNanos;
+
+    /**
+     * Creates a new IngestReport.
+     * @param accepted The number of objects put into the pipeline.
+     * @param elapsedNanos How long it took to put them in, in nanoseconds.
+     */
+    public IngestReport(long accepted, long elapsedNanos) {
+        this.accepted = accepted;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    /**
+     * Gets the number of objects put into the pipeline. Null objects are skipped and not counted.
+     * @return The number of accepted objects.
+     */
+    public long getAccepted() {
+        return this.accepted;
+    }
+
+    /**
+     * Gets how long it took to put the objects into the pipeline.
+     * @return The elapsed time in nanoseconds.
+     */
+    public long getElapsedNanos() {
+        return this.elapsedNanos;
+    }
+
+    /**
+     * Gets the rate at which objects were put into the pipeline.
+     * @return The number of objects accepted per second.
+     */
+    public double getRate() {
+        return this.elapsedNanos == 0 ? 0 : this.accepted / (this.elapsedNanos / 1e9);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d accepted in %.3f ms (%.0f/s)", this.accepted, this.elapsedNanos / 1e6, getRate());
+    }
+}
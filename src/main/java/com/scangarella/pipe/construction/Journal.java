@@ -0,0 +1,325 @@
+package com.scangarella.pipe.construction;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * A write-ahead journal of the objects put into a PipeOpening, so that they survive a crash.
+ * Objects are appended to segment files mapped into memory, and the segments are synced by a background
+ * thread every sync interval, so appends never wait for the disk. Every entry is pending until it's
+ * acknowledged, which a journaled PipeOpening does once no part of the object is left in the pipeline.
+ * A segment is deleted once it's full and every entry in it has been acknowledged.
+ *
+ * When a journal is opened over segments left behind by a crash, the entries that were never acknowledged
+ * are recovered, and the opening it's set on puts them into the pipeline again before anything new.
+ * An entry is only acknowledged when it has left the pipeline, so objects are delivered at least once:
+ * one that had reached the end but wasn't acknowledged before the crash is delivered again.
+ * @param <I> The type of objects journaled.
+ */
+public final class Journal<I> {
+
+    private static final int HEADER = 16;
+    private static final int PENDING = 0;
+    private static final int ACKNOWLEDGED = 1;
+    private static final String PREFIX = "journal.";
+
+    private final Path directory;
+    private final JournalCodec<I> codec;
+    private final Integer segmentSize;
+    private final List<Segment> segments = new CopyOnWriteArrayList<>();
+    private final List<Entry<I>> recovered = new ArrayList<>();
+    private final ScheduledExecutorService syncer;
+    private Segment active;
+    private int nextSegment = 0;
+    private long sequence = 0;
+    private Boolean closed = false;
+
+    /**
+     * Opens a journal with segments of 64 megabytes that are synced every 100 milliseconds.
+     * @param directory The directory the segments are kept in.
+     * @param codec How objects are written to the segments.
+     * @param <I> The type of objects journaled.
+     * @return The journal, with any entries left pending by an earlier run recovered.
+     * @throws IOException If the segments can't be read or created.
+     */
+    public static <I> Journal<I> open(Path directory, JournalCodec<I> codec) throws IOException {
+        return new Journal<>(directory, codec, 64 << 20, 100);
+    }
+
+    /**
+     * Opens a journal.
+     * @param directory The directory the segments are kept in.
+     * @param codec How objects are written to the segments.
+     * @param segmentSize The number of bytes in a segment. An entry takes 16 bytes more than its object.
+     * @param syncMillis The time between syncs, in milliseconds.
+     * @throws IOException If the segments can't be read or created.
+     */
+    public Journal(Path directory, JournalCodec<I> codec, Integer segmentSize, long syncMillis) throws IOException {
+        if (segmentSize <= HEADER || syncMillis < 1) {
+            throw new IllegalArgumentException("A journal needs room for an entry and a positive sync interval.");
+        }
+        this.directory = directory;
+        this.codec = codec;
+        this.segmentSize = segmentSize;
+        Files.createDirectories(directory);
+        List<Path> files;
+        try (Stream<Path> listing = Files.list(directory)) {
+            files = listing.filter(path -> path.getFileName().toString().startsWith(PREFIX))
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+        for (Path file : files) {
+            recover(file);
+        }
+        this.active = newSegment();
+        this.syncer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "journal-sync");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.syncer.scheduleWithFixedDelay(this::sync, syncMillis, syncMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Appends an object to the journal. The entry is on disk by the next sync.
+     * @param i The object.
+     * @return The entry, to be acknowledged once the object has left the pipeline.
+     */
+    public synchronized Entry<I> append(I i) {
+        if (this.closed) {
+            throw new IllegalStateException("The journal is closed.");
+        }
+        ByteBuffer bytes = this.codec.encode(i);
+        int length = HEADER + bytes.remaining();
+        if (length > this.segmentSize) {
+            throw new IllegalArgumentException("An entry of " + length + " bytes doesn't fit in a segment.");
+        }
+        if (this.active.position + length > this.segmentSize) {
+            Segment full = this.active;
+            this.active = newSegment();
+            seal(full);
+        }
+        Segment segment = this.active;
+        int position = segment.position;
+        segment.map.putInt(position + 4, PENDING);
+        segment.map.putLong(position + 8, this.sequence);
+        segment.writer.position(position + HEADER);
+        segment.writer.put(bytes);
+        segment.map.putInt(position, length);
+        segment.position += length;
+        segment.outstanding.incrementAndGet();
+        segment.dirty = true;
+        return new Entry<>(segment, position, this.sequence++, i);
+    }
+
+    /**
+     * Marks an entry as done with, so that it isn't recovered again. Each entry is acknowledged once.
+     * @param entry The entry.
+     */
+    public void ack(Entry<I> entry) {
+        Segment segment = entry.segment;
+        segment.map.putInt(entry.position + 4, ACKNOWLEDGED);
+        segment.dirty = true;
+        if (segment.outstanding.decrementAndGet() == 0 && segment.sealed) {
+            segment.delete();
+        }
+    }
+
+    /**
+     * Gets the entries that an earlier run left pending, in the order they were appended.
+     * @return The entries.
+     */
+    public List<Entry<I>> getRecovered() {
+        return Collections.unmodifiableList(this.recovered);
+    }
+
+    /**
+     * Gets the number of entries that haven't been acknowledged yet.
+     * @return The number of entries.
+     */
+    public long getPending() {
+        return this.segments.stream().mapToLong(segment -> segment.outstanding.get()).sum();
+    }
+
+    /**
+     * Writes every change to the segments to disk. This happens every sync interval anyway.
+     */
+    public void sync() {
+        for (Segment segment : this.segments) {
+            if (segment.dirty) {
+                segment.dirty = false;
+                segment.map.force();
+            }
+        }
+    }
+
+    /**
+     * Syncs the journal and stops its sync thread. Segments whose entries have all been acknowledged are
+     * deleted, and the rest are left for the next run to recover. Close the journal once the opening's
+     * pipeline has stopped, so that nothing is acknowledged afterwards.
+     */
+    public synchronized void close() {
+        if (!this.closed) {
+            this.closed = true;
+            this.syncer.shutdown();
+            sync();
+            seal(this.active);
+            for (Segment segment : this.segments) {
+                segment.close();
+            }
+        }
+    }
+
+    /**
+     * Reads an existing segment, recovering its pending entries. Nothing more is appended to it.
+     */
+    private void recover(Path file) throws IOException {
+        this.nextSegment = Math.max(this.nextSegment,
+                Integer.parseInt(file.getFileName().toString().substring(PREFIX.length())) + 1);
+        Segment segment = new Segment(file);
+        MappedByteBuffer map = segment.map;
+        int position = 0;
+        while (position + HEADER <= map.limit()) {
+            int length = map.getInt(position);
+            if (length < HEADER || length > map.limit() - position) {
+                break;
+            }
+            long number = map.getLong(position + 8);
+            this.sequence = Math.max(this.sequence, number + 1);
+            if (map.getInt(position + 4) == PENDING) {
+                ByteBuffer payload = map.duplicate();
+                payload.limit(position + length);
+                payload.position(position + HEADER);
+                segment.outstanding.incrementAndGet();
+                this.recovered.add(new Entry<>(segment, position, number, this.codec.decode(payload)));
+            }
+            position += length;
+        }
+        segment.position = position;
+        this.segments.add(segment);
+        seal(segment);
+    }
+
+    private Segment newSegment() {
+        Path path = this.directory.resolve(String.format("%s%06d", PREFIX, this.nextSegment++));
+        try {
+            Segment segment = new Segment(path, this.segmentSize);
+            this.segments.add(segment);
+            return segment;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Stops appending to a segment, and deletes it if nothing in it is pending.
+     */
+    private void seal(Segment segment) {
+        segment.sealed = true;
+        if (segment.outstanding.get() == 0) {
+            segment.delete();
+        }
+    }
+
+    /**
+     * A file of entries. Each entry is its length, its state, its sequence number and then its object.
+     * The length is written last, so an entry cut short by a crash reads as the end of the segment.
+     */
+    private final class Segment {
+        private final Path path;
+        private final FileChannel channel;
+        private final MappedByteBuffer map;
+        private final ByteBuffer writer;
+        private final AtomicInteger outstanding = new AtomicInteger();
+        private final AtomicBoolean deleted = new AtomicBoolean();
+        private int position = 0;
+        private volatile Boolean sealed = false;
+        private volatile Boolean dirty = false;
+
+        private Segment(Path path) throws IOException {
+            this.path = path;
+            this.channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            this.map = this.channel.map(FileChannel.MapMode.READ_WRITE, 0, this.channel.size());
+            this.writer = this.map.duplicate();
+        }
+
+        private Segment(Path path, Integer size) throws IOException {
+            this.path = path;
+            this.channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE);
+            this.map = this.channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            this.writer = this.map.duplicate();
+        }
+
+        private void delete() {
+            if (this.deleted.compareAndSet(false, true)) {
+                segments.remove(this);
+                close();
+                try {
+                    Files.deleteIfExists(this.path);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        }
+
+        private void close() {
+            try {
+                this.channel.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    /**
+     * An object in the journal.
+     * @param <I> The type of object.
+     */
+    public static final class Entry<I> {
+        private final Journal<I>.Segment segment;
+        private final int position;
+        private final long sequence;
+        private final I payload;
+
+        private Entry(Journal<I>.Segment segment, int position, long sequence, I payload) {
+            this.segment = segment;
+            this.position = position;
+            this.sequence = sequence;
+            this.payload = payload;
+        }
+
+        /**
+         * Gets the entry's place in the journal. Entries are numbered in the order they were appended.
+         * @return The sequence number.
+         */
+        public long getSequence() {
+            return this.sequence;
+        }
+
+        /**
+         * Gets the object.
+         * @return The object.
+         */
+        public I getPayload() {
+            return this.payload;
+        }
+    }
+}
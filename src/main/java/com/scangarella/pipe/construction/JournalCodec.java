@@ -0,0 +1,43 @@
+package com.scangarella.pipe.construction;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Turns the objects put into a journaled PipeOpening into bytes, and back again when they're replayed.
+ * @param <I> The type of objects put into the opening.
+ */
+public interface JournalCodec<I> {
+
+    /**
+     * Turns an object into bytes.
+     * @param i The object.
+     * @return The bytes, from the buffer's position to its limit.
+     */
+    ByteBuffer encode(I i);
+
+    /**
+     * Turns bytes written by 'encode' back into an object.
+     * @param bytes The bytes, from the buffer's position to its limit. The buffer is only valid during the call.
+     * @return The object.
+     */
+    I decode(ByteBuffer bytes);
+
+    /**
+     * Journals Strings as UTF-8.
+     * @return The codec.
+     */
+    static JournalCodec<String> strings() {
+        return new JournalCodec<String>() {
+            @Override
+            public ByteBuffer encode(String s) {
+                return ByteBuffer.wrap(s.getBytes(StandardCharsets.UTF_8));
+            }
+
+            @Override
+            public String decode(ByteBuffer bytes) {
+                return StandardCharsets.UTF_8.decode(bytes).toString();
+            }
+        };
+    }
+}
@@ -0,0 +1,222 @@
+package com.scangarella.pipe.construction;
+
+import com.scangarella.pipe.transmission.FileRecord;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Reads the records of a file, or of every file in a directory, by mapping the files into memory.
+ * Records are handed out as FileRecords, which are views of the mapped file, so no bytes are copied and
+ * no Strings are made until a pipe asks for one.
+ *
+ * Files are mapped a window at a time. The records come out of a Spliterator that PipeOpening.putAll
+ * feeds into the pipeline:
+ *
+ *     opening.putAll(new MappedFileSource(path, RecordFraming.newline()).spliterator());
+ *
+ * When the first pipe is load balanced, putAll splits the Spliterator and feeds each part from its own
+ * thread. Directories are split between files; a single file is split in two where its framing finds a
+ * record starting, for as long as its parts are at least a megabyte.
+ */
+public class MappedFileSource {
+
+    private static final long MINIMUM_SPLIT = 1 << 20;
+
+    private final List<Path> files;
+    private final RecordFraming framing;
+    private Charset charset = StandardCharsets.UTF_8;
+    private Integer windowSize = 64 << 20;
+
+    /**
+     * Creates a new MappedFileSource.
+     * @param path A file, or a directory whose files are read in the order of their names.
+     * @param framing How records are laid out in the files.
+     * @throws IOException If the directory can't be listed.
+     */
+    public MappedFileSource(Path path, RecordFraming framing) throws IOException {
+        this.framing = framing;
+        if (Files.isDirectory(path)) {
+            try (Stream<Path> listing = Files.list(path)) {
+                this.files = listing.filter(Files::isRegularFile).sorted().collect(Collectors.toList());
+            }
+        } else {
+            this.files = new ArrayList<>();
+            this.files.add(path);
+        }
+    }
+
+    /**
+     * Sets the charset records are decoded with when they're turned into Strings. It's UTF-8 by default.
+     * @param charset The charset.
+     */
+    public void setCharset(Charset charset) {
+        this.charset = charset;
+    }
+
+    /**
+     * Sets how much of a file is mapped at once. A record must fit in a window; it's 64 megabytes by default.
+     * @param windowSize The number of bytes in a window.
+     */
+    public void setWindowSize(Integer windowSize) {
+        if (windowSize < 1) {
+            throw new IllegalArgumentException("A window needs at least one byte.");
+        }
+        this.windowSize = windowSize;
+    }
+
+    /**
+     * Creates a Spliterator of every record of the files, in order.
+     * @return The Spliterator.
+     * @throws IOException If the size of a file can't be read.
+     */
+    public Spliterator<FileRecord> spliterator() throws IOException {
+        Deque<Region> regions = new ArrayDeque<>();
+        for (Path file : this.files) {
+            long size = Files.size(file);
+            if (size > 0) {
+                regions.add(new Region(file, 0, size));
+            }
+        }
+        return new Reader(regions);
+    }
+
+    /**
+     * A part of a file that starts and ends where records do.
+     */
+    private static class Region {
+        private final Path path;
+        private final long start;
+        private final long end;
+
+        private Region(Path path, long start, long end) {
+            this.path = path;
+            this.start = start;
+            this.end = end;
+        }
+    }
+
+    /**
+     * Reads the records of some regions, one window of a region at a time.
+     * A window always starts at a record, so a record is never split between two windows.
+     */
+    private class Reader implements Spliterator<FileRecord> {
+        private Deque<Region> regions;
+        private Region region = null;
+        private ByteBuffer window = null;
+        private long windowStart = 0;
+
+        private Reader(Deque<Region> regions) {
+            this.regions = regions;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super FileRecord> action) {
+            while (true) {
+                if (this.region == null) {
+                    if (this.regions.isEmpty()) {
+                        return false;
+                    }
+                    this.region = this.regions.poll();
+                    map(this.region.start);
+                }
+                Boolean last = this.windowStart + this.window.limit() == this.region.end;
+                int start = this.window.position();
+                ByteBuffer bytes = framing.next(this.window, last);
+                if (bytes != null) {
+                    action.accept(new FileRecord(this.region.path, this.windowStart + start, bytes, charset));
+                    return true;
+                } else if (last) {
+                    this.region = null;
+                    this.window = null;
+                } else if (start == 0) {
+                    throw new IllegalStateException("The record at " + this.windowStart + " of " + this.region.path
+                            + " doesn't fit in a window of " + windowSize + " bytes.");
+                } else {
+                    map(this.windowStart + start);
+                }
+            }
+        }
+
+        /**
+         * Hands over the first half of the regions that haven't been started yet. A reader with a single
+         * region left splits it in two and hands over the first half. What's handed over always comes before
+         * what's kept, so a reader that has started on a region can't be split.
+         */
+        @Override
+        public Spliterator<FileRecord> trySplit() {
+            int waiting = this.regions.size();
+            if (this.region != null) {
+                return null;
+            } else if (waiting > 1) {
+                Deque<Region> split = new ArrayDeque<>();
+                for (int i = waiting / 2; i > 0; i--) {
+                    split.add(this.regions.poll());
+                }
+                return new Reader(split);
+            } else if (waiting == 1) {
+                Region whole = this.regions.peek();
+                if (whole.end - whole.start < 2 * MINIMUM_SPLIT) {
+                    return null;
+                }
+                long boundary;
+                try (FileChannel file = FileChannel.open(whole.path, StandardOpenOption.READ)) {
+                    boundary = framing.align(file, whole.start + (whole.end - whole.start) / 2, whole.end);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                if (boundary <= whole.start || boundary >= whole.end) {
+                    return null;
+                }
+                this.regions.poll();
+                this.regions.add(new Region(whole.path, boundary, whole.end));
+                Deque<Region> split = new ArrayDeque<>();
+                split.add(new Region(whole.path, whole.start, boundary));
+                return new Reader(split);
+            }
+            return null;
+        }
+
+        /**
+         * Estimates the number of records by the number of bytes left, which is as many as there can be.
+         */
+        @Override
+        public long estimateSize() {
+            long bytes = this.regions.stream().mapToLong(r -> r.end - r.start).sum();
+            if (this.region != null) {
+                bytes += this.region.end - this.windowStart - this.window.position();
+            }
+            return bytes;
+        }
+
+        @Override
+        public int characteristics() {
+            return ORDERED | NONNULL | IMMUTABLE;
+        }
+
+        private void map(long position) {
+            long length = Math.min(windowSize, this.region.end - position);
+            try (FileChannel file = FileChannel.open(this.region.path, StandardOpenOption.READ)) {
+                this.window = file.map(FileChannel.MapMode.READ_ONLY, position, length);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            this.windowStart = position;
+        }
+    }
+}
@@ -2,13 +2,34 @@ package com.scangarella.pipe.construction;
 
 import akka.actor.ActorRef;
 import akka.actor.ActorSystem;
+import akka.actor.AddressFromURIString;
+import akka.actor.Deploy;
+import akka.actor.PoisonPill;
 import akka.actor.Props;
+import akka.remote.RemoteScope;
+import com.scangarella.pipe.concurrency.LoadBalancingPipeWrapper;
+import com.scangarella.pipe.metrics.PipeMetrics;
+import com.scangarella.pipe.stereotype.AsyncPipe;
+import com.scangarella.pipe.stereotype.BlockingPipe;
+import com.scangarella.pipe.stereotype.FileSinkPipe;
+import com.scangarella.pipe.stereotype.FusedPipeFactory;
+import com.scangarella.pipe.stereotype.StreamingMultiPipe;
+import com.scangarella.pipe.stereotype.WindowPipe;
+import com.scangarella.pipe.stereotype.WrapperPipe;
+import com.scangarella.pipe.transmission.BatchPolicy;
 import com.scangarella.pipe.transmission.InitializationMessage;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * This pipe builder class takes an Akka ActorSystem on construction.
@@ -16,8 +37,17 @@ import java.util.Map;
  */
 public final class PipeBuilder {
 
+    private static final AtomicLong pipelines = new AtomicLong();
     private ActorSystem system;
     private Map<String, PipeRef> map = new HashMap<>();
+    private Boolean fusing = false;
+    private Integer creditWindow = 0;
+    private Schematic.Pipe root;
+    private Map<ActorRef, ActorRef> exceptionHandlers = new HashMap<>();
+    private Boolean metricsEnabled = false;
+    private String pipelineName;
+    private List<PipeMetrics> metrics = new ArrayList<>();
+    private Boolean remote = false;
 
     /**
      * Creates a new PipeBuilder object within this Akka ActorSystem.
@@ -45,22 +75,72 @@ public final class PipeBuilder {
      * @return The pipeopening used to access this pipeline.
      */
     public PipeOpening buildEndedPipe(Schematic schematic, ActorRef out) {
-        PipeOpening opening = new PipeOpening(buildAndMapPipes(schematic.getRoot(), out).getActorRef());
+        fusing = schematic.isFusing();
+        creditWindow = schematic.getCreditWindow();
+        root = schematic.getRoot();
+        metricsEnabled = schematic.isMetricsEnabled();
+        pipelineName = "pipeline-" + pipelines.incrementAndGet();
+        ActorRef rootRef = buildAndMapPipes(root, out).getActorRef();
+        Set<ActorRef> actors = new HashSet<>();
+        map.values().forEach(pipeRef -> actors.add(pipeRef.getActorRef()));
+        CompletableFuture<Void> stopped = new CompletableFuture<>();
+        this.system.actorOf(Props.create(PipeReaper.class, actors, new HashMap<>(exceptionHandlers), stopped));
+        List<PipeMetrics> pipelineMetrics = new ArrayList<>(metrics);
+        CompletableFuture<Void> termination = stopped.thenRun(() -> unregister(pipelineMetrics));
+        PipeOpening<Object> opening;
+        if (creditWindow > 0) {
+            Semaphore demand = new Semaphore(creditWindow);
+            ActorRef gate = this.system.actorOf(Props.create(PipeOpening.Gate.class, demand));
+            termination.thenRun(() -> gate.tell(PoisonPill.getInstance(), ActorRef.noSender()));
+            opening = new PipeOpening<>(rootRef, gate, demand, creditWindow);
+        } else {
+            opening = new PipeOpening<>(rootRef);
+        }
+        opening.setLoadBalanced(root.getWrappers().stream()
+                .anyMatch(LoadBalancingPipeWrapper.class::isAssignableFrom));
+        opening.setTermination(termination);
+        opening.setSystem(this.system);
+        opening.setMetrics(pipelineMetrics);
+        opening.setRemote(remote);
+        remote = false;
         map.clear();
+        exceptionHandlers.clear();
+        metrics.clear();
         return opening;
     }
     private PipeRef buildAndMapPipes(Schematic.Pipe pipe, ActorRef out) {
         PipeRef pipeRef = buildPipe(pipe);
         if (pipe.hasExceptionHandler()) {
             PipeRef exceptionHandler = buildPipe(pipe.getExceptionHandler());
-            if(exceptionHandler.isWrapper()) {
-                exceptionHandler.getActorRef().tell(new InitializationMessage(exceptionHandler.getInnerClasses()), null);
+            InitializationMessage handlerInit = new InitializationMessage(exceptionHandler.getInnerClasses());
+            handlerInit.setMetrics(createMetrics(pipe.getExceptionHandler(), "exceptionHandler"));
+            handlerInit.setSettings(exceptionHandler.getSettings());
+            handlerInit.setInnerSettings(exceptionHandler.getInnerSettings());
+            if(exceptionHandler.isWrapper() || metricsEnabled) {
+                exceptionHandler.getActorRef().tell(handlerInit, null);
             }
             pipeRef.setErrorHandler(exceptionHandler.getActorRef());
+            exceptionHandlers.put(pipeRef.getActorRef(), exceptionHandler.getActorRef());
         }
         map.put(pipeRef.getId(), pipeRef);
-        if (pipe.hasChildren()) {
-            for (Schematic.Pipe child : pipe.getChildren()) {
+        List<Class> fused = new ArrayList<>();
+        List<String> fusedIds = new ArrayList<>();
+        Schematic.Pipe last = pipe;
+        if (fusing && FusedPipeFactory.isSupported() && isFusable(pipe)) {
+            while (last.getChildren().size() == 1 && last.getBatchPolicy(last.getChildren().get(0)) == null) {
+                Schematic.Pipe next = last.getChildren().get(0);
+                if (!isFusable(next) || next.getNumParents() != 1 || map.containsKey(next.getUniqueID())
+                        || !Objects.equals(next.getExecutionProfile(), pipe.getExecutionProfile())) {
+                    break;
+                }
+                fused.add(next.getClazz());
+                fusedIds.add(next.getUniqueID());
+                map.put(next.getUniqueID(), pipeRef);
+                last = next;
+            }
+        }
+        if (last.hasChildren()) {
+            for (Schematic.Pipe child : last.getChildren()) {
                 PipeRef childRef;
                 if (!map.containsKey(child.getUniqueID())) {
                     childRef = buildAndMapPipes(child, out);
@@ -68,28 +148,108 @@ public final class PipeBuilder {
                     childRef = map.get(child.getUniqueID());
                 }
                 pipeRef.addChild(childRef);
+                if (creditWindow > 0) {
+                    pipeRef.setCredits(childRef.getActorRef(), creditWindow);
+                }
+                BatchPolicy batchPolicy = last.getBatchPolicy(child);
+                if (batchPolicy != null) {
+                    pipeRef.setBatchPolicy(childRef.getActorRef(), batchPolicy);
+                }
             }
         } else {
             if (out != null) {
                 pipeRef.addChild(out);
             }
         }
+        InitializationMessage init;
         if(pipeRef.isWrapper()) {
-            pipeRef.getActorRef().tell(new InitializationMessage(
+            init = new InitializationMessage(
                     pipeRef.getInnerClasses(),
                     pipeRef.getChildren(),
-                    pipe.getNumParents(),
-                    pipeRef.getErrorHandler()),
-                    null);
+                    countUpstream(pipe),
+                    pipeRef.getErrorHandler());
         } else {
-            pipeRef.getActorRef().tell(new InitializationMessage(
+            init = new InitializationMessage(
                     pipeRef.getChildren(),
-                    pipe.getNumParents(),
-                    pipeRef.getErrorHandler()),
-                    null);
+                    countUpstream(pipe),
+                    pipeRef.getErrorHandler());
+        }
+        init.setBatching(pipeRef.getBatching());
+        init.setFused(fused);
+        init.setFusedIds(fusedIds);
+        init.setCreditWindow(creditWindow);
+        init.setCredits(pipeRef.getCredits());
+        init.setTerminal(!last.hasChildren());
+        init.setMetrics(createMetrics(pipe, "pipe"));
+        init.setSettings(pipeRef.getSettings());
+        init.setInnerSettings(pipeRef.getInnerSettings());
+        init.setPipeId(pipe.getUniqueID());
+        init.setRetryPolicy(pipe.getRetryPolicy());
+        if (pipe.hasExceptionHandler()) {
+            init.setErrorPolicy(pipe.getExceptionHandler().getErrorPolicy());
         }
+        pipeRef.getActorRef().tell(init, null);
         return pipeRef;
     }
+    /**
+     * Unregisters the metrics of a pipeline that has stopped. Every one is unregistered even if some fail,
+     * and the first failure is thrown with the others suppressed.
+     */
+    private static void unregister(List<PipeMetrics> pipelineMetrics) {
+        IllegalStateException failure = null;
+        for (PipeMetrics pipeMetrics : pipelineMetrics) {
+            try {
+                pipeMetrics.unregister();
+            } catch (IllegalStateException e) {
+                if (failure == null) {
+                    failure = e;
+                } else {
+                    failure.addSuppressed(e);
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+    /**
+     * Creates and registers the metrics of a pipe or exception handler, if metrics are on.
+     */
+    private PipeMetrics createMetrics(Schematic.AbstractPipe pipe, String kind) {
+        if (!metricsEnabled) {
+            return null;
+        }
+        PipeMetrics pipeMetrics = new PipeMetrics(pipe.getUniqueID(), pipe.getClazz(), kind);
+        pipeMetrics.register(pipelineName);
+        metrics.add(pipeMetrics);
+        return pipeMetrics;
+    }
+    /**
+     * The root's pipe opening counts as one of its upstream pipes, so that closing the opening stops the root.
+     */
+    private Integer countUpstream(Schematic.Pipe pipe) {
+        return pipe == root ? pipe.getNumParents() + 1 : pipe.getNumParents();
+    }
+    /**
+     * A pipe can be fused into the actor of the pipe before it when neither has a wrapper, an exception handler
+     * or a retry policy. A failure in a fused pipe is reported straight away, since retrying it would mean
+     * ingesting the message again from the first of them.
+     * Blocking and asynchronous pipes ingest off of their actor, window pipes send on their own timers
+     * and when they stop, file sinks sync on theirs, and streaming pipes send between messages, so they're
+     * never fused. Neither are pipes placed on other nodes.
+     */
+    private Boolean isFusable(Schematic.Pipe pipe) {
+        return !pipe.hasWrapper() && !pipe.hasExceptionHandler() && pipe.getNode() == null
+                && pipe.getRetryPolicy() == null
+                && !BlockingPipe.class.isAssignableFrom(pipe.getClazz())
+                && !AsyncPipe.class.isAssignableFrom(pipe.getClazz())
+                && !WindowPipe.class.isAssignableFrom(pipe.getClazz())
+                && !StreamingMultiPipe.class.isAssignableFrom(pipe.getClazz())
+                && !FileSinkPipe.class.isAssignableFrom(pipe.getClazz());
+    }
+    private String dispatcher(Schematic.AbstractPipe pipe) {
+        return PipeSystem.RegisterDispatcher(this.system, pipe.getExecutionProfile());
+    }
     private PipeRef buildPipe(Schematic.AbstractPipe pipe) {
         PipeRef ref;
         ActorRef actorRef;
@@ -98,21 +258,65 @@ public final class PipeBuilder {
             Class outermost = classes.get(classes.size() - 1);
             classes.remove(classes.size() - 1);
             classes.add(0, pipe.getClazz());
-            actorRef = this.system.actorOf(Props.create(outermost));
+            List<Map<String, Object>> settings = pipe.getWrapperSettings();
+            if (pipe.getNode() != null
+                    || settings.stream().anyMatch(s -> s.containsKey(LoadBalancingPipeWrapper.NODES))) {
+                remote = true;
+            }
+            settings.add(0, new HashMap<>());
+            Schematic.AbstractPipe wrapper = pipe;
+            for (Map<String, Object> wrapperSettings : settings) {
+                if (wrapper.getExecutionProfile() != null) {
+                    wrapperSettings.put(WrapperPipe.DISPATCHER, dispatcher(wrapper));
+                }
+                wrapper = wrapper.getWrapper();
+            }
+            Map<String, Object> outermostSettings = settings.remove(settings.size() - 1);
+            Props props = Props.create(outermost);
+            if (pipe.getNode() != null) {
+                settings.forEach(wrapperSettings -> wrapperSettings.remove(WrapperPipe.DISPATCHER));
+                outermostSettings.remove(WrapperPipe.DISPATCHER);
+            }
+            if (outermostSettings.containsKey(WrapperPipe.DISPATCHER)) {
+                props = props.withDispatcher((String) outermostSettings.get(WrapperPipe.DISPATCHER));
+            }
+            actorRef = this.system.actorOf(deploy(props, pipe));
             ref = new PipeRef(pipe.getUniqueID(), actorRef);
             ref.setInnerClasses(classes);
+            ref.setSettings(outermostSettings);
+            ref.setInnerSettings(settings);
         } else {
-            actorRef = this.system.actorOf(Props.create(pipe.getClazz()));
+            if (pipe.getNode() != null) {
+                remote = true;
+            }
+            Props props = Props.create(pipe.getClazz());
+            if (pipe.getExecutionProfile() != null && pipe.getNode() == null) {
+                props = props.withDispatcher(dispatcher(pipe));
+            }
+            actorRef = this.system.actorOf(deploy(props, pipe));
             ref = new PipeRef(pipe.getUniqueID(), actorRef);
         }
         return ref;
     }
+    /**
+     * Pipes placed on another node are created there, by the node's remote daemon.
+     */
+    private Props deploy(Props props, Schematic.AbstractPipe pipe) {
+        if (pipe.getNode() == null) {
+            return props;
+        }
+        return props.withDeploy(new Deploy(new RemoteScope(AddressFromURIString.parse(pipe.getNode()))));
+    }
     private class PipeRef {
         private ActorRef actorRef;
         private String id;
         private ActorRef errorRef = null;
         private List<ActorRef> childrenRefs = new ArrayList<>();
         private List<Class> innerClasses = null;
+        private Map<ActorRef, BatchPolicy> batching = new HashMap<>();
+        private Map<ActorRef, Integer> credits = new HashMap<>();
+        private Map<String, Object> settings = Collections.emptyMap();
+        private List<Map<String, Object>> innerSettings = Collections.emptyList();
         public PipeRef(String id, ActorRef ref) {
             this.actorRef = ref;
             this.id = id;
@@ -153,5 +357,29 @@ public final class PipeBuilder {
         public List<Class> getInnerClasses() {
             return this.innerClasses;
         }
+        public void setBatchPolicy(ActorRef child, BatchPolicy policy) {
+            this.batching.put(child, policy);
+        }
+        public Map<ActorRef, BatchPolicy> getBatching() {
+            return this.batching;
+        }
+        public void setCredits(ActorRef child, Integer credits) {
+            this.credits.put(child, credits);
+        }
+        public Map<ActorRef, Integer> getCredits() {
+            return this.credits;
+        }
+        public void setSettings(Map<String, Object> settings) {
+            this.settings = settings;
+        }
+        public Map<String, Object> getSettings() {
+            return this.settings;
+        }
+        public void setInnerSettings(List<Map<String, Object>> innerSettings) {
+            this.innerSettings = innerSettings;
+        }
+        public List<Map<String, Object>> getInnerSettings() {
+            return this.innerSettings;
+        }
     }
 }
@@ -0,0 +1,38 @@
+package com.scangarella.pipe.construction;
+
+import akka.actor.ActorSystem;
+
+import java.io.IOException;
+
+/**
+ * Runs a node that pipes can be placed on, in a JVM of its own:
+ *
+ *     java -cp pipes-and-their-dependencies com.scangarella.pipe.construction.PipeNode pipeline 10.0.0.2 2552
+ *
+ * Once it's listening, the node prints its address on a line of its own. It runs until its standard input
+ * is closed, so a node started by another process stops when that process does.
+ */
+public final class PipeNode {
+
+    private PipeNode() { }
+
+    /**
+     * Starts a node.
+     * @param args The name of the actor system, and optionally the host name and port to listen on.
+     *             The host is 127.0.0.1 and the port is any free one by default.
+     * @throws IOException If standard input can't be read.
+     */
+    public static void main(String[] args) throws IOException {
+        String name = args.length > 0 ? args[0] : "pipeline";
+        String host = args.length > 1 ? args[1] : "127.0.0.1";
+        Integer port = args.length > 2 ? Integer.valueOf(args[2]) : 0;
+        ActorSystem system = PipeSystem.CreateNode(name, host, port);
+        System.out.println(PipeSystem.GetAddress(system));
+        System.out.flush();
+        while (System.in.read() != -1) {
+            continue;
+        }
+        system.shutdown();
+        system.awaitTermination();
+    }
+}
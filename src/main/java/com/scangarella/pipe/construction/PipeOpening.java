@@ -1,14 +1,64 @@
 package com.scangarella.pipe.construction;
 
 import akka.actor.ActorRef;
+import akka.actor.ActorSystem;
+import akka.actor.Cancellable;
+import akka.actor.UntypedActor;
+import com.scangarella.pipe.metrics.MetricsSnapshot;
+import com.scangarella.pipe.metrics.PipeMetrics;
+import com.scangarella.pipe.transmission.BatchMessage;
+import com.scangarella.pipe.transmission.CorrelatedMessage;
+import com.scangarella.pipe.transmission.Correlation;
+import com.scangarella.pipe.transmission.DemandMessage;
+import com.scangarella.pipe.transmission.StopMessage;
+import scala.concurrent.duration.Duration;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.stream.Stream;
 
 /**
  * A pipe opening into which objects can be put.
+ * When the pipeline was built with backpressure, the opening only lets in as many objects
+ * as the first pipe has granted credits for.
+ * Large amounts of objects are best put in with 'putAll', which sends them in chunks.
+ * Objects put in with 'ask' or 'askAll' are followed through the pipeline, and the outputs of the
+ * last pipes complete a future instead of being sent to the pipeline's end.
+ * With a journal, everything put in is appended to the journal first, and is acknowledged once no part
+ * of it is left in the pipeline.
  * @param <I> The type of objects to be put into the pipe.
  */
 public final class PipeOpening<I> {
 
+    private static final Executor FEEDERS = task -> {
+        Thread thread = new Thread(task, "pipe-opening-feeder");
+        thread.setDaemon(true);
+        thread.start();
+    };
+
     private ActorRef pipeline;
+    private ActorRef gate;
+    private Semaphore demand;
+    private Integer creditWindow;
+    private Integer chunkSize = 256;
+    private Boolean loadBalanced = false;
+    private Boolean remote = false;
+    private CompletableFuture<Void> termination = new CompletableFuture<>();
+    private volatile Boolean closed = false;
+    private ActorSystem system = null;
+    private long askTimeoutNanos = TimeUnit.SECONDS.toNanos(5);
+    private List<PipeMetrics> metrics = Collections.emptyList();
+    private Journal<I> journal = null;
 
     /**
      * Creates a new PipeOpening for the specified pipeline..
@@ -16,13 +66,390 @@ public final class PipeOpening<I> {
      */
     public PipeOpening(ActorRef pipeline){
         this.pipeline = pipeline;
+        this.gate = ActorRef.noSender();
+        this.demand = null;
+        this.creditWindow = 0;
+    }
+
+    /**
+     * Creates a new PipeOpening for the specified pipeline that respects the pipeline's demand.
+     * @param pipeline The pipeline that the opening interacts with.
+     * @param gate The actor that receives the pipeline's credits.
+     * @param demand The credits granted by the pipeline, released by the gate.
+     * @param creditWindow The number of credits the pipeline grants the opening.
+     */
+    public PipeOpening(ActorRef pipeline, ActorRef gate, Semaphore demand, Integer creditWindow) {
+        this.pipeline = pipeline;
+        this.gate = gate;
+        this.demand = demand;
+        this.creditWindow = creditWindow;
+    }
+
+    /**
+     * Sets the number of objects 'putAll' sends to the pipeline at once.
+     * With backpressure, chunks are never larger than the credit window.
+     * @param chunkSize The number of objects per chunk.
+     */
+    public void setChunkSize(Integer chunkSize) {
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("A chunk needs at least one object.");
+        }
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Tells 'putAll' that the first pipe is load balanced, so that it can be fed from several threads.
+     * @param loadBalanced True if the first pipe is wrapped by a load balancer, false otherwise.
+     */
+    void setLoadBalanced(Boolean loadBalanced) {
+        this.loadBalanced = loadBalanced;
+    }
+
+    /**
+     * Tells the opening whether any pipe of the pipeline runs on another node. Requests and journaled
+     * messages are followed with callbacks on this node, so they can't be sent to such a pipeline.
+     * @param remote True if the pipeline spans several nodes, false otherwise.
+     */
+    void setRemote(Boolean remote) {
+        this.remote = remote;
+    }
+
+    /**
+     * Sets the journal that objects are appended to before they're put into the pipeline, and puts the
+     * objects it recovered from an earlier run into the pipeline. Objects put in with 'ask' or 'askAll'
+     * aren't journaled.
+     * @param journal The journal.
+     * @throws IllegalStateException If the pipeline spans several nodes.
+     */
+    public void setJournal(Journal<I> journal) {
+        if (remote) {
+            throw new IllegalStateException("A pipeline that spans several nodes can't be journaled.");
+        }
+        this.journal = journal;
+        for (Journal.Entry<I> entry : journal.getRecovered()) {
+            if (demand != null) {
+                demand.acquireUninterruptibly();
+            }
+            pipeline.tell(track(entry), gate);
+        }
     }
 
     /**
      * Puts an object of type I into the pipeline.
+     * If the pipeline has backpressure, this blocks until the pipeline has room for the object.
      * @param i the object to be put into the pipeline.
+     * @throws IllegalStateException If the opening has been closed.
      */
     public void put(I i) {
-        pipeline.tell(i, pipeline);
+        checkOpen();
+        if (demand != null) {
+            demand.acquireUninterruptibly();
+        }
+        pipeline.tell(journal(i), gate);
+    }
+
+    /**
+     * Puts an object of type I into the pipeline, waiting up to the timeout for the pipeline to have room.
+     * @param i the object to be put into the pipeline.
+     * @param timeout How long to wait before giving up.
+     * @param unit The unit of the timeout.
+     * @return True if the object was put into the pipeline, false if the timeout elapsed first.
+     * @throws InterruptedException If the thread was interrupted while waiting.
+     * @throws IllegalStateException If the opening has been closed.
+     */
+    public Boolean offer(I i, long timeout, TimeUnit unit) throws InterruptedException {
+        checkOpen();
+        if (demand != null && !demand.tryAcquire(timeout, unit)) {
+            return false;
+        }
+        pipeline.tell(journal(i), gate);
+        return true;
+    }
+
+    /**
+     * Puts an object of type I into the pipeline only if the pipeline has room for it right now.
+     * @param i the object to be put into the pipeline.
+     * @return True if the object was put into the pipeline, false otherwise.
+     * @throws IllegalStateException If the opening has been closed.
+     */
+    public Boolean tryPut(I i) {
+        checkOpen();
+        if (demand != null && !demand.tryAcquire()) {
+            return false;
+        }
+        pipeline.tell(journal(i), gate);
+        return true;
+    }
+
+    /**
+     * Sets the actor system whose scheduler times out requests.
+     * @param system The pipeline's actor system.
+     */
+    void setSystem(ActorSystem system) {
+        this.system = system;
+    }
+
+    /**
+     * Sets the metrics of the pipeline's pipes and exception handlers.
+     * @param metrics The metrics.
+     */
+    void setMetrics(List<PipeMetrics> metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Takes a snapshot of the metrics of every pipe and exception handler in the pipeline.
+     * @return The snapshots, or an empty list if the schematic didn't have metrics turned on.
+     */
+    public List<MetricsSnapshot> getMetrics() {
+        List<MetricsSnapshot> snapshots = new ArrayList<>();
+        this.metrics.forEach(pipeMetrics -> snapshots.add(pipeMetrics.snapshot()));
+        return snapshots;
+    }
+
+    /**
+     * Sets how long 'ask' and 'askAll' wait for a request to end when no timeout is given.
+     * @param timeout How long to wait.
+     * @param unit The unit of the timeout.
+     */
+    public void setAskTimeout(long timeout, TimeUnit unit) {
+        this.askTimeoutNanos = unit.toNanos(timeout);
+    }
+
+    /**
+     * Puts an object into the pipeline and follows it through.
+     * @param i the object to be put into the pipeline.
+     * @param <O> The output type of the last pipes.
+     * @return A future of the first output of a last pipe, or of null if no output reached the end.
+     * @throws IllegalStateException If the pipeline spans several nodes, or the opening has been closed.
+     */
+    public <O> CompletableFuture<O> ask(I i) {
+        return ask(i, askTimeoutNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Puts an object into the pipeline and follows it through.
+     * @param i the object to be put into the pipeline.
+     * @param timeout How long to wait for an output before failing with a TimeoutException.
+     * @param unit The unit of the timeout.
+     * @param <O> The output type of the last pipes.
+     * @return A future of the first output of a last pipe, or of null if no output reached the end.
+     * @throws IllegalStateException If the pipeline spans several nodes, or the opening has been closed.
+     */
+    @SuppressWarnings("unchecked")
+    public <O> CompletableFuture<O> ask(I i, long timeout, TimeUnit unit) {
+        return (CompletableFuture<O>) correlate(i, false, timeout, unit);
+    }
+
+    /**
+     * Puts an object into the pipeline and follows it through every branch and every MultiPipe output.
+     * @param i the object to be put into the pipeline.
+     * @param <O> The output type of the last pipes.
+     * @return A future of every output of the last pipes, once no part of the request is left in the pipeline.
+     * @throws IllegalStateException If the pipeline spans several nodes, or the opening has been closed.
+     */
+    public <O> CompletableFuture<List<O>> askAll(I i) {
+        return askAll(i, askTimeoutNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Puts an object into the pipeline and follows it through every branch and every MultiPipe output.
+     * @param i the object to be put into the pipeline.
+     * @param timeout How long to wait for the request to end before failing with a TimeoutException.
+     * @param unit The unit of the timeout.
+     * @param <O> The output type of the last pipes.
+     * @return A future of every output of the last pipes, once no part of the request is left in the pipeline.
+     * @throws IllegalStateException If the pipeline spans several nodes, or the opening has been closed.
+     */
+    @SuppressWarnings("unchecked")
+    public <O> CompletableFuture<List<O>> askAll(I i, long timeout, TimeUnit unit) {
+        return (CompletableFuture<List<O>>) correlate(i, true, timeout, unit);
+    }
+
+    private CompletableFuture<?> correlate(I i, Boolean collectAll, long timeout, TimeUnit unit) {
+        if (remote) {
+            throw new IllegalStateException("A pipeline that spans several nodes can't be asked.");
+        }
+        checkOpen();
+        CompletableFuture<Object> future = new CompletableFuture<>();
+        if (system != null) {
+            Cancellable timer = system.scheduler().scheduleOnce(Duration.create(timeout, unit),
+                    () -> future.completeExceptionally(new TimeoutException()), system.dispatcher());
+            future.whenComplete((result, e) -> timer.cancel());
+        }
+        if (demand != null) {
+            demand.acquireUninterruptibly();
+        }
+        pipeline.tell(new CorrelatedMessage(i, new Correlation(future, collectAll)), gate);
+        return future;
+    }
+
+    /**
+     * Sets the future that completes once every actor of the pipeline has stopped.
+     * @param termination The pipeline's termination.
+     */
+    void setTermination(CompletableFuture<Void> termination) {
+        this.termination = termination;
+    }
+
+    /**
+     * Closes the opening. Every pipe stops once it has worked through what its upstream pipes sent it,
+     * and exception handlers stop once their pipes have. Nothing may be put into the opening afterwards.
+     * @return A stage that completes once the whole pipeline has drained and stopped.
+     */
+    public synchronized CompletionStage<Void> close() {
+        if (!closed) {
+            closed = true;
+            pipeline.tell(new StopMessage(), gate);
+        }
+        return termination;
+    }
+
+    /**
+     * Puts every object of an Iterable into the pipeline, in order and in chunks.
+     * If the pipeline has backpressure, this blocks until the pipeline has room for each chunk.
+     * @param items The objects to be put into the pipeline.
+     * @return How many objects were put in, and how fast.
+     * @throws IllegalStateException If the opening has been closed.
+     */
+    public IngestReport putAll(Iterable<? extends I> items) {
+        checkOpen();
+        long start = System.nanoTime();
+        return new IngestReport(feed(items.iterator()), System.nanoTime() - start);
+    }
+
+    /**
+     * Puts every object of a Stream into the pipeline in chunks.
+     * Parallel streams are fed from several threads when the first pipe is load balanced,
+     * sequential streams are put in order.
+     * @param items The objects to be put into the pipeline.
+     * @return How many objects were put in, and how fast.
+     * @throws IllegalStateException If the opening has been closed.
+     */
+    public IngestReport putAll(Stream<? extends I> items) {
+        checkOpen();
+        if (items.isParallel()) {
+            return putAll(items.spliterator());
+        }
+        long start = System.nanoTime();
+        return new IngestReport(feed(items.iterator()), System.nanoTime() - start);
+    }
+
+    /**
+     * Puts every object of a Spliterator into the pipeline in chunks.
+     * When the first pipe is load balanced, the Spliterator is split up to once per core
+     * and each part is fed from its own thread, the caller's or one started for it, rather than the common
+     * pool's, since feeding blocks on credits. Otherwise the objects are put in order.
+     * @param items The objects to be put into the pipeline.
+     * @return How many objects were put in, and how fast.
+     * @throws IllegalStateException If the opening has been closed.
+     */
+    public IngestReport putAll(Spliterator<? extends I> items) {
+        checkOpen();
+        long start = System.nanoTime();
+        long accepted;
+        if (loadBalanced) {
+            List<Spliterator<? extends I>> parts = split(items, Runtime.getRuntime().availableProcessors());
+            List<CompletableFuture<Long>> fed = new ArrayList<>(parts.size() - 1);
+            for (Spliterator<? extends I> part : parts.subList(1, parts.size())) {
+                fed.add(CompletableFuture.supplyAsync(() -> feed(Spliterators.iterator(part)), FEEDERS));
+            }
+            accepted = feed(Spliterators.iterator(parts.get(0)));
+            for (CompletableFuture<Long> part : fed) {
+                accepted += part.join();
+            }
+        } else {
+            accepted = feed(Spliterators.iterator(items));
+        }
+        return new IngestReport(accepted, System.nanoTime() - start);
+    }
+
+    private void checkOpen() {
+        if (closed) {
+            throw new IllegalStateException("Nothing can be put into an opening that has been closed.");
+        }
+    }
+
+    private List<Spliterator<? extends I>> split(Spliterator<? extends I> items, int parts) {
+        List<Spliterator<? extends I>> split = new ArrayList<>();
+        split.add(items);
+        Boolean splitting = true;
+        while (splitting && split.size() < parts) {
+            splitting = false;
+            for (int i = split.size() - 1; i >= 0 && split.size() < parts; i--) {
+                Spliterator<? extends I> part = split.get(i).trySplit();
+                if (part != null) {
+                    split.add(part);
+                    splitting = true;
+                }
+            }
+        }
+        return split;
+    }
+
+    private long feed(Iterator<? extends I> items) {
+        int size = creditWindow > 0 ? Math.min(chunkSize, creditWindow) : chunkSize;
+        long accepted = 0;
+        List<Object> chunk = new ArrayList<>(size);
+        while (items.hasNext()) {
+            I i = items.next();
+            if (i != null) {
+                chunk.add(journal(i));
+                if (chunk.size() == size) {
+                    accepted += putChunk(chunk);
+                    chunk = new ArrayList<>(size);
+                }
+            }
+        }
+        if (!chunk.isEmpty()) {
+            accepted += putChunk(chunk);
+        }
+        return accepted;
+    }
+
+    private int putChunk(List<Object> chunk) {
+        if (demand != null) {
+            demand.acquireUninterruptibly(chunk.size());
+        }
+        pipeline.tell(new BatchMessage(chunk), gate);
+        return chunk.size();
+    }
+
+    /**
+     * Appends an object to the journal, if there is one, and wraps it so that its entry is acknowledged
+     * once every branch of it has ended.
+     */
+    private Object journal(I i) {
+        return journal == null ? i : track(journal.append(i));
+    }
+
+    private Object track(Journal.Entry<I> entry) {
+        Journal<I> acknowledger = journal;
+        return new CorrelatedMessage(entry.getPayload(), new Correlation(() -> acknowledger.ack(entry)));
+    }
+
+    /**
+     * Receives the credits granted by the first pipe and hands them to the opening.
+     */
+    public static final class Gate extends UntypedActor {
+
+        private Semaphore demand;
+
+        /**
+         * Creates a new Gate.
+         * @param demand The semaphore to release granted credits to.
+         */
+        public Gate(Semaphore demand) {
+            this.demand = demand;
+        }
+
+        @Override
+        public void onReceive(Object message) {
+            if (message instanceof DemandMessage) {
+                demand.release(((DemandMessage) message).getCredits());
+            } else {
+                unhandled(message);
+            }
+        }
     }
 }
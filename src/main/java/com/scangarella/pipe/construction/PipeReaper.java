@@ -0,0 +1,62 @@
+package com.scangarella.pipe.construction;
+
+import akka.actor.ActorRef;
+import akka.actor.Terminated;
+import akka.actor.UntypedActor;
+import com.scangarella.pipe.transmission.StopMessage;
+
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Watches every actor of a pipeline while it shuts down.
+ * Exception handlers are stopped once the pipe reporting to them has stopped,
+ * and the pipeline's termination completes once every actor has stopped.
+ */
+public final class PipeReaper extends UntypedActor {
+
+    private Set<ActorRef> pipes;
+    private Map<ActorRef, ActorRef> exceptionHandlers;
+    private Set<ActorRef> alive = new HashSet<>();
+    private CompletableFuture<Void> termination;
+
+    /**
+     * Creates a new PipeReaper.
+     * @param pipes The outermost actor of every pipe in the pipeline.
+     * @param exceptionHandlers The outermost actor of each pipe's exception handler, keyed by the pipe.
+     * @param termination The future to complete once every actor has stopped.
+     */
+    public PipeReaper(Set<ActorRef> pipes, Map<ActorRef, ActorRef> exceptionHandlers,
+                      CompletableFuture<Void> termination) {
+        this.pipes = pipes;
+        this.exceptionHandlers = exceptionHandlers;
+        this.termination = termination;
+    }
+
+    @Override
+    public void preStart() {
+        this.alive.addAll(this.pipes);
+        this.alive.addAll(this.exceptionHandlers.values());
+        this.alive.forEach(getContext()::watch);
+    }
+
+    @Override
+    public void onReceive(Object message) {
+        if (message instanceof Terminated) {
+            ActorRef stopped = ((Terminated) message).getActor();
+            this.alive.remove(stopped);
+            ActorRef exceptionHandler = this.exceptionHandlers.remove(stopped);
+            if (exceptionHandler != null) {
+                exceptionHandler.tell(new StopMessage(), this.getSelf());
+            }
+            if (this.alive.isEmpty()) {
+                this.termination.complete(null);
+                getContext().stop(this.getSelf());
+            }
+        } else {
+            unhandled(message);
+        }
+    }
+}
@@ -1,6 +1,18 @@
 package com.scangarella.pipe.construction;
 
 import akka.actor.ActorSystem;
+import akka.actor.Address;
+import akka.actor.ExtendedActorSystem;
+import akka.dispatch.DispatcherConfigurator;
+import akka.dispatch.Dispatchers;
+import akka.dispatch.MessageDispatcherConfigurator;
+import akka.dispatch.PinnedDispatcherConfigurator;
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigFactory;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
 
 /**
  * A pipe system. This holds a reference to a default actor system called 'pipeline'.
@@ -20,6 +32,34 @@ public final class PipeSystem {
         return system;
     }
 
+    /**
+     * Creates an actor system that other nodes can reach, so that a pipeline built in it can place pipes
+     * on other nodes, or so that pipes can be placed on it. Every node needs the pipes' classes on its
+     * classpath. The nodes of a pipeline should share a name.
+     * @param name The name of the actor system, such as 'pipeline'.
+     * @param host The host name or address that other nodes reach this one by.
+     * @param port The port to listen on, or zero for any free port.
+     * @return The actor system.
+     */
+    public static ActorSystem CreateNode(String name, String host, Integer port) {
+        Map<String, Object> settings = new HashMap<>();
+        settings.put("akka.actor.provider", "akka.remote.RemoteActorRefProvider");
+        settings.put("akka.remote.enabled-transports", Collections.singletonList("akka.remote.netty.tcp"));
+        settings.put("akka.remote.netty.tcp.hostname", host);
+        settings.put("akka.remote.netty.tcp.port", port);
+        return ActorSystem.create(name, ConfigFactory.parseMap(settings).withFallback(ConfigFactory.load()));
+    }
+
+    /**
+     * Gets the address that other nodes reach an actor system by, to be given to Schematic's 'setNode'.
+     * @param system The actor system.
+     * @return The address, such as 'akka.tcp://pipeline@10.0.0.2:2552'.
+     */
+    public static String GetAddress(ActorSystem system) {
+        Address address = ((ExtendedActorSystem) system).provider().getDefaultAddress();
+        return address.toString();
+    }
+
     /**
      * Closes the default actor system.
      */
@@ -27,4 +67,48 @@ public final class PipeSystem {
         system.shutdown();
         system = null;
     }
+
+    /**
+     * Creates the dispatcher for an execution profile in an actor system, unless it already exists.
+     * The dispatcher's settings fall back to those of the system's default dispatcher.
+     * @param system The actor system.
+     * @param profile The execution profile.
+     * @return The id of the dispatcher, to be used with Props.withDispatcher.
+     */
+    public static String RegisterDispatcher(ActorSystem system, ExecutionProfile profile) {
+        String id = profile.getDispatcherId();
+        Dispatchers dispatchers = system.dispatchers();
+        if (!dispatchers.hasDispatcher(id)) {
+            Map<String, Object> settings = new HashMap<>();
+            settings.put("id", id);
+            settings.put("throughput", profile.getThroughput());
+            switch (profile.getKind()) {
+                case CPU_BOUND:
+                    settings.put("type", "Dispatcher");
+                    settings.put("executor", "fork-join-executor");
+                    settings.put("fork-join-executor.parallelism-min", profile.getThreads());
+                    settings.put("fork-join-executor.parallelism-max", profile.getThreads());
+                    break;
+                case BLOCKING:
+                    settings.put("type", "Dispatcher");
+                    settings.put("executor", "thread-pool-executor");
+                    settings.put("thread-pool-executor.core-pool-size-min", profile.getThreads());
+                    settings.put("thread-pool-executor.core-pool-size-max", profile.getThreads());
+                    settings.put("thread-pool-executor.max-pool-size-min", profile.getThreads());
+                    settings.put("thread-pool-executor.max-pool-size-max", profile.getThreads());
+                    break;
+                case PINNED:
+                    settings.put("type", "PinnedDispatcher");
+                    settings.put("executor", "thread-pool-executor");
+                    break;
+            }
+            Config config = ConfigFactory.parseMap(settings)
+                    .withFallback(system.settings().config().getConfig("akka.actor.default-dispatcher"));
+            MessageDispatcherConfigurator configurator = profile.getKind() == ExecutionProfile.Kind.PINNED
+                    ? new PinnedDispatcherConfigurator(config, dispatchers.prerequisites())
+                    : new DispatcherConfigurator(config, dispatchers.prerequisites());
+            dispatchers.registerConfigurator(id, configurator);
+        }
+        return id;
+    }
 }
@@ -0,0 +1,63 @@
+package com.scangarella.pipe.construction;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * How records are laid out in a file read by a MappedFileSource.
+ * Framings find the records in a window of the mapped file, and find where records start so that a file
+ * can be split up between several readers.
+ */
+public interface RecordFraming {
+
+    /**
+     * Reads the record at the window's position and moves the position past it.
+     * @param window A window of the file, from the start of a record to the window's limit.
+     * @param last True if the window ends where the records being read end.
+     * @return A view of the window from the record's first byte to its last, not counting its framing,
+     *         or null if the window doesn't hold all of the record.
+     */
+    ByteBuffer next(ByteBuffer window, Boolean last);
+
+    /**
+     * Finds the first record that starts at or after a position.
+     * @param file The file.
+     * @param position The position to look from.
+     * @param end The position to stop looking at.
+     * @return The position of the record, 'end' if there isn't one, or -1 if records can't be found
+     *         without reading the file from the start.
+     * @throws IOException If the file can't be read.
+     */
+    long align(FileChannel file, long position, long end) throws IOException;
+
+    /**
+     * Records that end with a line feed, like the lines of a text file. A carriage return before the
+     * line feed isn't part of the record, and the last line needn't end with a line feed.
+     * @return The framing.
+     */
+    static RecordFraming newline() {
+        return new RecordFramings.Newline();
+    }
+
+    /**
+     * Records that start with their length, as a four byte big endian integer.
+     * Files of such records can't be split, so each is read by a single reader.
+     * @return The framing.
+     */
+    static RecordFraming lengthPrefixed() {
+        return new RecordFramings.LengthPrefixed();
+    }
+
+    /**
+     * Records that all have the same length.
+     * @param width The number of bytes in a record.
+     * @return The framing.
+     */
+    static RecordFraming fixedWidth(int width) {
+        if (width < 1) {
+            throw new IllegalArgumentException("A record needs at least one byte.");
+        }
+        return new RecordFramings.FixedWidth(width);
+    }
+}
@@ -0,0 +1,136 @@
+package com.scangarella.pipe.construction;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * The framings made by RecordFraming's factory methods.
+ */
+final class RecordFramings {
+
+    private RecordFramings() { }
+
+    /**
+     * Frames records by line feeds.
+     */
+    static class Newline implements RecordFraming {
+
+        private static final int SCAN = 8192;
+
+        @Override
+        public ByteBuffer next(ByteBuffer window, Boolean last) {
+            int start = window.position();
+            int limit = window.limit();
+            int end = start;
+            while (end < limit && window.get(end) != '\n') {
+                end++;
+            }
+            if (end == limit && (!last || start == limit)) {
+                return null;
+            }
+            window.position(end == limit ? limit : end + 1);
+            if (end > start && window.get(end - 1) == '\r') {
+                end--;
+            }
+            return slice(window, start, end);
+        }
+
+        @Override
+        public long align(FileChannel file, long position, long end) throws IOException {
+            if (position == 0) {
+                return 0;
+            }
+            ByteBuffer scan = ByteBuffer.allocate(SCAN);
+            long at = position - 1;
+            while (at < end) {
+                scan.clear();
+                int read = file.read(scan, at);
+                if (read < 0) {
+                    break;
+                }
+                for (int i = 0; i < read && at + i < end; i++) {
+                    if (scan.get(i) == '\n') {
+                        return at + i + 1;
+                    }
+                }
+                at += read;
+            }
+            return end;
+        }
+    }
+
+    /**
+     * Frames records by a four byte length before each of them.
+     */
+    static class LengthPrefixed implements RecordFraming {
+
+        @Override
+        public ByteBuffer next(ByteBuffer window, Boolean last) {
+            int start = window.position();
+            if (window.remaining() >= 4) {
+                int length = window.getInt(start);
+                if (length < 0) {
+                    throw new IllegalStateException("A record can't have a length of " + length + ".");
+                }
+                if (window.remaining() - 4 >= length) {
+                    window.position(start + 4 + length);
+                    return slice(window, start + 4, start + 4 + length);
+                }
+            }
+            if (last && window.hasRemaining()) {
+                throw new IllegalStateException("The last record is cut short.");
+            }
+            return null;
+        }
+
+        @Override
+        public long align(FileChannel file, long position, long end) {
+            return position == 0 ? 0 : -1;
+        }
+    }
+
+    /**
+     * Frames records by their width.
+     */
+    static class FixedWidth implements RecordFraming {
+
+        private final int width;
+
+        FixedWidth(int width) {
+            this.width = width;
+        }
+
+        @Override
+        public ByteBuffer next(ByteBuffer window, Boolean last) {
+            int start = window.position();
+            if (window.remaining() >= this.width) {
+                window.position(start + this.width);
+                return slice(window, start, start + this.width);
+            }
+            if (last && window.hasRemaining()) {
+                throw new IllegalStateException("The last record is cut short.");
+            }
+            return null;
+        }
+
+        @Override
+        public long align(FileChannel file, long position, long end) {
+            long aligned = (position + this.width - 1) / this.width * this.width;
+            return Math.min(aligned, end);
+        }
+    }
+
+    /**
+     * Makes a view of part of a buffer without moving the buffer's position.
+     * @param buffer The buffer.
+     * @param start The index of the view's first byte.
+     * @param end The index after the view's last byte.
+     * @return A view from 'start' to 'end'.
+     */
+    private static ByteBuffer slice(ByteBuffer buffer, int start, int end) {
+        ByteBuffer view = buffer.duplicate();
+        view.limit(end).position(start);
+        return view;
+    }
+}
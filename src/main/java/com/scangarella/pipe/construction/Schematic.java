@@ -1,13 +1,25 @@
 package com.scangarella.pipe.construction;
 
+import akka.routing.RoutingLogic;
+import com.scangarella.pipe.concurrency.ElasticPipeWrapper;
+import com.scangarella.pipe.concurrency.KeyExtractor;
+import com.scangarella.pipe.concurrency.LoadBalancingPipeWrapper;
+import com.scangarella.pipe.concurrency.OrderedPipeWrapper;
+import com.scangarella.pipe.concurrency.PartitioningPipeWrapper;
 import com.scangarella.pipe.exception.IncompatibleTypeException;
 import com.scangarella.pipe.stereotype.FilterPipe;
 import com.scangarella.pipe.stereotype.SideEffectPipe;
 import com.scangarella.pipe.stereotype.WrapperPipe;
+import com.scangarella.pipe.transmission.BatchPolicy;
+import com.scangarella.pipe.transmission.ErrorPolicy;
+import com.scangarella.pipe.transmission.RetryPolicy;
 
 import java.lang.reflect.ParameterizedType;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
 /**
@@ -21,6 +33,9 @@ public final class Schematic {
     private Pipe root;
     private Class globalExceptionHandler;
     private Class globalWrapper;
+    private Boolean fusing = false;
+    private Integer creditWindow = 0;
+    private Boolean metricsEnabled = false;
 
     /**
      * Creates a new schematic with the first pipe representation.
@@ -66,6 +81,69 @@ public final class Schematic {
         allPipes().forEach(pipe -> pipe.wrap(this.globalWrapper));
     }
 
+    /**
+     * Turns operator fusion on or off for this schematic. It is off by default.
+     * When it is on, runs of pipes with one parent and one child, no wrapper and no exception handler
+     * are built as a single actor which calls each pipe's 'ingest' method in turn.
+     * This removes a mailbox round trip per pipe, but the fused pipes no longer run in parallel.
+     * Wrapped pipes, pipes with exception handlers, fan-outs, merges and batched edges are never fused,
+     * and nothing is fused on akka versions that FusedPipeFactory doesn't support.
+     * @param fusing True to fuse linear runs of pipes, false otherwise.
+     */
+    public void setFusing(Boolean fusing) {
+        this.fusing = fusing;
+    }
+
+    /**
+     * Checks to see if linear runs of pipes will be fused when this schematic is built.
+     * @return True if fusion is on, false otherwise.
+     */
+    public Boolean isFusing() {
+        return this.fusing;
+    }
+
+    /**
+     * Turns on credit based backpressure for this schematic. It is off by default.
+     * Every pipe grants each of its upstream pipes, and the pipe opening, this many credits.
+     * An upstream pipe uses up one credit per message it sends and stops ingesting once it runs out,
+     * so no mailbox ever holds more than a window's worth of messages per upstream pipe.
+     * Pipelines with loops can deadlock under backpressure.
+     * @param creditWindow The number of credits per edge, or zero to turn backpressure off.
+     */
+    public void setCreditWindow(Integer creditWindow) {
+        if (creditWindow < 0) {
+            throw new IllegalArgumentException("The credit window can't be negative.");
+        }
+        this.creditWindow = creditWindow;
+    }
+
+    /**
+     * Gets the number of credits per edge.
+     * @return The credit window, or zero if backpressure is off.
+     */
+    public Integer getCreditWindow() {
+        return this.creditWindow;
+    }
+
+    /**
+     * Turns runtime metrics on or off for this schematic. They are off by default.
+     * When they are on, every pipe and exception handler counts its messages and errors, times its
+     * 'ingest' calls and exposes its mailbox depth and number of instances. The metrics are registered as
+     * JMX MBeans under the "com.scangarella.pipe" domain and can be read from the pipe opening.
+     * @param metricsEnabled True to record metrics, false otherwise.
+     */
+    public void setMetricsEnabled(Boolean metricsEnabled) {
+        this.metricsEnabled = metricsEnabled;
+    }
+
+    /**
+     * Checks to see if pipelines built from this schematic record metrics.
+     * @return True if metrics are on, false otherwise.
+     */
+    public Boolean isMetricsEnabled() {
+        return this.metricsEnabled;
+    }
+
     private List<Pipe> find(Pipe pipe, List<Pipe> pipes) {
         pipes.add(pipe);
         for (Pipe child : pipe.getChildren()) {
@@ -84,6 +162,9 @@ public final class Schematic {
         private List<Pipe> parents = new ArrayList<>();
         private List<Pipe> children = new ArrayList<>();
         private ExceptionHandler exceptionHandler;
+        private BatchPolicy batchPolicy = null;
+        private Map<String, BatchPolicy> childBatchPolicies = new HashMap<>();
+        private RetryPolicy retryPolicy = null;
 
         /**
          * Creates a new pipe representation.
@@ -112,9 +193,7 @@ public final class Schematic {
          * @throws IncompatibleTypeException the parent's 'out' type doesn't match this pipe's 'in' type.
          */
         public Pipe addChild(Class clazz) throws IncompatibleTypeException {
-            Pipe p = new Pipe(clazz);
-            p.addParent(this);
-            return addChild(p);
+            return addChild(new Pipe(clazz));
         }
 
         /**
@@ -193,6 +272,67 @@ public final class Schematic {
             return this.exceptionHandler != null;
         }
 
+        /**
+         * Retries the messages whose ingest throws, after a delay that grows with every retry. Other messages
+         * are ingested while a failed one waits, so retried messages may be sent on out of order. Once every
+         * retry has failed, the failure goes to this pipe's exception handler.
+         * @param retryPolicy The retry policy, or null to report failures without retrying.
+         */
+        public void setRetryPolicy(RetryPolicy retryPolicy) {
+            this.retryPolicy = retryPolicy;
+        }
+
+        /**
+         * Gets how this pipe retries the messages whose ingest throws.
+         * @return The retry policy, or null if failed messages aren't retried.
+         */
+        public RetryPolicy getRetryPolicy() {
+            return this.retryPolicy;
+        }
+
+        /**
+         * Batches the messages this pipe sends to each of its children.
+         * A batch is sent once it holds maxSize messages or once it is maxDelayMicros old.
+         * @param maxSize The number of messages after which a batch is sent.
+         * @param maxDelayMicros The age in microseconds after which a batch is sent,
+         *                       or zero to send it once this pipe's mailbox has been worked through.
+         */
+        public void setBatching(int maxSize, long maxDelayMicros) {
+            this.batchPolicy = new BatchPolicy(maxSize, maxDelayMicros);
+        }
+
+        /**
+         * Batches the messages this pipe sends to a single child.
+         * This takes precedence over the batching set for all of the pipe's children.
+         * @param child The child at the other end of the batched edge.
+         * @param maxSize The number of messages after which a batch is sent.
+         * @param maxDelayMicros The age in microseconds after which a batch is sent,
+         *                       or zero to send it once this pipe's mailbox has been worked through.
+         */
+        public void setBatching(Pipe child, int maxSize, long maxDelayMicros) {
+            if (!this.children.contains(child)) {
+                throw new IllegalArgumentException("Only edges to a pipe's own children can be batched.");
+            }
+            this.childBatchPolicies.put(child.getUniqueID(), new BatchPolicy(maxSize, maxDelayMicros));
+        }
+
+        /**
+         * Gets the batch policy of the edge from this pipe to one of its children.
+         * @param child The child at the other end of the edge.
+         * @return The batch policy of the edge, or null if the edge is not batched.
+         */
+        public BatchPolicy getBatchPolicy(Pipe child) {
+            return this.childBatchPolicies.getOrDefault(child.getUniqueID(), this.batchPolicy);
+        }
+
+        /**
+         * Removes the batching from all of this pipe's outgoing edges.
+         */
+        public void clearBatching() {
+            this.batchPolicy = null;
+            this.childBatchPolicies.clear();
+        }
+
     }
 
     /**
@@ -200,6 +340,8 @@ public final class Schematic {
      */
     public class Wrapper extends AbstractPipe {
 
+        private Map<String, Object> settings = new HashMap<>();
+
         /**
          * Creates a new wrapper.
          * @param clazz the class of the wrapper
@@ -207,12 +349,132 @@ public final class Schematic {
         public Wrapper(Class clazz) {
             this.clazz = clazz;
         }
+
+        /**
+         * Gives the wrapper a setting. Wrappers ignore settings they don't know about.
+         * @param key The setting's name.
+         * @param value The setting's value.
+         */
+        public void setSetting(String key, Object value) {
+            this.settings.put(key, value);
+        }
+
+        /**
+         * Gets the wrapper's settings.
+         * @return The settings, by name.
+         */
+        public Map<String, Object> getSettings() {
+            return this.settings;
+        }
+
+        /**
+         * Sets the number of routees of a LoadBalancingPipeWrapper or an OrderedPipeWrapper.
+         * @param routees The number of inner pipes.
+         */
+        public void setRoutees(Integer routees) {
+            setSetting(LoadBalancingPipeWrapper.ROUTEES, routees);
+        }
+
+        /**
+         * Sets the number of routees of a LoadBalancingPipeWrapper per available processor,
+         * so that a load balancer uses every core of whichever machine it runs on.
+         * @param routeesPerProcessor The number of inner pipes per processor.
+         */
+        public void setRouteesPerProcessor(Integer routeesPerProcessor) {
+            setSetting(LoadBalancingPipeWrapper.ROUTEES_PER_PROCESSOR, routeesPerProcessor);
+        }
+
+        /**
+         * Sets how a LoadBalancingPipeWrapper picks a routee for each message.
+         * @param routingLogic An akka routing logic class with a no argument constructor,
+         *                     or ServiceTimeRoutingLogic.
+         * @throws IncompatibleTypeException If the class isn't a routing logic, or has no public no argument
+         *                                    constructor.
+         */
+        @SuppressWarnings("unchecked")
+        public void setRoutingLogic(Class routingLogic) throws IncompatibleTypeException {
+            if (!RoutingLogic.class.isAssignableFrom(routingLogic)) {
+                throw new IncompatibleTypeException();
+            }
+            try {
+                routingLogic.getConstructor();
+            } catch (NoSuchMethodException e) {
+                throw new IncompatibleTypeException(routingLogic.getName() + " has no public no argument constructor.");
+            }
+            setSetting(LoadBalancingPipeWrapper.ROUTING_LOGIC, routingLogic);
+        }
+
+        /**
+         * Spreads the routees of a LoadBalancingPipeWrapper over several nodes, one after another.
+         * A node may be given more than once to place more routees on it.
+         * @param nodes The nodes' addresses, as given by PipeSystem.GetAddress.
+         */
+        public void setNodes(String... nodes) {
+            setSetting(LoadBalancingPipeWrapper.NODES, new ArrayList<>(Arrays.asList(nodes)));
+        }
+
+        /**
+         * Sets the bounds of an ElasticPipeWrapper's pool.
+         * @param minimumPipes The number of pipes kept warm while the pool is idle.
+         * @param maximumPipes The largest number of pipes the pool grows to.
+         */
+        public void setPoolSize(Integer minimumPipes, Integer maximumPipes) {
+            setSetting(ElasticPipeWrapper.MINIMUM_PIPES, minimumPipes);
+            setSetting(ElasticPipeWrapper.MAXIMUM_PIPES, maximumPipes);
+        }
+
+        /**
+         * Sets how long a pipe in an ElasticPipeWrapper's pool may idle before it is stopped.
+         * @param idleTimeoutMillis The idle timeout, in milliseconds.
+         */
+        public void setIdleTimeout(Long idleTimeoutMillis) {
+            setSetting(ElasticPipeWrapper.IDLE_TIMEOUT, idleTimeoutMillis);
+        }
+
+        /**
+         * Sets how many messages an OrderedPipeWrapper lets be outstanding while it waits for an earlier one.
+         * @param reorderWindow The largest number of messages outstanding at once.
+         */
+        public void setReorderWindow(Integer reorderWindow) {
+            setSetting(OrderedPipeWrapper.REORDER_WINDOW, reorderWindow);
+        }
+
+        /**
+         * Sets the number of partitions of a PartitioningPipeWrapper.
+         * @param partitions The number of inner pipes.
+         */
+        public void setPartitions(Integer partitions) {
+            setSetting(PartitioningPipeWrapper.PARTITIONS, partitions);
+        }
+
+        /**
+         * Sets how a PartitioningPipeWrapper picks the key of each message.
+         * @param keyExtractor A KeyExtractor class with a no argument constructor.
+         * @throws IncompatibleTypeException If the class isn't a key extractor.
+         */
+        public void setKeyExtractor(Class keyExtractor) throws IncompatibleTypeException {
+            if (!KeyExtractor.class.isAssignableFrom(keyExtractor)) {
+                throw new IncompatibleTypeException();
+            }
+            setSetting(PartitioningPipeWrapper.KEY_EXTRACTOR, keyExtractor);
+        }
+
+        /**
+         * Sets how often a PartitioningPipeWrapper checks for hot keys.
+         * @param hotKeyIntervalMillis The time between checks, in milliseconds.
+         */
+        public void setHotKeyInterval(Long hotKeyIntervalMillis) {
+            setSetting(PartitioningPipeWrapper.HOT_KEY_INTERVAL, hotKeyIntervalMillis);
+        }
     }
 
     /**
      * An exception handler representation in the schematic.
      */
     public class ExceptionHandler extends AbstractPipe {
+
+        private ErrorPolicy errorPolicy = null;
+
         /**
          * Creates a new Exception Handler
          * @param clazz the class of the Exception handler.
@@ -220,6 +482,24 @@ public final class Schematic {
         public ExceptionHandler(Class clazz) {
             this.clazz = clazz;
         }
+
+        /**
+         * Has the pipes this handler handles gather their failures and send them in an ExceptionBatch per
+         * type of exception and interval, to the handler's 'onExceptions'. Pipes that fail often then cost
+         * the handler a message per interval instead of one per failure.
+         * @param errorPolicy The error policy, or null to send every failure to 'onException' as it happens.
+         */
+        public void setErrorPolicy(ErrorPolicy errorPolicy) {
+            this.errorPolicy = errorPolicy;
+        }
+
+        /**
+         * Gets how the pipes this handler handles gather their failures.
+         * @return The error policy, or null if every failure is sent as it happens.
+         */
+        public ErrorPolicy getErrorPolicy() {
+            return this.errorPolicy;
+        }
     }
 
     /**
@@ -242,6 +522,16 @@ public final class Schematic {
          */
         protected String uniqueID = UUID.randomUUID().toString();
 
+        /**
+         * The threads this pipe runs on, or null for the default dispatcher.
+         */
+        protected ExecutionProfile executionProfile = null;
+
+        /**
+         * The address of the node this pipe runs on, or null for the node that builds the pipeline.
+         */
+        protected String node = null;
+
         /**
          * Returns this pipe's class.
          * @return This pipe's class.
@@ -258,16 +548,55 @@ public final class Schematic {
             return this.uniqueID;
         }
 
+        /**
+         * Sets the threads this pipe runs on. Pipes without a profile run on the default dispatcher.
+         * @param executionProfile The execution profile.
+         */
+        public void setExecutionProfile(ExecutionProfile executionProfile) {
+            this.executionProfile = executionProfile;
+        }
+
+        /**
+         * Gets the threads this pipe runs on.
+         * @return The execution profile, or null for the default dispatcher.
+         */
+        public ExecutionProfile getExecutionProfile() {
+            return this.executionProfile;
+        }
+
+        /**
+         * Places this pipe on another node. The pipe's wrappers and inner pipes run there too, and its
+         * execution profile is ignored, since the node runs it on its default dispatcher. Pipes on other
+         * nodes aren't fused with the pipes around them.
+         * @param node The node's address, as given by PipeSystem.GetAddress, such as 'akka.tcp://pipeline@10.0.0.2:2552'.
+         */
+        public void setNode(String node) {
+            this.node = node;
+        }
+
+        /**
+         * Gets the address of the node this pipe runs on.
+         * @return The address, or null for the node that builds the pipeline.
+         */
+        public String getNode() {
+            return this.node;
+        }
+
         /**
          * Wraps the pipe with a wrapper
          * @param clazz the class of the wrapper
          * @return The wrapper's object.
          * @throws UnsupportedOperationException If the pipe already has a wrapper.
+         * @throws IncompatibleTypeException If the class isn't a wrapper, or it's an OrderedPipeWrapper
+         * around another wrapper, which couldn't send it the releases it orders outputs by.
          */
         public Wrapper wrap(Class clazz) throws IncompatibleTypeException {
             if (!WrapperPipe.class.isAssignableFrom(clazz)) {
                 throw new IncompatibleTypeException();
             }
+            if (OrderedPipeWrapper.class.isAssignableFrom(clazz) && this instanceof Wrapper) {
+                throw new IncompatibleTypeException("An OrderedPipeWrapper can't wrap another wrapper.");
+            }
             this.wrapper = new Wrapper(clazz);
             return this.wrapper;
         }
@@ -293,6 +622,20 @@ public final class Schematic {
          */
         public void clearWrapper() { this.wrapper = null; }
 
+        /**
+         * Gets the settings of all wrappers, in the same order as 'getWrappers'.
+         * @return A list of settings, with element 0 being the settings of this pipe's wrapper, etc.
+         */
+        public List<Map<String, Object>> getWrapperSettings() {
+            Wrapper wrapper = this.getWrapper();
+            List<Map<String, Object>> settings = new ArrayList<>();
+            while(wrapper != null) {
+                settings.add(new HashMap<>(wrapper.getSettings()));
+                wrapper = wrapper.getWrapper();
+            }
+            return settings;
+        }
+
         /**
          * Gets all wrappers, including the wrappers of this pipe's wrapper, etc.
          * @return A list of classes, with element 0 being the class of this pipe,
@@ -0,0 +1,25 @@
+package com.scangarella.pipe.exception;
+
+/**
+ * A failure that doesn't record a stack trace. Filling in the stack is most of what throwing an exception
+ * costs, so pipes that fail often for known reasons, such as a dependency that's down, can throw
+ * subclasses of this instead.
+ */
+public class StacklessException extends RuntimeException {
+    /**
+     * Creates a new StacklessException with a message.
+     * @param s The message of the exception.
+     */
+    public StacklessException(String s) {
+        super(s, null, false, false);
+    }
+
+    /**
+     * Creates a new StacklessException with a message and a cause.
+     * @param s The message of the exception.
+     * @param cause The exception that caused this one.
+     */
+    public StacklessException(String s, Throwable cause) {
+        super(s, cause, false, false);
+    }
+}
@@ -0,0 +1,93 @@
+package com.scangarella.pipe.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A fixed size, log-linear histogram in the style of HdrHistogram.
+ * Every power of two is split into 32 linear buckets, so recorded values keep about three percent precision
+ * over the whole range of a long. Recording is a single atomic increment and never allocates.
+ */
+public final class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    private final AtomicLongArray counts = new AtomicLongArray((64 - SUB_BUCKET_BITS + 1) * SUB_BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Long::max, 0);
+
+    /**
+     * Records a value.
+     * @param value The value to record. Negative values are recorded as zero.
+     */
+    public void record(long value) {
+        value = Math.max(0, value);
+        this.counts.incrementAndGet(indexOf(value));
+        this.count.increment();
+        this.sum.add(value);
+        this.max.accumulate(value);
+    }
+
+    /**
+     * Gets the number of recorded values.
+     * @return The count.
+     */
+    public long getCount() {
+        return this.count.sum();
+    }
+
+    /**
+     * Gets the mean of the recorded values.
+     * @return The mean, or zero if nothing has been recorded.
+     */
+    public double getMean() {
+        long n = this.count.sum();
+        return n == 0 ? 0 : (double) this.sum.sum() / n;
+    }
+
+    /**
+     * Gets the largest recorded value.
+     * @return The maximum, or zero if nothing has been recorded.
+     */
+    public long getMax() {
+        return this.max.get();
+    }
+
+    /**
+     * Gets the value below which the given fraction of recorded values fall.
+     * @param percentile The fraction, between 0 and 1.
+     * @return The lower bound of the bucket holding the percentile, or zero if nothing has been recorded.
+     */
+    public long getPercentile(double percentile) {
+        long total = 0;
+        for (int i = 0; i < this.counts.length(); i++) {
+            total += this.counts.get(i);
+        }
+        long target = Math.max(1, (long) Math.ceil(percentile * total));
+        long seen = 0;
+        for (int i = 0; i < this.counts.length(); i++) {
+            seen += this.counts.get(i);
+            if (seen >= target) {
+                return valueOf(i);
+            }
+        }
+        return 0;
+    }
+
+    static int indexOf(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return (shift + 1) * SUB_BUCKETS + (int) (value >>> shift) - SUB_BUCKETS;
+    }
+
+    static long valueOf(int index) {
+        int bucket = index / SUB_BUCKETS;
+        long sub = index % SUB_BUCKETS;
+        return bucket == 0 ? sub : (sub + SUB_BUCKETS) << (bucket - 1);
+    }
+}
@@ -0,0 +1,172 @@
+package com.scangarella.pipe.metrics;
+
+import java.util.Map;
+
+/**
+ * The metrics of a single pipe, wrapper or exception handler at one point in time.
+ * Times are in nanoseconds.
+ */
+public final class MetricsSnapshot {
+
+    private String id;
+    private String pipeClass;
+    private String kind;
+    private long messagesIn;
+    private long messagesOut;
+    private long errors;
+    private int mailboxDepth;
+    private int instances;
+    private Map<String, Double> hotKeys;
+    private long ingestCount;
+    private double ingestMean;
+    private long ingestP50;
+    private long ingestP99;
+    private long ingestP999;
+    private long ingestMax;
+
+    MetricsSnapshot(PipeMetrics metrics) {
+        LatencyHistogram ingest = metrics.getIngestHistogram();
+        this.id = metrics.getId();
+        this.pipeClass = metrics.getPipeClass();
+        this.kind = metrics.getKind();
+        this.messagesIn = metrics.getMessagesIn();
+        this.messagesOut = metrics.getMessagesOut();
+        this.errors = metrics.getErrors();
+        this.mailboxDepth = metrics.getMailboxDepth();
+        this.instances = metrics.getInstances();
+        this.hotKeys = metrics.getHotKeyShares();
+        this.ingestCount = ingest.getCount();
+        this.ingestMean = ingest.getMean();
+        this.ingestP50 = ingest.getPercentile(0.5);
+        this.ingestP99 = ingest.getPercentile(0.99);
+        this.ingestP999 = ingest.getPercentile(0.999);
+        this.ingestMax = ingest.getMax();
+    }
+
+    /**
+     * Gets the unique id of the pipe in its schematic.
+     * @return The id.
+     */
+    public String getId() {
+        return this.id;
+    }
+
+    /**
+     * Gets the name of the pipe's class.
+     * @return The class name.
+     */
+    public String getPipeClass() {
+        return this.pipeClass;
+    }
+
+    /**
+     * Gets whether these are the metrics of a pipe or of an exception handler.
+     * @return "pipe" or "exceptionHandler".
+     */
+    public String getKind() {
+        return this.kind;
+    }
+
+    /**
+     * Gets the number of messages ingested.
+     * @return The number of messages in.
+     */
+    public long getMessagesIn() {
+        return this.messagesIn;
+    }
+
+    /**
+     * Gets the number of objects sent downstream.
+     * @return The number of messages out.
+     */
+    public long getMessagesOut() {
+        return this.messagesOut;
+    }
+
+    /**
+     * Gets the number of errors reported to the exception handler.
+     * @return The number of errors.
+     */
+    public long getErrors() {
+        return this.errors;
+    }
+
+    /**
+     * Gets the number of messages waiting in the mailboxes of the pipe and its wrappers.
+     * @return The mailbox depth.
+     */
+    public int getMailboxDepth() {
+        return this.mailboxDepth;
+    }
+
+    /**
+     * Gets the number of running instances of the pipe, such as the routees of a load balancer.
+     * @return The number of instances.
+     */
+    public int getInstances() {
+        return this.instances;
+    }
+
+    /**
+     * Gets the keys that took more than their share of a partitioned pipe's messages lately.
+     * @return The share of the messages each hot key took, by key. Empty unless the pipe is partitioned.
+     */
+    public Map<String, Double> getHotKeys() {
+        return this.hotKeys;
+    }
+
+    /**
+     * Gets the number of timed calls to 'ingest'.
+     * @return The number of calls.
+     */
+    public long getIngestCount() {
+        return this.ingestCount;
+    }
+
+    /**
+     * Gets the mean time spent in 'ingest'.
+     * @return The mean in nanoseconds.
+     */
+    public double getIngestMean() {
+        return this.ingestMean;
+    }
+
+    /**
+     * Gets the median time spent in 'ingest'.
+     * @return The median in nanoseconds.
+     */
+    public long getIngestP50() {
+        return this.ingestP50;
+    }
+
+    /**
+     * Gets the 99th percentile of the time spent in 'ingest'.
+     * @return The 99th percentile in nanoseconds.
+     */
+    public long getIngestP99() {
+        return this.ingestP99;
+    }
+
+    /**
+     * Gets the 99.9th percentile of the time spent in 'ingest'.
+     * @return The 99.9th percentile in nanoseconds.
+     */
+    public long getIngestP999() {
+        return this.ingestP999;
+    }
+
+    /**
+     * Gets the longest time spent in 'ingest'.
+     * @return The maximum in nanoseconds.
+     */
+    public long getIngestMax() {
+        return this.ingestMax;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s[%s] in=%d out=%d errors=%d mailbox=%d instances=%d ingest p50=%dns p99=%dns max=%dns",
+                this.pipeClass, this.id, this.messagesIn, this.messagesOut, this.errors, this.mailboxDepth,
+                this.instances, this.ingestP50, this.ingestP99, this.ingestMax);
+    }
+}
@@ -0,0 +1,253 @@
+package com.scangarella.pipe.metrics;
+
+import akka.dispatch.Mailbox;
+
+import javax.management.InstanceNotFoundException;
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The runtime metrics of one pipe or exception handler of a schematic.
+ * Every actor built for the pipe, including the routees and wrappers around it, records into the same metrics.
+ * Counters are updated by the actors as they go. Mailbox depths are only sampled when they are read.
+ */
+public final class PipeMetrics implements PipeMetricsMBean {
+
+    /**
+     * The JMX domain pipe metrics are registered under.
+     */
+    public static final String DOMAIN = "com.scangarella.pipe";
+
+    private String id;
+    private String pipeClass;
+    private String kind;
+    private LongAdder messagesIn = new LongAdder();
+    private LongAdder messagesOut = new LongAdder();
+    private LongAdder errors = new LongAdder();
+    private LatencyHistogram ingest = new LatencyHistogram();
+    private Set<Mailbox> instanceMailboxes = ConcurrentHashMap.newKeySet();
+    private Set<Mailbox> wrapperMailboxes = ConcurrentHashMap.newKeySet();
+    private volatile Map<String, Double> hotKeys = Collections.emptyMap();
+    private ObjectName name = null;
+
+    /**
+     * Creates new metrics for a pipe.
+     * @param id The unique id of the pipe in its schematic.
+     * @param clazz The class of the pipe.
+     * @param kind "pipe" or "exceptionHandler".
+     */
+    public PipeMetrics(String id, Class clazz, String kind) {
+        this.id = id;
+        this.pipeClass = clazz.getName();
+        this.kind = kind;
+    }
+
+    /**
+     * Records an ingested message.
+     * @param nanos The time spent ingesting it.
+     */
+    public void recordIngest(long nanos) {
+        this.messagesIn.increment();
+        this.ingest.record(nanos);
+    }
+
+    /**
+     * Records an object sent downstream.
+     */
+    public void recordOut() {
+        this.messagesOut.increment();
+    }
+
+    /**
+     * Records an error reported to the exception handler.
+     */
+    public void recordError() {
+        this.errors.increment();
+    }
+
+    /**
+     * Records the keys that took more than their share of a partitioned pipe's messages lately.
+     * @param hotKeys The share of the messages each hot key took, by key.
+     */
+    public void setHotKeys(Map<String, Double> hotKeys) {
+        this.hotKeys = Collections.unmodifiableMap(hotKeys);
+    }
+
+    /**
+     * Gets the keys that took more than their share of a partitioned pipe's messages lately.
+     * @return The share of the messages each hot key took, by key.
+     */
+    public Map<String, Double> getHotKeyShares() {
+        return this.hotKeys;
+    }
+
+    /**
+     * Adds the mailbox of a running instance of the pipe.
+     * @param mailbox The instance's mailbox.
+     */
+    public void addInstance(Mailbox mailbox) {
+        this.instanceMailboxes.add(mailbox);
+    }
+
+    /**
+     * Removes the mailbox of an instance that has stopped.
+     * @param mailbox The instance's mailbox.
+     */
+    public void removeInstance(Mailbox mailbox) {
+        this.instanceMailboxes.remove(mailbox);
+    }
+
+    /**
+     * Adds the mailbox of a wrapper around the pipe.
+     * @param mailbox The wrapper's mailbox.
+     */
+    public void addWrapper(Mailbox mailbox) {
+        this.wrapperMailboxes.add(mailbox);
+    }
+
+    /**
+     * Removes the mailbox of a wrapper that has stopped.
+     * @param mailbox The wrapper's mailbox.
+     */
+    public void removeWrapper(Mailbox mailbox) {
+        this.wrapperMailboxes.remove(mailbox);
+    }
+
+    /**
+     * Registers these metrics as an MBean named by the pipeline and the pipe's kind, class and id.
+     * @param pipeline The name of the pipeline, which tells apart pipelines built from the same schematic.
+     */
+    public void register(String pipeline) {
+        try {
+            this.name = new ObjectName(DOMAIN + ":pipeline=" + pipeline + ",type=" + this.kind
+                    + ",class=" + ObjectName.quote(this.pipeClass) + ",id=" + this.id);
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, this.name);
+        } catch (JMException e) {
+            throw new IllegalStateException("Could not register metrics of " + this.pipeClass, e);
+        }
+    }
+
+    /**
+     * Unregisters these metrics' MBean, if it was registered. An MBean that someone else has already
+     * unregistered is left at that. The pipeline's termination fails with any other error.
+     */
+    public void unregister() {
+        if (this.name != null) {
+            ObjectName registered = this.name;
+            this.name = null;
+            try {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(registered);
+            } catch (InstanceNotFoundException e) {
+                return;
+            } catch (JMException e) {
+                throw new IllegalStateException("Could not unregister metrics of " + this.pipeClass, e);
+            }
+        }
+    }
+
+    /**
+     * Takes a snapshot of these metrics.
+     * @return The snapshot.
+     */
+    public MetricsSnapshot snapshot() {
+        return new MetricsSnapshot(this);
+    }
+
+    /**
+     * Gets the histogram of the time spent in 'ingest', in nanoseconds.
+     * @return The histogram.
+     */
+    public LatencyHistogram getIngestHistogram() {
+        return this.ingest;
+    }
+
+    @Override
+    public String getId() {
+        return this.id;
+    }
+
+    @Override
+    public String getPipeClass() {
+        return this.pipeClass;
+    }
+
+    @Override
+    public String getKind() {
+        return this.kind;
+    }
+
+    @Override
+    public long getMessagesIn() {
+        return this.messagesIn.sum();
+    }
+
+    @Override
+    public long getMessagesOut() {
+        return this.messagesOut.sum();
+    }
+
+    @Override
+    public long getErrors() {
+        return this.errors.sum();
+    }
+
+    @Override
+    public int getMailboxDepth() {
+        int depth = 0;
+        for (Mailbox mailbox : this.instanceMailboxes) {
+            depth += mailbox.numberOfMessages();
+        }
+        for (Mailbox mailbox : this.wrapperMailboxes) {
+            depth += mailbox.numberOfMessages();
+        }
+        return depth;
+    }
+
+    @Override
+    public int getInstances() {
+        return this.instanceMailboxes.size();
+    }
+
+    @Override
+    public String[] getHotKeys() {
+        return this.hotKeys.entrySet().stream()
+                .map(e -> String.format("%s (%.0f%%)", e.getKey(), e.getValue() * 100))
+                .toArray(String[]::new);
+    }
+
+    @Override
+    public long getIngestCount() {
+        return this.ingest.getCount();
+    }
+
+    @Override
+    public double getIngestMeanMicros() {
+        return this.ingest.getMean() / 1000;
+    }
+
+    @Override
+    public double getIngestP50Micros() {
+        return this.ingest.getPercentile(0.5) / 1000.0;
+    }
+
+    @Override
+    public double getIngestP99Micros() {
+        return this.ingest.getPercentile(0.99) / 1000.0;
+    }
+
+    @Override
+    public double getIngestP999Micros() {
+        return this.ingest.getPercentile(0.999) / 1000.0;
+    }
+
+    @Override
+    public double getIngestMaxMicros() {
+        return this.ingest.getMax() / 1000.0;
+    }
+}
@@ -0,0 +1,37 @@
+package com.scangarella.pipe.metrics;
+
+/**
+ * The JMX view of a pipe's metrics. Times are in microseconds.
+ */
+public interface PipeMetricsMBean {
+
+    String getId();
+
+    String getPipeClass();
+
+    String getKind();
+
+    long getMessagesIn();
+
+    long getMessagesOut();
+
+    long getErrors();
+
+    int getMailboxDepth();
+
+    int getInstances();
+
+    String[] getHotKeys();
+
+    long getIngestCount();
+
+    double getIngestMeanMicros();
+
+    double getIngestP50Micros();
+
+    double getIngestP99Micros();
+
+    double getIngestP999Micros();
+
+    double getIngestMaxMicros();
+}
@@ -1,13 +1,49 @@
 package com.scangarella.pipe.stereotype;
 
+import akka.actor.ActorCell;
 import akka.actor.ActorRef;
 import akka.actor.PoisonPill;
 import akka.actor.UntypedActor;
+import com.scangarella.pipe.exception.StacklessException;
+import com.scangarella.pipe.metrics.PipeMetrics;
+import com.scangarella.pipe.transmission.BatchMessage;
+import com.scangarella.pipe.transmission.BatchPolicy;
+import com.scangarella.pipe.transmission.CommitMessage;
+import com.scangarella.pipe.transmission.CompletionMessage;
+import com.scangarella.pipe.transmission.ContinueMessage;
+import com.scangarella.pipe.transmission.CorrelatedMessage;
+import com.scangarella.pipe.transmission.Correlation;
+import com.scangarella.pipe.transmission.DemandMessage;
+import com.scangarella.pipe.transmission.ErrorPolicy;
+import com.scangarella.pipe.transmission.ExceptionBatch;
 import com.scangarella.pipe.transmission.ExceptionMessage;
+import com.scangarella.pipe.transmission.FlushMessage;
 import com.scangarella.pipe.transmission.InitializationMessage;
+import com.scangarella.pipe.transmission.PooledBuffer;
+import com.scangarella.pipe.transmission.ReleaseMessage;
+import com.scangarella.pipe.transmission.ReplenishMessage;
+import com.scangarella.pipe.transmission.ReportMessage;
+import com.scangarella.pipe.transmission.RetryMessage;
+import com.scangarella.pipe.transmission.RetryPolicy;
 import com.scangarella.pipe.transmission.StopMessage;
+import com.scangarella.pipe.transmission.WindowMessage;
+import scala.concurrent.duration.Duration;
 
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 /**
  * This represents an abstract pipe from which all pipe classes (except the wrapperpipe)
@@ -24,6 +60,45 @@ public abstract class AbstractPipe<I, O> extends UntypedActor {
     private ActorRef exceptionHandler;
     private Integer upstreamPipeCount;
     private Integer receivedStopMessages = 0;
+    private Map<ActorRef, BatchPolicy> batching = Collections.emptyMap();
+    private Map<ActorRef, List<Object>> batches = new HashMap<>();
+    private Boolean flushScheduled = false;
+    private List<AbstractPipe<Object, Object>> fusedPipes = Collections.emptyList();
+    private List<String> fusedIds = Collections.emptyList();
+    private Integer failedStage = -1;
+    private Object failedInput = null;
+    private ActorRef identity;
+    private Integer creditWindow = 0;
+    private Map<ActorRef, Integer> credits = Collections.emptyMap();
+    private Map<ActorRef, Deque<Object>> pending = new HashMap<>();
+    private Map<ActorRef, Integer> consumed = new HashMap<>();
+    private Boolean replenishScheduled = false;
+    private Deque<Object> held = new ArrayDeque<>();
+    private Deque<ActorRef> heldSenders = new ArrayDeque<>();
+    private Deque<RetryMessage> heldRetries = new ArrayDeque<>();
+    private Boolean stopping = false;
+    private Boolean terminal = false;
+    private Correlation correlation = null;
+    private PipeMetrics metrics = null;
+    private Integer maxInFlight = 0;
+    private Boolean ordered = false;
+    private Integer inFlight = 0;
+    private Long nextSequence = 0L;
+    private Long nextToSend = 0L;
+    private Map<Long, CompletionMessage> completions = new HashMap<>();
+    private Deque<ActorRef> releasers = new ArrayDeque<>();
+    private Deque<ReleaseMessage> releases = new ArrayDeque<>();
+    private Deque<Long> releaseSequences = new ArrayDeque<>();
+    private Integer chunkSize = 0;
+    private Deque<Stream> streams = new ArrayDeque<>();
+    private Boolean continueScheduled = false;
+    private String pipeId = null;
+    private RetryPolicy retryPolicy = null;
+    private Integer retrying = 0;
+    private ErrorPolicy errorPolicy = null;
+    private Map<Class, Long> errorCounts = new HashMap<>();
+    private Map<Class, List<ExceptionMessage>> errorSamples = new HashMap<>();
+    private Boolean reportScheduled = false;
     /**
      * This message is called receipt of data of type I (from upstream pipes).
      * It ingests the message to produce an object of type O and sends it downstream.
@@ -32,22 +107,43 @@ public abstract class AbstractPipe<I, O> extends UntypedActor {
      * @param message The object that is received for processing.
      */
     @Override
-    @SuppressWarnings("unchecked")
     public final void onReceive(Object message) {
         if (message != null) {
             if(message instanceof  InitializationMessage) {
                 initializePipe((InitializationMessage)message);
+            } else if (message instanceof DemandMessage) {
+                receiveDemand((DemandMessage) message);
+            } else if (message instanceof ReplenishMessage) {
+                replenishScheduled = false;
+                replenish();
+            } else if (message instanceof FlushMessage) {
+                flushScheduled = false;
+                flushBatches();
+            } else if (message instanceof CompletionMessage) {
+                receiveCompletion((CompletionMessage) message);
+            } else if (message instanceof WindowMessage) {
+                closeWindows();
+            } else if (message instanceof ReportMessage) {
+                reportScheduled = false;
+                sendReports();
+            } else if (message instanceof CommitMessage) {
+                commit();
+            } else if (message instanceof ContinueMessage) {
+                continueScheduled = false;
+                continueStreaming();
             } else if (message instanceof StopMessage) {
                 receivedStopMessages++;
                 if (receivedStopMessages.equals(upstreamPipeCount)) {
-                    downstreamPipes.forEach(x -> x.tell(new StopMessage(), this.getSelf()));
-                    this.getSelf().tell(PoisonPill.getInstance(), this.getSelf());
+                    stopping = true;
+                    stopIfDrained();
                 }
-            }
-            else{
-                I inbound = (I) message;
-                O outbound = ingest(inbound);
-                send(outbound);
+            } else if (message instanceof RetryMessage && isBusy()) {
+                heldRetries.add((RetryMessage) message);
+            } else if (!(message instanceof RetryMessage) && isBlocked()) {
+                held.add(message);
+                heldSenders.add(this.getSender());
+            } else {
+                receiveData(message, this.getSender());
             }
         }
     }
@@ -56,6 +152,472 @@ public abstract class AbstractPipe<I, O> extends UntypedActor {
         this.downstreamPipes = message.getDownstream();
         this.exceptionHandler = message.getException();
         this.upstreamPipeCount = message.getUpstreamCount();
+        this.batching = message.getBatching();
+        this.fusedPipes = new ArrayList<>();
+        for (Class clazz : message.getFused()) {
+            this.fusedPipes.add(FusedPipeFactory.create(getContext(), clazz));
+        }
+        this.fusedIds = message.getFusedIds();
+        this.identity = this.getSender().equals(getContext().system().deadLetters()) ? this.getSelf() : this.getSender();
+        this.creditWindow = message.getCreditWindow();
+        this.credits = new HashMap<>(message.getCredits());
+        this.terminal = message.isTerminal();
+        this.metrics = message.getMetrics();
+        this.pipeId = message.getPipeId();
+        this.retryPolicy = message.getRetryPolicy();
+        this.errorPolicy = message.getErrorPolicy();
+        if (this.metrics != null) {
+            this.metrics.addInstance(((ActorCell) getContext()).mailbox());
+        }
+        initialize();
+    }
+
+    /**
+     * Called once the pipe knows its downstream pipes. Stereotypes that need timers start them here.
+     */
+    void initialize() { }
+
+    /**
+     * Called when the pipe's current time windows end. Only window pipes have any.
+     */
+    void closeWindows() { }
+
+    /**
+     * Called when it's time for the pipe to write and sync what it has buffered. Only file sink pipes do.
+     */
+    void commit() { }
+
+    /**
+     * Gets the request or tracked message being ingested, so that stereotypes which finish with a message
+     * after 'ingest' can hold on to it.
+     * @return The correlation, or null if the message isn't correlated.
+     */
+    Correlation getCorrelation() {
+        return this.correlation;
+    }
+
+    /**
+     * Sends an object on as part of a correlation other than the one being ingested, for stereotypes that
+     * send one object for several messages.
+     * @param correlation The correlation to send the object with.
+     * @param outbound The object to send.
+     */
+    void sendCorrelated(Correlation correlation, O outbound) {
+        Correlation previous = this.correlation;
+        this.correlation = correlation;
+        try {
+            send(outbound);
+        } finally {
+            this.correlation = previous;
+        }
+    }
+
+    /**
+     * Called before the pipe stops, once it has ingested everything it was sent. Stereotypes that hold on
+     * to results send them on here.
+     */
+    void flush() { }
+
+    private void receiveData(Object message, ActorRef sender) {
+        int received = 1;
+        if (message instanceof ReleaseMessage) {
+            release(sender, (ReleaseMessage) message);
+            return;
+        } else if (message instanceof RetryMessage) {
+            RetryMessage retry = (RetryMessage) message;
+            this.retrying--;
+            ingestAndSend(retry.getMessage(), retry.getAttempts() + 1);
+            sendReleases();
+            receiveHeld();
+            stopIfDrained();
+            return;
+        } else if (message instanceof BatchMessage) {
+            List<Object> batch = ((BatchMessage) message).getMessages();
+            batch.forEach(this::ingestAndSend);
+            received = batch.size();
+        } else {
+            ingestAndSend(message);
+        }
+        if (creditWindow > 0) {
+            consume(sender, received);
+        }
+    }
+
+    /**
+     * Resets this pipe, if it was asked to and can be reset, and hands the release back to the wrapper it came from.
+     * Releases are held along with data while the pipe is blocked, so they're only sent back once
+     * everything before them has been ingested. Asynchronous pipes hold them until everything before them
+     * has been sent on; ordered pipes know when that is, unordered ones wait until nothing is in flight.
+     * Either way, a release waits until every failed message has been retried, and the pipe is blocked
+     * while it does, so that nothing sent after the release is ingested before it.
+     */
+    private void release(ActorRef wrapper, ReleaseMessage message) {
+        if (!this.releases.isEmpty() || !isReleasable(this.nextSequence)) {
+            this.releasers.add(wrapper);
+            this.releases.add(message);
+            this.releaseSequences.add(this.nextSequence);
+            return;
+        }
+        sendRelease(wrapper, message);
+    }
+
+    private Boolean isReleasable(Long sequence) {
+        return this.retrying == 0 && (this.ordered ? this.nextToSend >= sequence : this.inFlight == 0);
+    }
+
+    private void sendReleases() {
+        while (!this.releases.isEmpty() && isReleasable(this.releaseSequences.peek())) {
+            this.releaseSequences.poll();
+            sendRelease(this.releasers.poll(), this.releases.poll());
+        }
+    }
+
+    private void sendRelease(ActorRef wrapper, ReleaseMessage message) {
+        if (message.isReset() && this instanceof Resettable) {
+            ((Resettable) this).reset();
+        }
+        wrapper.tell(message, this.getSelf());
+    }
+
+    private void ingestAndSend(Object message) {
+        ingestAndSend(message, 1);
+    }
+
+    /**
+     * Ingests a message and sends on the result. Correlated messages are unwrapped first,
+     * and everything sent while ingesting them belongs to the same request.
+     * If 'ingest' throws, the message is retried or the failure is reported, and the pipe goes on with
+     * its next message rather than being restarted, so it keeps its state.
+     */
+    private void ingestAndSend(Object message, Integer attempts) {
+        this.failedStage = -1;
+        if (message instanceof CorrelatedMessage) {
+            CorrelatedMessage correlated = (CorrelatedMessage) message;
+            this.correlation = correlated.getCorrelation();
+            try {
+                if (!this.correlation.isDone()) {
+                    ingestAndSendPayload(correlated.getPayload());
+                }
+            } catch (RuntimeException e) {
+                recover(message, correlated.getPayload(), e, attempts);
+            } finally {
+                this.correlation.release();
+                this.correlation = null;
+            }
+        } else {
+            try {
+                ingestAndSendPayload(message);
+            } catch (RuntimeException e) {
+                recover(message, message, e, attempts);
+            }
+        }
+    }
+
+    /**
+     * Schedules a failed message to be ingested again if the retry policy has a retry left, and otherwise
+     * fails its request and reports it. A pooled buffer's reference is kept while it waits to be retried;
+     * once it's reported, it's released and the report holds a copy of its bytes instead.
+     * Whatever the message sent before 'ingest' threw has already been sent, so a retried message may
+     * send it again. Pipes with a retry policy aren't fused, so a failure in a fused pipe is reported
+     * straight away, with that pipe's id and input. Retried messages don't wait for the messages held
+     * behind them, and the pipe doesn't stop until every retry has been ingested.
+     * @param message The message as it was received, still wrapped if it's correlated.
+     * @param input The message that was ingested.
+     * @param e What 'ingest' threw.
+     * @param attempts The number of times the message has been ingested.
+     */
+    private void recover(Object message, Object input, RuntimeException e, Integer attempts) {
+        String failedId = this.pipeId;
+        if (this.failedStage >= 0) {
+            failedId = this.fusedIds.get(this.failedStage);
+            input = this.failedInput;
+            this.failedStage = -1;
+            this.failedInput = null;
+        } else if (this.retryPolicy != null && attempts <= this.retryPolicy.getMaxRetries()) {
+            if (this.correlation != null) {
+                this.correlation.retain(1);
+            }
+            this.retrying++;
+            getContext().system().scheduler().scheduleOnce(
+                    Duration.create(this.retryPolicy.getDelayMillis(attempts), TimeUnit.MILLISECONDS),
+                    this.getSelf(), new RetryMessage(message, attempts), getContext().dispatcher(), this.getSelf());
+            return;
+        }
+        if (this.correlation != null) {
+            this.correlation.fail(e);
+        }
+        if (input instanceof PooledBuffer) {
+            input = copyAndRelease((PooledBuffer) input);
+        }
+        reportError(new ExceptionMessage(e, input, failedId, attempts));
+    }
+
+    @SuppressWarnings("unchecked")
+    private void ingestAndSendPayload(Object message) {
+        I inbound = (I) message;
+        if (this.maxInFlight > 0) {
+            startAsync(() -> ingestAsync(inbound));
+            return;
+        }
+        O outbound;
+        if (this.metrics == null) {
+            outbound = ingest(inbound);
+        } else {
+            long start = System.nanoTime();
+            outbound = ingest(inbound);
+            this.metrics.recordIngest(System.nanoTime() - start);
+        }
+        sendOutbound(outbound);
+    }
+
+    private void sendOutbound(O outbound) {
+        if (fusedPipes.isEmpty()) {
+            send(outbound);
+        } else {
+            forEachOutbound(outbound, o -> ingestFused(0, o));
+        }
+    }
+
+    /**
+     * Sends a single object downstream, through any fused pipes.
+     * @param outbound The object to send.
+     */
+    void sendSingle(Object outbound) {
+        if (fusedPipes.isEmpty()) {
+            tellDownstream(outbound);
+        } else {
+            ingestFused(0, outbound);
+        }
+    }
+
+    /**
+     * Makes this pipe ingest asynchronously. Pipes call this from their constructor.
+     * @param maxInFlight The number of messages that may be ingesting at once. While that many are,
+     *                    new messages are held, just like while the pipe is waiting for credits.
+     * @param ordered True if results should be sent in the order their messages arrived,
+     *                false to send them as soon as they're ready.
+     */
+    void setAsync(Integer maxInFlight, Boolean ordered) {
+        if (maxInFlight < 1) {
+            throw new IllegalArgumentException("An asynchronous pipe needs to allow at least one message in flight.");
+        }
+        this.maxInFlight = maxInFlight;
+        this.ordered = ordered;
+    }
+
+    /**
+     * Makes this pipe send its outputs lazily. Pipes call this from their constructor.
+     * @param chunkSize The number of outputs sent before the pipe works through its mailbox again.
+     */
+    void setStreaming(Integer chunkSize) {
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("A streaming pipe needs to send at least one output at a time.");
+        }
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Sends the outputs of an iterator a chunk at a time. While a pipe is streaming it is blocked, so new
+     * messages are held until every output has been sent. Between chunks the pipe works through its mailbox,
+     * and while a downstream pipe is out of credits it stops pulling outputs until credits arrive.
+     * The outputs belong to the request that was being ingested when the iterator was returned.
+     * @param outputs The outputs to send.
+     */
+    void stream(Iterator<?> outputs) {
+        if (outputs == null || !outputs.hasNext()) {
+            return;
+        }
+        if (this.correlation != null) {
+            this.correlation.retain(1);
+        }
+        this.streams.add(new Stream(outputs, this.correlation));
+        if (!this.continueScheduled) {
+            this.continueScheduled = true;
+            this.getSelf().tell(new ContinueMessage(), this.getSelf());
+        }
+    }
+
+    /**
+     * Sends the next chunk of outputs, then either schedules the chunk after it or, if a downstream pipe
+     * is out of credits, waits for them. Ingests the held messages once every stream has ended.
+     */
+    private void continueStreaming() {
+        Correlation previous = this.correlation;
+        int sent = 0;
+        while (!this.streams.isEmpty() && this.pending.isEmpty() && sent < this.chunkSize) {
+            Stream stream = this.streams.peek();
+            Iterator<?> outputs = stream.outputs;
+            this.correlation = stream.correlation;
+            try {
+                if (this.correlation != null && this.correlation.isDone()) {
+                    endStream();
+                    continue;
+                }
+                Object output = outputs.next();
+                if (output != null) {
+                    sendSingle(output);
+                    sent++;
+                }
+                if (!outputs.hasNext()) {
+                    endStream();
+                }
+            } catch (RuntimeException e) {
+                if (this.correlation != null) {
+                    this.correlation.fail(e);
+                }
+                reportError(new ExceptionMessage(e, null, this.pipeId, 1));
+                endStream();
+            }
+        }
+        this.correlation = previous;
+        if (!this.streams.isEmpty()) {
+            if (this.pending.isEmpty() && !this.continueScheduled) {
+                this.continueScheduled = true;
+                this.getSelf().tell(new ContinueMessage(), this.getSelf());
+            }
+            return;
+        }
+        receiveHeld();
+        stopIfDrained();
+    }
+
+    private void endStream() {
+        Correlation request = this.streams.poll().correlation;
+        if (request != null) {
+            request.release();
+        }
+    }
+
+    /**
+     * Starts ingesting a message without waiting for the result. Only asynchronous pipes override this.
+     * It's called on this pipe's actor, and the returned stage may complete on any thread.
+     * @param inbound The message to ingest.
+     * @return The stage that completes with the result of the ingest.
+     */
+    CompletionStage<?> ingestAsync(I inbound) {
+        return CompletableFuture.completedFuture(ingest(inbound));
+    }
+
+    /**
+     * Sends on the result of an asynchronous ingest once it has completed. It's called on this pipe's actor.
+     * @param result The result the stage completed with.
+     */
+    @SuppressWarnings("unchecked")
+    void sendAsync(Object result) {
+        sendOutbound((O) result);
+    }
+
+    /**
+     * Keeps track of a stage until it completes, then sends its result on from this pipe's actor.
+     * Tracked stages count towards the pipe's messages in flight, and the pipe doesn't stop until
+     * they've all completed.
+     * @param ingest Starts the stage.
+     */
+    void startAsync(Supplier<CompletionStage<?>> ingest) {
+        Long sequence = this.nextSequence++;
+        Correlation request = this.correlation;
+        if (request != null) {
+            request.retain(1);
+        }
+        this.inFlight++;
+        ActorRef self = this.getSelf();
+        long start = System.nanoTime();
+        CompletionStage<?> stage;
+        try {
+            stage = ingest.get();
+        } catch (RuntimeException e) {
+            CompletableFuture<Object> failed = new CompletableFuture<>();
+            failed.completeExceptionally(e);
+            stage = failed;
+        }
+        if (stage == null) {
+            stage = CompletableFuture.completedFuture(null);
+        }
+        stage.whenComplete((outbound, failure) -> self.tell(
+                new CompletionMessage(sequence, outbound, failure, request, System.nanoTime() - start), self));
+    }
+
+    /**
+     * Sends on the result of an asynchronous ingest, in order if the pipe is ordered, and lets in the
+     * messages that were held while too many were in flight.
+     */
+    private void receiveCompletion(CompletionMessage completion) {
+        this.inFlight--;
+        if (this.ordered) {
+            this.completions.put(completion.getSequence(), completion);
+            while (this.completions.containsKey(this.nextToSend)) {
+                finishAsync(this.completions.remove(this.nextToSend++));
+            }
+        } else {
+            finishAsync(completion);
+        }
+        receiveHeld();
+        sendReleases();
+        stopIfDrained();
+    }
+
+    /**
+     * Failed ingests are reported to the exception handler rather than thrown, since they didn't happen
+     * on this pipe's actor.
+     */
+    private void finishAsync(CompletionMessage completion) {
+        this.correlation = completion.getCorrelation();
+        try {
+            Throwable failure = completion.getFailure();
+            if (failure instanceof CompletionException && failure.getCause() != null) {
+                failure = failure.getCause();
+            }
+            if (failure != null) {
+                if (this.correlation != null) {
+                    this.correlation.fail(failure);
+                }
+                reportError(new ExceptionMessage(failure instanceof Exception ? (Exception) failure : new RuntimeException(failure),
+                        null, this.pipeId, 1));
+            } else if (this.correlation == null || !this.correlation.isDone()) {
+                if (this.metrics != null) {
+                    this.metrics.recordIngest(completion.getElapsedNanos());
+                }
+                sendAsync(completion.getResult());
+            }
+        } finally {
+            if (this.correlation != null) {
+                this.correlation.release();
+                this.correlation = null;
+            }
+        }
+    }
+
+    /**
+     * Copies a failed buffer's bytes and lets go of its reference. A pipe that released the buffer before
+     * throwing leaves nothing to copy.
+     */
+    private static byte[] copyAndRelease(PooledBuffer buffer) {
+        if (buffer.getReferences() <= 0) {
+            return null;
+        }
+        ByteBuffer view = buffer.getBuffer().duplicate();
+        view.clear();
+        byte[] bytes = new byte[view.remaining()];
+        view.get(bytes);
+        buffer.release();
+        return bytes;
+    }
+
+    private void ingestFused(int stage, Object inbound) {
+        if (stage == fusedPipes.size()) {
+            tellDownstream(inbound);
+        } else {
+            AbstractPipe<Object, Object> pipe = fusedPipes.get(stage);
+            Object outbound;
+            try {
+                outbound = pipe.ingest(inbound);
+            } catch (RuntimeException e) {
+                this.failedStage = stage;
+                this.failedInput = inbound;
+                throw e;
+            }
+            pipe.forEachOutbound(outbound, o -> ingestFused(stage + 1, o));
+        }
     }
 
     /**
@@ -73,12 +635,296 @@ public abstract class AbstractPipe<I, O> extends UntypedActor {
     protected abstract void send(O outbound);
 
     /**
-     * Reports an error to this pipe's error handler, if it exists.
+     * Applies an action to every object that 'send' would send downstream.
+     * This lets fused pipes hand their output to the next pipe without a tell.
+     * @param outbound The result of 'ingest'.
+     * @param action The action to apply to each object.
+     */
+    void forEachOutbound(O outbound, Consumer<Object> action) {
+        if (outbound != null) {
+            action.accept(outbound);
+        }
+    }
+
+    /**
+     * Tells a single object to every downstream pipe.
+     * On batched edges the object is added to that edge's batch instead of being told right away.
+     * While ingesting a correlated message, the object is wrapped with the same correlation,
+     * or handed to the request as a result if this is one of the last pipes. The last pipes send the
+     * outputs of tracked messages on unwrapped.
+     * A pooled buffer's reference goes to the first downstream pipe, and one is taken for each of the others.
+     * A chunk of primitives goes to the last downstream pipe, and each of the others gets a copy of it,
+     * so that no pipe sees another change its values. The copies are taken before the chunk itself is sent.
+     * @param outbound The object to be sent downstream.
+     */
+    protected final void tellDownstream(Object outbound) {
+        if (this.metrics != null) {
+            this.metrics.recordOut();
+        }
+        Correlation correlation = this.correlation;
+        if (correlation != null && this.terminal) {
+            if (!correlation.isTracking()) {
+                correlation.addResult(outbound);
+                return;
+            }
+            correlation = null;
+        }
+        if (outbound instanceof PooledBuffer) {
+            if (this.downstreamPipes.isEmpty()) {
+                ((PooledBuffer) outbound).release();
+                return;
+            }
+            ((PooledBuffer) outbound).retain(this.downstreamPipes.size() - 1);
+        }
+        Object shared = outbound;
+        if (correlation != null) {
+            correlation.retain(this.downstreamPipes.size());
+            shared = new CorrelatedMessage(outbound, correlation);
+        }
+        Boolean chunk = outbound instanceof int[] || outbound instanceof long[] || outbound instanceof double[];
+        for (int p = 0; p < this.downstreamPipes.size(); p++) {
+            ActorRef pipe = this.downstreamPipes.get(p);
+            Object message = shared;
+            if (chunk && p < this.downstreamPipes.size() - 1) {
+                Object copy = copyChunk(outbound);
+                message = correlation == null ? copy : new CorrelatedMessage(copy, correlation);
+            }
+            Integer remaining = this.credits.get(pipe);
+            if (remaining == null) {
+                deliver(pipe, message);
+            } else if (remaining > 0 && !this.pending.containsKey(pipe)) {
+                this.credits.put(pipe, remaining - 1);
+                deliver(pipe, message);
+            } else {
+                this.pending.computeIfAbsent(pipe, k -> new ArrayDeque<>()).add(message);
+            }
+        }
+    }
+
+    private static Object copyChunk(Object chunk) {
+        if (chunk instanceof int[]) {
+            return ((int[]) chunk).clone();
+        } else if (chunk instanceof long[]) {
+            return ((long[]) chunk).clone();
+        }
+        return ((double[]) chunk).clone();
+    }
+
+    private void deliver(ActorRef pipe, Object outbound) {
+        BatchPolicy policy = this.batching.get(pipe);
+        if (policy == null) {
+            pipe.tell(outbound, this.getSelf());
+        } else {
+            List<Object> batch = this.batches.get(pipe);
+            if (batch == null) {
+                batch = new ArrayList<>(policy.getMaxSize());
+                this.batches.put(pipe, batch);
+                scheduleFlush(policy);
+            }
+            batch.add(outbound);
+            if (batch.size() >= policy.getMaxSize()) {
+                this.batches.remove(pipe);
+                pipe.tell(new BatchMessage(batch), this.getSelf());
+            }
+        }
+    }
+
+    /**
+     * A pipe is blocked while it has messages waiting for credits from a downstream pipe,
+     * while it has as many asynchronous ingests in flight as it allows, or while it's streaming outputs.
+     * Blocked pipes hold on to new messages instead of ingesting them, and so stop granting their
+     * upstream pipes credits until the downstream pipe catches up. A pipe holding a release for a message
+     * that's being retried is blocked as well, but lets its retries in.
+     */
+    private Boolean isBlocked() {
+        return isBusy() || (this.retrying > 0 && !this.releases.isEmpty());
+    }
+
+    /**
+     * Ingests held messages for as long as the pipe isn't blocked. Held retries go first, since a pipe
+     * holding a release for them stays blocked until they've been ingested.
+     */
+    private void receiveHeld() {
+        while (!isBusy() && !this.heldRetries.isEmpty()) {
+            receiveData(this.heldRetries.poll(), this.getSelf());
+        }
+        while (!isBlocked() && !this.held.isEmpty()) {
+            receiveData(this.held.poll(), this.heldSenders.poll());
+        }
+    }
+
+    private Boolean isBusy() {
+        return !this.pending.isEmpty() || (this.maxInFlight > 0 && this.inFlight >= this.maxInFlight)
+                || !this.streams.isEmpty();
+    }
+
+    private void receiveDemand(DemandMessage demand) {
+        ActorRef pipe = demand.getPipe();
+        Integer remaining = this.credits.get(pipe);
+        if (remaining != null) {
+            remaining += demand.getCredits();
+            Deque<Object> waiting = this.pending.get(pipe);
+            while (waiting != null && remaining > 0 && !waiting.isEmpty()) {
+                remaining--;
+                deliver(pipe, waiting.poll());
+            }
+            this.credits.put(pipe, remaining);
+            if (waiting != null && waiting.isEmpty()) {
+                this.pending.remove(pipe);
+            }
+            if (!this.streams.isEmpty() && this.pending.isEmpty() && !this.continueScheduled) {
+                continueStreaming();
+                return;
+            }
+            receiveHeld();
+            stopIfDrained();
+        }
+    }
+
+    /**
+     * Counts the messages ingested from an upstream pipe. Credits are granted back once half
+     * of the window has been used up, or once this pipe has worked through its mailbox.
+     */
+    private void consume(ActorRef sender, Integer received) {
+        Integer count = this.consumed.merge(sender, received, Integer::sum);
+        if (count >= Math.max(1, this.creditWindow / 2)) {
+            this.consumed.remove(sender);
+            grant(sender, count);
+        } else if (!replenishScheduled) {
+            replenishScheduled = true;
+            this.getSelf().tell(new ReplenishMessage(), this.getSelf());
+        }
+    }
+
+    private void replenish() {
+        this.consumed.forEach(this::grant);
+        this.consumed.clear();
+    }
+
+    private void grant(ActorRef sender, Integer count) {
+        if (!sender.equals(getContext().system().deadLetters())) {
+            sender.tell(new DemandMessage(count, this.identity), this.getSelf());
+        }
+    }
+
+    /**
+     * Stops the pipe once it has received a stop message from every upstream pipe and has sent on
+     * everything it was holding. Pipes inside of a wrapper leave telling the downstream pipes to the
+     * wrapper, which does so once all of its inner pipes have stopped.
+     */
+    private void stopIfDrained() {
+        if (stopping && this.held.isEmpty() && this.pending.isEmpty() && this.inFlight == 0 && this.streams.isEmpty()
+                && this.retrying == 0) {
+            flush();
+            if (!this.pending.isEmpty()) {
+                return;
+            }
+            stopping = false;
+            flushBatches();
+            sendReports();
+            if (this.identity.equals(this.getSelf())) {
+                downstreamPipes.forEach(x -> x.tell(new StopMessage(), this.getSelf()));
+            }
+            this.getSelf().tell(PoisonPill.getInstance(), this.getSelf());
+        }
+    }
+
+    /**
+     * Grants back any credits that were used up but not yet returned, so that upstream pipes
+     * aren't left waiting on a pipe that no longer exists.
+     */
+    @Override
+    public void postStop() {
+        replenish();
+        if (this.metrics != null) {
+            this.metrics.removeInstance(((ActorCell) getContext()).mailbox());
+        }
+    }
+
+    private void scheduleFlush(BatchPolicy policy) {
+        if (!flushScheduled) {
+            flushScheduled = true;
+            if (policy.getMaxDelayMicros() == 0) {
+                this.getSelf().tell(new FlushMessage(), this.getSelf());
+            } else {
+                getContext().system().scheduler().scheduleOnce(
+                        Duration.create(policy.getMaxDelayMicros(), TimeUnit.MICROSECONDS),
+                        this.getSelf(), new FlushMessage(), getContext().dispatcher(), this.getSelf());
+            }
+        }
+    }
+
+    private void flushBatches() {
+        this.batches.forEach((pipe, batch) -> pipe.tell(new BatchMessage(batch), this.getSelf()));
+        this.batches.clear();
+    }
+
+    /**
+     * Reports an error to this pipe's error handler. Pipes without one send it to the actor system's dead
+     * letters, where it's published on the event stream as a DeadLetter. If the handler has an error policy,
+     * the error is gathered with the others of its type and sent in a batch once the interval is up.
      * @param errorMessage The error message to send to the error handler.
      */
     protected void reportError(ExceptionMessage errorMessage) {
-        if (this.exceptionHandler != null) {
+        if (this.metrics != null) {
+            this.metrics.recordError();
+        }
+        if (this.exceptionHandler == null) {
+            getContext().system().deadLetters().tell(errorMessage, this.getSelf());
+        } else if (this.errorPolicy == null) {
             this.exceptionHandler.tell(errorMessage, this.getSelf());
+        } else {
+            gather(errorMessage);
+        }
+    }
+
+    /**
+     * Counts an error, and keeps it if it's one of the first of its type this interval; the others aren't
+     * kept at all. Errors of stackless types are kept as a StacklessException holding only their type and
+     * message, and the exception that was thrown is left as it was.
+     */
+    private void gather(ExceptionMessage errorMessage) {
+        Exception e = errorMessage.getException();
+        Long count = this.errorCounts.merge(e.getClass(), 1L, Long::sum);
+        if (count <= this.errorPolicy.getSamples()) {
+            if (this.errorPolicy.isStackless(e) && !(e instanceof StacklessException)) {
+                errorMessage = new ExceptionMessage(new StacklessException(e.toString()), errorMessage.getInput(),
+                        errorMessage.getPipeId(), errorMessage.getAttempts());
+            }
+            this.errorSamples.computeIfAbsent(e.getClass(), type -> new ArrayList<>()).add(errorMessage);
+        }
+        if (!reportScheduled) {
+            reportScheduled = true;
+            if (this.errorPolicy.getIntervalMillis() == 0) {
+                this.getSelf().tell(new ReportMessage(), this.getSelf());
+            } else {
+                getContext().system().scheduler().scheduleOnce(
+                        Duration.create(this.errorPolicy.getIntervalMillis(), TimeUnit.MILLISECONDS),
+                        this.getSelf(), new ReportMessage(), getContext().dispatcher(), this.getSelf());
+            }
+        }
+    }
+
+    /**
+     * Sends the errors gathered this interval to the exception handler, in a batch per type.
+     */
+    private void sendReports() {
+        this.errorCounts.forEach((type, count) -> this.exceptionHandler.tell(new ExceptionBatch(this.pipeId, type,
+                this.errorSamples.getOrDefault(type, Collections.emptyList()), count), this.getSelf()));
+        this.errorCounts.clear();
+        this.errorSamples.clear();
+    }
+
+    /**
+     * The outputs a streaming pipe has yet to send, and the request they belong to, if any.
+     */
+    private static class Stream {
+        private Iterator<?> outputs;
+        private Correlation correlation;
+
+        private Stream(Iterator<?> outputs, Correlation correlation) {
+            this.outputs = outputs;
+            this.correlation = correlation;
         }
     }
 }
@@ -0,0 +1,62 @@
+package com.scangarella.pipe.stereotype;
+
+import java.util.concurrent.CompletionStage;
+
+/**
+ * A pipe for asynchronous APIs. Its 'ingest' starts the work and returns a stage that completes with
+ * the object to send downstream, so the pipe doesn't block while the work is done elsewhere.
+ * Once a stage completes, its result is sent from the pipe's actor, like that of any other pipe.
+ * A stage that completes with null sends nothing.
+ *
+ * The number of stages in flight is bounded. While the bound is reached, new messages wait in the pipe,
+ * and with backpressure on, its upstream pipes stop sending. A stage that fails is reported to the pipe's
+ * exception handler. The pipe doesn't stop until all of its stages have completed.
+ *
+ * 'ingest' is called on the pipe's actor, but the stages it returns may complete on any thread, so
+ * callbacks attached to them must not change the pipe's fields.
+ * @param <I> The type of object to be received.
+ * @param <O> The type of object to be sent.
+ */
+public abstract class AsyncPipe<I, O> extends AbstractPipe<I, CompletionStage<O>> {
+
+    /**
+     * Creates a pipe with up to 64 stages in flight that sends results as soon as they're ready.
+     */
+    public AsyncPipe() {
+        this(64, false);
+    }
+
+    /**
+     * Creates a pipe with the given bound on stages in flight.
+     * @param maxInFlight The number of stages that may be in flight at once.
+     * @param ordered True to send results in the order their messages arrived, false to send them as soon
+     *                as they're ready.
+     */
+    protected AsyncPipe(Integer maxInFlight, Boolean ordered) {
+        setAsync(maxInFlight, ordered);
+    }
+
+    /**
+     * Sends the result of a stage downstream once it completes. The stage counts towards the pipe's
+     * stages in flight. Stages returned by 'ingest' are sent this way already.
+     * @param outbound The stage whose result is to be sent.
+     */
+    @Override
+    protected final void send(CompletionStage<O> outbound) {
+        if (outbound != null) {
+            startAsync(() -> outbound);
+        }
+    }
+
+    @Override
+    CompletionStage<?> ingestAsync(I inbound) {
+        return ingest(inbound);
+    }
+
+    @Override
+    void sendAsync(Object result) {
+        if (result != null && this.downstreamPipes != null) {
+            sendSingle(result);
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.scangarella.pipe.stereotype;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * A pipe for blocking work, such as reading files or querying a database. Its 'ingest' runs off of the
+ * actor's thread, so that a blocking call doesn't hold up the dispatcher, and many calls can be in
+ * flight at once. The results are sent downstream from the pipe's actor, like those of any other pipe.
+ *
+ * On Java 21 and later, every ingest runs on a virtual thread. On older JVMs it runs on the
+ * 'pipe.blocking-dispatcher' of the pipe's actor system, a fixed pool of 64 threads shared by every
+ * blocking pipe, which can be resized in the application's configuration.
+ *
+ * Since 'ingest' runs on many threads at once, it must not change the pipe's fields.
+ * Exceptions thrown by 'ingest' are sent to the pipe's exception handler.
+ * @param <I> The type of object to be received.
+ * @param <O> The type of object to be sent.
+ */
+public abstract class BlockingPipe<I, O> extends Pipe<I, O> {
+
+    /**
+     * The dispatcher blocking pipes run on when there are no virtual threads.
+     */
+    public static final String DISPATCHER = "pipe.blocking-dispatcher";
+
+    private static final ExecutorService VIRTUAL_THREADS = createVirtualThreads();
+
+    private Executor executor = VIRTUAL_THREADS;
+
+    /**
+     * Creates a pipe that runs up to 64 ingests at once and sends results as soon as they're ready.
+     */
+    public BlockingPipe() {
+        this(64, false);
+    }
+
+    /**
+     * Creates a pipe with the given concurrency.
+     * @param concurrency The number of ingests that may run at once.
+     * @param ordered True to send results in the order their messages arrived, false to send them as soon
+     *                as they're ready.
+     */
+    protected BlockingPipe(Integer concurrency, Boolean ordered) {
+        setAsync(concurrency, ordered);
+    }
+
+    @Override
+    CompletionStage<?> ingestAsync(I inbound) {
+        if (this.executor == null) {
+            this.executor = getContext().system().dispatchers().lookup(DISPATCHER);
+        }
+        return CompletableFuture.supplyAsync(() -> ingest(inbound), this.executor);
+    }
+
+    private static ExecutorService createVirtualThreads() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+}
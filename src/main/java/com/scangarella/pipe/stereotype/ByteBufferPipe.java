@@ -0,0 +1,49 @@
+package com.scangarella.pipe.stereotype;
+
+import com.scangarella.pipe.transmission.BufferPool;
+import com.scangarella.pipe.transmission.PooledBuffer;
+
+/**
+ * A pipe of binary records held in pooled direct buffers. Stages slice the buffers they receive and send
+ * the slices on, rather than copying bytes into new arrays.
+ *
+ * The pipe takes care of the received buffer's reference: if 'transform' returns that buffer or a slice
+ * of it, the reference is sent on with it, and otherwise the buffer is released. A buffer returned by
+ * 'transform' that isn't part of the received one, such as one from 'acquire', must hold a reference
+ * of its own, which is sent on. Sending to several pipes takes a reference for each of them.
+ * If 'transform' throws, the pipe keeps the reference while the buffer waits to be retried, and releases
+ * it once the failure is reported, with a copy of the buffer's bytes as the failed input.
+ */
+public abstract class ByteBufferPipe extends Pipe<PooledBuffer, PooledBuffer> {
+
+    /**
+     * The method to be overridden to turn a received buffer into the one to send downstream.
+     * @param buffer The buffer received.
+     * @return The buffer to send, or null to send nothing.
+     */
+    public abstract PooledBuffer transform(PooledBuffer buffer);
+
+    /**
+     * Transforms a buffer, and releases it unless it's sent on. A buffer whose transform throws is left
+     * to the engine, which may retry it.
+     * @param buffer The buffer received.
+     * @return The buffer to send, or null to send nothing.
+     */
+    @Override
+    public final PooledBuffer ingest(PooledBuffer buffer) {
+        PooledBuffer outbound = transform(buffer);
+        if (!buffer.shares(outbound)) {
+            buffer.release();
+        }
+        return outbound;
+    }
+
+    /**
+     * Takes a buffer from the default pool, holding one reference.
+     * @param length The number of bytes needed.
+     * @return The buffer.
+     */
+    protected PooledBuffer acquire(int length) {
+        return BufferPool.getDefault().acquire(length);
+    }
+}
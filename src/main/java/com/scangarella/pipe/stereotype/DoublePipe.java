@@ -0,0 +1,31 @@
+package com.scangarella.pipe.stereotype;
+
+/**
+ * The double counterpart of IntPipe. It transforms double values, in chunks sent as double arrays.
+ */
+public abstract class DoublePipe extends Pipe<double[], double[]> {
+
+    /**
+     * The method to be overridden to transform a single value.
+     * @param value The value received.
+     * @return The transformed value.
+     */
+    public abstract double ingest(double value);
+
+    /**
+     * Transforms every value of a chunk.
+     * @param values The chunk received.
+     * @return The chunk of transformed values, or null if the chunk was empty.
+     */
+    @Override
+    public final double[] ingest(double[] values) {
+        if (values.length == 0) {
+            return null;
+        }
+        double[] outbound = new double[values.length];
+        for (int i = 0; i < values.length; i++) {
+            outbound[i] = ingest(values[i]);
+        }
+        return outbound;
+    }
+}
@@ -1,13 +1,21 @@
 package com.scangarella.pipe.stereotype;
 
+import akka.actor.ActorCell;
 import akka.actor.UntypedActor;
+import com.scangarella.pipe.metrics.PipeMetrics;
+import com.scangarella.pipe.transmission.ExceptionBatch;
 import com.scangarella.pipe.transmission.ExceptionMessage;
 import com.scangarella.pipe.transmission.InitializationMessage;
+import com.scangarella.pipe.transmission.ReleaseMessage;
+import com.scangarella.pipe.transmission.StopMessage;
 
 /**
  * An error handler is used to process error messages.
  */
 public abstract class ExceptionHandler extends UntypedActor{
+
+    private PipeMetrics metrics = null;
+
     /**
      * Receives a message from a pipe and processes the message.
      * @param message The received message.
@@ -18,14 +26,43 @@ public abstract class ExceptionHandler extends UntypedActor{
         if (message != null) {
             if (message instanceof InitializationMessage) {
                 initializePipe((InitializationMessage) message);
+            } else if (message instanceof StopMessage) {
+                getContext().stop(this.getSelf());
+            } else if (message instanceof ReleaseMessage) {
+                if (((ReleaseMessage) message).isReset() && this instanceof Resettable) {
+                    ((Resettable) this).reset();
+                }
+                this.getSender().tell(message, this.getSelf());
+            } else if (this.metrics == null) {
+                handle(message);
             } else {
-                onException((ExceptionMessage) message);
+                long start = System.nanoTime();
+                handle(message);
+                this.metrics.recordIngest(System.nanoTime() - start);
             }
         }
     }
 
+    private void handle(Object message) {
+        if (message instanceof ExceptionBatch) {
+            onExceptions((ExceptionBatch) message);
+        } else {
+            onException((ExceptionMessage) message);
+        }
+    }
+
     private void initializePipe(InitializationMessage message) {
+        this.metrics = message.getMetrics();
+        if (this.metrics != null) {
+            this.metrics.addInstance(((ActorCell) getContext()).mailbox());
+        }
+    }
 
+    @Override
+    public void postStop() {
+        if (this.metrics != null) {
+            this.metrics.removeInstance(((ActorCell) getContext()).mailbox());
+        }
     }
 
     /**
@@ -33,4 +70,14 @@ public abstract class ExceptionHandler extends UntypedActor{
      * @param message The message to process.
      */
     public abstract void onException(ExceptionMessage message);
+
+    /**
+     * Processes the errors of one type that a pipe gathered over an interval. Pipes only gather their errors
+     * when this handler is given an error policy in the schematic. By default each error that was kept is
+     * passed to 'onException' and the rest are left at the count; override this to handle the batch at once.
+     * @param batch The errors to process.
+     */
+    public void onExceptions(ExceptionBatch batch) {
+        batch.getSamples().forEach(this::onException);
+    }
 }
@@ -0,0 +1,252 @@
+package com.scangarella.pipe.stereotype;
+
+import akka.actor.Cancellable;
+import com.scangarella.pipe.transmission.CommitMessage;
+import com.scangarella.pipe.transmission.Correlation;
+import com.scangarella.pipe.transmission.ExceptionMessage;
+import scala.concurrent.duration.Duration;
+import scala.concurrent.duration.FiniteDuration;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A last pipe that writes what it receives to files. Records are copied into large direct buffers, and
+ * the buffers are written with a single gathering write once they're all full, so a file is written a few
+ * megabytes at a time rather than a record at a time. Files are synced on a timer driven by the akka
+ * scheduler, so that every record received within a commit interval shares one sync.
+ *
+ * Files are created next to any that are already there, numbered from zero on. Sinks can share a
+ * directory and prefix, for example when they're load balanced, since each takes the next free number.
+ * When the pipe stops, it writes and syncs what it has buffered and closes its file before telling the
+ * pipes after it, such as the end of an ended pipeline, that it has stopped. It sends nothing else.
+ *
+ * A journaled message, or a request, that reaches the sink isn't done with until the sync that makes its
+ * record durable, so a journal only acknowledges records that are on disk.
+ * @param <I> The type of object to be written.
+ */
+public abstract class FileSinkPipe<I> extends AbstractPipe<I, Void> {
+
+    private SinkPolicy policy;
+    private ByteBuffer[] buffers;
+    private int filling = 0;
+    private long buffered = 0;
+    private FileChannel file = null;
+    private long fileBytes = 0;
+    private long openedAt = 0;
+    private long synced = 0;
+    private int fileNumber = 0;
+    private Cancellable timer = null;
+    private List<Correlation> unsynced = new ArrayList<>();
+
+    /**
+     * Creates a pipe that writes files as the policy describes. Pipes call this from their no argument
+     * constructor.
+     * @param policy The files to write, and how often to write and sync them.
+     */
+    protected FileSinkPipe(SinkPolicy policy) {
+        this.policy = policy;
+        this.buffers = new ByteBuffer[policy.getBuffers()];
+    }
+
+    /**
+     * Turns an object into the bytes to write.
+     * @param i The object.
+     * @return The bytes, from the buffer's position to its limit, or null to write nothing.
+     */
+    public abstract ByteBuffer encode(I i);
+
+    /**
+     * Called after every sync. Does nothing unless overridden.
+     * @param path The file that was synced.
+     * @param bytes The number of bytes the sync made durable.
+     */
+    protected void committed(Path path, long bytes) { }
+
+    /**
+     * Copies the object's bytes into the buffers, and writes the buffers once they're full.
+     * @param i The object.
+     * @return Nothing, since file sinks don't send objects on.
+     */
+    @Override
+    public final Void ingest(I i) {
+        ByteBuffer bytes = encode(i);
+        if (bytes == null || !bytes.hasRemaining()) {
+            return null;
+        }
+        try {
+            long size = this.fileBytes + this.buffered;
+            if (this.policy.getRollBytes() > 0 && size > 0 && size + bytes.remaining() > this.policy.getRollBytes()) {
+                close();
+            }
+            if (this.file == null) {
+                open();
+            }
+            while (bytes.hasRemaining()) {
+                ByteBuffer buffer = buffer();
+                int length = Math.min(bytes.remaining(), buffer.remaining());
+                ByteBuffer part = bytes.duplicate();
+                part.limit(part.position() + length);
+                buffer.put(part);
+                bytes.position(bytes.position() + length);
+                this.buffered += length;
+            }
+            Correlation correlation = getCorrelation();
+            if (correlation != null) {
+                correlation.retain(1);
+                this.unsynced.add(correlation);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return null;
+    }
+
+    /**
+     * Sends nothing.
+     * @param outbound Always null.
+     */
+    @Override
+    protected final void send(Void outbound) { }
+
+    @Override
+    void initialize() {
+        long interval = this.policy.getCommitMillis() > 0 ? this.policy.getCommitMillis() : this.policy.getRollMillis();
+        if (interval > 0) {
+            FiniteDuration tick = Duration.create(interval, TimeUnit.MILLISECONDS);
+            this.timer = getContext().system().scheduler().schedule(tick, tick,
+                    this.getSelf(), new CommitMessage(), getContext().dispatcher(), this.getSelf());
+        }
+    }
+
+    /**
+     * Writes and syncs the current file, and rolls it if it has been open for the roll interval.
+     */
+    @Override
+    void commit() {
+        if (this.file == null) {
+            return;
+        }
+        try {
+            if (this.policy.getRollMillis() > 0 && System.currentTimeMillis() - this.openedAt >= this.policy.getRollMillis()) {
+                close();
+            } else if (this.policy.getCommitMillis() > 0) {
+                write();
+                sync();
+            }
+        } catch (IOException e) {
+            reportError(new ExceptionMessage(e));
+        }
+    }
+
+    /**
+     * Writes, syncs and closes the current file before the pipe stops.
+     */
+    @Override
+    void flush() {
+        try {
+            close();
+        } catch (IOException e) {
+            reportError(new ExceptionMessage(e));
+        }
+    }
+
+    @Override
+    public void postStop() {
+        super.postStop();
+        if (this.timer != null) {
+            this.timer.cancel();
+        }
+        if (this.file != null) {
+            try {
+                this.file.close();
+            } catch (IOException e) {
+                reportError(new ExceptionMessage(e));
+            }
+        }
+    }
+
+    /**
+     * Gets the buffer to copy into next, writing every buffer first if they're all full.
+     */
+    private ByteBuffer buffer() throws IOException {
+        if (this.buffers[this.filling] == null) {
+            this.buffers[this.filling] = ByteBuffer.allocateDirect(this.policy.getBufferSize());
+        }
+        if (!this.buffers[this.filling].hasRemaining()) {
+            if (this.filling == this.buffers.length - 1) {
+                write();
+            } else {
+                this.filling++;
+                return buffer();
+            }
+        }
+        return this.buffers[this.filling];
+    }
+
+    private void write() throws IOException {
+        if (this.buffered == 0) {
+            return;
+        }
+        for (int b = 0; b <= this.filling; b++) {
+            this.buffers[b].flip();
+        }
+        long written = 0;
+        while (written < this.buffered) {
+            written += this.file.write(this.buffers, 0, this.filling + 1);
+        }
+        for (int b = 0; b <= this.filling; b++) {
+            this.buffers[b].clear();
+        }
+        this.fileBytes += this.buffered;
+        this.buffered = 0;
+        this.filling = 0;
+    }
+
+    private void sync() throws IOException {
+        if (this.fileBytes > this.synced) {
+            this.file.force(false);
+            committed(path(this.fileNumber), this.fileBytes - this.synced);
+            this.synced = this.fileBytes;
+        }
+        this.unsynced.forEach(Correlation::release);
+        this.unsynced.clear();
+    }
+
+    private void open() throws IOException {
+        Files.createDirectories(this.policy.getDirectory());
+        while (this.file == null) {
+            try {
+                this.file = FileChannel.open(path(this.fileNumber), StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+            } catch (FileAlreadyExistsException e) {
+                this.fileNumber++;
+            }
+        }
+        this.fileBytes = 0;
+        this.synced = 0;
+        this.openedAt = System.currentTimeMillis();
+    }
+
+    private void close() throws IOException {
+        if (this.file != null) {
+            write();
+            sync();
+            this.file.close();
+            this.file = null;
+            this.fileNumber++;
+        }
+    }
+
+    private Path path(int number) {
+        return this.policy.getDirectory().resolve(String.format("%s.%06d", this.policy.getPrefix(), number));
+    }
+}
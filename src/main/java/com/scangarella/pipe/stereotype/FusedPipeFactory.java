@@ -0,0 +1,63 @@
+package com.scangarella.pipe.stereotype;
+
+import akka.actor.ActorCell$;
+import akka.actor.ActorContext;
+import akka.actor.ActorSystem;
+
+/**
+ * Creates the pipes that are fused onto the end of another pipe's actor.
+ * Pipes are actors, and akka only lets an actor be constructed while a context is on top of its internal
+ * context stack, so the factory pushes the actor's context while a fused pipe is constructed. The context
+ * stack isn't part of akka's API, so this is the only class that touches it, and only on the akka
+ * versions it was written against. PipeBuilder doesn't fuse pipes when it isn't supported.
+ */
+public final class FusedPipeFactory {
+
+    private static final String SUPPORTED_VERSION = "2.3.";
+    private static final Boolean SUPPORTED = probe();
+
+    private FusedPipeFactory() { }
+
+    /**
+     * Checks to see if pipes can be fused with this version of akka.
+     * @return True if the akka version is supported and its context stack is where it's expected.
+     */
+    public static Boolean isSupported() {
+        return SUPPORTED;
+    }
+
+    /**
+     * Creates a pipe that runs inside of another pipe's actor. The fused pipe shares the actor's self,
+     * sender and scheduler.
+     * @param context The context of the actor the pipe is fused onto.
+     * @param clazz The class of the fused pipe.
+     * @return The fused pipe.
+     */
+    @SuppressWarnings("unchecked")
+    static AbstractPipe<Object, Object> create(ActorContext context, Class clazz) {
+        if (!SUPPORTED) {
+            throw new IllegalStateException("Pipes can't be fused with akka " + ActorSystem.Version() + ".");
+        }
+        ThreadLocal<scala.collection.immutable.List<ActorContext>> contextStack = ActorCell$.MODULE$.contextStack();
+        scala.collection.immutable.List<ActorContext> previous = contextStack.get();
+        contextStack.set(previous.$colon$colon(context));
+        try {
+            return (AbstractPipe<Object, Object>) clazz.getConstructor().newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Could not create fused pipe " + clazz.getName(), e);
+        } finally {
+            contextStack.set(previous);
+        }
+    }
+
+    private static Boolean probe() {
+        if (!ActorSystem.Version().startsWith(SUPPORTED_VERSION)) {
+            return false;
+        }
+        try {
+            return ActorCell$.MODULE$.contextStack().get() != null;
+        } catch (LinkageError e) {
+            return false;
+        }
+    }
+}
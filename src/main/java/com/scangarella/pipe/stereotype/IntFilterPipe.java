@@ -0,0 +1,43 @@
+package com.scangarella.pipe.stereotype;
+
+import java.util.Arrays;
+
+/**
+ * The int counterpart of FilterPipe. It decides for every value of a received int chunk whether or not to
+ * send it downstream, and sends the values it keeps as a single chunk. A chunk whose values are all kept
+ * is sent on as it is, and one whose values are all dropped isn't sent at all.
+ * LongFilterPipe and DoubleFilterPipe are the same for long and double values.
+ */
+public abstract class IntFilterPipe extends Pipe<int[], int[]> {
+
+    private int[] kept = new int[0];
+
+    /**
+     * The method to be overridden to decide whether or not to keep a value.
+     * @param value The value received.
+     * @return True to send the value downstream, false to drop it.
+     */
+    public abstract boolean accept(int value);
+
+    /**
+     * Filters every value of a chunk.
+     * @param values The chunk received.
+     * @return The chunk of values that were kept, or null if none were.
+     */
+    @Override
+    public final int[] ingest(int[] values) {
+        if (this.kept.length < values.length) {
+            this.kept = new int[values.length];
+        }
+        int count = 0;
+        for (int value : values) {
+            if (accept(value)) {
+                this.kept[count++] = value;
+            }
+        }
+        if (count == 0) {
+            return null;
+        }
+        return count == values.length ? values : Arrays.copyOf(this.kept, count);
+    }
+}
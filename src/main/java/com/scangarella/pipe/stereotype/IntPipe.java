@@ -0,0 +1,36 @@
+package com.scangarella.pipe.stereotype;
+
+/**
+ * A pipe that transforms int values without boxing them.
+ * Values travel between pipes as int arrays, a chunk of values per message. Every value of a received chunk
+ * is operated on by the 'ingest' method, and the results are sent downstream as a chunk of the same length.
+ * Put int arrays into the pipeline to feed it, and chunk values the same way when sending them to these pipes.
+ * A chunk sent to several pipes is copied for all but the last, so each pipe may change the chunk it receives.
+ * LongPipe and DoublePipe are the same for long and double values.
+ */
+public abstract class IntPipe extends Pipe<int[], int[]> {
+
+    /**
+     * The method to be overridden to transform a single value.
+     * @param value The value received.
+     * @return The transformed value.
+     */
+    public abstract int ingest(int value);
+
+    /**
+     * Transforms every value of a chunk.
+     * @param values The chunk received.
+     * @return The chunk of transformed values, or null if the chunk was empty.
+     */
+    @Override
+    public final int[] ingest(int[] values) {
+        if (values.length == 0) {
+            return null;
+        }
+        int[] outbound = new int[values.length];
+        for (int i = 0; i < values.length; i++) {
+            outbound[i] = ingest(values[i]);
+        }
+        return outbound;
+    }
+}
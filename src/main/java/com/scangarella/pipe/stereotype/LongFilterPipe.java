@@ -0,0 +1,40 @@
+package com.scangarella.pipe.stereotype;
+
+import java.util.Arrays;
+
+/**
+ * The long counterpart of IntFilterPipe. It filters long values, in chunks sent as long arrays.
+ */
+public abstract class LongFilterPipe extends Pipe<long[], long[]> {
+
+    private long[] kept = new long[0];
+
+    /**
+     * The method to be overridden to decide whether or not to keep a value.
+     * @param value The value received.
+     * @return True to send the value downstream, false to drop it.
+     */
+    public abstract boolean accept(long value);
+
+    /**
+     * Filters every value of a chunk.
+     * @param values The chunk received.
+     * @return The chunk of values that were kept, or null if none were.
+     */
+    @Override
+    public final long[] ingest(long[] values) {
+        if (this.kept.length < values.length) {
+            this.kept = new long[values.length];
+        }
+        int count = 0;
+        for (long value : values) {
+            if (accept(value)) {
+                this.kept[count++] = value;
+            }
+        }
+        if (count == 0) {
+            return null;
+        }
+        return count == values.length ? values : Arrays.copyOf(this.kept, count);
+    }
+}
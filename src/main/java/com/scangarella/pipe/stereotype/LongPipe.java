@@ -0,0 +1,31 @@
+package com.scangarella.pipe.stereotype;
+
+/**
+ * The long counterpart of IntPipe. It transforms long values, in chunks sent as long arrays.
+ */
+public abstract class LongPipe extends Pipe<long[], long[]> {
+
+    /**
+     * The method to be overridden to transform a single value.
+     * @param value The value received.
+     * @return The transformed value.
+     */
+    public abstract long ingest(long value);
+
+    /**
+     * Transforms every value of a chunk.
+     * @param values The chunk received.
+     * @return The chunk of transformed values, or null if the chunk was empty.
+     */
+    @Override
+    public final long[] ingest(long[] values) {
+        if (values.length == 0) {
+            return null;
+        }
+        long[] outbound = new long[values.length];
+        for (int i = 0; i < values.length; i++) {
+            outbound[i] = ingest(values[i]);
+        }
+        return outbound;
+    }
+}
@@ -1,5 +1,7 @@
 package com.scangarella.pipe.stereotype;
 
+import java.util.function.Consumer;
+
 /**
  * A pipe which transforms one object into one or more objects.
  * Data of type I is operated on by the ingest method; an Iterable of type O results.
@@ -18,7 +20,23 @@ public abstract class MultiPipe<I, O> extends AbstractPipe<I, Iterable<O>> {
         if (outbound != null && this.downstreamPipes != null) {
             for (O o : outbound) {
                 if (o != null) {
-                    this.downstreamPipes.forEach(pipe -> pipe.tell(o, this.getSelf()));
+                    tellDownstream(o);
+                }
+            }
+        }
+    }
+
+    /**
+     * Applies the action to each of the outbound O objects.
+     * @param outbound a series of O objects.
+     * @param action The action to apply to each object.
+     */
+    @Override
+    void forEachOutbound(Iterable<O> outbound, Consumer<Object> action) {
+        if (outbound != null) {
+            for (O o : outbound) {
+                if (o != null) {
+                    action.accept(o);
                 }
             }
         }
@@ -0,0 +1,13 @@
+package com.scangarella.pipe.stereotype;
+
+/**
+ * A pipe or exception handler that can put its state back to how it was when it was created.
+ * Pools use this to give every message a fresh pipe without creating a new actor for it.
+ */
+public interface Resettable {
+
+    /**
+     * Puts the state of the pipe back to how it was when it was created.
+     */
+    void reset();
+}
@@ -0,0 +1,146 @@
+package com.scangarella.pipe.stereotype;
+
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Describes the files a FileSinkPipe writes to, and how often it writes and syncs them.
+ * Files are named after the prefix and a number, and a new file is started once the current one reaches
+ * the roll size or has been open for the roll interval. Writes are gathered from a set of buffers once
+ * they're all full. Every commit interval, whatever is buffered is written and the file is synced, so a
+ * record is on disk at most a commit interval after it arrived.
+ */
+public final class SinkPolicy {
+
+    private final Path directory;
+    private final String prefix;
+    private final long rollBytes;
+    private final long rollMillis;
+    private final long commitMillis;
+    private final int buffers;
+    private final int bufferSize;
+
+    private SinkPolicy(Path directory, String prefix, long rollBytes, long rollMillis, long commitMillis,
+                       int buffers, int bufferSize) {
+        if (rollBytes < 0 || rollMillis < 0 || commitMillis < 0 || buffers < 1 || bufferSize < 1) {
+            throw new IllegalArgumentException("A sink needs positive buffers and non-negative intervals.");
+        }
+        this.directory = directory;
+        this.prefix = prefix;
+        this.rollBytes = rollBytes;
+        this.rollMillis = rollMillis;
+        this.commitMillis = commitMillis;
+        this.buffers = buffers;
+        this.bufferSize = bufferSize;
+    }
+
+    /**
+     * Creates a policy for files in a directory, rolled at a gigabyte, committed every second and written
+     * from eight buffers of a megabyte.
+     * @param directory The directory to write files in.
+     * @param prefix The start of every file's name.
+     * @return The policy.
+     */
+    public static SinkPolicy in(Path directory, String prefix) {
+        return new SinkPolicy(directory, prefix, 1L << 30, 0, 1000, 8, 1 << 20);
+    }
+
+    /**
+     * Creates a copy of this policy that rolls files by size.
+     * @param bytes The size at which a new file is started, or zero to never roll by size.
+     * @return The new policy.
+     */
+    public SinkPolicy withRollSize(long bytes) {
+        return new SinkPolicy(this.directory, this.prefix, bytes, this.rollMillis, this.commitMillis,
+                this.buffers, this.bufferSize);
+    }
+
+    /**
+     * Creates a copy of this policy that rolls files by time.
+     * @param duration How long a file is written to before a new one is started, or zero to never roll by time.
+     * @param unit The unit of the duration.
+     * @return The new policy.
+     */
+    public SinkPolicy withRollInterval(long duration, TimeUnit unit) {
+        return new SinkPolicy(this.directory, this.prefix, this.rollBytes, unit.toMillis(duration),
+                this.commitMillis, this.buffers, this.bufferSize);
+    }
+
+    /**
+     * Creates a copy of this policy with a different commit interval.
+     * @param duration The time between syncs, or zero to only sync when a file is rolled or closed.
+     * @param unit The unit of the duration.
+     * @return The new policy.
+     */
+    public SinkPolicy withCommitInterval(long duration, TimeUnit unit) {
+        return new SinkPolicy(this.directory, this.prefix, this.rollBytes, this.rollMillis,
+                unit.toMillis(duration), this.buffers, this.bufferSize);
+    }
+
+    /**
+     * Creates a copy of this policy with different buffers.
+     * @param buffers The number of buffers written in one gathering write.
+     * @param bufferSize The number of bytes in a buffer.
+     * @return The new policy.
+     */
+    public SinkPolicy withBuffers(int buffers, int bufferSize) {
+        return new SinkPolicy(this.directory, this.prefix, this.rollBytes, this.rollMillis, this.commitMillis,
+                buffers, bufferSize);
+    }
+
+    /**
+     * Gets the directory files are written in.
+     * @return The directory.
+     */
+    public Path getDirectory() {
+        return this.directory;
+    }
+
+    /**
+     * Gets the start of every file's name.
+     * @return The prefix.
+     */
+    public String getPrefix() {
+        return this.prefix;
+    }
+
+    /**
+     * Gets the size at which a new file is started.
+     * @return The size in bytes, or zero if files aren't rolled by size.
+     */
+    public long getRollBytes() {
+        return this.rollBytes;
+    }
+
+    /**
+     * Gets how long a file is written to before a new one is started.
+     * @return The interval in milliseconds, or zero if files aren't rolled by time.
+     */
+    public long getRollMillis() {
+        return this.rollMillis;
+    }
+
+    /**
+     * Gets the time between syncs.
+     * @return The interval in milliseconds, or zero if files are only synced when they're rolled or closed.
+     */
+    public long getCommitMillis() {
+        return this.commitMillis;
+    }
+
+    /**
+     * Gets the number of buffers written in one gathering write.
+     * @return The number of buffers.
+     */
+    public int getBuffers() {
+        return this.buffers;
+    }
+
+    /**
+     * Gets the number of bytes in a buffer.
+     * @return The buffer size.
+     */
+    public int getBufferSize() {
+        return this.bufferSize;
+    }
+}
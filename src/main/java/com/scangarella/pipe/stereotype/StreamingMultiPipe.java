@@ -0,0 +1,46 @@
+package com.scangarella.pipe.stereotype;
+
+import java.util.Iterator;
+
+/**
+ * A pipe which transforms one object into a lazy sequence of objects, for inputs that expand into more
+ * outputs than should be held in memory at once, such as a file split into lines.
+ * Data of type I is operated on by the ingest method; an Iterator of type O results, which is only
+ * advanced as its objects are sent. Null objects are skipped.
+ *
+ * Objects are sent a chunk at a time. Between chunks, the pipe works through the messages in its mailbox,
+ * so it keeps answering credits and stop messages; data that arrives while it's streaming is held until
+ * the iterator runs out. With credits on, the pipe stops advancing the iterator while a downstream pipe
+ * is out of credits, so no more objects exist at once than the downstream pipes are ready for.
+ * An exception thrown by the iterator ends the stream and is reported to the pipe's exception handler.
+ * @param <I> The type of object to be received.
+ * @param <O> The type of object to be sent.
+ */
+public abstract class StreamingMultiPipe<I, O> extends AbstractPipe<I, Iterator<O>> {
+
+    /**
+     * Creates a pipe that sends 64 objects at a time.
+     */
+    public StreamingMultiPipe() {
+        this(64);
+    }
+
+    /**
+     * Creates a pipe that sends the given number of objects at a time.
+     * @param chunkSize The number of objects sent before the pipe works through its mailbox again.
+     */
+    protected StreamingMultiPipe(Integer chunkSize) {
+        setStreaming(chunkSize);
+    }
+
+    /**
+     * Starts sending the outbound O objects to the downstream pipes.
+     * @param outbound The objects to be sent.
+     */
+    @Override
+    protected final void send(Iterator<O> outbound) {
+        if (this.downstreamPipes != null) {
+            stream(outbound);
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package com.scangarella.pipe.stereotype;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Describes the windows of a WindowPipe. A window is made of panes, each as long as the slide.
+ * A tumbling window is a single pane, so windows don't overlap. A sliding window is made of several panes
+ * and ends every time a pane does, so every element is part of as many windows as the window has panes.
+ * Windows are either counted in elements, separately for every key, or measured in processing time.
+ */
+public class Window {
+    private long size;
+    private long slide;
+    private TimeUnit unit;
+
+    private Window(long size, long slide, TimeUnit unit) {
+        if (size < 1 || slide < 1 || size % slide != 0) {
+            throw new IllegalArgumentException("A window needs a positive size that's a multiple of its slide.");
+        }
+        this.size = size;
+        this.slide = slide;
+        this.unit = unit;
+    }
+
+    /**
+     * Creates windows that end after every given number of elements.
+     * @param count The number of elements in a window.
+     * @return The windows.
+     */
+    public static Window tumbling(long count) {
+        return new Window(count, count, null);
+    }
+
+    /**
+     * Creates windows of the given number of elements that end every time the slide's number of elements arrive.
+     * @param count The number of elements in a window.
+     * @param slide The number of elements between the ends of two windows. The count must be a multiple of it.
+     * @return The windows.
+     */
+    public static Window sliding(long count, long slide) {
+        return new Window(count, slide, null);
+    }
+
+    /**
+     * Creates windows that end every time the given time has passed.
+     * @param duration The length of a window.
+     * @param unit The unit of the duration.
+     * @return The windows.
+     */
+    public static Window tumbling(long duration, TimeUnit unit) {
+        return new Window(duration, duration, unit);
+    }
+
+    /**
+     * Creates windows of the given length that end every time the slide has passed.
+     * @param duration The length of a window.
+     * @param slide The time between the ends of two windows. The duration must be a multiple of it.
+     * @param unit The unit of the duration and slide.
+     * @return The windows.
+     */
+    public static Window sliding(long duration, long slide, TimeUnit unit) {
+        return new Window(duration, slide, unit);
+    }
+
+    /**
+     * Checks to see if the windows are measured in processing time.
+     * @return True if they are, false if they're counted in elements.
+     */
+    public Boolean isTimed() {
+        return this.unit != null;
+    }
+
+    /**
+     * Gets the number of panes in a window.
+     * @return The size divided by the slide.
+     */
+    public Integer getPanes() {
+        return (int) (this.size / this.slide);
+    }
+
+    /**
+     * Gets the slide, which is the length of a pane.
+     * @return The slide in elements, or in the windows' time unit.
+     */
+    public long getSlide() {
+        return this.slide;
+    }
+
+    /**
+     * Gets the unit the windows are measured in.
+     * @return The time unit, or null if the windows are counted in elements.
+     */
+    public TimeUnit getUnit() {
+        return this.unit;
+    }
+}
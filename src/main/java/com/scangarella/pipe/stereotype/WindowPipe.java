@@ -0,0 +1,282 @@
+package com.scangarella.pipe.stereotype;
+
+import akka.actor.Cancellable;
+import com.scangarella.pipe.transmission.Correlation;
+import com.scangarella.pipe.transmission.WindowMessage;
+import scala.concurrent.duration.Duration;
+import scala.concurrent.duration.FiniteDuration;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A pipe that aggregates the objects it receives over windows and sends one object per window.
+ * Aggregation is incremental: every object is added to its pane's aggregate as it arrives, so a window
+ * holds an aggregate per pane rather than its objects. Sliding windows merge their panes' aggregates
+ * when they end.
+ *
+ * Objects can be keyed, in which case every key has windows of its own. Counted windows end once the key's
+ * pane is full; timed windows end for every key at once, on a timer driven by the akka scheduler. A key
+ * with nothing in its window is forgotten, so only the keys of recent objects take up memory.
+ * When the pipe stops, every key that has objects that weren't part of a window yet sends a last,
+ * partial window.
+ *
+ * A journaled message that reaches the pipe isn't done with until its pane has left the window and
+ * everything sent for the windows it was part of is done with downstream, so a journal doesn't
+ * acknowledge records that are only held in an open window. A request ends at the pipe, since its
+ * object is only part of an aggregate, so 'ask' completes with null and 'askAll' with an empty list.
+ * @param <I> The type of object to be received.
+ * @param <A> The type of the aggregate.
+ * @param <O> The type of object sent for every window.
+ */
+public abstract class WindowPipe<I, A, O> extends AbstractPipe<I, O> {
+
+    private static final Object EMPTY = new Object();
+
+    private Window window;
+    private Map<Object, Panes<A>> keys = new HashMap<>();
+    private Cancellable timer = null;
+
+    /**
+     * Creates a pipe with the given windows. Pipes call this from their no argument constructor.
+     * @param window The windows to aggregate over.
+     */
+    protected WindowPipe(Window window) {
+        this.window = window;
+    }
+
+    /**
+     * Creates an empty aggregate.
+     * @return The aggregate.
+     */
+    public abstract A create();
+
+    /**
+     * Adds an object to an aggregate.
+     * @param aggregate The aggregate, which may be changed and returned.
+     * @param i The object.
+     * @return The aggregate with the object added.
+     */
+    public abstract A add(A aggregate, I i);
+
+    /**
+     * Merges the aggregate of one pane into another. Only sliding windows merge aggregates.
+     * @param aggregate The aggregate to merge into, which may be changed and returned.
+     * @param other The aggregate to merge, which mustn't be changed.
+     * @return The merged aggregate.
+     */
+    public abstract A merge(A aggregate, A other);
+
+    /**
+     * Turns the aggregate of a window into the object to send downstream.
+     * @param key The key of the window, or null if objects aren't keyed.
+     * @param aggregate The window's aggregate.
+     * @return The object to send, or null to send nothing.
+     */
+    public abstract O emit(Object key, A aggregate);
+
+    /**
+     * Gets the key of an object. Objects aren't keyed unless this is overridden.
+     * @param i The object.
+     * @return The object's key.
+     */
+    public Object getKey(I i) {
+        return null;
+    }
+
+    /**
+     * Adds the object to its key's pane. Ends the key's window if that fills a counted pane, and sends
+     * the object for that window.
+     * @param i The object.
+     * @return Nothing, since windows are sent as they end.
+     */
+    @Override
+    public final O ingest(I i) {
+        Object key = getKey(i);
+        Panes<A> panes = this.keys.get(key);
+        if (panes == null) {
+            panes = new Panes<>();
+            this.keys.put(key, panes);
+        }
+        if (panes.count == 0) {
+            panes.current = create();
+        }
+        panes.current = add(panes.current, i);
+        panes.count++;
+        Correlation correlation = getCorrelation();
+        if (correlation != null && correlation.isTracking()) {
+            correlation.retain(1);
+            if (panes.held == null) {
+                panes.held = new ArrayList<>();
+            }
+            panes.held.add(correlation);
+        }
+        if (!this.window.isTimed() && panes.count == this.window.getSlide()) {
+            sendWindow(key, panes);
+            if (slide(panes)) {
+                this.keys.remove(key);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Sends the outbound O object to the downstream pipes.
+     * @param outbound The outbound message to be sent.
+     */
+    @Override
+    protected final void send(O outbound) {
+        if (outbound != null && this.downstreamPipes != null) {
+            tellDownstream(outbound);
+        }
+    }
+
+    @Override
+    void initialize() {
+        if (this.window.isTimed()) {
+            FiniteDuration slide = Duration.create(this.window.getSlide(), this.window.getUnit());
+            this.timer = getContext().system().scheduler().schedule(slide, slide,
+                    this.getSelf(), new WindowMessage(), getContext().dispatcher(), this.getSelf());
+        }
+    }
+
+    /**
+     * Ends the current window of every key.
+     */
+    @Override
+    void closeWindows() {
+        Iterator<Map.Entry<Object, Panes<A>>> entries = this.keys.entrySet().iterator();
+        while (entries.hasNext()) {
+            Map.Entry<Object, Panes<A>> entry = entries.next();
+            Panes<A> panes = entry.getValue();
+            if (panes.count > 0 || panes.closed != null) {
+                sendWindow(entry.getKey(), panes);
+            }
+            if (slide(panes)) {
+                entries.remove();
+            }
+        }
+    }
+
+    /**
+     * Sends a last window for every key with objects in its current pane.
+     */
+    @Override
+    void flush() {
+        this.keys.forEach((key, panes) -> {
+            if (panes.count > 0) {
+                sendWindow(key, panes);
+            }
+            release(panes.held);
+            if (panes.closedHeld != null) {
+                panes.closedHeld.forEach(WindowPipe::release);
+            }
+        });
+        this.keys.clear();
+    }
+
+    @Override
+    public void postStop() {
+        super.postStop();
+        if (this.timer != null) {
+            this.timer.cancel();
+        }
+    }
+
+    /**
+     * Sends the object for a key's window. The journaled messages of every pane in the window are held
+     * until the object has been done with downstream.
+     */
+    private void sendWindow(Object key, Panes<A> panes) {
+        List<Correlation> held = new ArrayList<>();
+        if (panes.closedHeld != null) {
+            panes.closedHeld.forEach(held::addAll);
+        }
+        if (panes.held != null) {
+            held.addAll(panes.held);
+        }
+        O outbound = emit(key, aggregate(panes));
+        if (held.isEmpty()) {
+            send(outbound);
+            return;
+        }
+        held.forEach(correlation -> correlation.retain(1));
+        Correlation sent = new Correlation(() -> held.forEach(Correlation::release));
+        sendCorrelated(sent, outbound);
+        sent.release();
+    }
+
+    private static void release(List<Correlation> held) {
+        if (held != null) {
+            held.forEach(Correlation::release);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private A aggregate(Panes<A> panes) {
+        if (panes.closed == null) {
+            return panes.count == 0 ? create() : panes.current;
+        }
+        A aggregate = create();
+        for (Object pane : panes.closed) {
+            if (pane != EMPTY) {
+                aggregate = merge(aggregate, (A) pane);
+            }
+        }
+        return panes.count == 0 ? aggregate : merge(aggregate, panes.current);
+    }
+
+    /**
+     * Closes the current pane and drops the oldest pane once the window has too many.
+     * Empty panes at the start of the window are dropped right away. A pane's messages are let go of
+     * once it's dropped.
+     * @return True if nothing is left in the window.
+     */
+    private Boolean slide(Panes<A> panes) {
+        if (this.window.getPanes() > 1 && (panes.count > 0 || panes.closed != null)) {
+            if (panes.closed == null) {
+                panes.closed = new ArrayDeque<>(this.window.getPanes());
+                panes.closedHeld = new ArrayDeque<>(this.window.getPanes());
+            }
+            panes.closed.add(panes.count == 0 ? EMPTY : panes.current);
+            panes.closedHeld.add(panes.held == null ? Collections.emptyList() : panes.held);
+            if (panes.closed.size() == this.window.getPanes()) {
+                panes.closed.poll();
+                release(panes.closedHeld.poll());
+            }
+            while (!panes.closed.isEmpty() && panes.closed.peek() == EMPTY) {
+                panes.closed.poll();
+                panes.closedHeld.poll();
+            }
+            if (panes.closed.isEmpty()) {
+                panes.closed = null;
+                panes.closedHeld = null;
+            }
+        } else {
+            release(panes.held);
+        }
+        panes.held = null;
+        panes.current = null;
+        panes.count = 0;
+        return panes.closed == null;
+    }
+
+    /**
+     * The panes of a key's window: the current pane, and the closed panes that are still part of the window,
+     * if it has more than one. Closed panes that were empty are kept as a placeholder, so that the panes
+     * after them age out on time. Each pane holds the correlations of the messages added to it.
+     */
+    private static class Panes<A> {
+        private Deque<Object> closed = null;
+        private Deque<List<Correlation>> closedHeld = null;
+        private A current = null;
+        private long count = 0;
+        private List<Correlation> held = null;
+    }
+}
@@ -1,42 +1,126 @@
 package com.scangarella.pipe.stereotype;
 
+import akka.actor.ActorCell;
 import akka.actor.ActorRef;
+import akka.actor.AddressFromURIString;
+import akka.actor.Deploy;
 import akka.actor.Props;
+import akka.actor.Terminated;
 import akka.actor.UntypedActor;
+import akka.remote.RemoteScope;
+import com.scangarella.pipe.metrics.PipeMetrics;
+import com.scangarella.pipe.transmission.BatchPolicy;
+import com.scangarella.pipe.transmission.ErrorPolicy;
 import com.scangarella.pipe.transmission.InitializationMessage;
+import com.scangarella.pipe.transmission.RetryPolicy;
+import com.scangarella.pipe.transmission.StopMessage;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * A pipe to wrap another pipe. The incoming objects are to be specially handled
  * by the wrapper pipe's onReceive method. Messages to the inner pipe(s) can be forwarded
  * by the 'tell' method.
  * Inner pipes will all be of the same type.
+ * Once a stop message has arrived from every upstream pipe, the wrapper tells each of its inner pipes
+ * to stop and waits for them to drain before stopping itself and telling the downstream pipes.
  */
 public abstract class WrapperPipe extends UntypedActor {
 
+    /**
+     * The name of the setting for the id of the dispatcher a pipe or wrapper runs on.
+     */
+    public static final String DISPATCHER = "dispatcher";
+
     private List<Class> innerPipes = null;
     private List<ActorRef> downstream = null;
     private ActorRef exception = null;
+    private Map<ActorRef, BatchPolicy> batching = Collections.emptyMap();
+    private Integer creditWindow = 0;
+    private Map<ActorRef, Integer> credits = Collections.emptyMap();
+    private ActorRef identity = null;
+    private Boolean terminal = false;
+    private PipeMetrics metrics = null;
+    private Map<String, Object> settings = Collections.emptyMap();
+    private List<Map<String, Object>> innerSettings = Collections.emptyList();
+    private String pipeId = null;
+    private RetryPolicy retryPolicy = null;
+    private ErrorPolicy errorPolicy = null;
+    private Integer upstreamPipeCount;
+    private Integer receivedStopMessages = 0;
+    private Boolean stopping = false;
 
     /**
      * Builds an instance of the wrapper's inner pipe.
      * @return The actor ref used to reference the inner pipe.
      */
     protected ActorRef buildInnerPipe() {
+        return buildInnerPipe(this.downstream, this.batching, this.credits, this.terminal, null);
+    }
+
+    /**
+     * Builds an instance of the wrapper's inner pipe on another node. The inner pipe runs on the node's
+     * default dispatcher.
+     * @param node The node's address, such as 'akka.tcp://pipeline@10.0.0.2:2552', or null for this node.
+     * @return The actor ref used to reference the inner pipe.
+     */
+    protected ActorRef buildInnerPipe(String node) {
+        return buildInnerPipe(this.downstream, this.batching, this.credits, this.terminal, node);
+    }
+
+    /**
+     * Builds an instance of the wrapper's inner pipe that sends to the given pipe instead of the wrapper's
+     * downstream pipes. Wrappers use this to see everything their inner pipes send. Nothing the inner pipe
+     * sends is batched, waits for credits, or is handed to a request as a result; that's left to the wrapper.
+     * @param downstream The pipe to send to, usually the wrapper itself.
+     * @return The actor ref used to reference the inner pipe.
+     */
+    protected ActorRef buildInnerPipe(ActorRef downstream) {
+        return buildInnerPipe(Collections.singletonList(downstream), Collections.emptyMap(), Collections.emptyMap(), false, null);
+    }
+
+    private ActorRef buildInnerPipe(List<ActorRef> downstream, Map<ActorRef, BatchPolicy> batching,
+                                    Map<ActorRef, Integer> credits, Boolean terminal, String node) {
         ActorRef ref;
+        InitializationMessage init;
         Class innerPipe = this.innerPipes.get(this.innerPipes.size() - 1);
+        Props props = Props.create(innerPipe);
+        if (node != null) {
+            props = props.withDeploy(new Deploy(new RemoteScope(AddressFromURIString.parse(node))));
+        } else if (this.innerSettings.size() == this.innerPipes.size()) {
+            Object dispatcher = this.innerSettings.get(this.innerSettings.size() - 1).get(DISPATCHER);
+            if (dispatcher != null) {
+                props = props.withDispatcher((String) dispatcher);
+            }
+        }
         if (innerPipes.size() > 1) {
             List<Class> innerInnerPipes = new ArrayList<>(this.innerPipes);
             innerInnerPipes.remove(innerInnerPipes.size() - 1);
-            ref = getContext().actorOf(Props.create(innerPipe));
-            ref.tell(new InitializationMessage(innerInnerPipes, downstream, 1, exception), this.getSelf());
+            ref = getContext().actorOf(props);
+            init = new InitializationMessage(innerInnerPipes, downstream, 1, exception);
+            if (this.innerSettings.size() == this.innerPipes.size()) {
+                List<Map<String, Object>> innerInnerSettings = new ArrayList<>(this.innerSettings);
+                init.setSettings(innerInnerSettings.remove(innerInnerSettings.size() - 1));
+                init.setInnerSettings(innerInnerSettings);
+            }
         } else {
-            ref = getContext().actorOf(Props.create(innerPipe));
-            InitializationMessage init = new InitializationMessage(downstream, 1, exception);
-            ref.tell(init, this.getSelf());
+            ref = getContext().actorOf(props);
+            init = new InitializationMessage(downstream, 1, exception);
         }
+        init.setBatching(batching);
+        init.setCreditWindow(creditWindow);
+        init.setCredits(credits);
+        init.setTerminal(terminal);
+        init.setMetrics(metrics);
+        init.setPipeId(pipeId);
+        init.setRetryPolicy(retryPolicy);
+        init.setErrorPolicy(errorPolicy);
+        ref.tell(init, this.identity);
+        getContext().watch(ref);
         return ref;
     }
 
@@ -50,8 +134,19 @@ public abstract class WrapperPipe extends UntypedActor {
         if (message != null) {
             if (message instanceof InitializationMessage) {
                 initializePipe((InitializationMessage) message);
+            } else if (message instanceof StopMessage) {
+                receivedStopMessages++;
+                if (receivedStopMessages.equals(upstreamPipeCount)) {
+                    stopping = true;
+                    stopInnerPipes();
+                    stopIfDrained();
+                }
+            } else if (message instanceof Terminated) {
+                innerPipeTerminated(((Terminated) message).getActor());
+                stopIfDrained();
             } else {
                 ingest(message);
+                stopIfDrained();
             }
         }
     }
@@ -60,9 +155,126 @@ public abstract class WrapperPipe extends UntypedActor {
         this.innerPipes = message.getInner();
         this.downstream = message.getDownstream();
         this.exception = message.getException();
+        this.batching = message.getBatching();
+        this.creditWindow = message.getCreditWindow();
+        this.credits = message.getCredits();
+        this.upstreamPipeCount = message.getUpstreamCount();
+        this.terminal = message.isTerminal();
+        this.metrics = message.getMetrics();
+        this.settings = new HashMap<>(message.getSettings());
+        this.innerSettings = message.getInnerSettings();
+        this.pipeId = message.getPipeId();
+        this.retryPolicy = message.getRetryPolicy();
+        this.errorPolicy = message.getErrorPolicy();
+        if (this.metrics != null) {
+            this.metrics.addWrapper(((ActorCell) getContext()).mailbox());
+        }
+        this.identity = this.getSender().equals(getContext().system().deadLetters()) ? this.getSelf() : this.getSender();
         initSystem();
     }
 
+    @Override
+    public void postStop() {
+        if (this.metrics != null) {
+            this.metrics.removeWrapper(((ActorCell) getContext()).mailbox());
+        }
+    }
+
+    private void stopIfDrained() {
+        if (stopping && !getContext().getChildren().iterator().hasNext() && isDrained()) {
+            stopping = false;
+            if (this.identity.equals(this.getSelf()) && this.downstream != null) {
+                this.downstream.forEach(pipe -> pipe.tell(new StopMessage(), this.getSelf()));
+            }
+            getContext().stop(this.getSelf());
+        }
+    }
+
+    /**
+     * Called once a stop message has arrived from every upstream pipe. Tells every inner pipe to stop.
+     * Wrappers that hold on to messages override this to stop their inner pipes once they've handed
+     * everything over. The wrapper stops once all of its inner pipes have.
+     */
+    protected void stopInnerPipes() {
+        getContext().getChildren().forEach(child -> child.tell(new StopMessage(), this.getSelf()));
+    }
+
+    /**
+     * Checks to see if the wrapper has handed every message it was sent to an inner pipe.
+     * The wrapper doesn't stop until it has, even if none of its inner pipes are running.
+     * @return True if the wrapper isn't holding on to any messages, false otherwise.
+     */
+    protected Boolean isDrained() {
+        return true;
+    }
+
+    /**
+     * Called when one of the wrapper's inner pipes has stopped.
+     * @param innerPipe The inner pipe that stopped.
+     */
+    protected void innerPipeTerminated(ActorRef innerPipe) { }
+
+    /**
+     * Gets one of the settings given to this wrapper in the schematic.
+     * @param key The setting's name.
+     * @param defaultValue The value to use if the setting wasn't given.
+     * @param <T> The setting's type.
+     * @return The setting's value, or the default value.
+     */
+    @SuppressWarnings("unchecked")
+    protected <T> T getSetting(String key, T defaultValue) {
+        Object value = this.settings.get(key);
+        return value == null ? defaultValue : (T) value;
+    }
+
+    /**
+     * Gets the pipes the wrapper sends to.
+     * @return The downstream pipes.
+     */
+    protected List<ActorRef> getDownstream() {
+        return this.downstream;
+    }
+
+    /**
+     * Gets the batch policies of the edges to the downstream pipes.
+     * @return The policies of the batched edges, by downstream pipe.
+     */
+    protected Map<ActorRef, BatchPolicy> getBatching() {
+        return this.batching;
+    }
+
+    /**
+     * Gets the credits the wrapper starts out with for each downstream pipe, if credits are on.
+     * @return The credits, by downstream pipe.
+     */
+    protected Map<ActorRef, Integer> getCredits() {
+        return this.credits;
+    }
+
+    /**
+     * Checks to see if the wrapped pipe is one of the last pipes of the pipeline.
+     * @return True if it is, false otherwise.
+     */
+    protected Boolean isTerminal() {
+        return this.terminal;
+    }
+
+    /**
+     * Gets the metrics of the wrapped pipe, if metrics are on.
+     * @return The metrics, or null.
+     */
+    protected PipeMetrics getMetrics() {
+        return this.metrics;
+    }
+
+    /**
+     * Gets the class of the pipe that 'buildInnerPipe' builds.
+     * @return The inner pipe's class.
+     */
+    protected Class getInnerPipeClass() {
+        return this.innerPipes.get(this.innerPipes.size() - 1);
+    }
+
     /**
      * The method to be overridden to handle messages.
      * @param message The message to be handled.
@@ -0,0 +1,27 @@
+package com.scangarella.pipe.transmission;
+
+import java.util.List;
+
+/**
+ * A batch of messages sent along a single edge with one tell.
+ * Pipes unpack the batch on receipt and ingest each message in order.
+ */
+public class BatchMessage {
+    private List<Object> messages;
+
+    /**
+     * Creates a new BatchMessage.
+     * @param messages The messages in the batch, in the order they were sent.
+     */
+    public BatchMessage(List<Object> messages) {
+        this.messages = messages;
+    }
+
+    /**
+     * Gets the messages in this batch.
+     * @return The batched messages.
+     */
+    public List<Object> getMessages() {
+        return this.messages;
+    }
+}
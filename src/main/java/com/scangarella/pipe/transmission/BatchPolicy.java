@@ -0,0 +1,41 @@
+package com.scangarella.pipe.transmission;
+
+/**
+ * Describes how the messages sent along an edge are grouped into a BatchMessage.
+ * A batch is flushed once it holds maxSize messages or once it is maxDelayMicros old.
+ * A delay of zero flushes the batch as soon as the sending pipe has worked through its mailbox.
+ * Delays are driven by the Akka scheduler, so they are rounded up to its tick duration.
+ */
+public class BatchPolicy {
+    private int maxSize;
+    private long maxDelayMicros;
+
+    /**
+     * Creates a new BatchPolicy.
+     * @param maxSize The number of messages after which a batch is flushed.
+     * @param maxDelayMicros The age in microseconds after which a batch is flushed.
+     */
+    public BatchPolicy(int maxSize, long maxDelayMicros) {
+        if (maxSize < 1 || maxDelayMicros < 0) {
+            throw new IllegalArgumentException("A batch needs a positive size and a non-negative delay.");
+        }
+        this.maxSize = maxSize;
+        this.maxDelayMicros = maxDelayMicros;
+    }
+
+    /**
+     * Gets the number of messages after which a batch is flushed.
+     * @return The maximum batch size.
+     */
+    public int getMaxSize() {
+        return this.maxSize;
+    }
+
+    /**
+     * Gets the age in microseconds after which a batch is flushed.
+     * @return The maximum batch delay.
+     */
+    public long getMaxDelayMicros() {
+        return this.maxDelayMicros;
+    }
+}
@@ -0,0 +1,172 @@
+package com.scangarella.pipe.transmission;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A pool of direct buffers, in size classes of powers of two from 512 bytes to 4 megabytes.
+ * A buffer is taken from the smallest class that fits, and goes back to it once its last reference is
+ * released. Each class keeps at most a set number of bytes of free buffers; buffers beyond that, and
+ * buffers larger than the largest class, are left to the garbage collector.
+ *
+ * In debug mode the pool records where every buffer was acquired. A buffer that is garbage collected
+ * without having been released is a leak, and the place it was acquired is kept for 'getLeaks'. Debug
+ * mode costs a stack trace per buffer; the default pool is in debug mode if the system property
+ * 'pipe.buffers.debug' is true.
+ */
+public class BufferPool {
+
+    private static final int SMALLEST_CLASS = 9;
+    private static final int LARGEST_CLASS = 22;
+    private static BufferPool defaultPool;
+
+    private final Integer maxBytesPerClass;
+    private final Boolean debug;
+    private final List<Queue<ByteBuffer>> free = new ArrayList<>();
+    private final List<AtomicInteger> freeCounts = new ArrayList<>();
+    private final ReferenceQueue<PooledBuffer.Allocation> collected = new ReferenceQueue<>();
+    private final Set<Leak> tracked = ConcurrentHashMap.newKeySet();
+    private final Queue<Throwable> leaks = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Creates a pool that keeps up to 8 megabytes of free buffers per size class, in debug mode if the
+     * system property 'pipe.buffers.debug' is true.
+     */
+    public BufferPool() {
+        this(8 << 20, Boolean.getBoolean("pipe.buffers.debug"));
+    }
+
+    /**
+     * Creates a pool.
+     * @param maxBytesPerClass The most bytes of free buffers to keep in each size class.
+     * @param debug True to look for buffers that are never released.
+     */
+    public BufferPool(Integer maxBytesPerClass, Boolean debug) {
+        this.maxBytesPerClass = maxBytesPerClass;
+        this.debug = debug;
+        for (int c = SMALLEST_CLASS; c <= LARGEST_CLASS; c++) {
+            this.free.add(new ConcurrentLinkedQueue<>());
+            this.freeCounts.add(new AtomicInteger());
+        }
+    }
+
+    /**
+     * Gets the default pool, which is shared by the whole JVM.
+     * @return The default pool.
+     */
+    public static synchronized BufferPool getDefault() {
+        if (defaultPool == null) {
+            defaultPool = new BufferPool();
+        }
+        return defaultPool;
+    }
+
+    /**
+     * Takes a buffer from the pool, holding one reference. Its contents are undefined.
+     * @param length The number of bytes needed.
+     * @return A buffer of exactly that many bytes.
+     */
+    public PooledBuffer acquire(int length) {
+        int sizeClass = sizeClass(length);
+        ByteBuffer memory;
+        if (sizeClass >= 0) {
+            memory = this.free.get(sizeClass).poll();
+            if (memory != null) {
+                this.freeCounts.get(sizeClass).decrementAndGet();
+            } else {
+                memory = ByteBuffer.allocateDirect(1 << (sizeClass + SMALLEST_CLASS));
+            }
+        } else {
+            memory = ByteBuffer.allocateDirect(length);
+        }
+        PooledBuffer.Allocation allocation = new PooledBuffer.Allocation(memory, this);
+        if (this.debug) {
+            detectLeaks();
+            allocation.leak = new Leak(allocation, this.collected, length);
+            this.tracked.add(allocation.leak);
+        }
+        ByteBuffer view = memory.duplicate();
+        view.limit(length);
+        return new PooledBuffer(allocation, view.slice());
+    }
+
+    /**
+     * Gets the places every leaked buffer found so far was acquired. Leaks are only found in debug mode,
+     * once the garbage collector has collected the buffer.
+     * @return A throwable per leaked buffer, whose stack trace is where it was acquired.
+     */
+    public List<Throwable> getLeaks() {
+        detectLeaks();
+        return new ArrayList<>(this.leaks);
+    }
+
+    /**
+     * Gets the number of free buffers held by the pool.
+     * @return The number of buffers ready to be acquired again.
+     */
+    public Integer getFreeBuffers() {
+        return this.freeCounts.stream().mapToInt(AtomicInteger::get).sum();
+    }
+
+    /**
+     * Takes back a buffer whose last reference has been released.
+     */
+    void recycle(PooledBuffer.Allocation allocation) {
+        if (allocation.leak != null) {
+            this.tracked.remove(allocation.leak);
+            allocation.leak.clear();
+        }
+        ByteBuffer memory = allocation.memory;
+        int sizeClass = sizeClass(memory.capacity());
+        if (sizeClass >= 0) {
+            AtomicInteger count = this.freeCounts.get(sizeClass);
+            if ((long) (count.get() + 1) * memory.capacity() <= this.maxBytesPerClass) {
+                count.incrementAndGet();
+                memory.clear();
+                this.free.get(sizeClass).add(memory);
+            }
+        }
+    }
+
+    private void detectLeaks() {
+        Leak leak;
+        while ((leak = (Leak) this.collected.poll()) != null) {
+            if (this.tracked.remove(leak)) {
+                this.leaks.add(leak.acquired);
+            }
+        }
+    }
+
+    /**
+     * Gets the index of the smallest size class that fits a number of bytes.
+     * @return The index, or -1 if the largest class is too small.
+     */
+    private static int sizeClass(int length) {
+        int bits = length <= 1 ? 0 : 32 - Integer.numberOfLeadingZeros(length - 1);
+        if (bits > LARGEST_CLASS) {
+            return -1;
+        }
+        return Math.max(bits, SMALLEST_CLASS) - SMALLEST_CLASS;
+    }
+
+    /**
+     * Where a buffer was acquired. It's enqueued once the buffer has been garbage collected; if it's still
+     * tracked by then, the buffer was never released.
+     */
+    static class Leak extends WeakReference<PooledBuffer.Allocation> {
+        private final Throwable acquired;
+
+        Leak(PooledBuffer.Allocation allocation, ReferenceQueue<PooledBuffer.Allocation> queue, int length) {
+            super(allocation, queue);
+            this.acquired = new Throwable("A buffer of " + length + " bytes was never released. It was acquired here.");
+        }
+    }
+}
@@ -0,0 +1,7 @@
+package com.scangarella.pipe.transmission;
+
+/**
+ * Sent by a file sink pipe to itself when it's time to write and sync what it has buffered.
+ */
+public class CommitMessage {
+}
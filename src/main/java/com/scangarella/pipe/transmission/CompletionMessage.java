@@ -0,0 +1,49 @@
+package com.scangarella.pipe.transmission;
+
+/**
+ * Sent to a pipe by the thread that finished one of the pipe's asynchronous ingests.
+ * The pipe sends the result on from its own actor, so that pipes never send from other threads.
+ */
+public class CompletionMessage {
+    private Long sequence;
+    private Object result;
+    private Throwable failure;
+    private Correlation correlation;
+    private Long elapsedNanos;
+
+    /**
+     * Creates a new CompletionMessage.
+     * @param sequence The position of the ingested message among the messages the pipe started ingesting.
+     * @param result The result of the ingest, or null if it failed.
+     * @param failure What the ingest threw, or null if it succeeded.
+     * @param correlation The request the ingested message belonged to, or null.
+     * @param elapsedNanos How long the ingest took.
+     */
+    public CompletionMessage(Long sequence, Object result, Throwable failure, Correlation correlation, Long elapsedNanos) {
+        this.sequence = sequence;
+        this.result = result;
+        this.failure = failure;
+        this.correlation = correlation;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    public Long getSequence() {
+        return this.sequence;
+    }
+
+    public Object getResult() {
+        return this.result;
+    }
+
+    public Throwable getFailure() {
+        return this.failure;
+    }
+
+    public Correlation getCorrelation() {
+        return this.correlation;
+    }
+
+    public Long getElapsedNanos() {
+        return this.elapsedNanos;
+    }
+}
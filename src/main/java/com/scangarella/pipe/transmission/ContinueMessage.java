@@ -0,0 +1,8 @@
+package com.scangarella.pipe.transmission;
+
+/**
+ * Sent by a streaming pipe to itself to send the next chunk of its outputs, after it has
+ * worked through the messages that arrived while it sent the last one.
+ */
+public class ContinueMessage {
+}
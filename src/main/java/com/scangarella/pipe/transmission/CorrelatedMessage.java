@@ -0,0 +1,36 @@
+package com.scangarella.pipe.transmission;
+
+/**
+ * A message that belongs to a request made with PipeOpening.ask, or to a message journaled by PipeOpening.put.
+ * Pipes unwrap the payload before ingesting it and wrap their outputs with the same correlation.
+ */
+public class CorrelatedMessage {
+    private Object payload;
+    private Correlation correlation;
+
+    /**
+     * Creates a new CorrelatedMessage.
+     * @param payload The message itself.
+     * @param correlation The request the message belongs to.
+     */
+    public CorrelatedMessage(Object payload, Correlation correlation) {
+        this.payload = payload;
+        this.correlation = correlation;
+    }
+
+    /**
+     * Gets the message itself.
+     * @return The payload.
+     */
+    public Object getPayload() {
+        return this.payload;
+    }
+
+    /**
+     * Gets the request the message belongs to.
+     * @return The correlation.
+     */
+    public Correlation getCorrelation() {
+        return this.correlation;
+    }
+}
@@ -0,0 +1,110 @@
+package com.scangarella.pipe.transmission;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tracks a single request made with PipeOpening.ask through the pipeline.
+ * Every correlated message in flight holds one reference. A pipe takes a reference for each message it
+ * sends on before it lets go of the one it received, so the count only reaches zero once every branch
+ * of the request has ended. Outputs of the last pipes are results.
+ *
+ * A tracking correlation follows a journaled message the same way, but has no results: the last pipes
+ * send their outputs on to the pipeline's end as usual, and the correlation only tells the journal once
+ * every branch has ended.
+ */
+public class Correlation {
+
+    private final AtomicInteger outstanding = new AtomicInteger(1);
+    private final ConcurrentLinkedQueue<Object> results;
+    private final CompletableFuture<Object> future;
+    private final Runnable ended;
+
+    /**
+     * Creates a new Correlation.
+     * @param future The future to complete.
+     * @param collectAll True to complete with a list of every result once the request has ended,
+     *                   false to complete with the first result as soon as it arrives.
+     */
+    public Correlation(CompletableFuture<Object> future, Boolean collectAll) {
+        this.future = future;
+        this.results = collectAll ? new ConcurrentLinkedQueue<>() : null;
+        this.ended = null;
+    }
+
+    /**
+     * Creates a new tracking Correlation.
+     * @param ended Called once every branch of the message has ended.
+     */
+    public Correlation(Runnable ended) {
+        this.future = null;
+        this.results = null;
+        this.ended = ended;
+    }
+
+    /**
+     * Takes references for messages about to be sent on.
+     * @param count The number of messages.
+     */
+    public void retain(int count) {
+        this.outstanding.addAndGet(count);
+    }
+
+    /**
+     * Lets go of the reference of a message that has been ingested.
+     * The request ends once no references are left.
+     */
+    public void release() {
+        if (this.outstanding.decrementAndGet() == 0) {
+            if (this.ended != null) {
+                this.ended.run();
+            } else if (this.results == null) {
+                this.future.complete(null);
+            } else {
+                List<Object> all = new ArrayList<>(this.results);
+                this.future.complete(all);
+            }
+        }
+    }
+
+    /**
+     * Checks to see if this correlation only tracks its message, rather than collecting results.
+     * @return True if the last pipes send their outputs on as usual.
+     */
+    public Boolean isTracking() {
+        return this.ended != null;
+    }
+
+    /**
+     * Records an output of one of the last pipes.
+     * @param result The output.
+     */
+    public void addResult(Object result) {
+        if (this.results == null) {
+            this.future.complete(result);
+        } else {
+            this.results.add(result);
+        }
+    }
+
+    /**
+     * Fails the request. Tracked messages can't fail; their errors go to the exception handlers.
+     * @param cause The reason the request failed.
+     */
+    public void fail(Throwable cause) {
+        if (this.future != null) {
+            this.future.completeExceptionally(cause);
+        }
+    }
+
+    /**
+     * Checks to see if the request has been completed, failed, or timed out.
+     * @return True if the request is done, false otherwise.
+     */
+    public Boolean isDone() {
+        return this.future == null ? this.outstanding.get() == 0 : this.future.isDone();
+    }
+}
@@ -0,0 +1,38 @@
+package com.scangarella.pipe.transmission;
+
+import akka.actor.ActorRef;
+
+/**
+ * Grants an upstream pipe credits to send more messages to a downstream pipe.
+ * Every message a pipe sends along a credited edge uses up one credit.
+ */
+public class DemandMessage {
+    private Integer credits;
+    private ActorRef pipe;
+
+    /**
+     * Creates a new DemandMessage.
+     * @param credits The number of messages the upstream pipe may send.
+     * @param pipe The downstream pipe granting the credits, as it is known to the upstream pipe.
+     */
+    public DemandMessage(Integer credits, ActorRef pipe) {
+        this.credits = credits;
+        this.pipe = pipe;
+    }
+
+    /**
+     * Gets the number of credits granted.
+     * @return The number of credits.
+     */
+    public Integer getCredits() {
+        return this.credits;
+    }
+
+    /**
+     * Gets the downstream pipe granting the credits.
+     * @return The downstream pipe.
+     */
+    public ActorRef getPipe() {
+        return this.pipe;
+    }
+}
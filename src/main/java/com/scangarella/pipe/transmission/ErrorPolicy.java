@@ -0,0 +1,63 @@
+package com.scangarella.pipe.transmission;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Describes how a pipe gathers the failures it reports to its exception handler. Instead of one message per
+ * failure, the pipe sends an ExceptionBatch for each type of exception once per interval. The first few
+ * failures of each type in an interval are kept in full, and the rest are only counted.
+ * Exceptions of the stackless types are kept as a StacklessException that holds only their type and
+ * message, so the samples don't hold on to stack traces or to the exceptions themselves, which may be
+ * cached and thrown again. The cost of filling in a stack trace has already been paid by then; pipes that
+ * fail often for known reasons save it by throwing a StacklessException in the first place.
+ * Intervals are driven by the Akka scheduler, so they're rounded up to its tick duration.
+ */
+public class ErrorPolicy {
+    private long intervalMillis;
+    private int samples;
+    private List<Class> stackless;
+
+    /**
+     * Creates a new ErrorPolicy.
+     * @param intervalMillis How often the gathered failures are reported, in milliseconds, or zero to report
+     *                       them once the pipe has worked through its mailbox.
+     * @param samples The number of failures of each type kept in full per interval.
+     * @param stackless The exception types kept as only their type and message. Subclasses count too.
+     */
+    public ErrorPolicy(long intervalMillis, int samples, Class... stackless) {
+        if (intervalMillis < 0 || samples < 0) {
+            throw new IllegalArgumentException("An error policy needs a non-negative interval and number of samples.");
+        }
+        this.intervalMillis = intervalMillis;
+        this.samples = samples;
+        this.stackless = Collections.unmodifiableList(Arrays.asList(stackless));
+    }
+
+    public long getIntervalMillis() {
+        return this.intervalMillis;
+    }
+
+    public int getSamples() {
+        return this.samples;
+    }
+
+    public List<Class> getStackless() {
+        return this.stackless;
+    }
+
+    /**
+     * Checks whether an exception is of one of the stackless types.
+     * @param e The exception.
+     * @return True if only its type and message should be kept.
+     */
+    public boolean isStackless(Throwable e) {
+        for (Class type : this.stackless) {
+            if (type.isInstance(e)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
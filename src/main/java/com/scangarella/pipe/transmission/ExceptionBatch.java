@@ -0,0 +1,60 @@
+package com.scangarella.pipe.transmission;
+
+import java.util.List;
+
+/**
+ * The failures of a single type that a pipe reported over an interval, sent to its exception handler
+ * with one tell when the handler has an error policy.
+ */
+public class ExceptionBatch {
+    private String pipeId;
+    private Class type;
+    private List<ExceptionMessage> samples;
+    private Long count;
+
+    /**
+     * Creates a new ExceptionBatch.
+     * @param pipeId The unique id of the pipe in the schematic.
+     * @param type The class of the exceptions.
+     * @param samples The failures that were kept in full, in the order they happened.
+     * @param count The number of failures, including the samples.
+     */
+    public ExceptionBatch(String pipeId, Class type, List<ExceptionMessage> samples, Long count) {
+        this.pipeId = pipeId;
+        this.type = type;
+        this.samples = samples;
+        this.count = count;
+    }
+
+    /**
+     * Gets the unique id of the pipe that failed, as given by Schematic.Pipe.getUniqueID.
+     * @return The id.
+     */
+    public String getPipeId() {
+        return this.pipeId;
+    }
+
+    /**
+     * Gets the class of the exceptions in this batch.
+     * @return The exception type.
+     */
+    public Class getType() {
+        return this.type;
+    }
+
+    /**
+     * Gets the failures that were kept in full: the first ones of the interval.
+     * @return The samples.
+     */
+    public List<ExceptionMessage> getSamples() {
+        return this.samples;
+    }
+
+    /**
+     * Gets the number of failures over the interval, including the samples.
+     * @return The count.
+     */
+    public Long getCount() {
+        return this.count;
+    }
+}
@@ -3,15 +3,58 @@ package com.scangarella.pipe.transmission;
 
 /**
  * An error message including the errorType and the string message.
+ * When the engine catches an exception thrown by 'ingest', the message also holds the input that failed,
+ * the id of the pipe in the schematic, and how many times the input was ingested.
  */
 public class ExceptionMessage {
     private Exception exception;
+    private Object input = null;
+    private String pipeId = null;
+    private Integer attempts = 1;
 
     public ExceptionMessage(Exception e) {
         this.exception = e;
     }
 
+    /**
+     * Creates a new ExceptionMessage for a failed ingest.
+     * @param e What 'ingest' threw the last time.
+     * @param input The message that was ingested.
+     * @param pipeId The unique id of the pipe in the schematic.
+     * @param attempts The number of times the message was ingested, counting retries.
+     */
+    public ExceptionMessage(Exception e, Object input, String pipeId, Integer attempts) {
+        this.exception = e;
+        this.input = input;
+        this.pipeId = pipeId;
+        this.attempts = attempts;
+    }
+
     public Exception getException() {
         return this.exception;
     }
+
+    /**
+     * Gets the message whose ingest failed.
+     * @return The input, or null if the exception was reported by the pipe itself.
+     */
+    public Object getInput() {
+        return this.input;
+    }
+
+    /**
+     * Gets the unique id of the pipe that failed, as given by Schematic.Pipe.getUniqueID.
+     * @return The id, or null if the exception was reported by the pipe itself.
+     */
+    public String getPipeId() {
+        return this.pipeId;
+    }
+
+    /**
+     * Gets the number of times the input was ingested, counting retries.
+     * @return The number of attempts.
+     */
+    public Integer getAttempts() {
+        return this.attempts;
+    }
 }
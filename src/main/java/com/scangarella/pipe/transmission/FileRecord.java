@@ -0,0 +1,76 @@
+package com.scangarella.pipe.transmission;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+
+/**
+ * A record read from a file by a MappedFileSource. It's a view of the mapped file rather than a copy,
+ * and it's only decoded into a String once 'toString' is called.
+ */
+public class FileRecord {
+
+    private final Path path;
+    private final Long offset;
+    private final ByteBuffer bytes;
+    private final Charset charset;
+    private String string = null;
+
+    /**
+     * Creates a new FileRecord.
+     * @param path The file the record was read from.
+     * @param offset The position of the record in the file.
+     * @param bytes The record's bytes, from the buffer's position to its limit.
+     * @param charset The charset to decode the record with.
+     */
+    public FileRecord(Path path, Long offset, ByteBuffer bytes, Charset charset) {
+        this.path = path;
+        this.offset = offset;
+        this.bytes = bytes;
+        this.charset = charset;
+    }
+
+    /**
+     * Gets the file the record was read from.
+     * @return The file's path.
+     */
+    public Path getPath() {
+        return this.path;
+    }
+
+    /**
+     * Gets the position of the record in its file.
+     * @return The offset of the record's first byte, counting any framing it has.
+     */
+    public Long getOffset() {
+        return this.offset;
+    }
+
+    /**
+     * Gets the record's bytes without copying them.
+     * @return A read only view of the bytes, with a position of its own.
+     */
+    public ByteBuffer getBytes() {
+        return this.bytes.asReadOnlyBuffer();
+    }
+
+    /**
+     * Gets the number of bytes in the record.
+     * @return The record's length, not counting its framing.
+     */
+    public Integer length() {
+        return this.bytes.remaining();
+    }
+
+    /**
+     * Decodes the record. The String is made the first time this is called, and kept.
+     * @return The record as text.
+     */
+    @Override
+    public String toString() {
+        if (this.string == null) {
+            this.string = this.charset.decode(this.bytes.duplicate()).toString();
+        }
+        return this.string;
+    }
+}
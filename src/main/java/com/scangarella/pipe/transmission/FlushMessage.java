@@ -0,0 +1,7 @@
+package com.scangarella.pipe.transmission;
+
+/**
+ * Sent by a pipe to itself when its pending batches are due to be flushed.
+ */
+public class FlushMessage {
+}
@@ -1,8 +1,11 @@
 package com.scangarella.pipe.transmission;
 
 import akka.actor.ActorRef;
+import com.scangarella.pipe.metrics.PipeMetrics;
 
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 
 /**
  * An initialization message. This message can contain the following types of initialization:
@@ -15,13 +18,27 @@ public class InitializationMessage {
     private ActorRef exception = null;
     private List<Class> inner;
     private Integer upstreamCount;
+    private Map<ActorRef, BatchPolicy> batching = Collections.emptyMap();
+    private List<Class> fused = Collections.emptyList();
+    private List<String> fusedIds = Collections.emptyList();
+    private Integer creditWindow = 0;
+    private Map<ActorRef, Integer> credits = Collections.emptyMap();
+    private Boolean terminal = false;
+    private PipeMetrics metrics = null;
+    private Map<String, Object> settings = Collections.emptyMap();
+    private List<Map<String, Object>> innerSettings = Collections.emptyList();
+    private String pipeId = null;
+    private RetryPolicy retryPolicy = null;
+    private ErrorPolicy errorPolicy = null;
 
     /**
      * Creates a new InitializationMessage meant for an exception handler's wrapper.
+     * The wrapper has a single upstream: the pipeline's shutdown, which stops it once its pipe has stopped.
      * @param inner The inner classes.
      */
     public InitializationMessage(List<Class> inner) {
         this.inner = inner;
+        this.upstreamCount = 1;
     }
 
     /**
@@ -75,4 +92,198 @@ public class InitializationMessage {
     public Integer getUpstreamCount() {
         return this.upstreamCount;
     }
+
+    /**
+     * Sets the batch policies of the downstream edges.
+     * @param batching The batch policy of each batched downstream pipe.
+     */
+    public void setBatching(Map<ActorRef, BatchPolicy> batching) {
+        this.batching = batching;
+    }
+
+    /**
+     * Gets the batch policies of the downstream edges. Edges without a policy are not batched.
+     * @return The batch policy of each batched downstream pipe.
+     */
+    public Map<ActorRef, BatchPolicy> getBatching() {
+        return this.batching;
+    }
+
+    /**
+     * Sets the classes of the pipes fused onto the end of this pipe, in the order they run.
+     * @param fused The classes of the fused pipes.
+     */
+    public void setFused(List<Class> fused) {
+        this.fused = fused;
+    }
+
+    /**
+     * Gets the classes of the pipes fused onto the end of this pipe, in the order they run.
+     * @return The classes of the fused pipes.
+     */
+    public List<Class> getFused() {
+        return this.fused;
+    }
+
+    /**
+     * Sets the unique ids of the pipes fused onto the end of this pipe, in the order they run.
+     * @param fusedIds The ids of the fused pipes.
+     */
+    public void setFusedIds(List<String> fusedIds) {
+        this.fusedIds = fusedIds;
+    }
+
+    /**
+     * Gets the unique ids of the pipes fused onto the end of this pipe, in the order they run.
+     * @return The ids of the fused pipes.
+     */
+    public List<String> getFusedIds() {
+        return this.fusedIds;
+    }
+
+    /**
+     * Sets the number of credits the pipe grants each of its upstream pipes.
+     * @param creditWindow The credit window, or zero if the pipe doesn't grant credits.
+     */
+    public void setCreditWindow(Integer creditWindow) {
+        this.creditWindow = creditWindow;
+    }
+
+    /**
+     * Gets the number of credits the pipe grants each of its upstream pipes.
+     * @return The credit window, or zero if the pipe doesn't grant credits.
+     */
+    public Integer getCreditWindow() {
+        return this.creditWindow;
+    }
+
+    /**
+     * Sets the credits the pipe starts with for each downstream pipe.
+     * @param credits The initial credits of each credited downstream pipe.
+     */
+    public void setCredits(Map<ActorRef, Integer> credits) {
+        this.credits = credits;
+    }
+
+    /**
+     * Gets the credits the pipe starts with for each downstream pipe.
+     * Edges without credits are not limited.
+     * @return The initial credits of each credited downstream pipe.
+     */
+    public Map<ActorRef, Integer> getCredits() {
+        return this.credits;
+    }
+
+    /**
+     * Sets whether the pipe is one of the last pipes of the pipeline.
+     * @param terminal True if the pipe has no downstream pipes in the schematic, false otherwise.
+     */
+    public void setTerminal(Boolean terminal) {
+        this.terminal = terminal;
+    }
+
+    /**
+     * Checks to see if the pipe is one of the last pipes of the pipeline.
+     * The outputs of the last pipes are the results of requests made with PipeOpening.ask.
+     * @return True if the pipe has no downstream pipes in the schematic, false otherwise.
+     */
+    public Boolean isTerminal() {
+        return this.terminal;
+    }
+
+    /**
+     * Sets the metrics the pipe records into.
+     * @param metrics The pipe's metrics, or null if metrics are off.
+     */
+    public void setMetrics(PipeMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Gets the metrics the pipe records into.
+     * @return The pipe's metrics, or null if metrics are off.
+     */
+    public PipeMetrics getMetrics() {
+        return this.metrics;
+    }
+
+    /**
+     * Sets the settings of the wrapper this message is meant for.
+     * @param settings The wrapper's settings.
+     */
+    public void setSettings(Map<String, Object> settings) {
+        this.settings = settings;
+    }
+
+    /**
+     * Gets the settings of the wrapper this message is meant for.
+     * @return The wrapper's settings.
+     */
+    public Map<String, Object> getSettings() {
+        return this.settings;
+    }
+
+    /**
+     * Sets the settings of the inner wrappers, in the same order as the inner classes.
+     * @param innerSettings The settings of each inner class. The innermost pipe's settings are empty.
+     */
+    public void setInnerSettings(List<Map<String, Object>> innerSettings) {
+        this.innerSettings = innerSettings;
+    }
+
+    /**
+     * Gets the settings of the inner wrappers, in the same order as the inner classes.
+     * @return The settings of each inner class.
+     */
+    public List<Map<String, Object>> getInnerSettings() {
+        return this.innerSettings;
+    }
+
+    /**
+     * Sets the unique id of the pipe in the schematic, which the pipe puts on the failures it reports.
+     * @param pipeId The pipe's id.
+     */
+    public void setPipeId(String pipeId) {
+        this.pipeId = pipeId;
+    }
+
+    /**
+     * Gets the unique id of the pipe in the schematic.
+     * @return The pipe's id, or null if it isn't known.
+     */
+    public String getPipeId() {
+        return this.pipeId;
+    }
+
+    /**
+     * Sets how the pipe retries messages whose ingest failed.
+     * @param retryPolicy The retry policy, or null if failed messages aren't retried.
+     */
+    public void setRetryPolicy(RetryPolicy retryPolicy) {
+        this.retryPolicy = retryPolicy;
+    }
+
+    /**
+     * Gets how the pipe retries messages whose ingest failed.
+     * @return The retry policy, or null if failed messages aren't retried.
+     */
+    public RetryPolicy getRetryPolicy() {
+        return this.retryPolicy;
+    }
+
+    /**
+     * Sets how the pipe gathers the failures it reports to its exception handler.
+     * @param errorPolicy The error policy, or null to report every failure as it happens.
+     */
+    public void setErrorPolicy(ErrorPolicy errorPolicy) {
+        this.errorPolicy = errorPolicy;
+    }
+
+    /**
+     * Gets how the pipe gathers the failures it reports to its exception handler.
+     * @return The error policy, or null if every failure is reported as it happens.
+     */
+    public ErrorPolicy getErrorPolicy() {
+        return this.errorPolicy;
+    }
 }
@@ -0,0 +1,525 @@
+package com.scangarella.pipe.transmission;
+
+import akka.actor.ActorRef;
+import akka.actor.ExtendedActorSystem;
+import akka.serialization.JSerializer;
+import akka.serialization.Serialization;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.NotSerializableException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.io.Serializable;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A compact binary serializer for the messages pipes send each other across nodes.
+ * Every message starts with a byte that says what it is. Control messages without fields are that byte
+ * alone; actor refs are written as their paths and classes as their names. The payloads inside messages,
+ * such as batches, settings and failed inputs, are encoded the same way: strings, boxed numbers and
+ * arrays of bytes and primitives are written as they are, and anything else that's Serializable falls back
+ * to java serialization.
+ *
+ * Initialization messages are sent without their metrics, which belong to the node that built the pipeline,
+ * so pipes on other nodes don't record any. Requests made with 'ask', journaled messages and pooled buffers
+ * refer to objects of the node they were made on, and can't be sent to another node.
+ *
+ * The serializer is bound to the library's messages in its reference.conf. It isn't bound to strings,
+ * boxed numbers or arrays, which belong to the application, so payloads sent on their own use akka's
+ * default serializer.
+ */
+public class PipeSerializer extends JSerializer {
+
+    private static final byte NULL = 0;
+    private static final byte STOP = 1;
+    private static final byte INITIALIZATION = 2;
+    private static final byte EXCEPTION = 3;
+    private static final byte BATCH = 4;
+    private static final byte DEMAND = 5;
+    private static final byte RELEASE = 6;
+    private static final byte WINDOW = 7;
+    private static final byte FLUSH = 8;
+    private static final byte EXCEPTION_BATCH = 9;
+    private static final byte REPLENISH = 10;
+    private static final byte STRING = 16;
+    private static final byte INTEGER = 17;
+    private static final byte LONG = 18;
+    private static final byte DOUBLE = 19;
+    private static final byte BOOLEAN = 20;
+    private static final byte BYTES = 21;
+    private static final byte INTS = 22;
+    private static final byte LONGS = 23;
+    private static final byte DOUBLES = 24;
+    private static final byte CLASS = 25;
+    private static final byte ACTOR_REF = 26;
+    private static final byte SERIALIZED = 127;
+
+    private final ExtendedActorSystem system;
+
+    /**
+     * Creates a new PipeSerializer. Akka creates it when it's first needed.
+     * @param system The actor system that actor refs are resolved in.
+     */
+    public PipeSerializer(ExtendedActorSystem system) {
+        this.system = system;
+    }
+
+    @Override
+    public int identifier() {
+        return 80211;
+    }
+
+    @Override
+    public boolean includeManifest() {
+        return false;
+    }
+
+    @Override
+    public byte[] toBinary(Object o) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            write(out, o);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    @Override
+    public Object fromBinaryJava(byte[] bytes, Class<?> manifest) {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes))) {
+            return read(in);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void write(DataOutputStream out, Object o) throws IOException {
+        if (o == null) {
+            out.writeByte(NULL);
+        } else if (o instanceof StopMessage) {
+            out.writeByte(STOP);
+        } else if (o instanceof InitializationMessage) {
+            out.writeByte(INITIALIZATION);
+            writeInitialization(out, (InitializationMessage) o);
+        } else if (o instanceof ExceptionMessage) {
+            out.writeByte(EXCEPTION);
+            writeException(out, (ExceptionMessage) o);
+        } else if (o instanceof ExceptionBatch) {
+            out.writeByte(EXCEPTION_BATCH);
+            writeExceptionBatch(out, (ExceptionBatch) o);
+        } else if (o instanceof BatchMessage) {
+            out.writeByte(BATCH);
+            writeList(out, ((BatchMessage) o).getMessages());
+        } else if (o instanceof DemandMessage) {
+            out.writeByte(DEMAND);
+            out.writeInt(((DemandMessage) o).getCredits());
+            writeRef(out, ((DemandMessage) o).getPipe());
+        } else if (o instanceof ReleaseMessage) {
+            out.writeByte(RELEASE);
+            out.writeBoolean(((ReleaseMessage) o).isReset());
+        } else if (o instanceof WindowMessage) {
+            out.writeByte(WINDOW);
+        } else if (o instanceof FlushMessage) {
+            out.writeByte(FLUSH);
+        } else if (o instanceof ReplenishMessage) {
+            out.writeByte(REPLENISH);
+        } else if (o instanceof String) {
+            byte[] utf8 = ((String) o).getBytes(StandardCharsets.UTF_8);
+            out.writeByte(STRING);
+            out.writeInt(utf8.length);
+            out.write(utf8);
+        } else if (o instanceof Integer) {
+            out.writeByte(INTEGER);
+            out.writeInt((Integer) o);
+        } else if (o instanceof Long) {
+            out.writeByte(LONG);
+            out.writeLong((Long) o);
+        } else if (o instanceof Double) {
+            out.writeByte(DOUBLE);
+            out.writeDouble((Double) o);
+        } else if (o instanceof Boolean) {
+            out.writeByte(BOOLEAN);
+            out.writeBoolean((Boolean) o);
+        } else if (o instanceof byte[]) {
+            out.writeByte(BYTES);
+            out.writeInt(((byte[]) o).length);
+            out.write((byte[]) o);
+        } else if (o instanceof int[]) {
+            int[] values = (int[]) o;
+            ByteBuffer buffer = ByteBuffer.allocate(values.length * 4);
+            buffer.asIntBuffer().put(values);
+            out.writeByte(INTS);
+            out.writeInt(values.length);
+            out.write(buffer.array());
+        } else if (o instanceof long[]) {
+            long[] values = (long[]) o;
+            ByteBuffer buffer = ByteBuffer.allocate(values.length * 8);
+            buffer.asLongBuffer().put(values);
+            out.writeByte(LONGS);
+            out.writeInt(values.length);
+            out.write(buffer.array());
+        } else if (o instanceof double[]) {
+            double[] values = (double[]) o;
+            ByteBuffer buffer = ByteBuffer.allocate(values.length * 8);
+            buffer.asDoubleBuffer().put(values);
+            out.writeByte(DOUBLES);
+            out.writeInt(values.length);
+            out.write(buffer.array());
+        } else if (o instanceof Class) {
+            out.writeByte(CLASS);
+            out.writeUTF(((Class) o).getName());
+        } else if (o instanceof ActorRef) {
+            out.writeByte(ACTOR_REF);
+            writeRef(out, (ActorRef) o);
+        } else {
+            out.writeByte(SERIALIZED);
+            writeSerialized(out, o);
+        }
+    }
+
+    private Object read(DataInputStream in) throws IOException {
+        byte tag = in.readByte();
+        switch (tag) {
+            case NULL:
+                return null;
+            case STOP:
+                return new StopMessage();
+            case INITIALIZATION:
+                return readInitialization(in);
+            case EXCEPTION:
+                return readException(in);
+            case EXCEPTION_BATCH:
+                return readExceptionBatch(in);
+            case BATCH:
+                return new BatchMessage(readList(in));
+            case DEMAND:
+                return new DemandMessage(in.readInt(), readRef(in));
+            case RELEASE:
+                return new ReleaseMessage(in.readBoolean());
+            case WINDOW:
+                return new WindowMessage();
+            case FLUSH:
+                return new FlushMessage();
+            case REPLENISH:
+                return new ReplenishMessage();
+            case STRING:
+                byte[] utf8 = new byte[in.readInt()];
+                in.readFully(utf8);
+                return new String(utf8, StandardCharsets.UTF_8);
+            case INTEGER:
+                return in.readInt();
+            case LONG:
+                return in.readLong();
+            case DOUBLE:
+                return in.readDouble();
+            case BOOLEAN:
+                return in.readBoolean();
+            case BYTES:
+                byte[] bytes = new byte[in.readInt()];
+                in.readFully(bytes);
+                return bytes;
+            case INTS:
+                int[] ints = new int[in.readInt()];
+                ByteBuffer.wrap(readFully(in, ints.length * 4)).asIntBuffer().get(ints);
+                return ints;
+            case LONGS:
+                long[] longs = new long[in.readInt()];
+                ByteBuffer.wrap(readFully(in, longs.length * 8)).asLongBuffer().get(longs);
+                return longs;
+            case DOUBLES:
+                double[] doubles = new double[in.readInt()];
+                ByteBuffer.wrap(readFully(in, doubles.length * 8)).asDoubleBuffer().get(doubles);
+                return doubles;
+            case CLASS:
+                return readClass(in);
+            case ACTOR_REF:
+                return readRef(in);
+            case SERIALIZED:
+                return readSerialized(in);
+            default:
+                throw new IOException("Unknown message tag " + tag + ".");
+        }
+    }
+
+    private void writeInitialization(DataOutputStream out, InitializationMessage message) throws IOException {
+        writeClasses(out, message.getInner());
+        writeRefs(out, message.getDownstream());
+        writeRef(out, message.getException());
+        out.writeInt(message.getUpstreamCount());
+        out.writeInt(message.getBatching().size());
+        for (Map.Entry<ActorRef, BatchPolicy> entry : message.getBatching().entrySet()) {
+            writeRef(out, entry.getKey());
+            out.writeInt(entry.getValue().getMaxSize());
+            out.writeLong(entry.getValue().getMaxDelayMicros());
+        }
+        writeClasses(out, message.getFused());
+        out.writeInt(message.getFusedIds().size());
+        for (String id : message.getFusedIds()) {
+            out.writeUTF(id);
+        }
+        out.writeInt(message.getCreditWindow());
+        out.writeInt(message.getCredits().size());
+        for (Map.Entry<ActorRef, Integer> entry : message.getCredits().entrySet()) {
+            writeRef(out, entry.getKey());
+            out.writeInt(entry.getValue());
+        }
+        out.writeBoolean(message.isTerminal());
+        writeSettings(out, message.getSettings());
+        out.writeInt(message.getInnerSettings().size());
+        for (Map<String, Object> settings : message.getInnerSettings()) {
+            writeSettings(out, settings);
+        }
+        writeNullableUTF(out, message.getPipeId());
+        RetryPolicy retryPolicy = message.getRetryPolicy();
+        out.writeBoolean(retryPolicy != null);
+        if (retryPolicy != null) {
+            out.writeInt(retryPolicy.getMaxRetries());
+            out.writeLong(retryPolicy.getBackoffMillis());
+            out.writeDouble(retryPolicy.getMultiplier());
+            out.writeLong(retryPolicy.getMaxBackoffMillis());
+        }
+        ErrorPolicy errorPolicy = message.getErrorPolicy();
+        out.writeBoolean(errorPolicy != null);
+        if (errorPolicy != null) {
+            out.writeLong(errorPolicy.getIntervalMillis());
+            out.writeInt(errorPolicy.getSamples());
+            writeClasses(out, errorPolicy.getStackless());
+        }
+    }
+
+    private InitializationMessage readInitialization(DataInputStream in) throws IOException {
+        List<Class> inner = readClasses(in);
+        List<ActorRef> downstream = readRefs(in);
+        ActorRef exception = readRef(in);
+        InitializationMessage message = new InitializationMessage(inner, downstream, in.readInt(), exception);
+        Map<ActorRef, BatchPolicy> batching = new HashMap<>();
+        for (int i = in.readInt(); i > 0; i--) {
+            batching.put(readRef(in), new BatchPolicy(in.readInt(), in.readLong()));
+        }
+        message.setBatching(batching);
+        message.setFused(readClasses(in));
+        List<String> fusedIds = new ArrayList<>();
+        for (int i = in.readInt(); i > 0; i--) {
+            fusedIds.add(in.readUTF());
+        }
+        message.setFusedIds(fusedIds);
+        message.setCreditWindow(in.readInt());
+        Map<ActorRef, Integer> credits = new HashMap<>();
+        for (int i = in.readInt(); i > 0; i--) {
+            credits.put(readRef(in), in.readInt());
+        }
+        message.setCredits(credits);
+        message.setTerminal(in.readBoolean());
+        message.setSettings(readSettings(in));
+        List<Map<String, Object>> innerSettings = new ArrayList<>();
+        for (int i = in.readInt(); i > 0; i--) {
+            innerSettings.add(readSettings(in));
+        }
+        message.setInnerSettings(innerSettings);
+        message.setPipeId(readNullableUTF(in));
+        if (in.readBoolean()) {
+            message.setRetryPolicy(new RetryPolicy(in.readInt(), in.readLong(), in.readDouble(), in.readLong()));
+        }
+        if (in.readBoolean()) {
+            long intervalMillis = in.readLong();
+            int samples = in.readInt();
+            List<Class> stackless = readClasses(in);
+            message.setErrorPolicy(new ErrorPolicy(intervalMillis, samples, stackless.toArray(new Class[stackless.size()])));
+        }
+        return message;
+    }
+
+    /**
+     * The failed input goes along with the exception if it can, and is left out if it isn't Serializable.
+     */
+    private void writeException(DataOutputStream out, ExceptionMessage message) throws IOException {
+        writeSerialized(out, message.getException());
+        Object input = message.getInput();
+        write(out, input instanceof Serializable ? input : null);
+        writeNullableUTF(out, message.getPipeId());
+        out.writeInt(message.getAttempts());
+    }
+
+    private ExceptionMessage readException(DataInputStream in) throws IOException {
+        Exception exception = (Exception) readSerialized(in);
+        return new ExceptionMessage(exception, read(in), readNullableUTF(in), in.readInt());
+    }
+
+    private void writeExceptionBatch(DataOutputStream out, ExceptionBatch batch) throws IOException {
+        writeNullableUTF(out, batch.getPipeId());
+        out.writeUTF(batch.getType().getName());
+        out.writeLong(batch.getCount());
+        out.writeInt(batch.getSamples().size());
+        for (ExceptionMessage sample : batch.getSamples()) {
+            writeException(out, sample);
+        }
+    }
+
+    private ExceptionBatch readExceptionBatch(DataInputStream in) throws IOException {
+        String pipeId = readNullableUTF(in);
+        Class type = readClass(in);
+        Long count = in.readLong();
+        int size = in.readInt();
+        List<ExceptionMessage> samples = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            samples.add(readException(in));
+        }
+        return new ExceptionBatch(pipeId, type, samples, count);
+    }
+
+    private void writeNullableUTF(DataOutputStream out, String s) throws IOException {
+        out.writeBoolean(s != null);
+        if (s != null) {
+            out.writeUTF(s);
+        }
+    }
+
+    private String readNullableUTF(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    private void writeList(DataOutputStream out, List<Object> list) throws IOException {
+        out.writeInt(list.size());
+        for (Object o : list) {
+            write(out, o);
+        }
+    }
+
+    private List<Object> readList(DataInputStream in) throws IOException {
+        int size = in.readInt();
+        List<Object> list = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            list.add(read(in));
+        }
+        return list;
+    }
+
+    private void writeSettings(DataOutputStream out, Map<String, Object> settings) throws IOException {
+        out.writeInt(settings.size());
+        for (Map.Entry<String, Object> setting : settings.entrySet()) {
+            out.writeUTF(setting.getKey());
+            write(out, setting.getValue());
+        }
+    }
+
+    private Map<String, Object> readSettings(DataInputStream in) throws IOException {
+        Map<String, Object> settings = new HashMap<>();
+        for (int i = in.readInt(); i > 0; i--) {
+            settings.put(in.readUTF(), read(in));
+        }
+        return settings;
+    }
+
+    private void writeClasses(DataOutputStream out, List<Class> classes) throws IOException {
+        if (classes == null) {
+            out.writeInt(-1);
+            return;
+        }
+        out.writeInt(classes.size());
+        for (Class clazz : classes) {
+            out.writeUTF(clazz.getName());
+        }
+    }
+
+    private List<Class> readClasses(DataInputStream in) throws IOException {
+        int size = in.readInt();
+        if (size < 0) {
+            return null;
+        }
+        List<Class> classes = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            classes.add(readClass(in));
+        }
+        return classes;
+    }
+
+    private Class readClass(DataInputStream in) throws IOException {
+        String name = in.readUTF();
+        try {
+            return Class.forName(name, false, this.system.dynamicAccess().classLoader());
+        } catch (ClassNotFoundException e) {
+            throw new IOException("The class " + name + " isn't on this node's classpath.", e);
+        }
+    }
+
+    private void writeRefs(DataOutputStream out, List<ActorRef> refs) throws IOException {
+        if (refs == null) {
+            out.writeInt(-1);
+            return;
+        }
+        out.writeInt(refs.size());
+        for (ActorRef ref : refs) {
+            writeRef(out, ref);
+        }
+    }
+
+    private List<ActorRef> readRefs(DataInputStream in) throws IOException {
+        int size = in.readInt();
+        if (size < 0) {
+            return null;
+        }
+        List<ActorRef> refs = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            refs.add(readRef(in));
+        }
+        return refs;
+    }
+
+    private void writeRef(DataOutputStream out, ActorRef ref) throws IOException {
+        out.writeUTF(ref == null ? "" : Serialization.serializedActorPath(ref));
+    }
+
+    private ActorRef readRef(DataInputStream in) throws IOException {
+        String path = in.readUTF();
+        return path.isEmpty() ? null : this.system.provider().resolveActorRef(path);
+    }
+
+    private void writeSerialized(DataOutputStream out, Object o) throws IOException {
+        if (!(o instanceof Serializable)) {
+            throw new NotSerializableException(o.getClass().getName() + " can't be sent to another node.");
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream objects = new ObjectOutputStream(bytes)) {
+            objects.writeObject(o);
+        }
+        out.writeInt(bytes.size());
+        bytes.writeTo(out);
+    }
+
+    private Object readSerialized(DataInputStream in) throws IOException {
+        byte[] bytes = readFully(in, in.readInt());
+        ClassLoader loader = this.system.dynamicAccess().classLoader();
+        try (ObjectInputStream objects = new ObjectInputStream(new ByteArrayInputStream(bytes)) {
+            @Override
+            protected Class<?> resolveClass(ObjectStreamClass description) throws IOException, ClassNotFoundException {
+                try {
+                    return Class.forName(description.getName(), false, loader);
+                } catch (ClassNotFoundException e) {
+                    return super.resolveClass(description);
+                }
+            }
+        }) {
+            return objects.readObject();
+        } catch (ClassNotFoundException e) {
+            throw new IOException(e);
+        }
+    }
+
+    private static byte[] readFully(DataInputStream in, int length) throws IOException {
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return bytes;
+    }
+}
@@ -0,0 +1,132 @@
+package com.scangarella.pipe.transmission;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A reference counted view of a direct buffer from a BufferPool.
+ * Every buffer in flight holds one reference, like a correlation does. A pipe that receives a buffer owns
+ * its reference, and either sends the buffer on or releases it; sending a buffer to several pipes takes a
+ * reference for each of them. The buffer goes back to its pool once the last reference is released.
+ *
+ * Slices share the memory and the references of the buffer they were cut from, so sending on a slice
+ * sends on the buffer's reference. A pipe that holds on to a buffer past 'ingest' retains it first.
+ */
+public class PooledBuffer {
+
+    private final Allocation allocation;
+    private final ByteBuffer view;
+
+    PooledBuffer(Allocation allocation, ByteBuffer view) {
+        this.allocation = allocation;
+        this.view = view;
+    }
+
+    /**
+     * Gets the buffer's bytes. The position and limit of the view are shared by everyone holding this
+     * PooledBuffer; slice it to read with a position of your own.
+     * @return A view of the buffer's bytes, from zero to its length.
+     */
+    public ByteBuffer getBuffer() {
+        checkLive();
+        return this.view;
+    }
+
+    /**
+     * Gets the number of bytes in this view.
+     * @return The view's capacity.
+     */
+    public Integer length() {
+        return this.view.capacity();
+    }
+
+    /**
+     * Cuts a slice of this buffer without copying. The slice shares this buffer's references.
+     * @param index The index of the slice's first byte.
+     * @param length The number of bytes in the slice.
+     * @return The slice.
+     */
+    public PooledBuffer slice(int index, int length) {
+        checkLive();
+        if (index < 0 || length < 0 || index + length > this.view.capacity()) {
+            throw new IndexOutOfBoundsException("Slice [" + index + ", " + (index + length)
+                    + ") is outside of a buffer of " + this.view.capacity() + " bytes.");
+        }
+        ByteBuffer duplicate = this.view.duplicate();
+        duplicate.limit(index + length).position(index);
+        return new PooledBuffer(this.allocation, duplicate.slice());
+    }
+
+    /**
+     * Checks to see if this buffer and another are views of the same memory, and so share their references.
+     * @param other The other buffer.
+     * @return True if either buffer is the other or a slice of it.
+     */
+    public Boolean shares(PooledBuffer other) {
+        return other != null && this.allocation == other.allocation;
+    }
+
+    /**
+     * Takes a reference.
+     */
+    public void retain() {
+        retain(1);
+    }
+
+    /**
+     * Takes references for buffers about to be sent on.
+     * @param count The number of references.
+     */
+    public void retain(int count) {
+        if (count > 0 && this.allocation.references.getAndAdd(count) <= 0) {
+            this.allocation.references.getAndAdd(-count);
+            throw new IllegalStateException("Cannot retain a buffer that has been released.");
+        }
+    }
+
+    /**
+     * Lets go of a reference. The buffer goes back to its pool once no references are left.
+     * @return True if that was the last reference.
+     */
+    public Boolean release() {
+        int left = this.allocation.references.decrementAndGet();
+        if (left < 0) {
+            this.allocation.references.incrementAndGet();
+            throw new IllegalStateException("Cannot release a buffer that has been released.");
+        }
+        if (left == 0) {
+            this.allocation.pool.recycle(this.allocation);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Gets the number of references held.
+     * @return The reference count, or zero once the buffer has gone back to its pool.
+     */
+    public Integer getReferences() {
+        return this.allocation.references.get();
+    }
+
+    private void checkLive() {
+        if (this.allocation.references.get() <= 0) {
+            throw new IllegalStateException("Cannot use a buffer that has been released.");
+        }
+    }
+
+    /**
+     * A buffer taken from a pool and the references held to it, shared by all of its views.
+     */
+    static class Allocation {
+        final ByteBuffer memory;
+        final BufferPool pool;
+        final AtomicInteger references = new AtomicInteger(1);
+        BufferPool.Leak leak = null;
+
+        Allocation(ByteBuffer memory, BufferPool pool) {
+            this.memory = memory;
+            this.pool = pool;
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package com.scangarella.pipe.transmission;
+
+/**
+ * Sent by a wrapper to one of its inner pipes after a message. The pipe sends the release back once it
+ * has ingested the message, so that the wrapper knows when the pipe is done with it.
+ * Pools also ask the pipe to reset its state, so that it can be used again.
+ */
+public class ReleaseMessage {
+
+    private Boolean reset;
+
+    /**
+     * Creates a new ReleaseMessage.
+     * @param reset True if a Resettable pipe should reset its state, false otherwise.
+     */
+    public ReleaseMessage(Boolean reset) {
+        this.reset = reset;
+    }
+
+    /**
+     * Checks to see if a Resettable pipe should reset its state.
+     * @return True if the pipe should reset, false otherwise.
+     */
+    public Boolean isReset() {
+        return this.reset;
+    }
+}
@@ -0,0 +1,7 @@
+package com.scangarella.pipe.transmission;
+
+/**
+ * Sent by a pipe to itself when it should grant its upstream pipes the credits it has used up.
+ */
+public class ReplenishMessage {
+}
@@ -0,0 +1,7 @@
+package com.scangarella.pipe.transmission;
+
+/**
+ * Sent by a pipe to itself when it's time to send the failures it has gathered to its exception handler.
+ */
+public class ReportMessage {
+}
@@ -0,0 +1,27 @@
+package com.scangarella.pipe.transmission;
+
+/**
+ * Sent by a pipe to itself once the delay before ingesting a failed message again is up.
+ */
+public class RetryMessage {
+    private Object message;
+    private Integer attempts;
+
+    /**
+     * Creates a new RetryMessage.
+     * @param message The message to ingest again, still wrapped if it was correlated.
+     * @param attempts The number of times it has been ingested so far.
+     */
+    public RetryMessage(Object message, Integer attempts) {
+        this.message = message;
+        this.attempts = attempts;
+    }
+
+    public Object getMessage() {
+        return this.message;
+    }
+
+    public Integer getAttempts() {
+        return this.attempts;
+    }
+}
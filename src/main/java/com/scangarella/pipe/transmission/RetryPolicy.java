@@ -0,0 +1,65 @@
+package com.scangarella.pipe.transmission;
+
+/**
+ * How a pipe retries a message whose 'ingest' threw. Retries are scheduled rather than waited for, so the
+ * pipe keeps ingesting other messages in the meantime, and the delay grows by the multiplier after every
+ * retry, up to the largest delay. Once every retry has failed, the failure goes to the pipe's exception handler.
+ */
+public class RetryPolicy {
+    private int maxRetries;
+    private long backoffMillis;
+    private double multiplier;
+    private long maxBackoffMillis;
+
+    /**
+     * Creates a new RetryPolicy whose delay doubles after every retry, up to thirty seconds.
+     * @param maxRetries The number of times a message is retried.
+     * @param backoffMillis The delay before the first retry, in milliseconds.
+     */
+    public RetryPolicy(int maxRetries, long backoffMillis) {
+        this(maxRetries, backoffMillis, 2.0, 30000);
+    }
+
+    /**
+     * Creates a new RetryPolicy.
+     * @param maxRetries The number of times a message is retried.
+     * @param backoffMillis The delay before the first retry, in milliseconds.
+     * @param multiplier What the delay is multiplied by after every retry.
+     * @param maxBackoffMillis The largest delay, in milliseconds.
+     */
+    public RetryPolicy(int maxRetries, long backoffMillis, double multiplier, long maxBackoffMillis) {
+        if (maxRetries < 0 || backoffMillis < 0 || multiplier < 1 || maxBackoffMillis < backoffMillis) {
+            throw new IllegalArgumentException("A retry policy needs non-negative retries and delays that don't shrink.");
+        }
+        this.maxRetries = maxRetries;
+        this.backoffMillis = backoffMillis;
+        this.multiplier = multiplier;
+        this.maxBackoffMillis = maxBackoffMillis;
+    }
+
+    public int getMaxRetries() {
+        return this.maxRetries;
+    }
+
+    public long getBackoffMillis() {
+        return this.backoffMillis;
+    }
+
+    public double getMultiplier() {
+        return this.multiplier;
+    }
+
+    public long getMaxBackoffMillis() {
+        return this.maxBackoffMillis;
+    }
+
+    /**
+     * Gets the delay before a retry.
+     * @param retry The retry, counting from one.
+     * @return The delay in milliseconds.
+     */
+    public long getDelayMillis(int retry) {
+        double delay = this.backoffMillis * Math.pow(this.multiplier, retry - 1);
+        return (long) Math.min(delay, this.maxBackoffMillis);
+    }
+}
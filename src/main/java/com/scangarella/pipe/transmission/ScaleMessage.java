@@ -0,0 +1,7 @@
+package com.scangarella.pipe.transmission;
+
+/**
+ * Sent by an elastic pipe wrapper to itself when it should resize its pool of inner pipes.
+ */
+public class ScaleMessage {
+}
@@ -0,0 +1,7 @@
+package com.scangarella.pipe.transmission;
+
+/**
+ * Sent by a window pipe to itself when its current time windows end.
+ */
+public class WindowMessage {
+}
@@ -0,0 +1,62 @@
+package com.scangarella.pipe.construction;
+
+import akka.actor.ActorSystem;
+import akka.testkit.JavaTestKit;
+import com.scangarella.pipe.concurrency.LoadBalancingPipeWrapper;
+import com.scangarella.pipe.example.pipe.LargerThan10Pipe;
+import com.scangarella.pipe.example.pipe.LowercasePipe;
+import com.scangarella.pipe.example.pipe.SplitSentencePipe;
+import com.scangarella.pipe.example.pipe.UppercasePipe;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class AskTest {
+
+    private static ActorSystem system;
+
+    @BeforeClass
+    public static void setUp() {
+        system = ActorSystem.create("ask-test");
+    }
+
+    @AfterClass
+    public static void tearDown() {
+        JavaTestKit.shutdownActorSystem(system);
+    }
+
+    @Test
+    public void testAskCompletesWithTheOutputOfTheLastPipe() throws Exception {
+        Schematic schematic = new Schematic(UppercasePipe.class);
+        schematic.getRoot().addChild(LowercasePipe.class).wrap(LoadBalancingPipeWrapper.class);
+        PipeOpening<String> opening = new PipeBuilder(system).build(schematic);
+        String result = opening.<String>ask("Hello").get(3, TimeUnit.SECONDS);
+        assertEquals("hello", result);
+    }
+
+    @Test
+    public void testAskAllCollectsEveryOutput() throws Exception {
+        Schematic schematic = new Schematic(SplitSentencePipe.class);
+        schematic.getRoot().setBatching(2, 0);
+        schematic.getRoot().addChild(LowercasePipe.class);
+        schematic.getRoot().addChild(UppercasePipe.class);
+        PipeOpening<String> opening = new PipeBuilder(system).build(schematic);
+        List<String> results = opening.<String>askAll("Hello big World").get(3, TimeUnit.SECONDS);
+        results.sort(String::compareTo);
+        assertEquals(Arrays.asList("BIG", "HELLO", "WORLD", "big", "hello", "world"), results);
+    }
+
+    @Test
+    public void testAskOfAFilteredObjectCompletesWithNull() throws Exception {
+        PipeOpening<Integer> opening = new PipeBuilder(system).build(new Schematic(LargerThan10Pipe.class));
+        assertNull(opening.ask(5).get(3, TimeUnit.SECONDS));
+        assertEquals(Integer.valueOf(50), opening.<Integer>ask(50).get(3, TimeUnit.SECONDS));
+    }
+}
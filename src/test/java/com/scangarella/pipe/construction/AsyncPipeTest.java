@@ -0,0 +1,113 @@
+package com.scangarella.pipe.construction;
+
+import akka.actor.ActorSystem;
+import akka.testkit.JavaTestKit;
+import com.scangarella.pipe.stereotype.AsyncPipe;
+import com.scangarella.pipe.stereotype.ExceptionHandler;
+import com.scangarella.pipe.transmission.ExceptionMessage;
+import com.scangarella.pipe.transmission.StopMessage;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class AsyncPipeTest {
+
+    private static ActorSystem system;
+
+    @BeforeClass
+    public static void setUp() {
+        system = ActorSystem.create("async-pipe-test");
+    }
+
+    @AfterClass
+    public static void tearDown() {
+        JavaTestKit.shutdownActorSystem(system);
+    }
+
+    @Test
+    public void testResultsAreSentBeforeStop() throws Exception {
+        JavaTestKit out = new JavaTestKit(system);
+        Schematic schematic = new Schematic(DelayedDoublePipe.class);
+        PipeOpening<Integer> opening = new PipeBuilder(system).buildEndedPipe(schematic, out.getRef());
+        for (int i = 0; i < 30; i++) {
+            opening.put(i);
+        }
+        opening.close().toCompletableFuture().get(5, TimeUnit.SECONDS);
+        Object[] received = out.receiveN(31);
+        Set<Object> results = new HashSet<>();
+        for (int i = 0; i < 30; i++) {
+            results.add(received[i]);
+        }
+        for (int i = 0; i < 30; i++) {
+            assertTrue(results.contains(i * 2));
+        }
+        assertTrue(received[30] instanceof StopMessage);
+    }
+
+    @Test
+    public void testFailuresGoToExceptionHandler() throws Exception {
+        JavaTestKit out = new JavaTestKit(system);
+        Schematic schematic = new Schematic(FailingOddPipe.class);
+        schematic.getRoot().setExceptionHandler(RecordingExceptionHandler.class);
+        PipeOpening<Integer> opening = new PipeBuilder(system).buildEndedPipe(schematic, out.getRef());
+        for (int i = 0; i < 10; i++) {
+            opening.put(i);
+        }
+        opening.close().toCompletableFuture().get(5, TimeUnit.SECONDS);
+        Object[] received = out.receiveN(6);
+        for (int i = 0; i < 5; i++) {
+            assertEquals(i * 2, received[i]);
+        }
+        assertTrue(received[5] instanceof StopMessage);
+        assertEquals(5, RecordingExceptionHandler.exceptions.size());
+    }
+
+    private static final Executor DELAYED = CompletableFuture.delayedExecutor(5, TimeUnit.MILLISECONDS);
+
+    public static class DelayedDoublePipe extends AsyncPipe<Integer, Integer> {
+        public DelayedDoublePipe() {
+            super(4, false);
+        }
+
+        @Override
+        public CompletionStage<Integer> ingest(Integer i) {
+            return CompletableFuture.supplyAsync(() -> i * 2, DELAYED);
+        }
+    }
+
+    public static class FailingOddPipe extends AsyncPipe<Integer, Integer> {
+        public FailingOddPipe() {
+            super(4, true);
+        }
+
+        @Override
+        public CompletionStage<Integer> ingest(Integer i) {
+            return CompletableFuture.supplyAsync(() -> {
+                if (i % 2 == 1) {
+                    throw new IllegalStateException("odd " + i);
+                }
+                return i;
+            }, DELAYED);
+        }
+    }
+
+    public static class RecordingExceptionHandler extends ExceptionHandler {
+        static ConcurrentLinkedQueue<Exception> exceptions = new ConcurrentLinkedQueue<>();
+
+        @Override
+        public void onException(ExceptionMessage message) {
+            exceptions.add(message.getException());
+        }
+    }
+}
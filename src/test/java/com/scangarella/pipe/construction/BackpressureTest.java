@@ -0,0 +1,70 @@
+package com.scangarella.pipe.construction;
+
+import akka.actor.ActorSystem;
+import akka.testkit.JavaTestKit;
+import com.scangarella.pipe.example.pipe.LowercasePipe;
+import com.scangarella.pipe.stereotype.SideEffectPipe;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class BackpressureTest {
+
+    private static ActorSystem system;
+    private static CountDownLatch gate;
+
+    /**
+     * A pipe that doesn't ingest anything until the test opens the gate.
+     */
+    public static class GatedPipe extends SideEffectPipe<String> {
+        @Override
+        public String ingest(String s) {
+            try {
+                gate.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return s;
+        }
+    }
+
+    @BeforeClass
+    public static void setUp() {
+        system = ActorSystem.create("backpressure-test");
+    }
+
+    @AfterClass
+    public static void tearDown() {
+        JavaTestKit.shutdownActorSystem(system);
+    }
+
+    @Test
+    public void testOpeningRespectsDemandOfASlowPipe() throws InterruptedException {
+        gate = new CountDownLatch(1);
+        JavaTestKit out = new JavaTestKit(system);
+        Schematic schematic = new Schematic(LowercasePipe.class);
+        schematic.setCreditWindow(2);
+        schematic.getRoot().addChild(GatedPipe.class);
+        PipeOpening<String> opening = new PipeBuilder(system).buildEndedPipe(schematic, out.getRef());
+        int accepted = 0;
+        while (opening.offer("A", 500, TimeUnit.MILLISECONDS)) {
+            accepted++;
+        }
+        // Two reach the gated pipe, one waits for credits in the first pipe and two are held behind it.
+        assertEquals(5, accepted);
+        assertFalse(opening.tryPut("A"));
+        gate.countDown();
+        for (int i = 0; i < accepted; i++) {
+            out.expectMsgEquals("a");
+        }
+        assertTrue(opening.offer("B", 3, TimeUnit.SECONDS));
+        out.expectMsgEquals("b");
+    }
+}
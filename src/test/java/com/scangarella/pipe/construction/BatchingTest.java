@@ -0,0 +1,87 @@
+package com.scangarella.pipe.construction;
+
+import akka.actor.ActorSystem;
+import akka.testkit.JavaTestKit;
+import com.scangarella.pipe.concurrency.LoadBalancingPipeWrapper;
+import com.scangarella.pipe.example.pipe.LowercasePipe;
+import com.scangarella.pipe.example.pipe.UppercasePipe;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.Assert.assertEquals;
+
+public class BatchingTest {
+
+    private static ActorSystem system;
+
+    @BeforeClass
+    public static void setUp() {
+        system = ActorSystem.create("batching-test");
+    }
+
+    @AfterClass
+    public static void tearDown() {
+        JavaTestKit.shutdownActorSystem(system);
+    }
+
+    @Test
+    public void testBatchedEdgeDeliversEveryMessageInOrder() {
+        JavaTestKit out = new JavaTestKit(system);
+        Schematic schematic = new Schematic(UppercasePipe.class);
+        schematic.getRoot().setBatching(3, 0);
+        schematic.getRoot().addChild(LowercasePipe.class);
+        PipeOpening<String> opening = new PipeBuilder(system).buildEndedPipe(schematic, out.getRef());
+        for (String s : new String[]{"A", "b", "C", "d", "E"}) {
+            opening.put(s);
+        }
+        for (String s : new String[]{"a", "b", "c", "d", "e"}) {
+            out.expectMsgEquals(s);
+        }
+    }
+
+    @Test
+    public void testTimedBatchIsFlushedWhenNotFull() {
+        JavaTestKit out = new JavaTestKit(system);
+        Schematic schematic = new Schematic(UppercasePipe.class);
+        Schematic.Pipe lowercase = schematic.getRoot().addChild(LowercasePipe.class);
+        schematic.getRoot().setBatching(lowercase, 100, 1000);
+        PipeOpening<String> opening = new PipeBuilder(system).buildEndedPipe(schematic, out.getRef());
+        opening.put("Hello");
+        out.expectMsgEquals("hello");
+    }
+
+    @Test
+    public void testPutAllSendsEveryObjectInChunks() {
+        JavaTestKit out = new JavaTestKit(system);
+        Schematic schematic = new Schematic(LowercasePipe.class);
+        PipeOpening<String> opening = new PipeBuilder(system).buildEndedPipe(schematic, out.getRef());
+        opening.setChunkSize(2);
+        IngestReport report = opening.putAll(Arrays.asList("A", "B", null, "C"));
+        assertEquals(3, report.getAccepted());
+        out.expectMsgEquals("a");
+        out.expectMsgEquals("b");
+        out.expectMsgEquals("c");
+    }
+
+    @Test
+    public void testParallelPutAllFeedsALoadBalancedPipeWithBackpressure() {
+        JavaTestKit out = new JavaTestKit(system);
+        Schematic schematic = new Schematic(LowercasePipe.class);
+        schematic.setCreditWindow(16);
+        schematic.getRoot().wrap(LoadBalancingPipeWrapper.class);
+        PipeOpening<String> opening = new PipeBuilder(system).buildEndedPipe(schematic, out.getRef());
+        List<String> items = IntStream.range(0, 1000).mapToObj(i -> "A" + i).collect(Collectors.toList());
+        IngestReport report = opening.putAll(items.parallelStream());
+        assertEquals(1000, report.getAccepted());
+        Set<Object> received = new HashSet<>(Arrays.asList(out.receiveN(1000)));
+        assertEquals(items.stream().map(String::toLowerCase).collect(Collectors.toSet()), received);
+    }
+}
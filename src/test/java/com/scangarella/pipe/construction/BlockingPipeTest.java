@@ -0,0 +1,114 @@
+package com.scangarella.pipe.construction;
+
+import akka.actor.ActorSystem;
+import akka.testkit.JavaTestKit;
+import com.scangarella.pipe.stereotype.BlockingPipe;
+import com.scangarella.pipe.transmission.StopMessage;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class BlockingPipeTest {
+
+    private static ActorSystem system;
+
+    @BeforeClass
+    public static void setUp() {
+        system = ActorSystem.create("blocking-pipe-test");
+    }
+
+    @AfterClass
+    public static void tearDown() {
+        JavaTestKit.shutdownActorSystem(system);
+    }
+
+    @Test
+    public void testOrderedPipeKeepsInputOrder() throws Exception {
+        JavaTestKit out = new JavaTestKit(system);
+        Schematic schematic = new Schematic(OrderedSleepPipe.class);
+        PipeOpening<Integer> opening = new PipeBuilder(system).buildEndedPipe(schematic, out.getRef());
+        for (int i = 0; i < 50; i++) {
+            opening.put(i);
+        }
+        opening.close().toCompletableFuture().get(5, TimeUnit.SECONDS);
+        Object[] received = out.receiveN(51);
+        for (int i = 0; i < 50; i++) {
+            assertEquals(i, received[i]);
+        }
+        assertTrue(received[50] instanceof StopMessage);
+    }
+
+    @Test
+    public void testIngestsRunOnVirtualThreadsOrTheBlockingDispatcher() throws Exception {
+        Schematic schematic = new Schematic(ThreadNamePipe.class);
+        PipeOpening<Integer> opening = new PipeBuilder(system).build(schematic);
+        String thread = opening.<String>ask(1).get(5, TimeUnit.SECONDS);
+        assertTrue(thread, thread.isEmpty() || thread.startsWith("blocking-pipe-test-" + BlockingPipe.DISPATCHER));
+        opening.close().toCompletableFuture().get(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void testConcurrencyIsLimited() throws Exception {
+        JavaTestKit out = new JavaTestKit(system);
+        Schematic schematic = new Schematic(LimitedSleepPipe.class);
+        PipeOpening<Integer> opening = new PipeBuilder(system).buildEndedPipe(schematic, out.getRef());
+        for (int i = 0; i < 40; i++) {
+            opening.put(i);
+        }
+        opening.close().toCompletableFuture().get(5, TimeUnit.SECONDS);
+        out.receiveN(41);
+        assertTrue(LimitedSleepPipe.maximum.get() > 1);
+        assertTrue(LimitedSleepPipe.maximum.get() <= 4);
+    }
+
+    public static class ThreadNamePipe extends BlockingPipe<Integer, String> {
+        @Override
+        public String ingest(Integer i) {
+            return Thread.currentThread().getName();
+        }
+    }
+
+    public static class OrderedSleepPipe extends BlockingPipe<Integer, Integer> {
+        public OrderedSleepPipe() {
+            super(8, true);
+        }
+
+        @Override
+        public Integer ingest(Integer i) {
+            try {
+                Thread.sleep(ThreadLocalRandom.current().nextInt(5));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return i;
+        }
+    }
+
+    public static class LimitedSleepPipe extends BlockingPipe<Integer, Integer> {
+        static AtomicInteger running = new AtomicInteger();
+        static AtomicInteger maximum = new AtomicInteger();
+
+        public LimitedSleepPipe() {
+            super(4, false);
+        }
+
+        @Override
+        public Integer ingest(Integer i) {
+            maximum.accumulateAndGet(running.incrementAndGet(), Math::max);
+            try {
+                Thread.sleep(5);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            running.decrementAndGet();
+            return i;
+        }
+    }
+}
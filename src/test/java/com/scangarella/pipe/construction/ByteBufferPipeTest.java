@@ -0,0 +1,181 @@
+package com.scangarella.pipe.construction;
+
+import akka.actor.ActorRef;
+import akka.actor.ActorSystem;
+import akka.actor.Props;
+import akka.testkit.JavaTestKit;
+import akka.testkit.TestActorRef;
+import com.scangarella.pipe.stereotype.ByteBufferPipe;
+import com.scangarella.pipe.stereotype.ExceptionHandler;
+import com.scangarella.pipe.stereotype.Pipe;
+import com.scangarella.pipe.transmission.BufferPool;
+import com.scangarella.pipe.transmission.ExceptionMessage;
+import com.scangarella.pipe.transmission.PooledBuffer;
+import com.scangarella.pipe.transmission.RetryPolicy;
+import com.scangarella.pipe.transmission.StopMessage;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ByteBufferPipeTest {
+
+    private static ActorSystem system;
+    private static volatile ActorRef handled;
+
+    @BeforeClass
+    public static void setUp() {
+        system = ActorSystem.create("byte-buffer-pipe-test");
+    }
+
+    @AfterClass
+    public static void tearDown() {
+        JavaTestKit.shutdownActorSystem(system);
+    }
+
+    @Test
+    public void testSlicesAreSentToEveryChildAndReturnedToThePool() throws Exception {
+        BufferPool pool = new BufferPool(1 << 20, true);
+        JavaTestKit out = new JavaTestKit(system);
+        Schematic schematic = new Schematic(StripHeaderPipe.class);
+        schematic.getRoot().addChild(SumPipe.class);
+        schematic.getRoot().addChild(SumPipe.class);
+        PipeOpening<PooledBuffer> opening = new PipeBuilder(system).buildEndedPipe(schematic, out.getRef());
+        PooledBuffer buffer = pool.acquire(8);
+        buffer.getBuffer().put(new byte[] {9, 9, 9, 9, 1, 2, 3, 4});
+        opening.put(buffer);
+        opening.close().toCompletableFuture().get(5, TimeUnit.SECONDS);
+        List<Object> sums = new ArrayList<>();
+        while (sums.size() < 2) {
+            Object message = out.receiveOne(out.dilated(out.duration("1 second")));
+            if (!(message instanceof StopMessage)) {
+                sums.add(message);
+            }
+        }
+        assertEquals(Arrays.asList(10L, 10L), sums);
+        assertEquals(Integer.valueOf(0), buffer.getReferences());
+        assertEquals(Integer.valueOf(1), pool.getFreeBuffers());
+        assertTrue(pool.getLeaks().isEmpty());
+    }
+
+    @Test
+    public void testReceivedBufferIsReleasedWhenNotSentOn() {
+        BufferPool pool = new BufferPool(1 << 20, false);
+        TestActorRef<CopyPipe> pipe = TestActorRef.create(system, Props.create(CopyPipe.class));
+        PooledBuffer buffer = pool.acquire(600);
+        PooledBuffer copy = pipe.underlyingActor().ingest(buffer);
+        assertFalse(copy.shares(buffer));
+        assertEquals(Integer.valueOf(0), buffer.getReferences());
+        assertEquals(Integer.valueOf(1), copy.getReferences());
+        assertEquals(Integer.valueOf(1), pool.getFreeBuffers());
+        copy.release();
+    }
+
+    @Test
+    public void testLeakedBuffersAreReported() throws Exception {
+        BufferPool pool = new BufferPool(1 << 20, true);
+        leak(pool);
+        for (int i = 0; i < 50 && pool.getLeaks().isEmpty(); i++) {
+            System.gc();
+            Thread.sleep(20);
+        }
+        List<Throwable> leaks = pool.getLeaks();
+        assertEquals(1, leaks.size());
+        assertTrue(Arrays.stream(leaks.get(0).getStackTrace()).anyMatch(e -> e.getMethodName().equals("leak")));
+    }
+
+    @Test
+    public void testFailedBuffersAreRetriedAndReleased() throws Exception {
+        BufferPool pool = new BufferPool(1 << 20, true);
+        JavaTestKit out = new JavaTestKit(system);
+        JavaTestKit errors = new JavaTestKit(system);
+        handled = errors.getRef();
+        Schematic schematic = new Schematic(FlakyStripHeaderPipe.class);
+        schematic.getRoot().setRetryPolicy(new RetryPolicy(1, 5));
+        schematic.getRoot().setExceptionHandler(ForwardingExceptionHandler.class);
+        schematic.getRoot().addChild(SumPipe.class);
+        PipeOpening<PooledBuffer> opening = new PipeBuilder(system).buildEndedPipe(schematic, out.getRef());
+        PooledBuffer retried = pool.acquire(8);
+        retried.getBuffer().put(new byte[] {9, 9, 9, 9, 1, 2, 3, 4});
+        PooledBuffer failed = pool.acquire(8);
+        failed.getBuffer().put(new byte[] {-1, 9, 9, 9, 1, 2, 3, 4});
+        opening.put(retried);
+        opening.put(failed);
+        opening.close().toCompletableFuture().get(5, TimeUnit.SECONDS);
+        assertEquals(10L, out.expectMsgClass(Long.class).longValue());
+        ExceptionMessage error = errors.expectMsgClass(ExceptionMessage.class);
+        assertArrayEquals(new byte[] {-1, 9, 9, 9, 1, 2, 3, 4}, (byte[]) error.getInput());
+        assertEquals(2, (int) error.getAttempts());
+        assertEquals(Integer.valueOf(0), retried.getReferences());
+        assertEquals(Integer.valueOf(0), failed.getReferences());
+        assertEquals(Integer.valueOf(2), pool.getFreeBuffers());
+        assertTrue(pool.getLeaks().isEmpty());
+    }
+
+    private static void leak(BufferPool pool) {
+        pool.acquire(100);
+    }
+
+    public static class StripHeaderPipe extends ByteBufferPipe {
+        @Override
+        public PooledBuffer transform(PooledBuffer buffer) {
+            return buffer.slice(4, buffer.length() - 4);
+        }
+    }
+
+    /**
+     * Strips the header on the second try, or never if the header starts with a negative byte.
+     */
+    public static class FlakyStripHeaderPipe extends ByteBufferPipe {
+        private Set<PooledBuffer> tried = new HashSet<>();
+
+        @Override
+        public PooledBuffer transform(PooledBuffer buffer) {
+            if (buffer.getBuffer().get(0) < 0 || tried.add(buffer)) {
+                throw new IllegalStateException("Not yet");
+            }
+            return buffer.slice(4, buffer.length() - 4);
+        }
+    }
+
+    public static class ForwardingExceptionHandler extends ExceptionHandler {
+        @Override
+        public void onException(ExceptionMessage message) {
+            handled.tell(message, getSelf());
+        }
+    }
+
+    public static class CopyPipe extends ByteBufferPipe {
+        @Override
+        public PooledBuffer transform(PooledBuffer buffer) {
+            PooledBuffer copy = acquire(buffer.length());
+            copy.getBuffer().put(buffer.getBuffer());
+            return copy;
+        }
+    }
+
+    public static class SumPipe extends Pipe<PooledBuffer, Long> {
+        @Override
+        public Long ingest(PooledBuffer buffer) {
+            ByteBuffer bytes = buffer.getBuffer();
+            long sum = 0;
+            for (int i = 0; i < bytes.capacity(); i++) {
+                sum += bytes.get(i);
+            }
+            buffer.release();
+            return sum;
+        }
+    }
+}
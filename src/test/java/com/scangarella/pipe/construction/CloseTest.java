@@ -0,0 +1,82 @@
+package com.scangarella.pipe.construction;
+
+import akka.actor.ActorSystem;
+import akka.testkit.JavaTestKit;
+import com.scangarella.pipe.concurrency.LoadBalancingPipeWrapper;
+import com.scangarella.pipe.concurrency.SpinUpPipeWrapper;
+import com.scangarella.pipe.example.error.SimpleExceptionHandler;
+import com.scangarella.pipe.example.pipe.LowercasePipe;
+import com.scangarella.pipe.example.pipe.UppercasePipe;
+import com.scangarella.pipe.transmission.StopMessage;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class CloseTest {
+
+    private static ActorSystem system;
+
+    @BeforeClass
+    public static void setUp() {
+        system = ActorSystem.create("close-test");
+    }
+
+    @AfterClass
+    public static void tearDown() {
+        JavaTestKit.shutdownActorSystem(system);
+    }
+
+    @Test
+    public void testCloseCompletesAfterWrappedPipesDrain() throws Exception {
+        JavaTestKit out = new JavaTestKit(system);
+        Schematic schematic = new Schematic(LowercasePipe.class);
+        Schematic.Pipe uppercase = schematic.getRoot().addChild(UppercasePipe.class);
+        uppercase.wrap(LoadBalancingPipeWrapper.class);
+        uppercase.setExceptionHandler(SimpleExceptionHandler.class).wrap(SpinUpPipeWrapper.class);
+        uppercase.addChild(LowercasePipe.class).wrap(SpinUpPipeWrapper.class);
+        PipeOpening<String> opening = new PipeBuilder(system).buildEndedPipe(schematic, out.getRef());
+        for (int i = 0; i < 100; i++) {
+            opening.put("Hello");
+        }
+        opening.close().toCompletableFuture().get(5, TimeUnit.SECONDS);
+        Object[] received = out.receiveN(101);
+        for (int i = 0; i < 100; i++) {
+            assertEquals("hello", received[i]);
+        }
+        assertTrue(received[100] instanceof StopMessage);
+    }
+
+    @Test
+    public void testNothingCanBePutIntoAClosedOpening() throws Exception {
+        Schematic schematic = new Schematic(UppercasePipe.class);
+        schematic.setCreditWindow(4);
+        PipeOpening<String> opening = new PipeBuilder(system).build(schematic);
+        opening.put("Hello");
+        opening.close().toCompletableFuture().get(5, TimeUnit.SECONDS);
+        assertClosed(() -> {
+            opening.put("Hello");
+            return null;
+        });
+        assertClosed(() -> opening.tryPut("Hello"));
+        assertClosed(() -> opening.offer("Hello", 1, TimeUnit.SECONDS));
+        assertClosed(() -> opening.putAll(Arrays.asList("Hello", "World")));
+        assertClosed(() -> opening.ask("Hello"));
+    }
+
+    private static void assertClosed(Callable<?> put) throws Exception {
+        try {
+            put.call();
+            fail();
+        } catch (IllegalStateException e) {
+            assertEquals("Nothing can be put into an opening that has been closed.", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package com.scangarella.pipe.construction;
+
+import akka.actor.ActorSystem;
+import akka.testkit.JavaTestKit;
+import com.scangarella.pipe.concurrency.ElasticPipeWrapper;
+import com.scangarella.pipe.stereotype.Pipe;
+import com.scangarella.pipe.stereotype.Resettable;
+import com.scangarella.pipe.transmission.StopMessage;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ElasticPoolTest {
+
+    private static ActorSystem system;
+
+    @BeforeClass
+    public static void setUp() {
+        system = ActorSystem.create("elastic-pool-test");
+    }
+
+    @AfterClass
+    public static void tearDown() {
+        JavaTestKit.shutdownActorSystem(system);
+    }
+
+    @Test
+    public void testResettablePipesStartFreshForEveryMessage() throws Exception {
+        assertFreshStateForEveryMessage(ResettableCountingPipe.class);
+    }
+
+    @Test
+    public void testOtherPipesAreReplacedAfterEveryMessage() throws Exception {
+        assertFreshStateForEveryMessage(CountingPipe.class);
+    }
+
+    private void assertFreshStateForEveryMessage(Class clazz) throws Exception {
+        JavaTestKit out = new JavaTestKit(system);
+        Schematic schematic = new Schematic(clazz);
+        schematic.getRoot().wrap(ElasticPipeWrapper.class);
+        PipeOpening<String> opening = new PipeBuilder(system).buildEndedPipe(schematic, out.getRef());
+        for (int i = 0; i < 200; i++) {
+            opening.put("Hello");
+        }
+        opening.close().toCompletableFuture().get(5, TimeUnit.SECONDS);
+        Object[] received = out.receiveN(201);
+        for (int i = 0; i < 200; i++) {
+            assertEquals(1, received[i]);
+        }
+        assertTrue(received[200] instanceof StopMessage);
+    }
+
+    public static class CountingPipe extends Pipe<String, Integer> {
+        protected Integer count = 0;
+
+        @Override
+        public Integer ingest(String s) {
+            return ++count;
+        }
+    }
+
+    public static class ResettableCountingPipe extends CountingPipe implements Resettable {
+        @Override
+        public void reset() {
+            count = 0;
+        }
+    }
+}
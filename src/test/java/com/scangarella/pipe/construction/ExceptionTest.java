@@ -0,0 +1,184 @@
+package com.scangarella.pipe.construction;
+
+import akka.actor.ActorRef;
+import akka.actor.ActorSystem;
+import akka.actor.DeadLetter;
+import akka.testkit.JavaTestKit;
+import com.scangarella.pipe.exception.StacklessException;
+import com.scangarella.pipe.stereotype.ExceptionHandler;
+import com.scangarella.pipe.stereotype.Pipe;
+import com.scangarella.pipe.transmission.ErrorPolicy;
+import com.scangarella.pipe.transmission.ExceptionBatch;
+import com.scangarella.pipe.transmission.ExceptionMessage;
+import com.scangarella.pipe.transmission.RetryPolicy;
+import com.scangarella.pipe.transmission.StopMessage;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ExceptionTest {
+
+    private static ActorSystem system;
+    private static volatile ActorRef handled;
+
+    @BeforeClass
+    public static void setUp() {
+        system = ActorSystem.create("exception-test");
+    }
+
+    @AfterClass
+    public static void tearDown() {
+        JavaTestKit.shutdownActorSystem(system);
+    }
+
+    @Test
+    public void testFailuresAreReportedWithoutRestartingThePipe() throws Exception {
+        JavaTestKit out = new JavaTestKit(system);
+        JavaTestKit errors = new JavaTestKit(system);
+        handled = errors.getRef();
+        Schematic schematic = new Schematic(CountingPipe.class);
+        schematic.getRoot().setExceptionHandler(ForwardingExceptionHandler.class);
+        PipeOpening<Integer> opening = new PipeBuilder(system).buildEndedPipe(schematic, out.getRef());
+        for (int i = 0; i < 9; i++) {
+            opening.put(i);
+        }
+        opening.close().toCompletableFuture().get(5, TimeUnit.SECONDS);
+        Object[] received = out.receiveN(7);
+        assertEquals(Arrays.asList(1, 2, 4, 5, 7, 8), Arrays.asList(received).subList(0, 6));
+        assertTrue(received[6] instanceof StopMessage);
+        for (int i = 2; i < 9; i += 3) {
+            ExceptionMessage error = errors.expectMsgClass(ExceptionMessage.class);
+            assertEquals(i, error.getInput());
+            assertEquals(schematic.getRoot().getUniqueID(), error.getPipeId());
+            assertEquals(1, (int) error.getAttempts());
+        }
+    }
+
+    @Test
+    public void testRetriesRecoverFromTransientFailures() throws Exception {
+        Schematic schematic = new Schematic(FlakyPipe.class);
+        schematic.getRoot().setRetryPolicy(new RetryPolicy(3, 10));
+        PipeOpening<Integer> opening = new PipeBuilder(system).build(schematic);
+        assertEquals(Integer.valueOf(7), opening.<Integer>ask(7).get(5, TimeUnit.SECONDS));
+        assertEquals(Integer.valueOf(8), opening.<Integer>ask(8).get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testRetriesThatRunOutAreReported() throws Exception {
+        JavaTestKit errors = new JavaTestKit(system);
+        handled = errors.getRef();
+        Schematic schematic = new Schematic(CountingPipe.class);
+        schematic.getRoot().setRetryPolicy(new RetryPolicy(2, 5));
+        schematic.getRoot().setExceptionHandler(ForwardingExceptionHandler.class);
+        PipeOpening<Integer> opening = new PipeBuilder(system).build(schematic);
+        try {
+            opening.ask(2).get(5, TimeUnit.SECONDS);
+            fail();
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IllegalArgumentException);
+        }
+        ExceptionMessage error = errors.expectMsgClass(ExceptionMessage.class);
+        assertEquals(2, error.getInput());
+        assertEquals(3, (int) error.getAttempts());
+    }
+
+    @Test
+    public void testFailuresWithoutAHandlerGoToDeadLetters() throws Exception {
+        JavaTestKit deadLetters = new JavaTestKit(system);
+        system.eventStream().subscribe(deadLetters.getRef(), DeadLetter.class);
+        PipeOpening<Integer> opening = new PipeBuilder(system).build(new Schematic(CountingPipe.class));
+        opening.put(5);
+        Object message = null;
+        while (!(message instanceof ExceptionMessage)) {
+            message = deadLetters.expectMsgClass(DeadLetter.class).message();
+        }
+        assertEquals(5, ((ExceptionMessage) message).getInput());
+        system.eventStream().unsubscribe(deadLetters.getRef());
+    }
+
+    @Test
+    public void testFailuresAreGatheredIntoSampledBatches() throws Exception {
+        JavaTestKit errors = new JavaTestKit(system);
+        handled = errors.getRef();
+        Schematic schematic = new Schematic(CountingPipe.class);
+        schematic.getRoot().setExceptionHandler(BatchForwardingExceptionHandler.class)
+                .setErrorPolicy(new ErrorPolicy(50, 2, IllegalArgumentException.class));
+        PipeOpening<Integer> opening = new PipeBuilder(system).build(schematic);
+        for (int i = 0; i < 30; i++) {
+            opening.put(i);
+        }
+        opening.close().toCompletableFuture().get(5, TimeUnit.SECONDS);
+        long count = 0;
+        while (count < 10) {
+            ExceptionBatch batch = errors.expectMsgClass(ExceptionBatch.class);
+            assertEquals(IllegalArgumentException.class, batch.getType());
+            assertEquals(schematic.getRoot().getUniqueID(), batch.getPipeId());
+            assertTrue(batch.getSamples().size() <= 2);
+            for (ExceptionMessage sample : batch.getSamples()) {
+                assertTrue(sample.getException() instanceof StacklessException);
+                assertTrue(sample.getException().getMessage().startsWith("java.lang.IllegalArgumentException: failed "));
+                assertEquals(0, sample.getException().getStackTrace().length);
+            }
+            count += batch.getCount();
+        }
+        assertEquals(10, count);
+    }
+
+    /**
+     * Counts the messages it has ingested, and fails every third one.
+     */
+    public static class CountingPipe extends Pipe<Integer, Integer> {
+        private Integer count = 0;
+
+        @Override
+        public Integer ingest(Integer i) {
+            count++;
+            if (i % 3 == 2) {
+                throw new IllegalArgumentException("failed " + i);
+            }
+            return count;
+        }
+    }
+
+    /**
+     * Fails the first two times it ingests each message.
+     */
+    public static class FlakyPipe extends Pipe<Integer, Integer> {
+        private Map<Integer, Integer> attempts = new HashMap<>();
+
+        @Override
+        public Integer ingest(Integer i) {
+            if (attempts.merge(i, 1, Integer::sum) < 3) {
+                throw new IllegalStateException("flaky " + i);
+            }
+            return i;
+        }
+    }
+
+    public static class BatchForwardingExceptionHandler extends ExceptionHandler {
+        @Override
+        public void onException(ExceptionMessage message) { }
+
+        @Override
+        public void onExceptions(ExceptionBatch batch) {
+            handled.tell(batch, getSelf());
+        }
+    }
+
+    public static class ForwardingExceptionHandler extends ExceptionHandler {
+        @Override
+        public void onException(ExceptionMessage message) {
+            handled.tell(message, getSelf());
+        }
+    }
+}
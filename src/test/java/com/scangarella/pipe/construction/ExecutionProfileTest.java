@@ -0,0 +1,50 @@
+package com.scangarella.pipe.construction;
+
+import akka.actor.ActorSystem;
+import akka.testkit.JavaTestKit;
+import com.scangarella.pipe.concurrency.LoadBalancingPipeWrapper;
+import com.scangarella.pipe.stereotype.Pipe;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import static org.junit.Assert.assertTrue;
+
+public class ExecutionProfileTest {
+
+    private static ActorSystem system;
+
+    @BeforeClass
+    public static void setUp() {
+        system = ActorSystem.create("execution-profile-test");
+    }
+
+    @AfterClass
+    public static void tearDown() {
+        JavaTestKit.shutdownActorSystem(system);
+    }
+
+    @Test
+    public void testPipesRunOnTheirProfilesDispatchers() {
+        JavaTestKit out = new JavaTestKit(system);
+        ExecutionProfile blocking = ExecutionProfile.blocking(2);
+        ExecutionProfile pinned = ExecutionProfile.pinned().withThroughput(1);
+        Schematic schematic = new Schematic(ThreadNamePipe.class);
+        schematic.getRoot().setExecutionProfile(blocking);
+        Schematic.Pipe wrapped = schematic.getRoot().addChild(ThreadNamePipe.class);
+        wrapped.setExecutionProfile(pinned);
+        wrapped.wrap(LoadBalancingPipeWrapper.class).setExecutionProfile(ExecutionProfile.cpuBound());
+        PipeOpening<String> opening = new PipeBuilder(system).buildEndedPipe(schematic, out.getRef());
+        opening.put("");
+        String threads = out.expectMsgClass(String.class);
+        assertTrue(threads, threads.contains(blocking.getDispatcherId() + "-"));
+        assertTrue(threads, threads.contains(pinned.getDispatcherId() + "-"));
+    }
+
+    public static class ThreadNamePipe extends Pipe<String, String> {
+        @Override
+        public String ingest(String s) {
+            return s + " " + Thread.currentThread().getName();
+        }
+    }
+}
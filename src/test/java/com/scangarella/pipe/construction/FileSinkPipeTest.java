@@ -0,0 +1,137 @@
+package com.scangarella.pipe.construction;
+
+import akka.actor.ActorSystem;
+import akka.testkit.JavaTestKit;
+import com.scangarella.pipe.stereotype.FileSinkPipe;
+import com.scangarella.pipe.stereotype.SinkPolicy;
+import com.scangarella.pipe.transmission.StopMessage;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class FileSinkPipeTest {
+
+    private static ActorSystem system;
+    private static volatile Path directory;
+    private static final AtomicLong committed = new AtomicLong();
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @BeforeClass
+    public static void setUp() {
+        system = ActorSystem.create("file-sink-pipe-test");
+    }
+
+    @AfterClass
+    public static void tearDown() {
+        JavaTestKit.shutdownActorSystem(system);
+    }
+
+    @Test
+    public void testRecordsAreWrittenWhenThePipelineCloses() throws Exception {
+        directory = folder.getRoot().toPath();
+        List<String> lines = IntStream.range(0, 100000).mapToObj(i -> "line " + i).collect(Collectors.toList());
+        JavaTestKit out = new JavaTestKit(system);
+        PipeOpening<String> opening = new PipeBuilder(system).buildEndedPipe(new Schematic(LineSinkPipe.class), out.getRef());
+        opening.putAll(lines);
+        opening.close().toCompletableFuture().get(5, TimeUnit.SECONDS);
+        assertTrue(out.receiveOne(out.dilated(out.duration("1 second"))) instanceof StopMessage);
+        assertEquals(lines, Files.readAllLines(directory.resolve("lines.000000")));
+    }
+
+    @Test
+    public void testFilesAreRolledBySize() throws Exception {
+        directory = folder.getRoot().toPath();
+        List<String> lines = IntStream.range(0, 100).mapToObj(i -> String.format("line %04d", i)).collect(Collectors.toList());
+        PipeOpening<String> opening = new PipeBuilder(system).build(new Schematic(RollingSinkPipe.class));
+        lines.forEach(opening::put);
+        opening.close().toCompletableFuture().get(5, TimeUnit.SECONDS);
+        List<Path> files;
+        try (Stream<Path> listing = Files.list(directory)) {
+            files = listing.sorted().collect(Collectors.toList());
+        }
+        assertEquals(10, files.size());
+        List<String> read = files.stream().flatMap(file -> {
+            assertEquals(100, file.toFile().length());
+            return readLines(file).stream();
+        }).collect(Collectors.toList());
+        assertEquals(lines, read);
+    }
+
+    @Test
+    public void testRecordsAreSyncedOnTheCommitInterval() throws Exception {
+        directory = folder.getRoot().toPath();
+        committed.set(0);
+        PipeOpening<String> opening = new PipeBuilder(system).build(new Schematic(CommittingSinkPipe.class));
+        opening.put("first");
+        opening.put("second");
+        for (int i = 0; i < 100 && committed.get() == 0; i++) {
+            Thread.sleep(20);
+        }
+        assertEquals(13, committed.get());
+        assertEquals("first\nsecond\n", new String(Files.readAllBytes(directory.resolve("commits.000000")), StandardCharsets.UTF_8));
+        opening.close().toCompletableFuture().get(5, TimeUnit.SECONDS);
+        assertEquals(13, committed.get());
+    }
+
+    private static List<String> readLines(Path file) {
+        try {
+            return Files.readAllLines(file);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public static class LineSinkPipe extends FileSinkPipe<String> {
+        public LineSinkPipe() {
+            super(SinkPolicy.in(directory, "lines").withBuffers(2, 4096));
+        }
+        @Override
+        public ByteBuffer encode(String line) {
+            return ByteBuffer.wrap((line + "\n").getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    public static class RollingSinkPipe extends FileSinkPipe<String> {
+        public RollingSinkPipe() {
+            super(SinkPolicy.in(directory, "rolling").withRollSize(100).withBuffers(1, 64));
+        }
+        @Override
+        public ByteBuffer encode(String line) {
+            return ByteBuffer.wrap((line + "\n").getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    public static class CommittingSinkPipe extends FileSinkPipe<String> {
+        public CommittingSinkPipe() {
+            super(SinkPolicy.in(directory, "commits").withCommitInterval(50, TimeUnit.MILLISECONDS));
+        }
+        @Override
+        public ByteBuffer encode(String line) {
+            return ByteBuffer.wrap((line + "\n").getBytes(StandardCharsets.UTF_8));
+        }
+        @Override
+        protected void committed(Path path, long bytes) {
+            committed.addAndGet(bytes);
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package com.scangarella.pipe.construction;
+
+import akka.actor.ActorSystem;
+import akka.actor.DeadLetter;
+import akka.testkit.JavaTestKit;
+import com.scangarella.pipe.example.pipe.LowercasePipe;
+import com.scangarella.pipe.example.pipe.SplitSentencePipe;
+import com.scangarella.pipe.example.pipe.UppercasePipe;
+import com.scangarella.pipe.stereotype.FusedPipeFactory;
+import com.scangarella.pipe.stereotype.Pipe;
+import com.scangarella.pipe.transmission.ExceptionMessage;
+import com.scangarella.pipe.transmission.RetryPolicy;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class FusionTest {
+
+    private static ActorSystem system;
+    private static final AtomicInteger incremented = new AtomicInteger();
+
+    @BeforeClass
+    public static void setUp() {
+        system = ActorSystem.create("fusion-test");
+    }
+
+    @AfterClass
+    public static void tearDown() {
+        JavaTestKit.shutdownActorSystem(system);
+    }
+
+    @Test
+    public void testFusingIsSupportedOnThisAkkaVersion() {
+        assertTrue("Akka's context stack has changed, so FusedPipeFactory has to be brought up to date.",
+                FusedPipeFactory.isSupported());
+    }
+
+    @Test
+    public void testFusedChainRunsEveryPipe() {
+        JavaTestKit out = new JavaTestKit(system);
+        Schematic schematic = new Schematic(UppercasePipe.class);
+        schematic.setFusing(true);
+        schematic.getRoot()
+                .addChild(SplitSentencePipe.class)
+                .addChild(LowercasePipe.class);
+        PipeOpening<String> opening = new PipeBuilder(system).buildEndedPipe(schematic, out.getRef());
+        opening.put("Hello big World");
+        out.expectMsgEquals("hello");
+        out.expectMsgEquals("big");
+        out.expectMsgEquals("world");
+    }
+
+    @Test
+    public void testFanOutIsNotFused() {
+        JavaTestKit out = new JavaTestKit(system);
+        Schematic schematic = new Schematic(UppercasePipe.class);
+        schematic.setFusing(true);
+        Schematic.Pipe lowercase = schematic.getRoot().addChild(LowercasePipe.class);
+        schematic.getRoot().addChild(UppercasePipe.class);
+        lowercase.addChild(UppercasePipe.class);
+        PipeOpening<String> opening = new PipeBuilder(system).buildEndedPipe(schematic, out.getRef());
+        opening.put("Hello");
+        out.expectMsgAllOf("HELLO", "HELLO");
+    }
+
+    @Test
+    public void testPipesWithARetryPolicyAreNotFused() throws Exception {
+        incremented.set(0);
+        Schematic schematic = new Schematic(IncrementPipe.class);
+        schematic.setFusing(true);
+        schematic.getRoot().addChild(ExceptionTest.FlakyPipe.class).setRetryPolicy(new RetryPolicy(2, 5));
+        PipeOpening<Integer> opening = new PipeBuilder(system).build(schematic);
+        assertEquals(Integer.valueOf(8), opening.<Integer>ask(7).get(5, TimeUnit.SECONDS));
+        assertEquals(1, incremented.get());
+    }
+
+    @Test
+    public void testFusedFailuresAreReportedByTheFailingPipe() {
+        JavaTestKit deadLetters = new JavaTestKit(system);
+        system.eventStream().subscribe(deadLetters.getRef(), DeadLetter.class);
+        Schematic schematic = new Schematic(IncrementPipe.class);
+        schematic.setFusing(true);
+        Schematic.Pipe failing = schematic.getRoot().addChild(ExceptionTest.CountingPipe.class);
+        PipeOpening<Integer> opening = new PipeBuilder(system).build(schematic);
+        opening.put(1);
+        Object message = null;
+        while (!(message instanceof ExceptionMessage)) {
+            message = deadLetters.expectMsgClass(DeadLetter.class).message();
+        }
+        assertEquals(2, ((ExceptionMessage) message).getInput());
+        assertEquals(failing.getUniqueID(), ((ExceptionMessage) message).getPipeId());
+        system.eventStream().unsubscribe(deadLetters.getRef());
+    }
+
+    /**
+     * Adds one to each message, and counts how many it has seen.
+     */
+    public static class IncrementPipe extends Pipe<Integer, Integer> {
+        @Override
+        public Integer ingest(Integer i) {
+            incremented.incrementAndGet();
+            return i + 1;
+        }
+    }
+}
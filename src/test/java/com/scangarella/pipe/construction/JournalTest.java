@@ -0,0 +1,187 @@
+package com.scangarella.pipe.construction;
+
+import akka.actor.ActorSystem;
+import akka.testkit.JavaTestKit;
+import com.scangarella.pipe.stereotype.Pipe;
+import com.scangarella.pipe.stereotype.Window;
+import com.scangarella.pipe.stereotype.WindowPipe;
+import com.scangarella.pipe.transmission.StopMessage;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class JournalTest {
+
+    private static ActorSystem system;
+    private static volatile CountDownLatch joined;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @BeforeClass
+    public static void setUp() {
+        system = ActorSystem.create("journal-test");
+    }
+
+    @AfterClass
+    public static void tearDown() {
+        JavaTestKit.shutdownActorSystem(system);
+    }
+
+    @Test
+    public void testOnlyPendingEntriesAreRecovered() throws Exception {
+        Path directory = folder.getRoot().toPath();
+        Journal<String> journal = new Journal<>(directory, JournalCodec.strings(), 64, 10);
+        List<Journal.Entry<String>> entries = new ArrayList<>();
+        for (String s : Arrays.asList("a", "bb", "ccc", "dddd", "eeeee")) {
+            entries.add(journal.append(s));
+        }
+        journal.ack(entries.get(1));
+        journal.ack(entries.get(3));
+        assertEquals(3, journal.getPending());
+        journal.close();
+        journal = Journal.open(directory, JournalCodec.strings());
+        List<Journal.Entry<String>> recovered = journal.getRecovered();
+        assertEquals(Arrays.asList("a", "ccc", "eeeee"), recovered.stream().map(Journal.Entry::getPayload).collect(Collectors.toList()));
+        assertEquals(Arrays.asList(0L, 2L, 4L), recovered.stream().map(Journal.Entry::getSequence).collect(Collectors.toList()));
+        assertEquals(5L, journal.append("f").getSequence());
+        journal.close();
+    }
+
+    @Test
+    public void testSegmentsAreDeletedOnceEveryEntryIsAcknowledged() throws Exception {
+        Path directory = folder.getRoot().toPath();
+        Journal<String> journal = new Journal<>(directory, JournalCodec.strings(), 64, 10);
+        List<Journal.Entry<String>> entries = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            entries.add(journal.append("entry" + i));
+        }
+        assertTrue(segments(directory) > 1);
+        entries.forEach(journal::ack);
+        assertEquals(1, segments(directory));
+        journal.close();
+        assertEquals(0, segments(directory));
+    }
+
+    @Test
+    public void testUnacknowledgedMessagesAreReplayedAfterACrash() throws Exception {
+        Path directory = folder.getRoot().toPath();
+        Journal<String> journal = Journal.open(directory, JournalCodec.strings());
+        JavaTestKit out = new JavaTestKit(system);
+        PipeOpening<String> opening = new PipeBuilder(system).buildEndedPipe(new Schematic(UpperCasePipe.class), out.getRef());
+        opening.setJournal(journal);
+        opening.put("a");
+        opening.putAll(Arrays.asList("b", "c"));
+        opening.close().toCompletableFuture().get(5, TimeUnit.SECONDS);
+        assertEquals(Arrays.asList("A", "B", "C"), receive(out, 3));
+        assertEquals(0, journal.getPending());
+        journal.append("d");
+        journal.sync();
+
+        journal = Journal.open(directory, JournalCodec.strings());
+        out = new JavaTestKit(system);
+        opening = new PipeBuilder(system).buildEndedPipe(new Schematic(UpperCasePipe.class), out.getRef());
+        opening.setJournal(journal);
+        opening.put("e");
+        opening.close().toCompletableFuture().get(5, TimeUnit.SECONDS);
+        assertEquals(Arrays.asList("D", "E"), receive(out, 2));
+        assertEquals(0, journal.getPending());
+        journal.close();
+    }
+
+    @Test
+    public void testMessagesInAnOpenWindowAreReplayedAfterACrash() throws Exception {
+        Path directory = folder.getRoot().toPath();
+        Journal<String> journal = Journal.open(directory, JournalCodec.strings());
+        ActorSystem crashed = ActorSystem.create("journal-crash-test");
+        joined = new CountDownLatch(2);
+        PipeOpening<String> opening = new PipeBuilder(crashed).build(new Schematic(JoinPipe.class));
+        opening.setJournal(journal);
+        opening.put("a");
+        opening.put("b");
+        assertTrue(joined.await(5, TimeUnit.SECONDS));
+        JavaTestKit.shutdownActorSystem(crashed);
+        assertEquals(2, journal.getPending());
+        journal.sync();
+
+        journal = Journal.open(directory, JournalCodec.strings());
+        JavaTestKit out = new JavaTestKit(system);
+        joined = new CountDownLatch(3);
+        opening = new PipeBuilder(system).buildEndedPipe(new Schematic(JoinPipe.class), out.getRef());
+        opening.setJournal(journal);
+        opening.put("c");
+        assertEquals(Arrays.asList("abc"), receive(out, 1));
+        opening.close().toCompletableFuture().get(5, TimeUnit.SECONDS);
+        assertEquals(0, journal.getPending());
+        journal.close();
+    }
+
+    private static long segments(Path directory) throws Exception {
+        try (Stream<Path> listing = Files.list(directory)) {
+            return listing.count();
+        }
+    }
+
+    private static List<Object> receive(JavaTestKit out, int count) {
+        List<Object> received = new ArrayList<>();
+        while (received.size() < count) {
+            Object message = out.receiveOne(out.dilated(out.duration("1 second")));
+            if (!(message instanceof StopMessage)) {
+                received.add(message);
+            }
+        }
+        return received;
+    }
+
+    public static class UpperCasePipe extends Pipe<String, String> {
+        @Override
+        public String ingest(String s) {
+            return s.toUpperCase();
+        }
+    }
+
+    /**
+     * Joins every three strings it receives.
+     */
+    public static class JoinPipe extends WindowPipe<String, StringBuilder, String> {
+        public JoinPipe() {
+            super(Window.tumbling(3));
+        }
+
+        @Override
+        public StringBuilder create() {
+            return new StringBuilder();
+        }
+
+        @Override
+        public StringBuilder add(StringBuilder aggregate, String s) {
+            joined.countDown();
+            return aggregate.append(s);
+        }
+
+        @Override
+        public StringBuilder merge(StringBuilder aggregate, StringBuilder other) {
+            return aggregate.append(other);
+        }
+
+        @Override
+        public String emit(Object key, StringBuilder aggregate) {
+            return aggregate.toString();
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.scangarella.pipe.construction;
+
+import akka.actor.ActorSystem;
+import akka.routing.ConsistentHashingRoutingLogic;
+import akka.testkit.JavaTestKit;
+import com.scangarella.pipe.concurrency.LoadBalancingPipeWrapper;
+import com.scangarella.pipe.concurrency.ServiceTimeRoutingLogic;
+import com.scangarella.pipe.example.pipe.UppercasePipe;
+import com.scangarella.pipe.exception.IncompatibleTypeException;
+import com.scangarella.pipe.metrics.MetricsSnapshot;
+import com.scangarella.pipe.transmission.StopMessage;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class LoadBalancingTest {
+
+    private static ActorSystem system;
+
+    @BeforeClass
+    public static void setUp() {
+        system = ActorSystem.create("load-balancing-test");
+    }
+
+    @AfterClass
+    public static void tearDown() {
+        JavaTestKit.shutdownActorSystem(system);
+    }
+
+    @Test
+    public void testRouteesAndRoutingLogicComeFromTheSchematic() throws Exception {
+        JavaTestKit out = new JavaTestKit(system);
+        Schematic schematic = new Schematic(UppercasePipe.class);
+        schematic.setMetricsEnabled(true);
+        Schematic.Wrapper wrapper = schematic.getRoot().wrap(LoadBalancingPipeWrapper.class);
+        wrapper.setRoutees(7);
+        wrapper.setRoutingLogic(ServiceTimeRoutingLogic.class);
+        PipeOpening<String> opening = new PipeBuilder(system).buildEndedPipe(schematic, out.getRef());
+        for (int i = 0; i < 100; i++) {
+            opening.put("Hello");
+        }
+        Object[] received = out.receiveN(100);
+        for (Object message : received) {
+            assertEquals("HELLO", message);
+        }
+        MetricsSnapshot snapshot = opening.getMetrics().get(0);
+        assertEquals(7, snapshot.getInstances());
+        opening.close().toCompletableFuture().get(5, TimeUnit.SECONDS);
+        assertTrue(out.receiveOne(out.dilated(out.duration("1 second"))) instanceof StopMessage);
+    }
+
+    @Test(expected = IncompatibleTypeException.class)
+    public void testRoutingLogicMustBeARoutingLogic() {
+        Schematic schematic = new Schematic(UppercasePipe.class);
+        schematic.getRoot().wrap(LoadBalancingPipeWrapper.class).setRoutingLogic(String.class);
+    }
+
+    @Test(expected = IncompatibleTypeException.class)
+    public void testRoutingLogicMustHaveANoArgumentConstructor() {
+        Schematic schematic = new Schematic(UppercasePipe.class);
+        schematic.getRoot().wrap(LoadBalancingPipeWrapper.class).setRoutingLogic(ConsistentHashingRoutingLogic.class);
+    }
+}
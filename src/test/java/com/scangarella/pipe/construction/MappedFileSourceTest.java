@@ -0,0 +1,151 @@
+package com.scangarella.pipe.construction;
+
+import akka.actor.ActorSystem;
+import akka.testkit.JavaTestKit;
+import com.scangarella.pipe.concurrency.LoadBalancingPipeWrapper;
+import com.scangarella.pipe.stereotype.Pipe;
+import com.scangarella.pipe.transmission.FileRecord;
+import com.scangarella.pipe.transmission.StopMessage;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.StreamSupport;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+public class MappedFileSourceTest {
+
+    private static ActorSystem system;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @BeforeClass
+    public static void setUp() {
+        system = ActorSystem.create("mapped-file-source-test");
+    }
+
+    @AfterClass
+    public static void tearDown() {
+        JavaTestKit.shutdownActorSystem(system);
+    }
+
+    @Test
+    public void testLinesAreReadWithoutTheirLineEndings() throws Exception {
+        Path file = write("lines", "a\r\nbb\n\nccc".getBytes(StandardCharsets.UTF_8));
+        List<FileRecord> records = read(new MappedFileSource(file, RecordFraming.newline()).spliterator());
+        assertEquals(Arrays.asList("a", "bb", "", "ccc"), strings(records));
+        assertEquals(Arrays.asList(0L, 3L, 6L, 7L), records.stream().map(FileRecord::getOffset).collect(Collectors.toList()));
+    }
+
+    @Test
+    public void testRecordsAcrossWindowsAreRemapped() throws Exception {
+        List<String> lines = IntStream.range(0, 1000).mapToObj(i -> "line" + i).collect(Collectors.toList());
+        Path file = write("lines", String.join("\n", lines).getBytes(StandardCharsets.UTF_8));
+        MappedFileSource source = new MappedFileSource(file, RecordFraming.newline());
+        source.setWindowSize(16);
+        assertEquals(lines, strings(read(source.spliterator())));
+    }
+
+    @Test
+    public void testLargeFilesAreSplitWhereRecordsStart() throws Exception {
+        List<String> lines = IntStream.range(0, 300000).mapToObj(i -> "record number " + i).collect(Collectors.toList());
+        Path file = write("large", (String.join("\n", lines) + "\n").getBytes(StandardCharsets.UTF_8));
+        Spliterator<FileRecord> first = new MappedFileSource(file, RecordFraming.newline()).spliterator();
+        Spliterator<FileRecord> prefix = first.trySplit();
+        assertNotNull(prefix);
+        List<String> read = strings(read(prefix));
+        read.addAll(strings(read(first)));
+        assertEquals(lines, read);
+    }
+
+    @Test
+    public void testParallelStreamsKeepTheRecordsInOrder() throws Exception {
+        folder.newFolder("parts");
+        List<String> lines = new ArrayList<>();
+        for (int part = 0; part < 4; part++) {
+            List<String> partLines = IntStream.range(0, 150000).mapToObj(i -> "record number " + i).collect(Collectors.toList());
+            write("parts/" + part, (String.join("\n", partLines) + "\n").getBytes(StandardCharsets.UTF_8));
+            lines.addAll(partLines);
+        }
+        MappedFileSource source = new MappedFileSource(folder.getRoot().toPath().resolve("parts"), RecordFraming.newline());
+        List<String> read = StreamSupport.stream(source.spliterator(), true).map(FileRecord::toString).collect(Collectors.toList());
+        assertEquals(lines, read);
+    }
+
+    @Test
+    public void testDirectoriesOfLengthPrefixedAndFixedWidthRecords() throws Exception {
+        ByteBuffer prefixed = ByteBuffer.allocate(13);
+        prefixed.putInt(3).put("abc".getBytes(StandardCharsets.UTF_8)).putInt(2).put("de".getBytes(StandardCharsets.UTF_8));
+        folder.newFolder("prefixed");
+        write("prefixed/1", prefixed.array());
+        write("prefixed/2", Arrays.copyOf(prefixed.array(), 7));
+        Path directory = folder.getRoot().toPath().resolve("prefixed");
+        MappedFileSource source = new MappedFileSource(directory, RecordFraming.lengthPrefixed());
+        assertEquals(Arrays.asList("abc", "de", "abc"), strings(read(source.spliterator())));
+        Path fixed = write("fixed", "aaabbbccc".getBytes(StandardCharsets.UTF_8));
+        source = new MappedFileSource(fixed, RecordFraming.fixedWidth(3));
+        assertEquals(Arrays.asList("aaa", "bbb", "ccc"), strings(read(source.spliterator())));
+    }
+
+    @Test
+    public void testLoadBalancedPipelineIsFedEveryRecord() throws Exception {
+        List<String> lines = IntStream.range(0, 200000).mapToObj(i -> "record number " + i).collect(Collectors.toList());
+        Path file = write("large", String.join("\n", lines).getBytes(StandardCharsets.UTF_8));
+        JavaTestKit out = new JavaTestKit(system);
+        Schematic schematic = new Schematic(LengthPipe.class);
+        schematic.getRoot().wrap(LoadBalancingPipeWrapper.class);
+        PipeOpening<FileRecord> opening = new PipeBuilder(system).buildEndedPipe(schematic, out.getRef());
+        IngestReport report = opening.putAll(new MappedFileSource(file, RecordFraming.newline()).spliterator());
+        opening.close().toCompletableFuture().get(10, TimeUnit.SECONDS);
+        assertEquals(200000, report.getAccepted());
+        long total = 0;
+        int received = 0;
+        Object message;
+        while (received < 200000) {
+            message = out.receiveOne(out.dilated(out.duration("1 second")));
+            if (!(message instanceof StopMessage)) {
+                total += (Integer) message;
+                received++;
+            }
+        }
+        assertEquals(lines.stream().mapToLong(String::length).sum(), total);
+    }
+
+    private Path write(String name, byte[] bytes) throws IOException {
+        Path file = folder.getRoot().toPath().resolve(name);
+        Files.write(file, bytes);
+        return file;
+    }
+
+    private static List<FileRecord> read(Spliterator<FileRecord> records) {
+        return StreamSupport.stream(records, false).collect(Collectors.toList());
+    }
+
+    private static List<String> strings(List<FileRecord> records) {
+        return records.stream().map(FileRecord::toString).collect(Collectors.toCollection(ArrayList::new));
+    }
+
+    public static class LengthPipe extends Pipe<FileRecord, Integer> {
+        @Override
+        public Integer ingest(FileRecord record) {
+            return record.length();
+        }
+    }
+}
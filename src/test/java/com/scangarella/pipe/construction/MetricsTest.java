@@ -0,0 +1,61 @@
+package com.scangarella.pipe.construction;
+
+import akka.actor.ActorSystem;
+import akka.testkit.JavaTestKit;
+import com.scangarella.pipe.concurrency.LoadBalancingPipeWrapper;
+import com.scangarella.pipe.example.pipe.LowercasePipe;
+import com.scangarella.pipe.example.pipe.UppercasePipe;
+import com.scangarella.pipe.metrics.MetricsSnapshot;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.ObjectName;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class MetricsTest {
+
+    private static ActorSystem system;
+
+    @BeforeClass
+    public static void setUp() {
+        system = ActorSystem.create("metrics-test");
+    }
+
+    @AfterClass
+    public static void tearDown() {
+        JavaTestKit.shutdownActorSystem(system);
+    }
+
+    @Test
+    public void testMetricsCountMessagesAndUnregisterOnClose() throws Exception {
+        JavaTestKit out = new JavaTestKit(system);
+        Schematic schematic = new Schematic(LowercasePipe.class);
+        schematic.setMetricsEnabled(true);
+        schematic.getRoot().addChild(UppercasePipe.class).wrap(LoadBalancingPipeWrapper.class);
+        PipeOpening<String> opening = new PipeBuilder(system).buildEndedPipe(schematic, out.getRef());
+        ObjectName pattern = new ObjectName("com.scangarella.pipe:*");
+        assertEquals(2, ManagementFactory.getPlatformMBeanServer().queryNames(pattern, null).size());
+        for (int i = 0; i < 100; i++) {
+            opening.put("Hello");
+        }
+        opening.close().toCompletableFuture().get(5, TimeUnit.SECONDS);
+
+        List<MetricsSnapshot> snapshots = opening.getMetrics();
+        assertEquals(2, snapshots.size());
+        for (MetricsSnapshot snapshot : snapshots) {
+            assertEquals(100, snapshot.getMessagesIn());
+            assertEquals(100, snapshot.getMessagesOut());
+            assertEquals(100, snapshot.getIngestCount());
+            assertEquals(0, snapshot.getErrors());
+            assertTrue(snapshot.getIngestMax() >= snapshot.getIngestP50());
+        }
+        assertEquals(0, ManagementFactory.getPlatformMBeanServer().queryNames(pattern, null).size());
+    }
+}
@@ -0,0 +1,155 @@
+package com.scangarella.pipe.construction;
+
+import akka.actor.ActorSystem;
+import akka.testkit.JavaTestKit;
+import com.scangarella.pipe.concurrency.LoadBalancingPipeWrapper;
+import com.scangarella.pipe.concurrency.OrderedPipeWrapper;
+import com.scangarella.pipe.exception.IncompatibleTypeException;
+import com.scangarella.pipe.stereotype.MultiPipe;
+import com.scangarella.pipe.stereotype.Pipe;
+import com.scangarella.pipe.transmission.RetryPolicy;
+import com.scangarella.pipe.transmission.StopMessage;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class OrderedPipeWrapperTest {
+
+    private static ActorSystem system;
+
+    @BeforeClass
+    public static void setUp() {
+        system = ActorSystem.create("ordered-pipe-wrapper-test");
+    }
+
+    @AfterClass
+    public static void tearDown() {
+        JavaTestKit.shutdownActorSystem(system);
+    }
+
+    @Test
+    public void testFilteredAndMultipleOutputsKeepInputOrder() throws Exception {
+        JavaTestKit out = new JavaTestKit(system);
+        Schematic schematic = new Schematic(SleepyMultiPipe.class);
+        Schematic.Wrapper wrapper = schematic.getRoot().wrap(OrderedPipeWrapper.class);
+        wrapper.setRoutees(4);
+        wrapper.setReorderWindow(8);
+        PipeOpening<Integer> opening = new PipeBuilder(system).buildEndedPipe(schematic, out.getRef());
+        List<Object> expected = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            opening.put(i);
+            expected.addAll(outputs(i));
+        }
+        opening.close().toCompletableFuture().get(5, TimeUnit.SECONDS);
+        Object[] received = out.receiveN(expected.size() + 1);
+        assertEquals(expected, Arrays.asList(received).subList(0, expected.size()));
+        assertTrue(received[expected.size()] instanceof StopMessage);
+    }
+
+    @Test
+    public void testOrderIsKeptWithCreditsAndBatching() throws Exception {
+        JavaTestKit out = new JavaTestKit(system);
+        Schematic schematic = new Schematic(SleepyMultiPipe.class);
+        schematic.setCreditWindow(16);
+        schematic.getRoot().wrap(OrderedPipeWrapper.class);
+        Schematic.Pipe next = schematic.getRoot().addChild(IdentityPipe.class);
+        schematic.getRoot().setBatching(next, 5, 1000);
+        PipeOpening<Integer> opening = new PipeBuilder(system).buildEndedPipe(schematic, out.getRef());
+        List<Object> expected = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            opening.put(i);
+            expected.addAll(outputs(i));
+        }
+        opening.close().toCompletableFuture().get(5, TimeUnit.SECONDS);
+        Object[] received = out.receiveN(expected.size() + 1);
+        assertEquals(expected, Arrays.asList(received).subList(0, expected.size()));
+    }
+
+    @Test
+    public void testAskThroughOrderedWrapper() throws Exception {
+        Schematic schematic = new Schematic(SleepyMultiPipe.class);
+        schematic.getRoot().wrap(OrderedPipeWrapper.class);
+        PipeOpening<Integer> opening = new PipeBuilder(system).build(schematic);
+        List<Object> results = opening.<Object>askAll(4).get(5, TimeUnit.SECONDS);
+        assertEquals(Arrays.asList(4, 4), results);
+        opening.close().toCompletableFuture().get(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void testRetriedMessagesKeepInputOrder() throws Exception {
+        JavaTestKit out = new JavaTestKit(system);
+        Schematic schematic = new Schematic(FlakyPipe.class);
+        schematic.getRoot().setRetryPolicy(new RetryPolicy(2, 50));
+        Schematic.Wrapper wrapper = schematic.getRoot().wrap(OrderedPipeWrapper.class);
+        wrapper.setRoutees(2);
+        PipeOpening<Integer> opening = new PipeBuilder(system).buildEndedPipe(schematic, out.getRef());
+        List<Object> expected = new ArrayList<>();
+        for (int i = 0; i < 12; i++) {
+            opening.put(i);
+            expected.add(i);
+        }
+        opening.close().toCompletableFuture().get(5, TimeUnit.SECONDS);
+        Object[] received = out.receiveN(expected.size() + 1);
+        assertEquals(expected, Arrays.asList(received).subList(0, expected.size()));
+        assertTrue(received[expected.size()] instanceof StopMessage);
+    }
+
+    @Test(expected = IncompatibleTypeException.class)
+    public void testOrderedWrapperCantWrapAnotherWrapper() {
+        Schematic schematic = new Schematic(SleepyMultiPipe.class);
+        schematic.getRoot().wrap(LoadBalancingPipeWrapper.class).wrap(OrderedPipeWrapper.class);
+    }
+
+    private static List<Integer> outputs(Integer i) {
+        if (i % 3 == 0) {
+            return Collections.emptyList();
+        }
+        return i % 3 == 1 ? Arrays.asList(i, i) : Collections.singletonList(i);
+    }
+
+    public static class SleepyMultiPipe extends MultiPipe<Integer, Integer> {
+        @Override
+        public Iterable<Integer> ingest(Integer i) {
+            try {
+                Thread.sleep(ThreadLocalRandom.current().nextInt(3));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return outputs(i);
+        }
+    }
+
+    /**
+     * Fails the first time it ingests a multiple of three.
+     */
+    public static class FlakyPipe extends Pipe<Integer, Integer> {
+        private Set<Integer> failed = new HashSet<>();
+
+        @Override
+        public Integer ingest(Integer i) {
+            if (i % 3 == 0 && failed.add(i)) {
+                throw new IllegalStateException("flaky " + i);
+            }
+            return i;
+        }
+    }
+
+    public static class IdentityPipe extends Pipe<Integer, Integer> {
+        @Override
+        public Integer ingest(Integer i) {
+            return i;
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package com.scangarella.pipe.construction;
+
+import akka.actor.ActorSystem;
+import akka.testkit.JavaTestKit;
+import com.scangarella.pipe.concurrency.KeyExtractor;
+import com.scangarella.pipe.concurrency.PartitioningPipeWrapper;
+import com.scangarella.pipe.exception.IncompatibleTypeException;
+import com.scangarella.pipe.metrics.MetricsSnapshot;
+import com.scangarella.pipe.stereotype.Pipe;
+import com.scangarella.pipe.transmission.StopMessage;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class PartitioningTest {
+
+    private static ActorSystem system;
+
+    @BeforeClass
+    public static void setUp() {
+        system = ActorSystem.create("partitioning-test");
+    }
+
+    @AfterClass
+    public static void tearDown() {
+        JavaTestKit.shutdownActorSystem(system);
+    }
+
+    @Test
+    public void testEveryKeyKeepsItsState() throws Exception {
+        JavaTestKit out = new JavaTestKit(system);
+        Schematic schematic = new Schematic(CountingPipe.class);
+        schematic.setMetricsEnabled(true);
+        Schematic.Wrapper wrapper = schematic.getRoot().wrap(PartitioningPipeWrapper.class);
+        wrapper.setPartitions(4);
+        wrapper.setKeyExtractor(FirstLetter.class);
+        PipeOpening<String> opening = new PipeBuilder(system).buildEndedPipe(schematic, out.getRef());
+        for (int i = 0; i < 50; i++) {
+            for (String key : new String[] {"a", "b", "c", "d", "e", "f"}) {
+                opening.put(key + i);
+            }
+        }
+        Object[] received = out.receiveN(300);
+        assertEquals(4, opening.getMetrics().get(0).getInstances());
+        opening.close().toCompletableFuture().get(5, TimeUnit.SECONDS);
+        assertTrue(out.receiveOne(out.dilated(out.duration("1 second"))) instanceof StopMessage);
+        Map<Character, Set<Integer>> counts = new HashMap<>();
+        for (int i = 0; i < 300; i++) {
+            String count = (String) received[i];
+            counts.computeIfAbsent(count.charAt(0), k -> new HashSet<>()).add(Integer.parseInt(count.substring(2)));
+        }
+        assertEquals(6, counts.size());
+        counts.values().forEach(c -> assertEquals(50, c.size()));
+    }
+
+    @Test
+    public void testHotKeysShowInMetrics() throws Exception {
+        Schematic schematic = new Schematic(CountingPipe.class);
+        schematic.setMetricsEnabled(true);
+        Schematic.Wrapper wrapper = schematic.getRoot().wrap(PartitioningPipeWrapper.class);
+        wrapper.setPartitions(4);
+        wrapper.setKeyExtractor(FirstLetter.class);
+        wrapper.setHotKeyInterval(50L);
+        PipeOpening<String> opening = new PipeBuilder(system).build(schematic);
+        Map<String, Double> hotKeys = new HashMap<>();
+        for (int attempt = 0; attempt < 40 && hotKeys.isEmpty(); attempt++) {
+            for (int i = 0; i < 200; i++) {
+                opening.put(i % 5 == 0 ? "c" + i : "h" + i);
+            }
+            Thread.sleep(25);
+            hotKeys = opening.getMetrics().get(0).getHotKeys();
+        }
+        assertEquals(1, hotKeys.size());
+        assertTrue(hotKeys.get("h") > 0.7);
+        opening.close().toCompletableFuture().get(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void testRebalanceCanAddPartitions() throws Exception {
+        JavaTestKit out = new JavaTestKit(system);
+        Schematic schematic = new Schematic(CountingPipe.class);
+        schematic.setMetricsEnabled(true);
+        schematic.getRoot().wrap(GrowingWrapper.class).setHotKeyInterval(20L);
+        PipeOpening<String> opening = new PipeBuilder(system).buildEndedPipe(schematic, out.getRef());
+        opening.put("a0");
+        out.receiveOne(out.dilated(out.duration("1 second")));
+        MetricsSnapshot snapshot = opening.getMetrics().get(0);
+        for (int attempt = 0; attempt < 100 && snapshot.getInstances() != 3; attempt++) {
+            Thread.sleep(10);
+            snapshot = opening.getMetrics().get(0);
+        }
+        assertEquals(1, GrowingWrapper.rebalances.get());
+        assertEquals(3, snapshot.getInstances());
+        opening.close().toCompletableFuture().get(5, TimeUnit.SECONDS);
+    }
+
+    @Test(expected = IncompatibleTypeException.class)
+    public void testKeyExtractorMustBeAKeyExtractor() {
+        Schematic schematic = new Schematic(CountingPipe.class);
+        schematic.getRoot().wrap(PartitioningPipeWrapper.class).setKeyExtractor(String.class);
+    }
+
+    public static class FirstLetter implements KeyExtractor<String> {
+        @Override
+        public Object getKey(String message) {
+            return message.substring(0, 1);
+        }
+    }
+
+    public static class GrowingWrapper extends PartitioningPipeWrapper {
+        static AtomicInteger rebalances = new AtomicInteger();
+
+        public GrowingWrapper() {
+            super(1, FirstLetter.class);
+        }
+
+        @Override
+        protected void rebalance(List<Long> loads, Map<Object, Long> hotKeys) {
+            if (getPartitions() == 1) {
+                rebalances.incrementAndGet();
+                setPartitions(3);
+            }
+        }
+    }
+
+    public static class CountingPipe extends Pipe<String, String> {
+        private Map<Character, Integer> counts = new HashMap<>();
+
+        @Override
+        public String ingest(String s) {
+            return s.charAt(0) + ":" + counts.merge(s.charAt(0), 1, Integer::sum);
+        }
+    }
+}
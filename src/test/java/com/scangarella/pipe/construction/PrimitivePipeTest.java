@@ -0,0 +1,136 @@
+package com.scangarella.pipe.construction;
+
+import akka.actor.ActorSystem;
+import akka.actor.Props;
+import akka.testkit.JavaTestKit;
+import akka.testkit.TestActorRef;
+import com.scangarella.pipe.stereotype.DoublePipe;
+import com.scangarella.pipe.stereotype.IntFilterPipe;
+import com.scangarella.pipe.stereotype.LongFilterPipe;
+import com.scangarella.pipe.stereotype.LongPipe;
+import com.scangarella.pipe.stereotype.Pipe;
+import com.scangarella.pipe.transmission.StopMessage;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class PrimitivePipeTest {
+
+    private static ActorSystem system;
+
+    @BeforeClass
+    public static void setUp() {
+        system = ActorSystem.create("primitive-pipe-test");
+    }
+
+    @AfterClass
+    public static void tearDown() {
+        JavaTestKit.shutdownActorSystem(system);
+    }
+
+    @Test
+    public void testChunksAreTransformedAndFiltered() throws Exception {
+        JavaTestKit out = new JavaTestKit(system);
+        Schematic schematic = new Schematic(DoubleLongPipe.class);
+        schematic.getRoot().addChild(EvenTensPipe.class);
+        PipeOpening<long[]> opening = new PipeBuilder(system).buildEndedPipe(schematic, out.getRef());
+        opening.put(new long[] {1, 5, 10, 15, 20});
+        opening.put(new long[] {1, 2, 3});
+        opening.put(new long[] {});
+        opening.put(new long[] {25});
+        opening.close().toCompletableFuture().get(5, TimeUnit.SECONDS);
+        assertArrayEquals(new long[] {10, 20, 30, 40}, (long[]) out.receiveOne(out.dilated(out.duration("1 second"))));
+        assertArrayEquals(new long[] {50}, (long[]) out.receiveOne(out.dilated(out.duration("1 second"))));
+        assertTrue(out.receiveOne(out.dilated(out.duration("1 second"))) instanceof StopMessage);
+    }
+
+    @Test
+    public void testFusedPrimitivePipes() throws Exception {
+        JavaTestKit out = new JavaTestKit(system);
+        Schematic schematic = new Schematic(HalfPipe.class);
+        schematic.getRoot().addChild(HalfPipe.class);
+        PipeOpening<double[]> opening = new PipeBuilder(system).buildEndedPipe(schematic, out.getRef());
+        opening.put(new double[] {4, 8});
+        opening.close().toCompletableFuture().get(5, TimeUnit.SECONDS);
+        assertArrayEquals(new double[] {1, 2}, (double[]) out.receiveOne(out.dilated(out.duration("1 second"))), 0);
+    }
+
+    @Test
+    public void testChunksThatAreAllKeptAreSentAsTheyAre() {
+        int[] values = {2, 4, 6};
+        TestActorRef<EvenPipe> pipe = TestActorRef.create(system, Props.create(EvenPipe.class));
+        assertSame(values, pipe.underlyingActor().ingest(values));
+    }
+
+    @Test
+    public void testEveryPipeAfterAFanOutGetsAChunkOfItsOwn() throws Exception {
+        JavaTestKit out = new JavaTestKit(system);
+        Schematic schematic = new Schematic(DoubleLongPipe.class);
+        schematic.getRoot().addChild(NegateInPlacePipe.class);
+        schematic.getRoot().addChild(NegateInPlacePipe.class);
+        PipeOpening<long[]> opening = new PipeBuilder(system).buildEndedPipe(schematic, out.getRef());
+        opening.put(new long[] {1, 2});
+        opening.close().toCompletableFuture().get(5, TimeUnit.SECONDS);
+        List<long[]> chunks = new ArrayList<>();
+        for (Object message : out.receiveN(4)) {
+            if (!(message instanceof StopMessage)) {
+                chunks.add((long[]) message);
+            }
+        }
+        assertEquals(2, chunks.size());
+        assertArrayEquals(new long[] {-2, -4}, chunks.get(0));
+        assertArrayEquals(new long[] {-2, -4}, chunks.get(1));
+        assertNotSame(chunks.get(0), chunks.get(1));
+    }
+
+    public static class DoubleLongPipe extends LongPipe {
+        @Override
+        public long ingest(long value) {
+            return value * 2;
+        }
+    }
+
+    /**
+     * Negates the values of the chunk it receives in place.
+     */
+    public static class NegateInPlacePipe extends Pipe<long[], long[]> {
+        @Override
+        public long[] ingest(long[] values) {
+            for (int i = 0; i < values.length; i++) {
+                values[i] = -values[i];
+            }
+            return values;
+        }
+    }
+
+    public static class EvenTensPipe extends LongFilterPipe {
+        @Override
+        public boolean accept(long value) {
+            return value % 10 == 0;
+        }
+    }
+
+    public static class HalfPipe extends DoublePipe {
+        @Override
+        public double ingest(double value) {
+            return value / 2;
+        }
+    }
+
+    public static class EvenPipe extends IntFilterPipe {
+        @Override
+        public boolean accept(int value) {
+            return value % 2 == 0;
+        }
+    }
+}
@@ -0,0 +1,201 @@
+package com.scangarella.pipe.construction;
+
+import akka.actor.ActorSystem;
+import akka.serialization.Serialization;
+import akka.serialization.SerializationExtension;
+import akka.serialization.Serializer;
+import akka.routing.RoundRobinRoutingLogic;
+import akka.testkit.JavaTestKit;
+import com.scangarella.pipe.concurrency.LoadBalancingPipeWrapper;
+import com.scangarella.pipe.stereotype.Pipe;
+import com.scangarella.pipe.transmission.BatchMessage;
+import com.scangarella.pipe.transmission.BatchPolicy;
+import com.scangarella.pipe.transmission.ExceptionBatch;
+import com.scangarella.pipe.transmission.ExceptionMessage;
+import com.scangarella.pipe.transmission.InitializationMessage;
+import com.scangarella.pipe.transmission.PipeSerializer;
+import com.scangarella.pipe.transmission.ReplenishMessage;
+import com.scangarella.pipe.transmission.RetryPolicy;
+import com.scangarella.pipe.transmission.StopMessage;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class RemotePipeTest {
+
+    private static ActorSystem system;
+    private static Process node;
+    private static String address;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @BeforeClass
+    public static void setUp() throws Exception {
+        system = PipeSystem.CreateNode("pipeline", "127.0.0.1", 0);
+        String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+        node = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"), PipeNode.class.getName())
+                .redirectErrorStream(true)
+                .start();
+        BufferedReader output = new BufferedReader(new InputStreamReader(node.getInputStream()));
+        String line;
+        while ((line = output.readLine()) != null && !line.startsWith("akka.tcp://")) {
+            continue;
+        }
+        address = line;
+        Thread drain = new Thread(() -> output.lines().forEach(l -> { }));
+        drain.setDaemon(true);
+        drain.start();
+    }
+
+    @AfterClass
+    public static void tearDown() throws Exception {
+        JavaTestKit.shutdownActorSystem(system);
+        node.getOutputStream().close();
+        if (!node.waitFor(10, TimeUnit.SECONDS)) {
+            node.destroyForcibly();
+        }
+    }
+
+    @Test
+    public void testControlMessagesAreSerializedCompactly() {
+        JavaTestKit probe = new JavaTestKit(system);
+        Serialization serialization = SerializationExtension.get(system);
+        Serializer serializer = serialization.findSerializerFor(new StopMessage());
+        assertTrue(serializer instanceof PipeSerializer);
+        assertEquals(1, serializer.toBinary(new StopMessage()).length);
+        assertEquals(1, serialization.findSerializerFor(new ReplenishMessage()).toBinary(new ReplenishMessage()).length);
+        assertTrue(!(serialization.findSerializerFor("payload") instanceof PipeSerializer));
+
+        InitializationMessage init = new InitializationMessage(Collections.singletonList(NodePipe.class),
+                Collections.singletonList(probe.getRef()), 2, null);
+        init.setBatching(Collections.singletonMap(probe.getRef(), new BatchPolicy(64, 100)));
+        init.setCreditWindow(1000);
+        init.setCredits(Collections.singletonMap(probe.getRef(), 1000));
+        init.setTerminal(true);
+        Map<String, Object> settings = new HashMap<>();
+        settings.put(LoadBalancingPipeWrapper.ROUTEES, 3);
+        settings.put(LoadBalancingPipeWrapper.ROUTING_LOGIC, RoundRobinRoutingLogic.class);
+        init.setSettings(settings);
+        init.setPipeId("pipe");
+        init.setRetryPolicy(new RetryPolicy(3, 10));
+        InitializationMessage copy = (InitializationMessage) serializer.fromBinary(serializer.toBinary(init));
+        assertEquals(init.getInner(), copy.getInner());
+        assertEquals(init.getDownstream(), copy.getDownstream());
+        assertEquals(null, copy.getException());
+        assertEquals(2, (int) copy.getUpstreamCount());
+        assertEquals(64, copy.getBatching().get(probe.getRef()).getMaxSize());
+        assertEquals(init.getCredits(), copy.getCredits());
+        assertTrue(copy.isTerminal());
+        assertEquals(settings, copy.getSettings());
+        assertEquals("pipe", copy.getPipeId());
+        assertEquals(3, copy.getRetryPolicy().getMaxRetries());
+        assertEquals(40, copy.getRetryPolicy().getDelayMillis(3));
+
+        ExceptionMessage error = new ExceptionMessage(new IllegalStateException("failed"), "input", "pipe", 2);
+        ExceptionMessage errorCopy = (ExceptionMessage) serializer.fromBinary(serializer.toBinary(error));
+        assertEquals("failed", errorCopy.getException().getMessage());
+        assertEquals("input", errorCopy.getInput());
+        assertEquals("pipe", errorCopy.getPipeId());
+        assertEquals(2, (int) errorCopy.getAttempts());
+        ExceptionBatch errors = new ExceptionBatch("pipe", IllegalStateException.class, Collections.singletonList(error), 5L);
+        ExceptionBatch errorsCopy = (ExceptionBatch) serializer.fromBinary(serializer.toBinary(errors));
+        assertEquals(IllegalStateException.class, errorsCopy.getType());
+        assertEquals(5L, (long) errorsCopy.getCount());
+        assertEquals("input", errorsCopy.getSamples().get(0).getInput());
+
+        BatchMessage batch = new BatchMessage(Arrays.asList("a", 1L, new long[] {1, 2, 3}));
+        List<Object> messages = ((BatchMessage) serializer.fromBinary(serializer.toBinary(batch))).getMessages();
+        assertEquals("a", messages.get(0));
+        assertEquals(1L, messages.get(1));
+        assertArrayEquals(new long[] {1, 2, 3}, (long[]) messages.get(2));
+    }
+
+    @Test
+    public void testPipeRunsOnAnotherNode() throws Exception {
+        JavaTestKit out = new JavaTestKit(system);
+        Schematic schematic = new Schematic(NodePipe.class);
+        schematic.getRoot().setNode(address);
+        PipeOpening<String> opening = new PipeBuilder(system).buildEndedPipe(schematic, out.getRef());
+        opening.put("hello");
+        opening.close().toCompletableFuture().get(10, TimeUnit.SECONDS);
+        assertEquals(Collections.singletonList("hello from " + address), receive(out, 1));
+    }
+
+    @Test
+    public void testPipelinesThatSpanNodesCantBeAskedOrJournaled() throws Exception {
+        Schematic schematic = new Schematic(NodePipe.class);
+        schematic.getRoot().setNode(address);
+        PipeOpening<String> opening = new PipeBuilder(system).build(schematic);
+        try {
+            opening.ask("hello");
+            fail();
+        } catch (IllegalStateException e) {
+            assertEquals("A pipeline that spans several nodes can't be asked.", e.getMessage());
+        }
+        Journal<String> journal = Journal.open(folder.getRoot().toPath(), JournalCodec.strings());
+        try {
+            opening.setJournal(journal);
+            fail();
+        } catch (IllegalStateException e) {
+            assertEquals("A pipeline that spans several nodes can't be journaled.", e.getMessage());
+        }
+        journal.close();
+        opening.close().toCompletableFuture().get(10, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void testRouteesAreSpreadOverNodes() throws Exception {
+        JavaTestKit out = new JavaTestKit(system);
+        Schematic schematic = new Schematic(NodePipe.class);
+        Schematic.Wrapper wrapper = schematic.getRoot().wrap(LoadBalancingPipeWrapper.class);
+        wrapper.setRoutees(2);
+        wrapper.setRoutingLogic(RoundRobinRoutingLogic.class);
+        wrapper.setNodes(address, PipeSystem.GetAddress(system));
+        PipeOpening<String> opening = new PipeBuilder(system).buildEndedPipe(schematic, out.getRef());
+        for (int i = 0; i < 100; i++) {
+            opening.put("hello");
+        }
+        opening.close().toCompletableFuture().get(10, TimeUnit.SECONDS);
+        Set<Object> received = new HashSet<>(receive(out, 100));
+        assertEquals(new HashSet<>(Arrays.asList("hello from " + address, "hello from " + PipeSystem.GetAddress(system))), received);
+    }
+
+    private static List<Object> receive(JavaTestKit out, int count) {
+        List<Object> received = new ArrayList<>();
+        while (received.size() < count) {
+            Object message = out.receiveOne(out.dilated(out.duration("5 seconds")));
+            if (!(message instanceof StopMessage)) {
+                received.add(message);
+            }
+        }
+        return received;
+    }
+
+    public static class NodePipe extends Pipe<String, String> {
+        @Override
+        public String ingest(String s) {
+            return s + " from " + PipeSystem.GetAddress(getContext().system());
+        }
+    }
+}
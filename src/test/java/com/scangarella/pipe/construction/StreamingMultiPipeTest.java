@@ -0,0 +1,115 @@
+package com.scangarella.pipe.construction;
+
+import akka.actor.ActorSystem;
+import akka.testkit.JavaTestKit;
+import com.scangarella.pipe.stereotype.Pipe;
+import com.scangarella.pipe.stereotype.StreamingMultiPipe;
+import com.scangarella.pipe.transmission.StopMessage;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.IntStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class StreamingMultiPipeTest {
+
+    private static ActorSystem system;
+
+    @BeforeClass
+    public static void setUp() {
+        system = ActorSystem.create("streaming-multi-pipe-test");
+    }
+
+    @AfterClass
+    public static void tearDown() {
+        JavaTestKit.shutdownActorSystem(system);
+    }
+
+    @Test
+    public void testOutputsKeepTheirOrderAcrossInputs() throws Exception {
+        JavaTestKit out = new JavaTestKit(system);
+        PipeOpening<Integer> opening = new PipeBuilder(system).buildEndedPipe(new Schematic(RangePipe.class), out.getRef());
+        opening.put(300);
+        opening.put(200);
+        opening.close().toCompletableFuture().get(5, TimeUnit.SECONDS);
+        Object[] received = out.receiveN(501);
+        for (int i = 0; i < 300; i++) {
+            assertEquals(i, received[i]);
+        }
+        for (int i = 0; i < 200; i++) {
+            assertEquals(i, received[300 + i]);
+        }
+        assertTrue(received[500] instanceof StopMessage);
+    }
+
+    @Test
+    public void testCreditsPaceTheIterator() throws Exception {
+        JavaTestKit out = new JavaTestKit(system);
+        Schematic schematic = new Schematic(CountedRangePipe.class);
+        schematic.setCreditWindow(16);
+        schematic.getRoot().addChild(SlowPipe.class);
+        PipeOpening<Integer> opening = new PipeBuilder(system).buildEndedPipe(schematic, out.getRef());
+        opening.put(2000);
+        opening.close().toCompletableFuture().get(10, TimeUnit.SECONDS);
+        out.receiveN(2001);
+        assertEquals(2000, SlowPipe.consumed.get());
+        assertTrue(SlowPipe.maximumAhead.get() <= 64);
+    }
+
+    @Test
+    public void testAskCollectsEveryOutput() throws Exception {
+        PipeOpening<Integer> opening = new PipeBuilder(system).build(new Schematic(RangePipe.class));
+        List<Integer> results = opening.<Integer>askAll(100).get(5, TimeUnit.SECONDS);
+        assertEquals(100, results.size());
+        opening.close().toCompletableFuture().get(5, TimeUnit.SECONDS);
+    }
+
+    public static class RangePipe extends StreamingMultiPipe<Integer, Integer> {
+        public RangePipe() {
+            super(16);
+        }
+
+        @Override
+        public Iterator<Integer> ingest(Integer n) {
+            return IntStream.range(0, n).iterator();
+        }
+    }
+
+    public static class CountedRangePipe extends StreamingMultiPipe<Integer, Integer> {
+        static AtomicLong produced = new AtomicLong();
+
+        public CountedRangePipe() {
+            super(8);
+        }
+
+        @Override
+        public Iterator<Integer> ingest(Integer n) {
+            return IntStream.range(0, n).peek(i -> produced.incrementAndGet()).iterator();
+        }
+    }
+
+    public static class SlowPipe extends Pipe<Integer, Integer> {
+        static AtomicLong consumed = new AtomicLong();
+        static AtomicLong maximumAhead = new AtomicLong();
+
+        @Override
+        public Integer ingest(Integer i) {
+            maximumAhead.accumulateAndGet(CountedRangePipe.produced.get() - consumed.incrementAndGet(), Math::max);
+            if (i % 100 == 0) {
+                try {
+                    Thread.sleep(1);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            return i;
+        }
+    }
+}
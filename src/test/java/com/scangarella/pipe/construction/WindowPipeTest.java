@@ -0,0 +1,155 @@
+package com.scangarella.pipe.construction;
+
+import akka.actor.ActorSystem;
+import akka.testkit.JavaTestKit;
+import com.scangarella.pipe.stereotype.Window;
+import com.scangarella.pipe.stereotype.WindowPipe;
+import com.scangarella.pipe.transmission.StopMessage;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class WindowPipeTest {
+
+    private static ActorSystem system;
+
+    @BeforeClass
+    public static void setUp() {
+        system = ActorSystem.create("window-pipe-test");
+    }
+
+    @AfterClass
+    public static void tearDown() {
+        JavaTestKit.shutdownActorSystem(system);
+    }
+
+    @Test
+    public void testKeyedTumblingCountWindowsFlushOnStop() throws Exception {
+        JavaTestKit out = new JavaTestKit(system);
+        PipeOpening<String> opening = new PipeBuilder(system).buildEndedPipe(new Schematic(KeyedSumPipe.class), out.getRef());
+        for (String s : new String[] {"a1", "b1", "a2", "a3", "b2", "a4", "b3", "b4"}) {
+            opening.put(s);
+        }
+        assertEquals("a=6", out.receiveOne(out.dilated(out.duration("1 second"))));
+        assertEquals("b=6", out.receiveOne(out.dilated(out.duration("1 second"))));
+        opening.close().toCompletableFuture().get(5, TimeUnit.SECONDS);
+        Object[] received = out.receiveN(3);
+        assertEquals(new HashSet<>(Arrays.asList("a=4", "b=4")), new HashSet<>(Arrays.asList(received[0], received[1])));
+        assertTrue(received[2] instanceof StopMessage);
+    }
+
+    @Test
+    public void testSlidingCountWindowsMergePanes() throws Exception {
+        JavaTestKit out = new JavaTestKit(system);
+        PipeOpening<Integer> opening = new PipeBuilder(system).buildEndedPipe(new Schematic(SlidingSumPipe.class), out.getRef());
+        for (int i = 1; i <= 9; i++) {
+            opening.put(i);
+        }
+        opening.close().toCompletableFuture().get(5, TimeUnit.SECONDS);
+        Object[] received = out.receiveN(6);
+        assertEquals(Arrays.asList(3L, 10L, 18L, 26L, 24L), Arrays.asList(received).subList(0, 5));
+        assertTrue(received[5] instanceof StopMessage);
+    }
+
+    @Test
+    public void testTumblingTimeWindowsEndOnTheScheduler() throws Exception {
+        JavaTestKit out = new JavaTestKit(system);
+        PipeOpening<Integer> opening = new PipeBuilder(system).buildEndedPipe(new Schematic(TimedSumPipe.class), out.getRef());
+        for (int i = 1; i <= 5; i++) {
+            opening.put(i);
+        }
+        long sum = 0;
+        while (sum < 15) {
+            sum += (Long) out.receiveOne(out.dilated(out.duration("2 seconds")));
+        }
+        assertEquals(15L, sum);
+        opening.close().toCompletableFuture().get(5, TimeUnit.SECONDS);
+        assertTrue(out.receiveOne(out.dilated(out.duration("1 second"))) instanceof StopMessage);
+    }
+
+    @Test
+    public void testRequestsEndAtTheWindowWithoutWaitingForIt() throws Exception {
+        PipeOpening<String> opening = new PipeBuilder(system).build(new Schematic(KeyedSumPipe.class));
+        assertNull(opening.ask("a1").get(1, TimeUnit.SECONDS));
+        assertEquals(Collections.emptyList(), opening.askAll("a2").get(1, TimeUnit.SECONDS));
+        opening.close().toCompletableFuture().get(5, TimeUnit.SECONDS);
+    }
+
+    public static class KeyedSumPipe extends WindowPipe<String, Long, String> {
+        public KeyedSumPipe() {
+            super(Window.tumbling(3));
+        }
+
+        @Override
+        public Object getKey(String s) {
+            return s.substring(0, 1);
+        }
+
+        @Override
+        public Long create() {
+            return 0L;
+        }
+
+        @Override
+        public Long add(Long sum, String s) {
+            return sum + Long.parseLong(s.substring(1));
+        }
+
+        @Override
+        public Long merge(Long sum, Long other) {
+            return sum + other;
+        }
+
+        @Override
+        public String emit(Object key, Long sum) {
+            return key + "=" + sum;
+        }
+    }
+
+    public abstract static class SumPipe extends WindowPipe<Integer, Long, Long> {
+        SumPipe(Window window) {
+            super(window);
+        }
+
+        @Override
+        public Long create() {
+            return 0L;
+        }
+
+        @Override
+        public Long add(Long sum, Integer i) {
+            return sum + i;
+        }
+
+        @Override
+        public Long merge(Long sum, Long other) {
+            return sum + other;
+        }
+
+        @Override
+        public Long emit(Object key, Long sum) {
+            return sum;
+        }
+    }
+
+    public static class SlidingSumPipe extends SumPipe {
+        public SlidingSumPipe() {
+            super(Window.sliding(4, 2));
+        }
+    }
+
+    public static class TimedSumPipe extends SumPipe {
+        public TimedSumPipe() {
+            super(Window.tumbling(200, TimeUnit.MILLISECONDS));
+        }
+    }
+}
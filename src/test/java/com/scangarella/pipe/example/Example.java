@@ -37,11 +37,7 @@ public class Example {
         PipeBuilder builder = new PipeBuilder(PipeSystem.GetSystem());
         PipeOpening<String> opening = builder.build(schematic);
         opening.put("Hello, world.");
-        try {
-            Thread.sleep(1000);
-        } catch (InterruptedException e) {
-            e.printStackTrace();
-        }
+        opening.close().toCompletableFuture().join();
         PipeSystem.CloseSystem();
     }
 
@@ -56,11 +52,7 @@ public class Example {
         PipeBuilder builder = new PipeBuilder(PipeSystem.GetSystem());
         PipeOpening<String> opening = builder.build(schematic);
         opening.put("Hello world");
-        try {
-            Thread.sleep(1000);
-        } catch (InterruptedException e) {
-            e.printStackTrace();
-        }
+        opening.close().toCompletableFuture().join();
         PipeSystem.CloseSystem();
     }
 
@@ -88,11 +80,7 @@ public class Example {
         PipeBuilder builder = new PipeBuilder(PipeSystem.GetSystem());
         PipeOpening<String> opening = builder.build(schematic);
         opening.put("Hello world");
-        try {
-            Thread.sleep(1000);
-        } catch (InterruptedException e) {
-            e.printStackTrace();
-        }
+        opening.close().toCompletableFuture().join();
         PipeSystem.CloseSystem();
     }
 }